@@ -28,4 +28,30 @@ public interface PolitenessServer {
      */
     long applyPoliteness(WebURL url);
 
+    /**
+     * Called when the response headers of a request to the url have been received.
+     *
+     * @param latency    the time from sending the request until the response headers arrived, in ms
+     * @param retryAfter the delay asked for by a {@code Retry-After} header in ms, or {@code -1}
+     */
+    default void onResponse(WebURL url, int statusCode, long latency, long retryAfter) {
+    }
+
+    /**
+     * Called when a request to the url failed without a response, e.g. on a timeout.
+     *
+     * @param latency the time from sending the request until it failed, in ms
+     */
+    default void onFailure(WebURL url, long latency) {
+    }
+
+    /**
+     * Called with the {@code Crawl-delay} of a host's robots.txt.
+     *
+     * @param host       the lower case host name
+     * @param crawlDelay the delay in ms
+     */
+    default void setCrawlDelay(String host, long crawlDelay) {
+    }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.util.Locale;
+
+/**
+ * How the content of responses whose type matches a MIME pattern is handled, see
+ * {@link CrawlConfig#addContentPolicy(ContentPolicy)}. The pattern is either a full type like
+ * {@code text/html}, a type with any subtype like {@code image/*}, or {@code *}{@code /*}.
+ */
+public class ContentPolicy {
+
+    private final String mimePattern;
+
+    /**
+     * Max allowed size of the content. -1 uses {@link CrawlConfig#getMaxDownloadSize()}, 0 does not
+     * download the content at all.
+     */
+    private int maxDownloadSize = -1;
+
+    /**
+     * Should the content be parsed?
+     */
+    private boolean parse = true;
+
+    /**
+     * Should outgoing links be extracted from the content?
+     */
+    private boolean extractLinks = true;
+
+    /**
+     * Should {@code visit} be called for the page?
+     */
+    private boolean visit = true;
+
+    public ContentPolicy(String mimePattern) {
+        this.mimePattern = mimePattern.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param contentType the content type of a response, e.g. "text/html; charset=UTF-8"
+     * @return whether this policy applies to the content type
+     */
+    public boolean matches(String contentType) {
+        if ("*/*".equals(mimePattern)) {
+            return true;
+        }
+        if (contentType == null) {
+            return false;
+        }
+        String mimeType = contentType.toLowerCase(Locale.ROOT);
+        int parameters = mimeType.indexOf(';');
+        if (parameters >= 0) {
+            mimeType = mimeType.substring(0, parameters);
+        }
+        mimeType = mimeType.trim();
+        if (mimePattern.endsWith("/*")) {
+            return mimeType.startsWith(mimePattern.substring(0, mimePattern.length() - 1));
+        }
+        return mimeType.equals(mimePattern);
+    }
+
+    public String getMimePattern() {
+        return mimePattern;
+    }
+
+    public int getMaxDownloadSize() {
+        return maxDownloadSize;
+    }
+
+    /**
+     * @param maxDownloadSize Max allowed size of the content in bytes. Larger content is not
+     *                        fetched, or truncated if its size is not known in advance. -1 uses
+     *                        {@link CrawlConfig#getMaxDownloadSize()}, 0 skips the content like
+     *                        a disallowed content type. Default is {@code -1}.
+     */
+    public void setMaxDownloadSize(int maxDownloadSize) {
+        this.maxDownloadSize = maxDownloadSize;
+    }
+
+    public boolean isParse() {
+        return parse;
+    }
+
+    /**
+     * Should the content be parsed? Content which is not parsed gets an empty
+     * {@code BinaryParseData} and has no outgoing links. Default is {@code true}.
+     *
+     * @param parse whether the content should be parsed
+     */
+    public void setParse(boolean parse) {
+        this.parse = parse;
+    }
+
+    public boolean isExtractLinks() {
+        return extractLinks;
+    }
+
+    /**
+     * Should outgoing links of the content be extracted and scheduled? Default is {@code true}.
+     *
+     * @param extractLinks whether outgoing links should be extracted
+     */
+    public void setExtractLinks(boolean extractLinks) {
+        this.extractLinks = extractLinks;
+    }
+
+    public boolean isVisit() {
+        return visit;
+    }
+
+    /**
+     * Should {@code visit} be called for pages of this content? Default is {@code true}.
+     *
+     * @param visit whether the pages should be visited
+     */
+    public void setVisit(boolean visit) {
+        this.visit = visit;
+    }
+
+    @Override
+    public String toString() {
+        return mimePattern + " [max download size: " + maxDownloadSize + ", parse: " + parse +
+                ", extract links: " + extractLinks + ", visit: " + visit + "]";
+    }
+}
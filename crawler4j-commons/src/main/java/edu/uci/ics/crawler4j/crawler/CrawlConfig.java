@@ -233,6 +233,71 @@ public class CrawlConfig {
      */
     private int batchReadSize = 50;
 
+    /**
+     * Run each crawler on a virtual thread instead of a platform thread.
+     * Requires Java 21 or later at runtime.
+     */
+    private boolean useVirtualThreads = false;
+
+    /**
+     * Number of fetches each crawler keeps outstanding when the page fetcher supports
+     * asynchronous fetching ({@code AsyncPageFetcher}).
+     */
+    private int fetchPipelineDepth = 1;
+
+    /**
+     * Expected number of distinct URLs of the crawl, used to size the in-memory seen-URL filter in
+     * front of the DocIDServer. 0 disables the filter.
+     */
+    private long expectedUrlCount = 0;
+
+    /**
+     * Parse HTML with the built-in streaming parser instead of Tika.
+     */
+    private boolean streamingHtmlParser = false;
+
+    /**
+     * Whether the streaming HTML parser collects the body text of a page.
+     */
+    private boolean extractHtmlText = true;
+
+    /**
+     * Number of threads which parse and visit the fetched pages. 0 parses on the crawler threads.
+     */
+    private int parserThreads = 0;
+
+    /**
+     * Should the connection limit of each host follow how the host is being crawled?
+     */
+    private boolean adaptiveConnectionLimits = false;
+
+    /**
+     * Size in bytes above which the content of a page is kept in a temporary file instead of
+     * memory. 0 keeps all content in memory.
+     */
+    private int contentSpillThreshold = 0;
+
+    /**
+     * Policies for the content of certain types, the first matching one applies.
+     */
+    private List<ContentPolicy> contentPolicies = new ArrayList<>();
+
+    /**
+     * Should pages be requested conditionally with the validators saved by a previous crawl?
+     */
+    private boolean conditionalGet = false;
+
+    /**
+     * Delay in seconds between two saves of the validators for conditional requests while
+     * crawling.
+     */
+    private int validatorFlushDelaySeconds = 60;
+
+    /**
+     * Should the urls of the sitemaps listed in the robots.txt of the seeds' hosts be scheduled?
+     */
+    private boolean crawlSitemaps = false;
+
     /**
      * Validates the configs specified by this instance.
      *
@@ -253,6 +318,29 @@ public class CrawlConfig {
         if (maxDepthOfCrawling > Short.MAX_VALUE) {
             throw new Exception("Maximum value for crawl depth is " + Short.MAX_VALUE);
         }
+        if (fetchPipelineDepth < 1) {
+            throw new Exception("Invalid value for fetch pipeline depth: " + fetchPipelineDepth);
+        }
+        if (expectedUrlCount < 0) {
+            throw new Exception("Invalid value for expected URL count: " + expectedUrlCount);
+        }
+        if (parserThreads < 0) {
+            throw new Exception("Invalid value for parser threads: " + parserThreads);
+        }
+        if (contentSpillThreshold < 0) {
+            throw new Exception("Invalid value for content spill threshold: " + contentSpillThreshold);
+        }
+        if (validatorFlushDelaySeconds < 0) {
+            throw new Exception("Invalid value for validator flush delay: " + validatorFlushDelaySeconds);
+        }
+        for (ContentPolicy contentPolicy : contentPolicies) {
+            if (contentPolicy.getMimePattern().indexOf('/') <= 0) {
+                throw new Exception("Invalid MIME pattern of content policy: " + contentPolicy.getMimePattern());
+            }
+            if (contentPolicy.getMaxDownloadSize() < -1) {
+                throw new Exception("Invalid value for max download size of content policy: " + contentPolicy);
+            }
+        }
     }
 
     public String getCrawlStorageFolder() {
@@ -723,6 +811,244 @@ public class CrawlConfig {
         this.languageDetection = languageDetection;
     }
 
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Should each crawler run on a virtual thread? This allows running many thousands of
+     * crawlers, as long as the connection limits ({@link #setMaxTotalConnections(int)},
+     * {@link #setMaxConnectionsPerHost(int)}) are raised accordingly. If the runtime does
+     * not support virtual threads (Java 20 or earlier), platform threads are used instead.
+     * <p>
+     * The frontiers, DocID servers and stores of crawler4j wait and do their I/O under
+     * {@link java.util.concurrent.locks.ReentrantLock}s rather than monitors, as a virtual thread
+     * blocking inside a {@code synchronized} block pins its carrier thread (up to Java 23). The
+     * same applies to the callbacks of your crawlers and to a custom frontier.
+     * Default is {@code false}.
+     *
+     * @param useVirtualThreads
+     *            {@code true} if crawlers should run on virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public int getFetchPipelineDepth() {
+        return fetchPipelineDepth;
+    }
+
+    /**
+     * How many fetches should each crawler keep outstanding? Values larger than 1 only take effect
+     * with an {@code AsyncPageFetcher}: the crawler then starts fetching the next URLs of its batch
+     * while it processes the current page. Pages are still processed one after the other, in the
+     * order they were handed out by the frontier. Default is {@code 1}.
+     *
+     * @param fetchPipelineDepth the number of outstanding fetches per crawler
+     */
+    public void setFetchPipelineDepth(int fetchPipelineDepth) {
+        this.fetchPipelineDepth = fetchPipelineDepth;
+    }
+
+    public long getExpectedUrlCount() {
+        return expectedUrlCount;
+    }
+
+    /**
+     * How many distinct URLs is the crawl expected to discover? If set, lookups of the DocIDServer
+     * are fronted by a Bloom filter sized for this number of URLs, so links which have definitely
+     * not been seen before do not hit the store. With resumable crawling, the filter is saved in the
+     * crawl storage folder on shutdown and reloaded on the next run. Default is {@code 0} (no filter).
+     *
+     * @param expectedUrlCount the expected number of distinct URLs
+     */
+    public void setExpectedUrlCount(long expectedUrlCount) {
+        this.expectedUrlCount = expectedUrlCount;
+    }
+
+    public boolean isStreamingHtmlParser() {
+        return streamingHtmlParser;
+    }
+
+    /**
+     * Should HTML pages be parsed by the built-in streaming parser instead of Tika? It extracts
+     * links, base, meta tags, title and body text in a single pass over the content, without
+     * building a DOM or decoding the whole page into a String. Default is {@code false}.
+     *
+     * @param streamingHtmlParser whether HTML pages should be parsed by the streaming parser
+     */
+    public void setStreamingHtmlParser(boolean streamingHtmlParser) {
+        this.streamingHtmlParser = streamingHtmlParser;
+    }
+
+    public boolean isExtractHtmlText() {
+        return extractHtmlText;
+    }
+
+    /**
+     * Should the streaming HTML parser collect the body text of pages? Crawls that only follow
+     * links can switch this off. Language detection needs the text. Default is {@code true}.
+     *
+     * @param extractHtmlText whether the streaming parser should collect the body text
+     */
+    public void setExtractHtmlText(boolean extractHtmlText) {
+        this.extractHtmlText = extractHtmlText;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * How many threads should parse the fetched pages? If set, crawler threads only fetch and
+     * hand each page to a shared pool of this size, which parses it, schedules its links and calls
+     * {@code visit}. The number of CPU cores is a good value. A crawler blocks when the pool is
+     * full, so fetching never runs far ahead of parsing. Note that {@code visit},
+     * {@code shouldVisit}, {@code shouldFollowLinksIn}, {@code onParseError} and
+     * {@code onUnhandledException} then run on a parser thread, while the crawler thread fetches
+     * the next page; they are never called concurrently for the same crawler, while its pages are
+     * parsed concurrently. Default is {@code 0} (parse on the crawler threads).
+     *
+     * @param parserThreads the number of parser threads
+     */
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public boolean isAdaptiveConnectionLimits() {
+        return adaptiveConnectionLimits;
+    }
+
+    /**
+     * Should the connection limit of each host adapt to how the host is being crawled? If set, the
+     * limit of every host is reviewed every few seconds: hosts waiting for connections may open
+     * more, up to {@link #getMaxConnectionsPerHost()}, while idle hosts shrink to a single
+     * connection. With the {@code AdaptivePolitenessServer}, the limit also follows the number of
+     * concurrent requests it allows for the host. Only used by the blocking {@code PageFetcher}.
+     * Default is {@code false}.
+     *
+     * @param adaptiveConnectionLimits whether the per host connection limits should adapt
+     */
+    public void setAdaptiveConnectionLimits(boolean adaptiveConnectionLimits) {
+        this.adaptiveConnectionLimits = adaptiveConnectionLimits;
+    }
+
+    public int getContentSpillThreshold() {
+        return contentSpillThreshold;
+    }
+
+    /**
+     * Above how many bytes should the content of a page be written to a file instead of being kept
+     * in memory? Spilled content is streamed to the parsers and memory mapped on demand, so large
+     * binary documents do not need a heap buffer of their own. The files are written to the
+     * {@code content} folder of the crawl storage folder. Each is deleted once its page has been
+     * visited, so {@code visit} must not hand the page on to other threads. Files left behind by a
+     * crawl which did not end cleanly are deleted when the next crawl starts.
+     * Default is {@code 0} (keep all content in memory).
+     *
+     * @param contentSpillThreshold the size in bytes above which content is spilled to disk
+     */
+    public void setContentSpillThreshold(int contentSpillThreshold) {
+        this.contentSpillThreshold = contentSpillThreshold;
+    }
+
+    public List<ContentPolicy> getContentPolicies() {
+        return contentPolicies;
+    }
+
+    /**
+     * @param contentPolicies the policies for the content of certain types, the first matching
+     *                        one applies
+     */
+    public void setContentPolicies(List<ContentPolicy> contentPolicies) {
+        this.contentPolicies = new ArrayList<>(contentPolicies);
+    }
+
+    /**
+     * Adds a policy for the content of the types matching its MIME pattern, e.g. to allow larger
+     * PDF files than HTML pages, or to visit images without parsing them. A content type with a
+     * policy is fetched even if it is binary and binary content is not included in the crawl. If
+     * several policies match, the one added first applies.
+     *
+     * @param contentPolicy the policy to add
+     */
+    public void addContentPolicy(ContentPolicy contentPolicy) {
+        this.contentPolicies.add(contentPolicy);
+    }
+
+    /**
+     * @param contentType the content type of a response, may be null
+     * @return the first policy which matches the content type, or null if there is none
+     */
+    public ContentPolicy getContentPolicy(String contentType) {
+        for (ContentPolicy contentPolicy : contentPolicies) {
+            if (contentPolicy.matches(contentType)) {
+                return contentPolicy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param contentType the content type of a response, may be null
+     * @return the max allowed size of content of this type
+     */
+    public int getMaxDownloadSize(String contentType) {
+        ContentPolicy contentPolicy = getContentPolicy(contentType);
+        if (contentPolicy == null || contentPolicy.getMaxDownloadSize() <= 0) {
+            return maxDownloadSize;
+        }
+        return contentPolicy.getMaxDownloadSize();
+    }
+
+    public boolean isConditionalGet() {
+        return conditionalGet;
+    }
+
+    /**
+     * Should the {@code ETag} and {@code Last-Modified} headers of fetched pages be saved in the
+     * crawl storage folder and sent back as {@code If-None-Match} and {@code If-Modified-Since}
+     * when the pages are crawled again? Pages which have not changed are then answered with
+     * {@code 304 Not Modified} and not downloaded. Default is {@code false}.
+     *
+     * @param conditionalGet whether pages should be requested conditionally
+     */
+    public void setConditionalGet(boolean conditionalGet) {
+        this.conditionalGet = conditionalGet;
+    }
+
+    public int getValidatorFlushDelaySeconds() {
+        return validatorFlushDelaySeconds;
+    }
+
+    /**
+     * How often should the validators saved for conditional requests be written to the crawl
+     * storage folder while crawling? They are always written when the crawl ends, so a shorter
+     * delay only reduces what is lost when a crawl is killed. 0 writes them at the end only.
+     * Default is 60 seconds.
+     *
+     * @param validatorFlushDelaySeconds the delay between two writes in seconds
+     */
+    public void setValidatorFlushDelaySeconds(int validatorFlushDelaySeconds) {
+        this.validatorFlushDelaySeconds = validatorFlushDelaySeconds;
+    }
+
+    public boolean isCrawlSitemaps() {
+        return crawlSitemaps;
+    }
+
+    /**
+     * Should the sitemaps listed in the robots.txt of the seeds' hosts be fetched when the seeds
+     * are added, and their urls be scheduled like seeds? The time each sitemap was read at is saved
+     * in the crawl storage folder, and a recrawl skips the urls whose {@code lastmod} is older.
+     * Default is {@code false}.
+     *
+     * @param crawlSitemaps whether the urls of the seeds' sitemaps should be crawled
+     */
+    public void setCrawlSitemaps(boolean crawlSitemaps) {
+        this.crawlSitemaps = crawlSitemaps;
+    }
+
     @Override
     public String toString() {
         return "Crawl storage folder: " + getCrawlStorageFolder() + "\n" +
@@ -751,6 +1077,18 @@ public class CrawlConfig {
                 "Halt on error: " + isHaltOnError() + "\n" +
                 "Allow single level domain:" + isAllowSingleLevelDomain() + "\n" +
                 "Batch read size: " + getBatchReadSize() + "\n" +
-                "Language Detection enabled:: " + isLanguageDetection() + "\n";
+                "Language Detection enabled:: " + isLanguageDetection() + "\n" +
+                "Use virtual threads: " + isUseVirtualThreads() + "\n" +
+                "Fetch pipeline depth: " + getFetchPipelineDepth() + "\n" +
+                "Expected URL count: " + getExpectedUrlCount() + "\n" +
+                "Streaming HTML parser: " + isStreamingHtmlParser() + "\n" +
+                "Extract HTML text: " + isExtractHtmlText() + "\n" +
+                "Parser threads: " + getParserThreads() + "\n" +
+                "Adaptive connection limits: " + isAdaptiveConnectionLimits() + "\n" +
+                "Content spill threshold: " + getContentSpillThreshold() + "\n" +
+                "Content policies: " + getContentPolicies() + "\n" +
+                "Conditional GET: " + isConditionalGet() + "\n" +
+                "Validator flush delay seconds: " + getValidatorFlushDelaySeconds() + "\n" +
+                "Crawl sitemaps: " + isCrawlSitemaps() + "\n";
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.uci.ics.crawler4j.util.Util;
+
+/**
+ * A thread-safe Bloom filter of strings, which can be saved to and loaded from a file.
+ */
+class BloomFilter {
+
+    private static final int MAGIC = 0x43344a42; // "C4JB"
+
+    private final long numBits;
+    private final int numHashFunctions;
+    private final AtomicLongArray bits;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        this(optimalNumBits(expectedInsertions, falsePositiveRate),
+             optimalNumHashFunctions(expectedInsertions, optimalNumBits(expectedInsertions, falsePositiveRate)));
+    }
+
+    private BloomFilter(long numBits, int numHashFunctions) {
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+        this.bits = new AtomicLongArray(Math.toIntExact((numBits + 63) / 64));
+    }
+
+    static long optimalNumBits(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double bits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return Math.max(64, (long) Math.ceil(bits));
+    }
+
+    static int optimalNumHashFunctions(long expectedInsertions, long numBits) {
+        long n = Math.max(1, expectedInsertions);
+        return Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    long getNumBits() {
+        return numBits;
+    }
+
+    int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    void put(String value) {
+        long h1 = Util.hash64(value);
+        long h2 = Util.mix64(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = bits.get(index);
+            while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+                word = bits.get(index);
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the value has definitely not been put into this filter.
+     */
+    boolean mightContain(String value) {
+        long h1 = Util.hash64(value);
+        long h2 = Util.mix64(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves this filter along with a caller supplied tag, replacing the file atomically.
+     */
+    void writeTo(Path file, long tag) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(numBits);
+            out.writeInt(numHashFunctions);
+            out.writeLong(tag);
+            for (int i = 0; i < bits.length(); i++) {
+                out.writeLong(bits.get(i));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a filter saved by {@link #writeTo(Path, long)}.
+     *
+     * @return the filter, or {@code null} if the file was saved with a different size, hash count
+     *         or tag.
+     */
+    static BloomFilter readFrom(Path file, long numBits, int numHashFunctions, long tag) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != numBits || in.readInt() != numHashFunctions
+                || in.readLong() != tag) {
+                return null;
+            }
+            BloomFilter filter = new BloomFilter(numBits, numHashFunctions);
+            for (int i = 0; i < filter.bits.length(); i++) {
+                filter.bits.set(i, in.readLong());
+            }
+            return filter;
+        }
+    }
+}
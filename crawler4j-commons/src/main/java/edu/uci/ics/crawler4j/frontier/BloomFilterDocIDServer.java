@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+/**
+ * A {@link DocIDServer} which answers lookups of URLs that have definitely not been seen before
+ * from an in-memory Bloom filter, and only consults the wrapped DocIDServer on possible hits.
+ *
+ * <p>The filter can be saved to a file on {@link #close()}. It is only reloaded if the wrapped
+ * DocIDServer still holds the same number of docids as when it was saved. Otherwise (for example
+ * after a crash) the filter is rebuilt from the urls of the wrapped DocIDServer (see
+ * {@link DocIDServer#forEach}). If they cannot be listed, all lookups go to the wrapped
+ * DocIDServer.
+ */
+public class BloomFilterDocIDServer implements DocIDServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloomFilterDocIDServer.class);
+
+    /** Name of the file the filter is saved to in the crawl storage folder. */
+    public static final String FILE_NAME = "seen-urls.bloom";
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final DocIDServer delegate;
+    private final Path file;
+    private final BloomFilter filter;
+
+    /**
+     * Creates a filter sized for {@link CrawlConfig#getExpectedUrlCount()}, which is saved in the
+     * crawl storage folder if crawling is resumable.
+     */
+    public BloomFilterDocIDServer(DocIDServer delegate, CrawlConfig config) {
+        this(delegate, config.getExpectedUrlCount(), DEFAULT_FALSE_POSITIVE_RATE,
+             config.isResumableCrawling() ? new File(config.getCrawlStorageFolder(), FILE_NAME).toPath() : null);
+    }
+
+    /**
+     * @param file where the filter is saved on {@link #close()} and loaded from, {@code null} if
+     *             the filter should not be saved.
+     */
+    public BloomFilterDocIDServer(DocIDServer delegate, long expectedUrlCount, double falsePositiveRate,
+                                  Path file) {
+        if (expectedUrlCount <= 0) {
+            throw new IllegalArgumentException("expectedUrlCount must be positive: " + expectedUrlCount);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        this.delegate = delegate;
+        this.file = file;
+
+        long numBits = BloomFilter.optimalNumBits(expectedUrlCount, falsePositiveRate);
+        int numHashFunctions = BloomFilter.optimalNumHashFunctions(expectedUrlCount, numBits);
+        int docCount = delegate.getDocCount();
+        BloomFilter loaded = null;
+        if (file != null && Files.exists(file)) {
+            try {
+                loaded = BloomFilter.readFrom(file, numBits, numHashFunctions, docCount);
+            } catch (IOException e) {
+                logger.warn("Could not load the seen-URL filter from {}", file, e);
+            }
+            if (loaded != null) {
+                logger.info("Loaded the seen-URL filter for {} URLs from {}", docCount, file);
+            }
+        }
+        if (loaded == null && docCount > 0) {
+            loaded = rebuild(expectedUrlCount, falsePositiveRate, docCount);
+        } else if (loaded == null) {
+            loaded = new BloomFilter(expectedUrlCount, falsePositiveRate);
+        }
+        this.filter = loaded;
+    }
+
+    private BloomFilter rebuild(long expectedUrlCount, double falsePositiveRate, int docCount) {
+        logger.info("No up-to-date seen-URL filter found, rebuilding it for the {} URLs of the previous crawl",
+                    docCount);
+        BloomFilter rebuilt = new BloomFilter(expectedUrlCount, falsePositiveRate);
+        try {
+            delegate.forEach((url, docId) -> rebuilt.put(url));
+            return rebuilt;
+        } catch (UnsupportedOperationException e) {
+            logger.warn("Could not rebuild the seen-URL filter, all lookups go to the DocIDServer: {}",
+                        e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public int getDocId(String url) {
+        if (filter != null && !filter.mightContain(url)) {
+            return -1;
+        }
+        return delegate.getDocId(url);
+    }
+
+    @Override
+    public int[] getDocIds(List<String> urls) {
+        if (filter == null) {
+            return delegate.getDocIds(urls);
+        }
+        int[] docIds = new int[urls.size()];
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < docIds.length; i++) {
+            if (filter.mightContain(urls.get(i))) {
+                candidates.add(urls.get(i));
+            } else {
+                docIds[i] = -1;
+            }
+        }
+        if (!candidates.isEmpty()) {
+            int[] found = delegate.getDocIds(candidates);
+            for (int i = 0, j = 0; i < docIds.length; i++) {
+                if (docIds[i] == 0) {
+                    docIds[i] = found[j++];
+                }
+            }
+        }
+        return docIds;
+    }
+
+    @Override
+    public int getNewDocID(String url) {
+        // Added before the docid exists, so that concurrent lookups never miss it
+        if (filter != null) {
+            filter.put(url);
+        }
+        return delegate.getNewDocID(url);
+    }
+
+    @Override
+    public int[] getOrAssignDocIds(List<String> urls) {
+        if (filter != null) {
+            for (String url : urls) {
+                filter.put(url);
+            }
+        }
+        return delegate.getOrAssignDocIds(urls);
+    }
+
+    @Override
+    public void addUrlAndDocId(String url, int docId) {
+        if (filter != null) {
+            filter.put(url);
+        }
+        delegate.addUrlAndDocId(url, docId);
+    }
+
+    @Override
+    public boolean isSeenBefore(String url) {
+        if (filter != null && !filter.mightContain(url)) {
+            return false;
+        }
+        return delegate.isSeenBefore(url);
+    }
+
+    @Override
+    public int getDocCount() {
+        return delegate.getDocCount();
+    }
+
+    @Override
+    public void close() {
+        if (filter != null && file != null) {
+            try {
+                filter.writeTo(file, delegate.getDocCount());
+            } catch (IOException e) {
+                logger.error("Exception thrown while saving the seen-URL filter to {}", file, e);
+            }
+        }
+        delegate.close();
+    }
+}
@@ -15,6 +15,9 @@
  */
 package edu.uci.ics.crawler4j.frontier;
 
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
 public interface DocIDServer {
 
     /**
@@ -25,13 +28,55 @@ public interface DocIDServer {
      */
     int getDocId(String url);
 
+    /**
+     * Returns the docids of already seen urls.
+     *
+     * @param urls the URLs for which the docids are returned.
+     * @return the docids, in the same order as {@code urls}. An entry is -1 if the url has not been
+     *         seen before.
+     */
+    default int[] getDocIds(List<String> urls) {
+        int[] docIds = new int[urls.size()];
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = getDocId(urls.get(i));
+        }
+        return docIds;
+    }
+
     int getNewDocID(String url);
 
+    /**
+     * Returns the docids of the given urls, assigning new docids to the urls which have not been
+     * seen before. New docids are assigned in the order of the list.
+     *
+     * @param urls the URLs for which the docids are returned.
+     * @return the docids, in the same order as {@code urls}. An entry is -1 if no docid could be
+     *         assigned.
+     */
+    default int[] getOrAssignDocIds(List<String> urls) {
+        int[] docIds = new int[urls.size()];
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = getNewDocID(urls.get(i));
+        }
+        return docIds;
+    }
+
     void addUrlAndDocId(String url, int docId);
 
     boolean isSeenBefore(String url);
 
     int getDocCount();
 
+    /**
+     * Passes each url with its docid to the given action, e.g. to rebuild an index of the seen
+     * urls. The order is unspecified.
+     *
+     * @param action receives each url and its docid
+     * @throws UnsupportedOperationException if the urls cannot be listed, which is the default
+     */
+    default void forEach(ObjIntConsumer<String> action) {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot list its urls");
+    }
+
     void close();
 }
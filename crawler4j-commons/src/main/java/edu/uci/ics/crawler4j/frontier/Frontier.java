@@ -29,6 +29,15 @@ public interface Frontier {
 
     void setProcessed(WebURL webURL);
 
+    /**
+     * Called for a url handed out by {@link #getNextURLs(int, List)} which the crawler skipped
+     * instead of processing it. Does nothing by default.
+     *
+     * @param webURL the url as handed out
+     */
+    default void setSkipped(WebURL webURL) {
+    }
+
     long getQueueLength();
 
     long getNumberOfAssignedPages();
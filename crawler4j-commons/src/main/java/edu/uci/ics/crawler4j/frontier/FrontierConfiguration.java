@@ -25,5 +25,13 @@ public interface FrontierConfiguration {
 
     WebURLFactory getWebURLFactory();
 
+    /**
+     * @return the store of the validators for conditional requests, or null if pages are always
+     * fetched in full
+     */
+    default ValidatorStore getValidatorStore() {
+        return null;
+    }
+
     void close();
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.function.ObjIntConsumer;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Keeps the {@code ETag} and {@code Last-Modified} validators of fetched pages by their docid, so
+ * that a later crawl can request the pages conditionally. The url is kept with the validators, and
+ * validators saved for another url under the same docid are never returned.
+ */
+public interface ValidatorStore {
+
+    /**
+     * @param url the url to be fetched
+     * @return the validators saved for the url, or null if there are none
+     */
+    Validators get(WebURL url);
+
+    /**
+     * Saves the validators of a fetched url. If neither is given, the url is removed.
+     *
+     * @param url          the fetched url
+     * @param eTag         the {@code ETag} of the response, may be null
+     * @param lastModified the {@code Last-Modified} date of the response, may be null
+     */
+    void put(WebURL url, String eTag, String lastModified);
+
+    void remove(WebURL url);
+
+    /**
+     * Calls the consumer with the url and docid of every entry, in increasing docid order.
+     */
+    void forEach(ObjIntConsumer<String> consumer);
+
+    int size();
+
+    /**
+     * Saves the validators, if the store keeps them in a file, so that a crawl which does not end
+     * cleanly only loses the validators saved since the last flush. Called periodically while
+     * crawling (see {@link edu.uci.ics.crawler4j.crawler.CrawlConfig#getValidatorFlushDelaySeconds()}).
+     */
+    default void flush() {
+    }
+
+    void close();
+
+    /**
+     * The validators of a url.
+     */
+    final class Validators {
+
+        private final String eTag;
+        private final String lastModified;
+
+        public Validators(String eTag, String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the {@code ETag} to send as {@code If-None-Match}, may be null
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the {@code Last-Modified} date to send as {@code If-Modified-Since}, may be null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
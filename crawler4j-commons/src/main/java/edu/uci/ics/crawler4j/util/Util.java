@@ -85,4 +85,51 @@ public class Util {
         return typeStr.contains("css");
     }
 
+    /**
+     * @return the lower case host of the url, like {@link java.net.URL#getHost()}, or {@code null}
+     */
+    public static String getHost(String url) {
+        if (url == null) {
+            return null;
+        }
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+        String authority = url.substring(start, end);
+        authority = authority.substring(authority.lastIndexOf('@') + 1);
+        int portStart = authority.startsWith("[") ? authority.indexOf(']') + 1 : authority.indexOf(':');
+        if (portStart > 0 && portStart < authority.length()) {
+            authority = authority.substring(0, portStart);
+        }
+        return authority.isEmpty() ? null : authority.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A 64 bit hash of the string: FNV-1a over the UTF-16 code units, finished with the MurmurHash3
+     * mixer. It does not depend on the JVM, so it may be stored.
+     */
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads every bit of the input over all bits of the result.
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
 }
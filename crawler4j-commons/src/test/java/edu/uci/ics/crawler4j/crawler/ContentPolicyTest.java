@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ContentPolicyTest {
+	
+	@Test
+	void mimePatternsMatchContentTypes() {
+		Assertions.assertThat(new ContentPolicy("text/html").matches("text/html; charset=UTF-8")).isTrue();
+		Assertions.assertThat(new ContentPolicy("text/html").matches("TEXT/HTML")).isTrue();
+		Assertions.assertThat(new ContentPolicy("text/html").matches("text/htmlx")).isFalse();
+		Assertions.assertThat(new ContentPolicy("image/*").matches("image/png")).isTrue();
+		Assertions.assertThat(new ContentPolicy("image/*").matches("application/pdf")).isFalse();
+		Assertions.assertThat(new ContentPolicy("image/*").matches(null)).isFalse();
+		Assertions.assertThat(new ContentPolicy("*/*").matches(null)).isTrue();
+	}
+	
+	@Test
+	void firstMatchingPolicyApplies() {
+		CrawlConfig config = new CrawlConfig();
+		config.setMaxDownloadSize(2_000_000);
+		ContentPolicy pdf = new ContentPolicy("application/pdf");
+		pdf.setMaxDownloadSize(30_000_000);
+		config.addContentPolicy(pdf);
+		ContentPolicy images = new ContentPolicy("image/*");
+		images.setParse(false);
+		config.addContentPolicy(images);
+		config.addContentPolicy(new ContentPolicy("*/*"));
+		
+		Assertions.assertThat(config.getContentPolicy("application/pdf")).isSameAs(pdf);
+		Assertions.assertThat(config.getContentPolicy("image/gif")).isSameAs(images);
+		Assertions.assertThat(config.getContentPolicy("text/html").getMimePattern()).isEqualTo("*/*");
+		Assertions.assertThat(config.getMaxDownloadSize("application/pdf")).isEqualTo(30_000_000);
+		Assertions.assertThat(config.getMaxDownloadSize("text/html")).isEqualTo(2_000_000);
+	}
+}
@@ -17,8 +17,20 @@ package edu.uci.ics.crawler4j.crawler;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import crawlercommons.filters.basic.BasicURLNormalizer;
 import edu.uci.ics.crawler4j.frontier.*;
@@ -29,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.parser.Parser;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.sitemap.SitemapLoader;
 import edu.uci.ics.crawler4j.url.TLDList;
 import edu.uci.ics.crawler4j.url.WebURL;
 
@@ -41,6 +54,12 @@ import edu.uci.ics.crawler4j.url.WebURL;
 public class CrawlController {
 
     static final Logger logger = LoggerFactory.getLogger(CrawlController.class);
+
+    /**
+     * Name of the folder in the crawl storage folder which spilled page content is written to.
+     */
+    public static final String CONTENT_SPILL_FOLDER = "content";
+
     private final CrawlConfig config;
 
     /**
@@ -71,15 +90,57 @@ public class CrawlController {
     protected RobotstxtServer robotstxtServer;
     protected Frontier frontier;
     protected DocIDServer docIdServer;
+    protected ValidatorStore validatorStore;
+    protected SitemapLoader sitemapLoader;
     protected TLDList tldList;
     protected WebURLFactory webURLFactory;
     protected BasicURLNormalizer normalizer;
 
     protected final Object waitingLock = new Object();
+
+    /*
+     * Virtual threads are only available on Java 21+, while this library targets Java 11.
+     * Thread.ofVirtual().name(..).unstarted(..) is therefore looked up reflectively.
+     */
+    private static final Method VIRTUAL_THREAD_BUILDER = findMethod("java.lang.Thread", "ofVirtual");
+    private static final Method VIRTUAL_THREAD_NAME =
+            findMethod("java.lang.Thread$Builder", "name", String.class);
+    private static final Method VIRTUAL_THREAD_UNSTARTED =
+            findMethod("java.lang.Thread$Builder", "unstarted", Runnable.class);
+
+    private boolean virtualThreadsWarned;
+
+    /**
+     * Outstanding work of the crawl: the live crawlers which are not waiting for new URLs, plus
+     * the work they handed off, see {@link #beginWork()}. The crawl only finishes once it is 0.
+     */
+    private final AtomicInteger outstandingWork = new AtomicInteger();
+
+    /**
+     * Ids of the crawlers whose thread has terminated and was not yet handled by the monitor.
+     */
+    private final Queue<Integer> terminatedCrawlers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The first error of a crawler, wrapped with the name of its thread. Set by the failing
+     * crawler, so the monitor does not need to ask every crawler for its error.
+     */
+    private final AtomicReference<RuntimeException> crawlerError = new AtomicReference<>();
     protected final FrontierConfiguration frontierConfiguration;
 
     protected Parser parser;
 
+    private ParserPool parserPool;
+
+    private final Path contentSpillFolder;
+
+    /**
+     * Whether the validator store was created by this controller, as the frontier configuration
+     * provides none, rather than being closed with the frontier configuration.
+     */
+    private final boolean ownsValidatorStore;
+    private long validatorsFlushedAt;
+
     public CrawlController(CrawlConfig config, BasicURLNormalizer normalizer, PageFetcher pageFetcher,
                            RobotstxtServer robotstxtServer, FrontierConfiguration frontierConfiguration) throws Exception {
         this(config, normalizer, pageFetcher, null, robotstxtServer, null, frontierConfiguration);
@@ -106,15 +167,31 @@ public class CrawlController {
             }
         }
 
+        this.contentSpillFolder = config.getContentSpillThreshold() > 0 ? createContentSpillFolder(folder) : null;
+
         this.tldList = tldList == null ? new TLDList(config) : tldList;
 
         this.frontierConfiguration = frontierConfiguration;
         this.frontier = frontierConfiguration.getFrontier();
-        this.docIdServer = frontierConfiguration.getDocIDServer();
+        this.docIdServer = config.getExpectedUrlCount() > 0
+                ? new BloomFilterDocIDServer(frontierConfiguration.getDocIDServer(), config)
+                : frontierConfiguration.getDocIDServer();
         this.webURLFactory = frontierConfiguration.getWebURLFactory();
+        ValidatorStore frontierValidatorStore = frontierConfiguration.getValidatorStore();
+        this.ownsValidatorStore = frontierValidatorStore == null && config.isConditionalGet();
+        if (ownsValidatorStore) {
+            Path validatorsFile = folder.toPath().resolve(HostQueueFrontierConfiguration.VALIDATORS_FILE_NAME);
+            logger.info("{} provides no validator store, the validators are saved to {}",
+                        frontierConfiguration.getClass().getSimpleName(), validatorsFile);
+            this.validatorStore = new InMemoryValidatorStore(validatorsFile);
+        } else {
+            this.validatorStore = frontierValidatorStore;
+        }
         this.normalizer = normalizer;
 
         this.pageFetcher = pageFetcher;
+        pageFetcher.setValidatorStore(validatorStore);
+        this.sitemapLoader = new SitemapLoader(config, pageFetcher, robotstxtServer, webURLFactory);
         this.parser = parser == null ? new Parser(config, normalizer, tldList, webURLFactory) : parser;
         this.robotstxtServer = robotstxtServer;
 
@@ -128,6 +205,35 @@ public class CrawlController {
         return parser;
     }
 
+    /**
+     * Creates the folder page content is spilled to, deleting the files a previous crawl left
+     * behind when it did not end cleanly.
+     */
+    private static Path createContentSpillFolder(File storageFolder) throws IOException {
+        Path spillFolder = new File(storageFolder, CONTENT_SPILL_FOLDER).toPath();
+        Files.createDirectories(spillFolder);
+        int deleted = 0;
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spillFolder,
+                Page.SPILL_FILE_PREFIX + "*" + Page.SPILL_FILE_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} content files of a previous crawl from {}", deleted, spillFolder);
+        }
+        return spillFolder;
+    }
+
+    /**
+     * @return the folder page content above {@link CrawlConfig#getContentSpillThreshold()} is
+     * written to, {@code null} if content is kept in memory
+     */
+    Path getContentSpillFolder() {
+        return contentSpillFolder;
+    }
+
     public interface WebCrawlerFactory<T extends WebCrawler> {
         T newInstance() throws Exception;
     }
@@ -230,15 +336,18 @@ public class CrawlController {
             finished = false;
             setError(null);
             crawlersLocalData.clear();
+            outstandingWork.set(0);
+            terminatedCrawlers.clear();
+            crawlerError.set(null);
+            if (config.getParserThreads() > 0) {
+                parserPool = new ParserPool(this, config.getParserThreads());
+            }
             final List<Thread> threads = new ArrayList<>();
             final List<T> crawlers = new ArrayList<>();
 
             for (int i = 1; i <= numberOfCrawlers; i++) {
                 T crawler = crawlerFactory.newInstance();
-                Thread thread = new Thread(crawler, "Crawler " + i);
-                crawler.setThread(thread);
-                crawler.init(i, this);
-                thread.start();
+                Thread thread = startCrawler(crawler, i);
                 crawlers.add(crawler);
                 threads.add(thread);
                 logger.info("Crawler {} started", i);
@@ -251,31 +360,23 @@ public class CrawlController {
 
                         while (true) {
                             sleep(config.getThreadMonitoringDelaySeconds());
-                            boolean someoneIsWorking = false;
-                            for (int i = 0; i < threads.size(); i++) {
-                                Thread thread = threads.get(i);
-                                if (!thread.isAlive()) {
-                                    if (!shuttingDown && !config.isHaltOnError()) {
-                                        logger.info("Thread {} was dead, I'll recreate it", i);
-                                        T crawler = crawlerFactory.newInstance();
-                                        thread = new Thread(crawler, "Crawler " + (i + 1));
-                                        threads.remove(i);
-                                        threads.add(i, thread);
-                                        crawler.setThread(thread);
-                                        crawler.init(i + 1, controller);
-                                        thread.start();
-                                        crawlers.remove(i);
-                                        crawlers.add(i, crawler);
-                                    }
-                                } else if (crawlers.get(i).isNotWaitingForNewURLs()) {
-                                    someoneIsWorking = true;
-                                }
-                                Throwable t = crawlers.get(i).getError();
-                                if (t != null && config.isHaltOnError()) {
-                                    throw new RuntimeException(
-                                            "error on thread [" + threads.get(i).getName() + "]", t);
+                            flushValidators();
+                            if (config.isHaltOnError() && crawlerError.get() != null) {
+                                throw crawlerError.get();
+                            }
+                            // Only the crawlers which have terminated since the last round are
+                            // inspected, so supervising many crawlers stays cheap.
+                            Integer id;
+                            while ((id = terminatedCrawlers.poll()) != null) {
+                                int i = id - 1;
+                                if (!shuttingDown && !config.isHaltOnError()) {
+                                    logger.info("Thread {} was dead, I'll recreate it", i);
+                                    T crawler = crawlerFactory.newInstance();
+                                    threads.set(i, startCrawler(crawler, id));
+                                    crawlers.set(i, crawler);
                                 }
                             }
+                            boolean someoneIsWorking = outstandingWork.get() > 0;
                             boolean shutOnEmpty = config.isShutdownOnEmptyQueue();
                             if (!someoneIsWorking && shutOnEmpty) {
                                 // Make sure again that none of the threads
@@ -287,14 +388,7 @@ public class CrawlController {
                                                 " seconds to make sure...");
                                 sleep(config.getThreadShutdownDelaySeconds());
 
-                                someoneIsWorking = false;
-                                for (int i = 0; i < threads.size(); i++) {
-                                    Thread thread = threads.get(i);
-                                    if (thread.isAlive() &&
-                                            crawlers.get(i).isNotWaitingForNewURLs()) {
-                                        someoneIsWorking = true;
-                                    }
-                                }
+                                someoneIsWorking = outstandingWork.get() > 0;
                                 if (!someoneIsWorking) {
                                     if (!shuttingDown) {
                                         long queueLength = frontier.getQueueLength();
@@ -319,6 +413,7 @@ public class CrawlController {
                                     // At this step, frontier notifies the threads that were
                                     // waiting for new URLs and they should stop
                                     frontier.finish();
+                                    shutDownParserPool();
                                     for (T crawler : crawlers) {
                                         crawler.onBeforeExit();
                                         crawlersLocalData.add(crawler.getMyLocalData());
@@ -329,13 +424,17 @@ public class CrawlController {
                                                     " seconds before final clean up...");
                                     sleep(config.getCleanupDelaySeconds());
 
+                                    boolean everyUrlFetched = isEveryScheduledUrlFetched();
                                     frontier.close();
                                     docIdServer.close();
+                                    robotstxtServer.close();
+                                    sitemapLoader.close(everyUrlFetched);
                                     pageFetcher.shutDown();
 
                                     finished = true;
                                     waitingLock.notifyAll();
                                     frontierConfiguration.close();
+                                    closeValidatorStore();
 
                                     return;
                                 }
@@ -347,11 +446,14 @@ public class CrawlController {
                         setError(e);
                         synchronized (waitingLock) {
                             frontier.finish();
+                            shutDownParserPool();
                             frontier.close();
                             docIdServer.close();
+                            robotstxtServer.close();
                             pageFetcher.shutDown();
                             waitingLock.notifyAll();
                             frontierConfiguration.close();
+                            closeValidatorStore();
                         }
                     } else {
                         logger.error("Unexpected Error", e);
@@ -378,6 +480,108 @@ public class CrawlController {
         }
     }
 
+    private Thread startCrawler(final WebCrawler crawler, final int id) {
+        Thread thread = newCrawlerThread(() -> {
+            try {
+                crawler.run();
+            } finally {
+                if (crawler.isNotWaitingForNewURLs()) {
+                    endWork();
+                }
+                terminatedCrawlers.add(id);
+            }
+        }, "Crawler " + id);
+        crawler.setThread(thread);
+        crawler.init(id, this);
+        // A crawler counts as working until it asks the frontier for URLs
+        beginWork();
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Creates the (unstarted) thread a crawler runs on. Depending on
+     * {@link CrawlConfig#isUseVirtualThreads()} this is either a virtual or a platform thread.
+     *
+     * @param crawler the runnable executing the crawler
+     * @param name    the name of the thread
+     * @return the thread which will run the crawler
+     */
+    protected Thread newCrawlerThread(Runnable crawler, String name) {
+        if (config.isUseVirtualThreads()) {
+            if (VIRTUAL_THREAD_BUILDER != null) {
+                try {
+                    Object builder = VIRTUAL_THREAD_BUILDER.invoke(null);
+                    builder = VIRTUAL_THREAD_NAME.invoke(builder, name);
+                    return (Thread) VIRTUAL_THREAD_UNSTARTED.invoke(builder, crawler);
+                } catch (ReflectiveOperationException e) {
+                    logger.warn("Could not create a virtual thread, falling back to a platform thread", e);
+                }
+            } else if (!virtualThreadsWarned) {
+                virtualThreadsWarned = true;
+                logger.warn("Virtual threads are not supported by this Java runtime, " +
+                            "using platform threads instead.");
+            }
+        }
+        return new Thread(crawler, name);
+    }
+
+    /**
+     * @return the pool which parses the fetched pages, or null if crawlers parse them themselves
+     */
+    ParserPool getParserPool() {
+        return parserPool;
+    }
+
+    private void shutDownParserPool() {
+        if (parserPool != null) {
+            parserPool.shutdown();
+        }
+    }
+
+    /**
+     * Called by a crawler which terminates because of the given error.
+     */
+    void onCrawlerError(Throwable t) {
+        crawlerError.compareAndSet(null,
+                new RuntimeException("error on thread [" + Thread.currentThread().getName() + "]", t));
+    }
+
+    /**
+     * Called by a crawler thread whenever it starts or stops waiting for new URLs.
+     */
+    void onCrawlerWaitingForNewURLs(boolean waiting) {
+        if (waiting) {
+            endWork();
+        } else {
+            beginWork();
+        }
+    }
+
+    /**
+     * Registers work which a crawler handed off to another thread, e.g. a page queued in the
+     * parser pool. The crawl does not finish before every call has been matched by
+     * {@link #endWork()}, even if all crawlers wait for new URLs in the meantime.
+     */
+    void beginWork() {
+        outstandingWork.incrementAndGet();
+    }
+
+    /**
+     * Completes work registered with {@link #beginWork()}.
+     */
+    void endWork() {
+        outstandingWork.decrementAndGet();
+    }
+
+    private static Method findMethod(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     /**
      * Wait until this crawling session finishes.
      */
@@ -458,6 +662,9 @@ public class CrawlController {
         if (!urls.isEmpty()) {
             frontier.scheduleAll(urls);
         }
+        for (WebURL u : urls) {
+            addSitemapsOf(u);
+        }
     }
 
     /**
@@ -481,6 +688,115 @@ public class CrawlController {
         WebURL webURL = addSeedHelper(pageUrl, docId);
         if(webURL != null) {
             frontier.schedule(webURL);
+            addSitemapsOf(webURL);
+        }
+    }
+
+    /**
+     * Schedules the urls of a sitemap, or of the sitemaps of a sitemap index, like seeds. Urls
+     * on another host than the sitemap, or which have not changed since the previous crawl read
+     * the sitemap, are skipped (see {@link SitemapLoader}).
+     *
+     * @param sitemapUrl the url of the sitemap or sitemap index
+     * @throws InterruptedException
+     */
+    public void addSitemap(String sitemapUrl) throws InterruptedException {
+        sitemapLoader.load(sitemapUrl, this::scheduleSitemapUrls);
+    }
+
+    private void addSitemapsOf(WebURL seed) throws InterruptedException {
+        if (config.isCrawlSitemaps()) {
+            String host;
+            try {
+                host = new URL(seed.getURL()).getHost();
+            } catch (MalformedURLException e) {
+                return;
+            }
+            for (String sitemapUrl : robotstxtServer.getSitemaps(seed)) {
+                sitemapLoader.load(sitemapUrl, host, this::scheduleSitemapUrls);
+            }
+        }
+    }
+
+    /**
+     * Whether the crawl ended because all scheduled urls have been fetched, rather than being shut
+     * down or reaching {@link CrawlConfig#getMaxPagesToFetch()}.
+     */
+    private boolean isEveryScheduledUrlFetched() {
+        int maxPagesToFetch = config.getMaxPagesToFetch();
+        return !shuttingDown && frontier.getQueueLength() == 0
+                && (maxPagesToFetch < 0 || frontier.getNumberOfScheduledPages() < maxPagesToFetch);
+    }
+
+    private void scheduleSitemapUrls(List<String> urls) throws InterruptedException {
+        Set<String> canonicalUrls = new LinkedHashSet<>();
+        for (String url : urls) {
+            String canonicalUrl = normalizer.filter(url);
+            if (canonicalUrl != null && !docIdServer.isSeenBefore(canonicalUrl)) {
+                canonicalUrls.add(canonicalUrl);
+            }
+        }
+
+        List<WebURL> allowed = new ArrayList<>(canonicalUrls.size());
+        List<String> allowedUrls = new ArrayList<>(canonicalUrls.size());
+        for (String canonicalUrl : canonicalUrls) {
+            WebURL webUrl = webURLFactory.newWebUrl();
+            webUrl.setTldList(tldList);
+            webUrl.setURL(canonicalUrl);
+            webUrl.setDepth((short) 0);
+            if (robotstxtServer.allows(webUrl)) {
+                allowed.add(webUrl);
+                allowedUrls.add(canonicalUrl);
+            } else {
+                logger.debug("Robots.txt does not allow this sitemap url: {}", canonicalUrl);
+            }
+        }
+
+        int[] docIds = docIdServer.getOrAssignDocIds(allowedUrls);
+        List<WebURL> toSchedule = new ArrayList<>(allowed.size());
+        for (int i = 0; i < docIds.length; i++) {
+            if (docIds[i] > 0) {
+                allowed.get(i).setDocid(docIds[i]);
+                toSchedule.add(allowed.get(i));
+            }
+        }
+        if (!toSchedule.isEmpty()) {
+            frontier.scheduleAll(toSchedule);
+        }
+    }
+
+    /**
+     * Adds the urls saved in the validator store by the previous crawl (see
+     * {@link CrawlConfig#isConditionalGet()}) as seeds, with the document ids they had then. As
+     * the links of unchanged pages are not followed, a recrawl should start from all known urls
+     * rather than from the original seeds only. Needs to be called before any other seed is added.
+     *
+     * @throws InterruptedException
+     */
+    public void addStoredUrlsAsSeeds() throws InterruptedException {
+        if (validatorStore == null) {
+            return;
+        }
+        List<String> storedUrls = new ArrayList<>();
+        List<Integer> storedDocIds = new ArrayList<>();
+        validatorStore.forEach((url, docId) -> {
+            storedUrls.add(url);
+            storedDocIds.add(docId);
+        });
+
+        List<WebURL> urls = new ArrayList<>();
+        for (int i = 0; i < storedUrls.size(); i++) {
+            if (docIdServer.isSeenBefore(storedUrls.get(i))) {
+                continue;
+            }
+            WebURL u = addSeedHelper(storedUrls.get(i), storedDocIds.get(i));
+            if (u != null) {
+                urls.add(u);
+            }
+        }
+        logger.info("Added {} urls of the previous crawl as seeds", urls.size());
+        if (!urls.isEmpty()) {
+            frontier.scheduleAll(urls);
         }
     }
 
@@ -581,6 +897,45 @@ public class CrawlController {
         return docIdServer;
     }
 
+    /**
+     * Saves the validators for conditional requests if the flush delay has passed since they were
+     * last saved (see {@link CrawlConfig#getValidatorFlushDelaySeconds()}).
+     */
+    private void flushValidators() {
+        int delaySeconds = config.getValidatorFlushDelaySeconds();
+        if (validatorStore == null || delaySeconds == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (validatorsFlushedAt == 0) {
+            validatorsFlushedAt = now;
+        } else if (now - validatorsFlushedAt >= delaySeconds * 1000L) {
+            validatorsFlushedAt = now;
+            validatorStore.flush();
+        }
+    }
+
+    private void closeValidatorStore() {
+        if (ownsValidatorStore) {
+            validatorStore.close();
+        }
+    }
+
+    /**
+     * @return the validators for conditional requests, or null if pages are always fetched in full
+     */
+    public ValidatorStore getValidatorStore() {
+        return validatorStore;
+    }
+
+    public SitemapLoader getSitemapLoader() {
+        return sitemapLoader;
+    }
+
+    public void setSitemapLoader(SitemapLoader sitemapLoader) {
+        this.sitemapLoader = sitemapLoader;
+    }
+
     public void setDocIdServer(DocIDServer docIdServer) {
         this.docIdServer = docIdServer;
     }
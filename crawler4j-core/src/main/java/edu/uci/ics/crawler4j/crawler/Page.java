@@ -17,13 +17,18 @@ package edu.uci.ics.crawler4j.crawler;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.function.Supplier;
 
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
-import org.apache.hc.core5.util.ByteArrayBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +44,13 @@ public class Page {
 
     protected final Logger logger = LoggerFactory.getLogger(Page.class);
 
+    /** The largest array the JVM reliably allocates. */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /* Names of the files content is spilled to, see CrawlController for their cleanup. */
+    static final String SPILL_FILE_PREFIX = "crawler4j-";
+    static final String SPILL_FILE_SUFFIX = ".content";
+
     /**
      * The URL of this page.
      */
@@ -64,6 +76,11 @@ public class Page {
      */
     protected byte[] contentData;
 
+    /**
+     * The content of this page, which may be kept in a temporary file.
+     */
+    protected PageContent content;
+
     /**
      * The ContentType of this page.
      * For example: "text/html; charset=UTF-8"
@@ -86,6 +103,7 @@ public class Page {
      * Language of the Content.
      */
     private String language;
+    private Supplier<String> languageSupplier;
 
     /**
      * Headers which were present in the response of the fetch request
@@ -119,34 +137,108 @@ public class Page {
         if (entity == null) {
             return new byte[0];
         }
+        int limit = maxBytes > 0 ? maxBytes : MAX_ARRAY_SIZE;
         try (InputStream is = entity.getContent()) {
-            int readBufferLength = (int) entity.getContentLength();
-
-            if (readBufferLength <= 0) {
-                readBufferLength = 4096;
+            long contentLength = entity.getContentLength();
+            if (contentLength < 0 || contentLength > limit) {
+                try (ReadBuffer buffer = new ReadBuffer()) {
+                    return readRemaining(is, buffer, limit);
+                }
+            }
+            // The size is known, so the content is read into an array of exactly that size,
+            // which is handed out without a copy unless the server sent more or less.
+            byte[] data = new byte[(int) contentLength];
+            int length = is.readNBytes(data, 0, data.length);
+            if (length < data.length) {
+                return Arrays.copyOf(data, length);
             }
-            // in case when the maxBytes is less than the actual page size
-            readBufferLength = Math.min(readBufferLength, maxBytes);
+            int next = is.read();
+            if (next == -1) {
+                return data;
+            }
+            if (length == limit) {
+                truncated = true;
+                return data;
+            }
+            try (ReadBuffer buffer = new ReadBuffer()) {
+                buffer.append(data, 0, length);
+                buffer.append(new byte[] {(byte) next}, 0, 1);
+                return readRemaining(is, buffer, limit);
+            }
+        }
+    }
 
-            // We allocate the buffer with either the actual size of the entity (if available)
-            // or with the default 4KiB if the server did not return a value to avoid allocating
-            // the full maxBytes (for the cases when the actual size will be smaller than maxBytes).
-            ByteArrayBuffer buffer = new ByteArrayBuffer(readBufferLength);
+    private byte[] readRemaining(InputStream is, ReadBuffer buffer, int limit) throws IOException {
+        if (buffer.readFrom(is, limit) && is.read() != -1) {
+            truncated = true;
+        }
+        return buffer.toByteArray();
+    }
 
-            byte[] tmpBuff = new byte[4096];
-            int dataLength;
+    /**
+     * Reads contents from an entity like {@link #toByteArray(HttpEntity, int)}, but streams them
+     * to a temporary file once they exceed spillThreshold bytes.
+     *
+     * @param entity         The entity from which to read
+     * @param maxBytes       The maximum number of bytes to read
+     * @param spillThreshold The number of bytes above which the content is written to a file
+     * @return The content read from the entity
+     * @throws IOException Thrown when reading fails for any reason
+     */
+    protected PageContent readContent(HttpEntity entity, int maxBytes, int spillThreshold) throws IOException {
+        return readContent(entity, maxBytes, spillThreshold, null);
+    }
 
-            while ((dataLength = is.read(tmpBuff)) != -1) {
-                if (maxBytes > 0 && (buffer.length() + dataLength) > maxBytes) {
-                    truncated = true;
-                    dataLength = maxBytes - buffer.length();
-                }
-                buffer.append(tmpBuff, 0, dataLength);
-                if (truncated) {
-                    break;
+    /**
+     * Reads contents from an entity like {@link #readContent(HttpEntity, int, int)}, writing
+     * content above spillThreshold bytes to a file in spillFolder.
+     *
+     * @param entity         The entity from which to read
+     * @param maxBytes       The maximum number of bytes to read
+     * @param spillThreshold The number of bytes above which the content is written to a file
+     * @param spillFolder    The folder of the file, or null for the default temporary folder
+     * @return The content read from the entity
+     * @throws IOException Thrown when reading fails for any reason
+     */
+    protected PageContent readContent(HttpEntity entity, int maxBytes, int spillThreshold, Path spillFolder)
+            throws IOException {
+        long contentLength = entity == null ? -1 : entity.getContentLength();
+        if (spillThreshold <= 0 || (contentLength >= 0 && contentLength <= spillThreshold)) {
+            return PageContent.of(toByteArray(entity, maxBytes));
+        }
+        long limit = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        Path file = null;
+        try (InputStream is = entity.getContent();
+             ReadBuffer buffer = new ReadBuffer()) {
+            if (!buffer.readFrom(is, (int) Math.min(limit, spillThreshold + 1L))) {
+                return PageContent.of(buffer.toByteArray());
+            }
+            if (buffer.length() <= spillThreshold) {
+                // maxBytes has been reached before the threshold
+                return PageContent.of(readRemaining(is, buffer, buffer.length()));
+            }
+            file = spillFolder == null ? Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)
+                    : Files.createTempFile(spillFolder, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+            long length = buffer.length();
+            try (OutputStream out = Files.newOutputStream(file)) {
+                buffer.drainTo(out);
+                byte[] scratch = buffer.scratch();
+                int dataLength;
+                while (length < limit
+                        && (dataLength = is.read(scratch, 0, (int) Math.min(scratch.length, limit - length))) != -1) {
+                    out.write(scratch, 0, dataLength);
+                    length += dataLength;
                 }
             }
-            return buffer.toByteArray();
+            if (length == limit && is.read() != -1) {
+                truncated = true;
+            }
+            return new FilePageContent(file, length);
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
         }
     }
 
@@ -158,6 +250,35 @@ public class Page {
      * @throws IOException when load fails
      */
     public void load(HttpEntity entity, int maxBytes) throws IOException {
+        load(entity, maxBytes, 0);
+    }
+
+    /**
+     * Loads the content of this page from a fetched HttpEntity, keeping content larger than
+     * spillThreshold in a temporary file until {@link #releaseContent()} is called.
+     *
+     * @param entity         HttpEntity
+     * @param maxBytes       The maximum number of bytes to read
+     * @param spillThreshold The number of bytes above which the content is written to a file,
+     *                       or 0 to keep it in memory
+     * @throws IOException when load fails
+     */
+    public void load(HttpEntity entity, int maxBytes, int spillThreshold) throws IOException {
+        load(entity, maxBytes, spillThreshold, null);
+    }
+
+    /**
+     * Loads the content of this page from a fetched HttpEntity, keeping content larger than
+     * spillThreshold in a file in spillFolder until {@link #releaseContent()} is called.
+     *
+     * @param entity         HttpEntity
+     * @param maxBytes       The maximum number of bytes to read
+     * @param spillThreshold The number of bytes above which the content is written to a file,
+     *                       or 0 to keep it in memory
+     * @param spillFolder    The folder of the file, or null for the default temporary folder
+     * @throws IOException when load fails
+     */
+    public void load(HttpEntity entity, int maxBytes, int spillThreshold, Path spillFolder) throws IOException {
 
         contentType = entity.getContentType();
 
@@ -174,7 +295,8 @@ public class Page {
         }
 
         contentCharset = charset.displayName(Locale.ROOT);
-        contentData = toByteArray(entity, maxBytes);
+        content = readContent(entity, maxBytes, spillThreshold, spillFolder);
+        contentData = content.isInMemory() ? content.toByteArray() : null;
     }
 
     public WebURL getWebURL() {
@@ -234,14 +356,52 @@ public class Page {
     }
 
     /**
-     * @return content of this page in binary format.
+     * @return content of this page in binary format. Content kept in a temporary file is read
+     * into memory, so prefer {@link #getContent()} for possibly large content.
      */
     public byte[] getContentData() {
+        if (contentData == null && content != null) {
+            try {
+                contentData = content.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return contentData;
     }
 
     public void setContentData(byte[] contentData) {
         this.contentData = contentData;
+        this.content = null;
+    }
+
+    /**
+     * @return content of this page, or null if it has no content
+     */
+    public PageContent getContent() {
+        if (content == null && contentData != null) {
+            content = PageContent.of(contentData);
+        }
+        return content;
+    }
+
+    public boolean hasContent() {
+        return content != null || contentData != null;
+    }
+
+    /**
+     * Deletes the temporary file of content which has been spilled to disk. The content of this
+     * page cannot be read afterwards.
+     */
+    public void releaseContent() {
+        if (content != null && !content.isInMemory()) {
+            try {
+                content.close();
+            } catch (IOException e) {
+                logger.warn("Could not release the content of {}: {}", url.getURL(), e.getMessage());
+            }
+            content = null;
+        }
     }
 
     /**
@@ -284,11 +444,24 @@ public class Page {
      * @return Language
      */
     public String getLanguage() {
+        if (language == null && languageSupplier != null) {
+            language = languageSupplier.get();
+            languageSupplier = null;
+        }
         return language;
     }
 
     public void setLanguage(String language) {
         this.language = language;
+        this.languageSupplier = null;
+    }
+
+    /**
+     * Sets the language to be detected on the first call of {@link #getLanguage()}.
+     */
+    public void setLanguage(Supplier<String> languageSupplier) {
+        this.language = null;
+        this.languageSupplier = languageSupplier;
     }
 
     public boolean isTruncated() {
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The fetched content of a {@link Page}. Small content is held in memory, while content above
+ * {@link CrawlConfig#getContentSpillThreshold()} is kept in a temporary file, so parsers should
+ * prefer {@link #openStream()} or {@link #asByteBuffer()} over {@link #toByteArray()}.
+ */
+public interface PageContent extends Closeable {
+
+    /**
+     * @return the number of bytes of the content
+     */
+    long length();
+
+    /**
+     * @return a new stream over the content, which the caller has to close
+     * @throws IOException if the content cannot be read
+     */
+    InputStream openStream() throws IOException;
+
+    /**
+     * @return a read-only buffer over the content, memory mapped if the content is kept in a file
+     * @throws IOException if the content cannot be read
+     */
+    ByteBuffer asByteBuffer() throws IOException;
+
+    /**
+     * @return the content as an array, which is the backing array if the content is held in memory
+     * @throws IOException if the content cannot be read
+     */
+    byte[] toByteArray() throws IOException;
+
+    /**
+     * Decodes the content from {@link #openStream()}, without holding its bytes in memory.
+     *
+     * @param charset the charset of the content
+     * @return the decoded content
+     * @throws IOException if the content cannot be read
+     */
+    default String readString(Charset charset) throws IOException {
+        StringBuilder builder = new StringBuilder((int) Math.min(length(), Integer.MAX_VALUE - 8));
+        char[] buffer = new char[8192];
+        try (Reader reader = new InputStreamReader(openStream(), charset)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return whether the content is held in memory
+     */
+    boolean isInMemory();
+
+    /**
+     * Releases the storage of the content. The content cannot be read afterwards.
+     */
+    @Override
+    void close() throws IOException;
+
+    static PageContent of(byte[] data) {
+        return new ByteArrayPageContent(data);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pool which parses and visits pages when {@link CrawlConfig#getParserThreads()} is set, so the
+ * crawler threads only fetch.
+ * <p>
+ * At most {@code threads * QUEUED_TASKS_PER_THREAD} pages wait for a parser; further submissions
+ * block the crawler until a parser is free. Every submitted page counts as outstanding work of the
+ * controller ({@link CrawlController#beginWork()}) until it has been processed, so the crawl does not finish while pages are still
+ * waiting to be parsed.
+ */
+final class ParserPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParserPool.class);
+
+    private static final int QUEUED_TASKS_PER_THREAD = 2;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final CrawlController controller;
+    private final ExecutorService executor;
+    private final Semaphore capacity;
+
+    ParserPool(CrawlController controller, int threads) {
+        this.controller = controller;
+        this.capacity = new Semaphore(threads * (1 + QUEUED_TASKS_PER_THREAD));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Crawler4j-parser-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues the task, blocking while all parsers are busy and the queue is full.
+     */
+    void submit(Runnable task) throws InterruptedException {
+        capacity.acquire();
+        controller.beginWork();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    controller.endWork();
+                    capacity.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            controller.endWork();
+            capacity.release();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Parser pool did not terminate within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
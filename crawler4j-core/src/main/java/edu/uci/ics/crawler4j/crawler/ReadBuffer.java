@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A buffer which page content is read into, made of segments taken from a bounded pool, so that
+ * loading a page allocates little more than the array which is finally handed out. The pool is
+ * shared instead of being per thread, as crawlers may run on a large number of virtual threads.
+ */
+final class ReadBuffer implements AutoCloseable {
+
+    static final int SEGMENT_SIZE = 64 * 1024;
+
+    /** At most 16 MiB of segments are kept for reuse. */
+    private static final int MAX_POOLED_SEGMENTS = 256;
+
+    private static final Queue<byte[]> pool = new ArrayBlockingQueue<>(MAX_POOLED_SEGMENTS);
+
+    private final List<byte[]> segments = new ArrayList<>();
+    private int length;
+
+    /**
+     * Reads from the stream until the buffer holds limit bytes.
+     *
+     * @return false if the end of the stream has been reached before
+     */
+    boolean readFrom(InputStream is, int limit) throws IOException {
+        while (length < limit) {
+            int offset = length % SEGMENT_SIZE;
+            int dataLength = is.read(segment(length / SEGMENT_SIZE), offset,
+                    Math.min(SEGMENT_SIZE - offset, limit - length));
+            if (dataLength == -1) {
+                return false;
+            }
+            length += dataLength;
+        }
+        return true;
+    }
+
+    void append(byte[] data, int off, int len) {
+        while (len > 0) {
+            int offset = length % SEGMENT_SIZE;
+            int count = Math.min(SEGMENT_SIZE - offset, len);
+            System.arraycopy(data, off, segment(length / SEGMENT_SIZE), offset, count);
+            length += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return a copy of the content of exactly the buffered length
+     */
+    byte[] toByteArray() {
+        byte[] data = new byte[length];
+        for (int i = 0, copied = 0; copied < length; i++) {
+            int count = Math.min(SEGMENT_SIZE, length - copied);
+            System.arraycopy(segments.get(i), 0, data, copied, count);
+            copied += count;
+        }
+        return data;
+    }
+
+    /**
+     * Writes the content to the stream and empties the buffer.
+     */
+    void drainTo(OutputStream out) throws IOException {
+        for (int i = 0, written = 0; written < length; i++) {
+            int count = Math.min(SEGMENT_SIZE, length - written);
+            out.write(segments.get(i), 0, count);
+            written += count;
+        }
+        length = 0;
+    }
+
+    /**
+     * @return a segment of {@link #SEGMENT_SIZE} bytes which may be used to read through once
+     * the buffer has been drained
+     */
+    byte[] scratch() {
+        return segment(0);
+    }
+
+    @Override
+    public void close() {
+        for (byte[] segment : segments) {
+            pool.offer(segment);
+        }
+        segments.clear();
+        length = 0;
+    }
+
+    private byte[] segment(int index) {
+        if (index == segments.size()) {
+            byte[] segment = pool.poll();
+            segments.add(segment != null ? segment : new byte[SEGMENT_SIZE]);
+        }
+        return segments.get(index);
+    }
+}
@@ -17,10 +17,27 @@ package edu.uci.ics.crawler4j.crawler;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.impl.EnglishReasonPhraseCatalog;
 import org.slf4j.Logger;
@@ -28,15 +45,19 @@ import org.slf4j.LoggerFactory;
 
 import edu.uci.ics.crawler4j.crawler.exceptions.ContentFetchException;
 import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher;
+import edu.uci.ics.crawler4j.fetcher.CachingDnsResolver;
 import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.ValidatorStore;
 import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.parser.NotAllowedContentException;
 import edu.uci.ics.crawler4j.parser.Parser;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
 
 /**
  * WebCrawler class in the Runnable class that is executed by each crawler thread.
@@ -90,18 +111,51 @@ public class WebCrawler implements Runnable {
      */
     private Frontier frontier;
 
+    /**
+     * The validators for conditional requests, or null if pages are always fetched in full.
+     */
+    private ValidatorStore validatorStore;
+
+    /**
+     * The resolver which resolves the hosts of new links in the background, or null.
+     */
+    private CachingDnsResolver dnsResolver;
+
     /**
      * Is the current crawler instance waiting for new URLs? This field is
      * mainly used by the controller to detect whether all of the crawler
      * instances are waiting for new URLs and therefore there is no more work
      * and crawling can be stopped.
      */
-    private boolean isWaitingForNewURLs;
+    private volatile boolean isWaitingForNewURLs;
 
     private Throwable error;
 
     private int batchReadSize;
 
+    /**
+     * Number of fetches this crawler keeps outstanding, larger than 1 only with an {@link AsyncPageFetcher}.
+     */
+    private int fetchPipelineDepth;
+
+    /**
+     * The pool which parses and visits the fetched pages, or null if this crawler does it itself.
+     */
+    private ParserPool parserPool;
+
+    /**
+     * Serializes the callbacks of this crawler, so they are never called concurrently for one
+     * crawler. With a parser pool, the parsed pages are visited on the pool while the crawler
+     * thread goes on fetching, and only the parsing itself runs outside of this lock.
+     */
+    private final ReentrantLock visitLock = new ReentrantLock();
+
+    /**
+     * An error thrown while a page of this crawler was processed by the parser pool, or while its
+     * links waited for robots.txt to be prefetched.
+     */
+    private volatile Throwable backgroundError;
+
     /**
      * Initializes the current instance of the crawler
      *
@@ -114,10 +168,18 @@ public class WebCrawler implements Runnable {
         this.robotstxtServer = crawlController.getRobotstxtServer();
         this.docIdServer = crawlController.getDocIdServer();
         this.frontier = crawlController.getFrontier();
+        this.validatorStore = crawlController.getValidatorStore();
+        CrawlConfig config = crawlController.getConfig();
+        // Requests through a proxy do not resolve the hosts themselves
+        this.dnsResolver = config.getDnsResolver() instanceof CachingDnsResolver && config.getProxyHost() == null
+                ? (CachingDnsResolver) config.getDnsResolver() : null;
         this.parser = crawlController.getParser();
         this.myController = crawlController;
         this.isWaitingForNewURLs = false;
         this.batchReadSize = crawlController.getConfig().getBatchReadSize();
+        this.fetchPipelineDepth = pageFetcher instanceof AsyncPageFetcher
+                ? crawlController.getConfig().getFetchPipelineDepth() : 1;
+        this.parserPool = crawlController.getParserPool();
     }
 
     /**
@@ -189,6 +251,29 @@ public class WebCrawler implements Runnable {
                 pageSize);
     }
 
+    /**
+     * This function is called if the content of a url has not been downloaded because its content
+     * type is not allowed (see {@code PageFetcher#isAllowedContentType(String)}).
+     *
+     * @param page - The URL whose content has been skipped, with its content type
+     */
+    protected void onContentTypeNotAllowed(Page page) {
+        logger.debug("Skipping: {} (content type {} is configured not to crawl)", page.getWebURL().getURL(),
+                page.getContentType());
+    }
+
+    /**
+     * This function is called if a page has not changed since the previous crawl, i.e. it has
+     * been answered with {@code 304 Not Modified} to a conditional request (see
+     * {@link CrawlConfig#isConditionalGet()}). The page has no content and is neither parsed nor
+     * visited, so its links are not followed either.
+     *
+     * @param page Partial page object, with the response headers
+     */
+    protected void onNotModified(Page page) {
+        logger.debug("Not modified: {}", page.getWebURL().getURL());
+    }
+
     /**
      * This function is called if the crawler encounters a page with a 3xx status code
      *
@@ -292,9 +377,9 @@ public class WebCrawler implements Runnable {
             boolean halt = false;
             while (!halt) {
                 List<WebURL> assignedURLs = new ArrayList<>(batchReadSize);
-                isWaitingForNewURLs = true;
+                setWaitingForNewURLs(true);
                 frontier.getNextURLs(batchReadSize, assignedURLs);
-                isWaitingForNewURLs = false;
+                setWaitingForNewURLs(false);
                 if (assignedURLs.isEmpty()) {
                     if (frontier.isFinished()) {
                         return;
@@ -304,22 +389,29 @@ public class WebCrawler implements Runnable {
                     } catch (InterruptedException e) {
                         logger.error("Error occurred", e);
                     }
+                } else if (fetchPipelineDepth > 1) {
+                    if (!processPipelined(assignedURLs)) {
+                        logger.info("Exiting because of controller shutdown.");
+                        return;
+                    }
                 } else {
-                    for (WebURL curURL : assignedURLs) {
+                    for (WebURL assignedURL : assignedURLs) {
                         if (myController.isShuttingDown()) {
                             logger.info("Exiting because of controller shutdown.");
                             return;
                         }
-                        if (curURL != null) {
-                            curURL = handleUrlBeforeProcess(curURL);
+                        if (assignedURL != null) {
+                            WebURL curURL = getFromCallback(() -> handleUrlBeforeProcess(assignedURL));
                             if (curURL != null) {
-                                final boolean processedSuccess = processPage(curURL);
                                 // TODO set the processed status from SCHEDULED to COMPLETED or IN_ERROR
-                                frontier.setProcessed(curURL);
+                                processPage(curURL, null);
+                            } else {
+                                frontier.setSkipped(assignedURL);
                             }
                         }
                     }
                 }
+                rethrowBackgroundError();
                 if (myController.getConfig().isHaltOnError() && myController.getError() != null) {
                     halt = true;
                     logger.info("halting because an error has occurred on another thread");
@@ -327,6 +419,60 @@ public class WebCrawler implements Runnable {
             }
         } catch (Throwable t) {
             setError(t);
+            if (myController != null) {
+                myController.onCrawlerError(t);
+            }
+        }
+    }
+
+    /**
+     * Processes the given batch while keeping up to {@code fetchPipelineDepth} fetches outstanding.
+     * Pages are processed in the order of the batch.
+     *
+     * @return false if the crawler should exit because the controller is shutting down
+     */
+    private boolean processPipelined(List<WebURL> assignedURLs) {
+        Iterator<WebURL> iterator = assignedURLs.iterator();
+        Deque<PendingFetch> pendingFetches = new ArrayDeque<>(fetchPipelineDepth);
+        try {
+            while (true) {
+                while (pendingFetches.size() < fetchPipelineDepth && iterator.hasNext()) {
+                    WebURL assignedURL = iterator.next();
+                    if (assignedURL == null) {
+                        continue;
+                    }
+                    WebURL curURL = getFromCallback(() -> handleUrlBeforeProcess(assignedURL));
+                    if (curURL == null) {
+                        frontier.setSkipped(assignedURL);
+                    } else {
+                        pendingFetches.add(new PendingFetch(curURL,
+                                ((AsyncPageFetcher) pageFetcher).fetchPageAsync(curURL)));
+                    }
+                }
+                PendingFetch pendingFetch = pendingFetches.poll();
+                if (pendingFetch == null) {
+                    return true;
+                }
+                if (myController.isShuttingDown()) {
+                    pendingFetch.result.cancel(true);
+                    return false;
+                }
+                processPage(pendingFetch.curURL, pendingFetch.result);
+            }
+        } finally {
+            for (PendingFetch pendingFetch : pendingFetches) {
+                pendingFetch.result.cancel(true);
+            }
+        }
+    }
+
+    private static final class PendingFetch {
+        private final WebURL curURL;
+        private final CompletableFuture<PageFetchResult> result;
+
+        private PendingFetch(WebURL curURL, CompletableFuture<PageFetchResult> result) {
+            this.curURL = curURL;
+            this.result = result;
         }
     }
 
@@ -344,9 +490,11 @@ public class WebCrawler implements Runnable {
      */
     public boolean shouldVisit(Page referringPage, WebURL url) {
         if (myController.getConfig().isRespectNoFollow()) {
+            // Html pages whose content policy skips parsing have binary parse data
             return !((referringPage != null &&
                     referringPage.getContentType() != null &&
                     referringPage.getContentType().contains("html") &&
+                    referringPage.getParseData() instanceof HtmlParseData &&
                     ((HtmlParseData) referringPage.getParseData())
                             .getMetaTagValue("robots")
                             .contains("nofollow")) ||
@@ -386,16 +534,82 @@ public class WebCrawler implements Runnable {
     }
 
 		/**
+		 * Processes the page and reports the url as processed to the frontier, which happens on
+		 * the parser pool if the page was handed to it.
+		 *
 		 * @param curURL not null
-		 * @return true if processed correctly, false otherwise
+		 * @param pendingFetch the fetch already started for the url, or null to fetch it now
+		 * @return true if processed correctly (or handed to the parser pool), false otherwise
 		 */
-		private boolean processPage(final WebURL curURL) {
+		private boolean processPage(final WebURL curURL, final CompletableFuture<PageFetchResult> pendingFetch) {
 			final Page page = new Page(curURL);
-			try (PageFetchResult fetchResult = pageFetcher.fetchPage(curURL)) {
+			boolean handedOff = false;
+			try {
+				if (!fetchPage(page, pendingFetch)) {
+					return false;
+				}
+				if (!page.hasContent()) {
+					// redirects, unmodified pages and pages which have been seen before have no content to parse
+					return true;
+				}
+				if (parserPool == null) {
+					return parseAndVisit(page);
+				}
+				try {
+					parserPool.submit(() -> {
+						try {
+							parseAndVisit(page);
+						} catch (Throwable t) {
+							backgroundError = t;
+						} finally {
+							frontier.setProcessed(curURL);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// The pool is shut down at the end of the crawl, the page is still processed here
+					logger.debug("Parser pool rejected {}, parsing it on the crawler thread", curURL.getURL());
+					return parseAndVisit(page);
+				}
+				handedOff = true;
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				page.releaseContent();
+				return false;
+			} finally {
+				if (!handedOff) {
+					frontier.setProcessed(curURL);
+				}
+			}
+		}
+
+		/**
+		 * Rethrows an error of the parser pool or the robots.txt prefetch on the crawler thread,
+		 * which ends the crawler as if the error was thrown there.
+		 */
+		private void rethrowBackgroundError() throws Throwable {
+			Throwable t = backgroundError;
+			if (t != null) {
+				backgroundError = null;
+				throw t;
+			}
+		}
+
+		/**
+		 * Fetches the page, handling redirects and loading the content of successful responses.
+		 *
+		 * @param page the page of the url to fetch
+		 * @param pendingFetch the fetch already started for the url, or null to fetch it now
+		 * @return true if fetched correctly, false otherwise
+		 */
+		private boolean fetchPage(final Page page, final CompletableFuture<PageFetchResult> pendingFetch) {
+			final WebURL curURL = page.getWebURL();
+			try (PageFetchResult fetchResult = pendingFetch == null ? pageFetcher.fetchPage(curURL)
+					: AsyncPageFetcher.getResult(pendingFetch)) {
 				int statusCode = fetchResult.getStatusCode();
 				
-				handlePageStatusCode(curURL, statusCode,
-						EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH));
+				runCallback(() -> handlePageStatusCode(curURL, statusCode,
+						EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH)));
 				
 				// Finds the status reason for all known statuses
 				
@@ -413,24 +627,31 @@ public class WebCrawler implements Runnable {
 					) { // is 3xx  todo
 						// follow https://issues.apache.org/jira/browse/HTTPCORE-389
 						return processFetchResultRedirect(fetchResult, page);
+					} else if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+						runCallback(() -> onNotModified(page));
+						return true;
 					} else { // All other http codes other than 3xx & 200
 						String description = EnglishReasonPhraseCatalog.INSTANCE.getReason(//
 								fetchResult.getStatusCode(), Locale.ENGLISH); // Finds the status reason for all known statuses
 						String contentType = fetchResult.getEntity() == null ? "" //
 								: fetchResult.getEntity().getContentType() == null ? "" //
 										: fetchResult.getEntity().getContentType();
-						onUnexpectedStatusCode(curURL.getURL(), fetchResult.getStatusCode(), contentType, description);
+						if (validatorStore != null && (statusCode == HttpStatus.SC_NOT_FOUND
+								|| statusCode == HttpStatus.SC_GONE)) {
+							validatorStore.remove(curURL);
+						}
+						runCallback(() -> onUnexpectedStatusCode(curURL.getURL(), statusCode, contentType, description));
 						return false;
 					}
 				} else { // if status code is 200
 					return handleFetchResultSuccess(fetchResult, page);
 				}
 			} catch (PageBiggerThanMaxSizeException e) {
-				onPageBiggerThanMaxSize(page, e.getPageSize());
+				runCallback(() -> onPageBiggerThanMaxSize(page, e.getPageSize()));
 			} catch (ContentFetchException | SocketTimeoutException cfe) {
-				onContentFetchError(page, cfe);
+				runCallback(() -> onContentFetchError(page, cfe));
 			} catch (Exception e) {
-				onUnhandledException(page, e);
+				runCallback(() -> onUnhandledException(page, e));
 			}
 			return false;
 		}
@@ -451,76 +672,328 @@ public class WebCrawler implements Runnable {
 				curURL.setDocid(docIdServer.getNewDocID(fetchResult.getFetchedUrl()));
 			}
 			
-			if (!fetchResult.fetchContent(page, myController.getConfig().getMaxDownloadSize())) {
+			if (fetchResult.isContentSkipped()) {
+				page.setContentType(fetchResult.getContentType());
+				runCallback(() -> onContentTypeNotAllowed(page));
+				return true;
+			}
+			
+			int maxDownloadSize = myController.getConfig().getMaxDownloadSize(fetchResult.getContentType());
+			if (!fetchResult.fetchContent(page, maxDownloadSize,
+					myController.getConfig().getContentSpillThreshold(), myController.getContentSpillFolder())) {
 				throw new ContentFetchException();
 			}
 			
 			if (page.isTruncated()) {
 				logger.warn("Warning: unknown page size exceeded max-download-size, truncated to: ({}), at URL: {}",
-						myController.getConfig().getMaxDownloadSize(), curURL.getURL());
+						maxDownloadSize, curURL.getURL());
 			}
-			
+			return true;
+		}
+
+		/**
+		 * Runs a callback of the crawler thread under the visit lock if pages are visited on the
+		 * parser pool.
+		 */
+		private void runCallback(Runnable callback) {
+			if (parserPool == null) {
+				callback.run();
+				return;
+			}
+			visitLock.lock();
+			try {
+				callback.run();
+			} finally {
+				visitLock.unlock();
+			}
+		}
+
+		/**
+		 * Calls a callback of the crawler thread under the visit lock if pages are visited on the
+		 * parser pool.
+		 */
+		private <T> T getFromCallback(Supplier<T> callback) {
+			if (parserPool == null) {
+				return callback.get();
+			}
+			visitLock.lock();
+			try {
+				return callback.get();
+			} finally {
+				visitLock.unlock();
+			}
+		}
+
+		/**
+		 * Parses the fetched page, schedules its outgoing urls and visits it.
+		 *
+		 * @return true if processed correctly, false otherwise
+		 */
+		private boolean parseAndVisit(final Page page) {
+			final WebURL curURL = page.getWebURL();
 			try {
-				parser.parse(page);
-			} catch (NotAllowedContentException e) {
-				logger.debug("Skipping: {} (typically binary content configured not to crawl)", curURL.getURL());
+				ContentPolicy contentPolicy = myController.getConfig().getContentPolicy(page.getContentType());
+				boolean followLinks;
+				visitLock.lock();
+				try {
+					followLinks = (contentPolicy == null || contentPolicy.isExtractLinks()) && shouldFollowLinksIn(curURL);
+				} finally {
+					visitLock.unlock();
+				}
+				try {
+					// Only the parsing itself runs concurrently for the pages of one crawler
+					parser.parse(page, followLinks);
+				} catch (NotAllowedContentException e) {
+					logger.debug("Skipping: {} (typically binary content configured not to crawl)", curURL.getURL());
+					return true;
+				} catch (Exception e) {
+					visitLock.lock();
+					try {
+						onParseError(curURL, e);
+					} finally {
+						visitLock.unlock();
+					}
+					return false;
+				}
+
+				List<WebURL> candidates = null;
+				List<WebURL> repeated = new ArrayList<>();
+				visitLock.lock();
+				try {
+					if (followLinks) {
+						candidates = selectOutgoingUrls(curURL, page, repeated);
+					} else {
+						logger.debug("Not looking for links in page {}, " + "as per your \"shouldFollowLinksInPage\" policy",
+								curURL.getURL());
+					}
+				} finally {
+					visitLock.unlock();
+				}
+				if (candidates != null) {
+					// robots.txt may have to be fetched, so it is checked outside of the visit lock
+					scheduleOutgoingUrls(candidates, repeated);
+				}
+
+				visitLock.lock();
+				try {
+					boolean noIndex = myController.getConfig().isRespectNoIndex() && hasMetaRobotsNoindex(page);
+					if (!noIndex && (contentPolicy == null || contentPolicy.isVisit())) {
+						visit(page);
+					}
+				} finally {
+					visitLock.unlock();
+				}
+				saveValidators(page);
 				return true;
 			} catch (Exception e) {
-				onParseError(curURL, e);
+				visitLock.lock();
+				try {
+					onUnhandledException(page, e);
+				} finally {
+					visitLock.unlock();
+				}
 				return false;
+			} finally {
+				page.releaseContent();
 			}
-			
-			if (shouldFollowLinksIn(page.getWebURL())) {
-				scheduleOutgoingUrls(curURL, page);
-			} else {
-				logger.debug("Not looking for links in page {}, " + "as per your \"shouldFollowLinksInPage\" policy",
-						page.getWebURL().getURL());
+		}
+
+		/**
+		 * Saves the validators of a processed page, so that the next crawl requests it conditionally.
+		 * Pages which could not be parsed are fetched in full again.
+		 */
+		private void saveValidators(final Page page) {
+			if (validatorStore != null) {
+				validatorStore.put(page.getWebURL(), getResponseHeader(page, HttpHeaders.ETAG),
+						getResponseHeader(page, HttpHeaders.LAST_MODIFIED));
 			}
-			
-			boolean noIndex = myController.getConfig().isRespectNoIndex() && hasMetaRobotsNoindex(page);
-			if (!noIndex) {
-				visit(page);
+		}
+
+		private static String getResponseHeader(Page page, String name) {
+			if (page.getFetchResponseHeaders() == null) {
+				return null;
 			}
-			return true;
+			for (Header header : page.getFetchResponseHeaders()) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+			return null;
 		}
 
-		private void scheduleOutgoingUrls(WebURL curURL, Page page)
-				throws InterruptedException
-		{
-			List<WebURL> toSchedule = new ArrayList<>();
+		/**
+		 * Resolves the outgoing links of a page which were seen before and returns the new links
+		 * accepted by {@code shouldVisit}, each URL once. Links repeated on the page are added to
+		 * {@code repeated} and get the docid of their first occurrence once it is scheduled.
+		 */
+		private List<WebURL> selectOutgoingUrls(WebURL curURL, Page page, List<WebURL> repeated) {
+			Map<String, WebURL> candidates = new LinkedHashMap<>();
 			int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
-			for (WebURL webURL : page.getParseData().getOutgoingUrls()) {
+			List<WebURL> outgoingUrls = new ArrayList<>(page.getParseData().getOutgoingUrls());
+			List<String> outgoing = new ArrayList<>(outgoingUrls.size());
+			for (WebURL webURL : outgoingUrls) {
+				outgoing.add(webURL.getURL());
+			}
+			// Links which were seen before are resolved in one batch. New links only get their
+			// docids in scheduleOutgoingUrls, once shouldVisit and robots.txt accepted them.
+			int[] seenDocIds = docIdServer.getDocIds(outgoing);
+			for (int j = 0; j < seenDocIds.length; j++) {
+				WebURL webURL = outgoingUrls.get(j);
 				webURL.setParentDocid(curURL.getDocid());
 				webURL.setParentUrl(curURL.getURL());
-				int newdocid = docIdServer.getDocId(webURL.getURL());
-				if (newdocid > 0) {
+				boolean repeatedLink = candidates.containsKey(webURL.getURL());
+				int newdocid = repeatedLink ? -1 : seenDocIds[j];
+				if (newdocid > 0 || repeatedLink) {
 					// This is not the first time that this Url is visited. So, we set the
 					// depth to a negative number.
 					webURL.setDepth((short) -1);
 					webURL.setDocid(newdocid);
+					if (repeatedLink) {
+						repeated.add(webURL);
+					}
 				} else {
 					webURL.setDocid(-1);
 					webURL.setDepth((short) (curURL.getDepth() + 1));
 					if (maxCrawlDepth == -1 || curURL.getDepth() < maxCrawlDepth) {
 						if (shouldVisit(page, webURL)) {
-							if (robotstxtServer.allows(webURL)) {
-								webURL.setDocid(docIdServer.getNewDocID(webURL.getURL()));
-								toSchedule.add(webURL);
-							} else {
-								logger.debug("Not visiting: {} as per the server's \"robots.txt\" " + "policy", webURL.getURL());
-							}
+							candidates.put(webURL.getURL(), webURL);
 						} else {
 							logger.debug("Not visiting: {} as per your \"shouldVisit\" policy", webURL.getURL());
 						}
 					}
 				}
 			}
+			return new ArrayList<>(candidates.values());
+		}
+
+		/**
+		 * Checks the selected links against robots.txt, assigns their docids and schedules them.
+		 * Must not be called with the visit lock held, as robots.txt may be downloaded here.
+		 */
+		private void scheduleOutgoingUrls(List<WebURL> candidates, List<WebURL> repeated)
+				throws InterruptedException
+		{
+			List<WebURL> toSchedule = new ArrayList<>();
+			// Links to hosts whose robots.txt is still being fetched, with their pending checks
+			List<WebURL> parked = new ArrayList<>();
+			List<CompletableFuture<Boolean>> parkedChecks = new ArrayList<>();
+			Map<String, WebURL> accepted = new HashMap<>();
+			for (WebURL webURL : candidates) {
+				CompletableFuture<Boolean> allowed = robotstxtServer.allowsAsync(webURL);
+				if (!allowed.isDone()) {
+					accepted.put(webURL.getURL(), webURL);
+					parked.add(webURL);
+					parkedChecks.add(allowed);
+				} else if (isAllowed(allowed)) {
+					accepted.put(webURL.getURL(), webURL);
+					toSchedule.add(webURL);
+				} else {
+					logger.debug("Not visiting: {} as per the server's \"robots.txt\" " + "policy", webURL.getURL());
+				}
+			}
+			if (!accepted.isEmpty()) {
+				// Parked links get their docids right away, so they are not parked again when
+				// found on another page
+				List<WebURL> assigned = new ArrayList<>(toSchedule.size() + parked.size());
+				assigned.addAll(toSchedule);
+				assigned.addAll(parked);
+				List<String> urls = new ArrayList<>(assigned.size());
+				for (WebURL webURL : assigned) {
+					urls.add(webURL.getURL());
+				}
+				int[] docIds = docIdServer.getOrAssignDocIds(urls);
+				for (int i = 0; i < docIds.length; i++) {
+					assigned.get(i).setDocid(docIds[i]);
+				}
+				for (WebURL webURL : repeated) {
+					WebURL first = accepted.get(webURL.getURL());
+					if (first != null) {
+						webURL.setDocid(first.getDocid());
+					}
+				}
+			}
+			if (dnsResolver != null) {
+				prefetchHosts(accepted.values());
+			}
 			frontier.scheduleAll(toSchedule);
+			if (!parked.isEmpty()) {
+				scheduleWhenAllowed(parked, parkedChecks);
+			}
+		}
+
+		/**
+		 * Resolves the hosts of new links in the background, so that the first connection to a host
+		 * does not wait for its lookup.
+		 */
+		private void prefetchHosts(Collection<WebURL> webURLs) {
+			Set<String> hosts = new HashSet<>();
+			for (WebURL webURL : webURLs) {
+				String host = Util.getHost(webURL.getURL());
+				if (host != null && hosts.add(host)) {
+					dnsResolver.prefetch(host);
+				}
+			}
+		}
+
+		private static boolean isAllowed(CompletableFuture<Boolean> check) throws InterruptedException {
+			try {
+				return check.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+
+		/**
+		 * Schedules the parked links once robots.txt of their hosts has been fetched, dropping the
+		 * ones it disallows. Links whose check failed are scheduled anyway, like {@code allows} does
+		 * when robots.txt cannot be fetched. Until then they count as outstanding work of the
+		 * controller, so the crawl does not finish without them.
+		 */
+		private void scheduleWhenAllowed(List<WebURL> parked, List<CompletableFuture<Boolean>> checks) {
+			myController.beginWork();
+			CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+				try {
+					List<WebURL> allowed = new ArrayList<>(parked.size());
+					for (int i = 0; i < parked.size(); i++) {
+						CompletableFuture<Boolean> check = checks.get(i);
+						if (check.isCompletedExceptionally()) {
+							// the link already has a docid, so it is scheduled as if robots.txt could not be fetched
+							logger.warn("RobotstxtServer: default: allow for {}", parked.get(i).getURL());
+							allowed.add(parked.get(i));
+						} else if (check.join()) {
+							allowed.add(parked.get(i));
+						} else {
+							logger.debug("Not visiting: {} as per the server's \"robots.txt\" " + "policy", parked.get(i).getURL());
+						}
+					}
+					frontier.scheduleAll(allowed);
+					Throwable cause = (e instanceof CompletionException) ? e.getCause() : e;
+					if (cause != null && !(cause instanceof RejectedExecutionException)) {
+						// a rejected check only means that the robots.txt server has been closed
+						backgroundError = cause;
+					}
+				} catch (Throwable t) {
+					backgroundError = t;
+				} finally {
+					myController.endWork();
+				}
+			});
 		}
 
 		private boolean hasMetaRobotsNoindex(Page page) {
 			return page.getContentType() != null //
 					&& page.getContentType().contains("html") //
+					&& page.getParseData() instanceof HtmlParseData //
 					&& ((HtmlParseData) page.getParseData()).getMetaTagValue("robots").contains("noindex");
 		}
 
@@ -532,11 +1005,11 @@ public class WebCrawler implements Runnable {
 			
 			String movedToUrl = fetchResult.getMovedToUrl();
 			if (movedToUrl == null) {
-				onRedirectedToInvalidUrl(page);
+				runCallback(() -> onRedirectedToInvalidUrl(page));
 				return false;
 			}
 			page.setRedirectedToUrl(movedToUrl);
-			onRedirectedStatusCode(page);
+			runCallback(() -> onRedirectedStatusCode(page));
 			
 			if (myController.getConfig().isFollowRedirects()) {
 				if (docIdServer.isSeenBefore(movedToUrl)) {
@@ -552,8 +1025,9 @@ public class WebCrawler implements Runnable {
 				webURL.setDepth(curURL.getDepth());
 				webURL.setDocid(-1);
 				webURL.setAnchor(curURL.getAnchor());
-				if (shouldVisit(page, webURL)) {
-					if (!shouldFollowLinksIn(webURL) || robotstxtServer.allows(webURL)) {
+				if (getFromCallback(() -> shouldVisit(page, webURL))) {
+					// robots.txt may have to be fetched, so it is checked outside of the visit lock
+					if (!getFromCallback(() -> shouldFollowLinksIn(webURL)) || robotstxtServer.allows(webURL)) {
 						webURL.setDocid(docIdServer.getNewDocID(movedToUrl));
 						frontier.schedule(webURL);
 					} else {
@@ -578,6 +1052,13 @@ public class WebCrawler implements Runnable {
         return !isWaitingForNewURLs;
     }
 
+    private void setWaitingForNewURLs(boolean waiting) {
+        isWaitingForNewURLs = waiting;
+        if (myController != null) {
+            myController.onCrawlerWaitingForNewURLs(waiting);
+        }
+    }
+
     protected synchronized Throwable getError() {
         return error;
     }
@@ -0,0 +1,622 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.Credentials;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.PolitenessServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.authentication.AuthInfo;
+import edu.uci.ics.crawler4j.crawler.authentication.CredentialsProvider;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.politeness.CachedPolitenessServer;
+import edu.uci.ics.crawler4j.frontier.ValidatorStore;
+import edu.uci.ics.crawler4j.url.UrlResolver;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A {@link PageFetcher} built on the non-blocking HttpClient 5 async client, which negotiates
+ * HTTP/2 where the server supports it.
+ * <p>
+ * {@link #fetchPageAsync(WebURL)} returns immediately, politeness delays are applied by scheduling
+ * the request instead of sleeping, and the body is buffered while it streams in. A few threads
+ * can thereby keep many connections busy. The results have the same semantics as the ones of
+ * {@link PageFetcher#fetchPage(WebURL)}: redirects are not followed but reported via
+ * {@link PageFetchResult#getMovedToUrl()}, a declared content length above
+ * {@link CrawlConfig#getMaxDownloadSize()} fails with {@link PageBiggerThanMaxSizeException}, and
+ * bodies of unknown length are cut off at the maximum download size (see {@code Page#isTruncated()}).
+ * <p>
+ * Form based authentication is not supported by this fetcher, it fails to be created if the
+ * configuration contains a form login. As the classic client is not created, the inherited
+ * {@link #connectionManager} and {@link #httpClient} are null.
+ */
+public class AsyncPageFetcher extends PageFetcher {
+
+    /**
+     * Number of bytes the client may hand to a response consumer before it has to ask for more.
+     */
+    private static final int CAPACITY_INCREMENT = 64 * 1024;
+
+    protected PoolingAsyncClientConnectionManager asyncConnectionManager;
+    protected CloseableHttpAsyncClient asyncHttpClient;
+
+    public AsyncPageFetcher(CrawlConfig config, BasicURLNormalizer normalizer) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        this(config, normalizer, new CachedPolitenessServer(config));
+    }
+
+    public AsyncPageFetcher(CrawlConfig config, BasicURLNormalizer normalizer, PolitenessServer politenessServer) throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
+        super(config, normalizer, politenessServer, false);
+        if (config.getAuthInfos() != null && config.getAuthInfos().stream().anyMatch(
+                authInfo -> AuthInfo.AuthenticationType.FORM_AUTHENTICATION.equals(authInfo.getAuthenticationType()))) {
+            throw new IllegalArgumentException(
+                    "Form authentication is not supported by the AsyncPageFetcher, use the PageFetcher instead");
+        }
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setExpectContinueEnabled(false)
+                .setCookieSpec(config.getCookiePolicy())
+                .setRedirectsEnabled(false)
+                .setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeout()))
+                .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectionTimeout()))
+                .build();
+
+        PoolingAsyncClientConnectionManagerBuilder connectionManagerBuilder =
+                PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setDnsResolver(config.getDnsResolver())
+                        .setMaxConnTotal(config.getMaxTotalConnections())
+                        .setMaxConnPerRoute(config.getMaxConnectionsPerHost());
+        if (config.isIncludeHttpsPages()) {
+            try {
+                // By always trusting the ssl certificate, like the PageFetcher does
+                SSLContext sslContext =
+                        SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build();
+                connectionManagerBuilder.setTlsStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(sslContext)
+                        .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                        .build());
+            } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException | RuntimeException e) {
+                if (config.isHaltOnError()) {
+                    throw e;
+                } else {
+                    logger.warn("Exception thrown while trying to register https");
+                    logger.debug("Stacktrace", e);
+                }
+            }
+        }
+        asyncConnectionManager = connectionManagerBuilder.build();
+
+        HttpAsyncClientBuilder clientBuilder = HttpAsyncClientBuilder.create();
+        if (config.getCookieStore() != null) {
+            clientBuilder.setDefaultCookieStore(config.getCookieStore());
+        }
+        clientBuilder.setDefaultRequestConfig(requestConfig);
+        clientBuilder.setConnectionManager(asyncConnectionManager);
+        clientBuilder.setVersionPolicy(HttpVersionPolicy.NEGOTIATE);
+        clientBuilder.setUserAgent(config.getUserAgentString());
+        clientBuilder.setDefaultHeaders(config.getDefaultHeaders());
+        clientBuilder.evictExpiredConnections();
+        clientBuilder.evictIdleConnections(TimeValue.ofSeconds(30));
+
+        Map<AuthScope, Credentials> credentialsMap = new HashMap<>();
+        if (config.getProxyHost() != null) {
+            if (config.getProxyUsername() != null) {
+                AuthScope authScope = new AuthScope(config.getProxyHost(), config.getProxyPort());
+                Credentials credentials = new UsernamePasswordCredentials(config.getProxyUsername(),
+                        config.getProxyPassword().toCharArray());
+                credentialsMap.put(authScope, credentials);
+            }
+
+            HttpHost proxy = new HttpHost(config.getProxyHost(), config.getProxyPort());
+            clientBuilder.setProxy(proxy);
+            logger.debug("Working through Proxy: {}", proxy.getHostName());
+        }
+
+        List<AuthInfo> authInfos = config.getAuthInfos();
+        if (authInfos != null) {
+            for (AuthInfo authInfo : authInfos) {
+                if (authInfo instanceof CredentialsProvider) {
+                    CredentialsProvider credentialsProvider = (CredentialsProvider) authInfo;
+                    credentialsProvider.addCredentials(credentialsMap);
+                }
+            }
+        }
+        if (!credentialsMap.isEmpty()) {
+            BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsMap.forEach(credentialsProvider::setCredentials);
+            clientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+        }
+
+        asyncHttpClient = clientBuilder.build();
+        asyncHttpClient.start();
+    }
+
+    /**
+     * Fetches the given url without blocking the calling thread. If politeness requires a delay,
+     * the request is sent once the delay has elapsed.
+     *
+     * @param webUrl the url to be fetched
+     * @return a future completed with the fetch result, or completed exceptionally with a
+     *         {@link PageBiggerThanMaxSizeException}, an {@link IOException} or a
+     *         {@link URISyntaxException}
+     */
+    public CompletableFuture<PageFetchResult> fetchPageAsync(WebURL webUrl) {
+        return fetchPageAsync(webUrl, true);
+    }
+
+    /**
+     * Fetches the given url without blocking the calling thread, like
+     * {@link PageFetcher#fetchPage(WebURL, boolean)} does while blocking.
+     *
+     * @param webUrl                 the url to be fetched
+     * @param applyContentTypePolicy false to fetch any content, e.g. of robots.txt files
+     * @return a future completed with the fetch result, see {@link #fetchPageAsync(WebURL)}
+     */
+    public CompletableFuture<PageFetchResult> fetchPageAsync(WebURL webUrl, boolean applyContentTypePolicy) {
+        return fetchPageAsync(webUrl, applyContentTypePolicy, -1);
+    }
+
+    /**
+     * Fetches the given url without blocking the calling thread, like
+     * {@link PageFetcher#fetchPage(WebURL, boolean, int)} does while blocking.
+     *
+     * @param webUrl                 the url to be fetched
+     * @param applyContentTypePolicy false to fetch any content, e.g. of robots.txt files
+     * @param maxDownloadSize        the maximum size of the content, or -1 for
+     *                               {@link CrawlConfig#getMaxDownloadSize(String)}
+     * @return a future completed with the fetch result, see {@link #fetchPageAsync(WebURL)}
+     */
+    public CompletableFuture<PageFetchResult> fetchPageAsync(WebURL webUrl, boolean applyContentTypePolicy,
+                                                             int maxDownloadSize) {
+        final long politenessDelay = politenessServer.applyPoliteness(webUrl);
+        if (politenessDelay == CachedPolitenessServer.NO_POLITENESS_APPLIED) {
+            return execute(webUrl, applyContentTypePolicy, maxDownloadSize);
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(politenessDelay, TimeUnit.MILLISECONDS);
+        final CompletableFuture<PageFetchResult> result = new CompletableFuture<>();
+        final CompletableFuture<Void> delay = CompletableFuture.runAsync(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<PageFetchResult> exchange = execute(webUrl, applyContentTypePolicy, maxDownloadSize);
+            exchange.whenComplete((fetchResult, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(fetchResult);
+                }
+            });
+            // The result may have been cancelled while the exchange was started
+            result.whenComplete((fetchResult, e) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(false);
+                }
+            });
+        }, delayed);
+        // Cancelling the result cancels the delayed task, or the exchange once it has been started
+        result.whenComplete((fetchResult, e) -> {
+            if (result.isCancelled()) {
+                delay.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Blocking variant of {@link #fetchPageAsync(WebURL, boolean, int)}, used e.g. for fetching
+     * robots.txt files.
+     */
+    @Override
+    public PageFetchResult fetchPage(WebURL webUrl, boolean applyContentTypePolicy, int maxDownloadSize)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException, URISyntaxException {
+        return getResult(fetchPageAsync(webUrl, applyContentTypePolicy, maxDownloadSize));
+    }
+
+    /**
+     * Waits for a fetch started by {@link #fetchPageAsync(WebURL)} and rethrows its failure the
+     * same way {@link PageFetcher#fetchPage(WebURL)} would.
+     *
+     * @param pendingFetch the future returned by {@link #fetchPageAsync(WebURL)}
+     * @return the fetch result
+     */
+    public static PageFetchResult getResult(Future<PageFetchResult> pendingFetch)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException, URISyntaxException {
+        try {
+            return pendingFetch.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof PageBiggerThanMaxSizeException) {
+                throw (PageBiggerThanMaxSizeException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private CompletableFuture<PageFetchResult> execute(WebURL webUrl, boolean applyContentTypePolicy,
+                                                       int maxDownloadSize) {
+        final CompletableFuture<PageFetchResult> result = new CompletableFuture<>();
+        final String toFetchURL = webUrl.getURL();
+        final AsyncRequestProducer request;
+        try {
+            request = newAsyncRequestProducer(webUrl);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(new URISyntaxException(toFetchURL, String.valueOf(e.getMessage())));
+            return result;
+        }
+
+        final ResponseConsumer consumer = new ResponseConsumer(webUrl, applyContentTypePolicy, maxDownloadSize);
+        Future<PageFetchResult> exchange = asyncHttpClient.execute(request, consumer,
+                new FutureCallback<PageFetchResult>() {
+                    @Override
+                    public void completed(PageFetchResult fetchResult) {
+                        result.complete(fetchResult);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        if (e instanceof ContentLimitReachedException) {
+                            // Content of unknown length was cut off, like Page#load does for the PageFetcher
+                            result.complete(((ContentLimitReachedException) e).fetchResult);
+                        } else if (e instanceof ContentSkippedException) {
+                            result.complete(((ContentSkippedException) e).fetchResult);
+                        } else if (e instanceof ContentTooLargeException) {
+                            result.completeExceptionally(
+                                    new PageBiggerThanMaxSizeException(((ContentTooLargeException) e).size));
+                        } else {
+                            if (!consumer.hasResponse()) {
+                                politenessServer.onFailure(webUrl, consumer.getElapsedTime());
+                            }
+                            result.completeExceptionally(e);
+                        }
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        if (!consumer.hasResponse()) {
+                            politenessServer.onFailure(webUrl, consumer.getElapsedTime());
+                        }
+                        result.cancel(false);
+                    }
+                });
+        result.whenComplete((fetchResult, e) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Creates the request producer for the given url. The default is a plain GET request.
+     * Subclasses may override this method and provide their own logic.
+     *
+     * @param url the url to be fetched
+     * @return the request producer for the given url
+     */
+    protected AsyncRequestProducer newAsyncRequestProducer(String url) {
+        return AsyncRequestBuilder.get(url).build();
+    }
+
+    /**
+     * Creates the request producer for the given url with {@link #newAsyncRequestProducer(String)},
+     * unless validators have been saved for the url (see {@link #setValidatorStore}). Then a
+     * conditional GET request is created instead.
+     *
+     * @param webUrl the url to be fetched
+     * @return the request producer for the given url
+     */
+    protected AsyncRequestProducer newAsyncRequestProducer(WebURL webUrl) {
+        ValidatorStore.Validators validators = validatorStore == null ? null : validatorStore.get(webUrl);
+        if (validators == null) {
+            return newAsyncRequestProducer(webUrl.getURL());
+        }
+        AsyncRequestBuilder builder = AsyncRequestBuilder.get(webUrl.getURL());
+        if (validators.getETag() != null) {
+            builder.setHeader(HttpHeaders.IF_NONE_MATCH, validators.getETag());
+        }
+        if (validators.getLastModified() != null) {
+            builder.setHeader(HttpHeaders.IF_MODIFIED_SINCE, validators.getLastModified());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public synchronized void shutDown() {
+        logSkippedContent();
+        asyncHttpClient.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Turns the response into a {@link PageFetchResult}, buffering at most one byte more than the
+     * max download size of its content type (see {@link CrawlConfig#getMaxDownloadSize(String)}).
+     * The additional byte lets
+     * {@code Page#load} detect the truncation, as it does for streamed bodies of the
+     * {@link PageFetcher}.
+     */
+    private final class ResponseConsumer implements AsyncResponseConsumer<PageFetchResult> {
+
+        private final WebURL webUrl;
+        private final String toFetchURL;
+        private final boolean applyContentTypePolicy;
+        private final long sentAt = System.currentTimeMillis();
+
+        private volatile PageFetchResult fetchResult;
+        private ContentType contentType;
+        private String contentEncoding;
+        private ByteArrayBuffer buffer;
+        private FutureCallback<PageFetchResult> resultCallback;
+
+        private final boolean fixedMaxDownloadSize;
+        private int maxDownloadSize;
+
+        private ResponseConsumer(WebURL webUrl, boolean applyContentTypePolicy, int maxDownloadSize) {
+            this.webUrl = webUrl;
+            this.toFetchURL = webUrl.getURL();
+            this.fixedMaxDownloadSize = maxDownloadSize >= 0;
+            this.maxDownloadSize = fixedMaxDownloadSize ? maxDownloadSize : config.getMaxDownloadSize();
+            this.applyContentTypePolicy = applyContentTypePolicy;
+        }
+
+        private boolean hasResponse() {
+            return fetchResult != null;
+        }
+
+        private long getElapsedTime() {
+            return System.currentTimeMillis() - sentAt;
+        }
+
+        @Override
+        public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context,
+                                    FutureCallback<PageFetchResult> resultCallback) throws HttpException, IOException {
+            int statusCode = response.getCode();
+            fetchResult = new PageFetchResult(config.isHaltOnError());
+            fetchResult.setResponseHeaders(response.getHeaders());
+            if (entityDetails != null && !fixedMaxDownloadSize) {
+                maxDownloadSize = config.getMaxDownloadSize(entityDetails.getContentType());
+            }
+            fetchResult.setStatusCode(statusCode);
+            politenessServer.onResponse(webUrl, statusCode, getElapsedTime(), fetchResult.getRetryAfter());
+
+            if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY ||
+                    statusCode == HttpStatus.SC_MOVED_TEMPORARILY ||
+                    statusCode == HttpStatus.SC_MULTIPLE_CHOICES ||
+                    statusCode == HttpStatus.SC_SEE_OTHER ||
+                    statusCode == HttpStatus.SC_TEMPORARY_REDIRECT ||
+                    statusCode == HttpStatus.SC_PERMANENT_REDIRECT) {
+                Header header = response.getFirstHeader(HttpHeaders.LOCATION);
+                if (header != null) {
+                    String movedToUrl = normalizer.filter(UrlResolver.resolveUrl(toFetchURL, header.getValue()));
+                    fetchResult.setMovedToUrl(movedToUrl);
+                }
+            } else if (statusCode >= 200 && statusCode <= 299) {
+                fetchResult.setFetchedUrl(toFetchURL);
+                // Checking content type and maximum size before any of the content is transferred
+                long size = getContentLength(response, entityDetails);
+                if (entityDetails != null && applyContentTypePolicy
+                        && !isAllowedContentType(entityDetails.getContentType())) {
+                    onContentSkipped(size);
+                    fetchResult.setContentSkipped(true);
+                    throw new ContentSkippedException(fetchResult);
+                }
+                if (entityDetails != null && size > maxDownloadSize) {
+                    throw new ContentTooLargeException(size);
+                }
+            }
+
+            if (entityDetails == null) {
+                resultCallback.completed(fetchResult);
+                return;
+            }
+            this.resultCallback = resultCallback;
+            this.contentType = ContentType.parseLenient(entityDetails.getContentType());
+            this.contentEncoding = entityDetails.getContentEncoding();
+            long contentLength = getContentLength(response, entityDetails);
+            int initialCapacity = contentLength >= 0 && contentLength <= maxDownloadSize
+                    ? (int) contentLength : 4096;
+            this.buffer = new ByteArrayBuffer(Math.max(initialCapacity, 1));
+        }
+
+        /**
+         * The declared length of the content, read from the {@code Content-Length} header if the
+         * entity details do not know it, like {@link PageFetcher} does. -1 if unknown.
+         */
+        private long getContentLength(HttpResponse response, EntityDetails entityDetails) {
+            if (entityDetails == null) {
+                return -1;
+            }
+            long length = entityDetails.getContentLength();
+            if (length < 0) {
+                Header header = response.getLastHeader(HttpHeaders.CONTENT_LENGTH);
+                if (header != null) {
+                    try {
+                        length = Long.parseLong(header.getValue().trim());
+                    } catch (NumberFormatException e) {
+                        logger.debug("Invalid Content-Length of {}: {}", toFetchURL, header.getValue());
+                    }
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context) {
+            // Interim (1xx) responses are of no interest
+        }
+
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            capacityChannel.update(CAPACITY_INCREMENT);
+        }
+
+        @Override
+        public void consume(ByteBuffer src) throws IOException {
+            // In long arithmetic, as the max download size may be Integer.MAX_VALUE
+            long limit = maxDownloadSize + 1L;
+            int length = (int) Math.max(0, Math.min(src.remaining(), limit - buffer.length()));
+            if (src.hasArray()) {
+                buffer.append(src.array(), src.arrayOffset() + src.position(), length);
+                src.position(src.position() + length);
+            } else {
+                while (length-- > 0) {
+                    buffer.append(src.get());
+                }
+            }
+            if (buffer.length() >= limit) {
+                // Abort the exchange, the rest of the content would be dropped anyway
+                setEntity();
+                throw new ContentLimitReachedException(fetchResult);
+            }
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) {
+            setEntity();
+            resultCallback.completed(fetchResult);
+        }
+
+        private void setEntity() {
+            fetchResult.setEntity(new ByteArrayEntity(buffer.toByteArray(), contentType, contentEncoding));
+            buffer = null;
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            releaseResources();
+        }
+
+        @Override
+        public void releaseResources() {
+            buffer = null;
+        }
+    }
+
+    /**
+     * Thrown by the response consumer to abort an exchange on purpose. Unchecked, as the client
+     * would retry an exchange which failed with an {@link IOException}, downloading it again.
+     */
+    private abstract static class AbortedExchangeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private AbortedExchangeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown by the response consumer to abort an exchange whose content length exceeds the
+     * maximum download size.
+     */
+    private static final class ContentTooLargeException extends AbortedExchangeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+
+        private ContentTooLargeException(long size) {
+            super("Content length " + size + " exceeds the maximum download size");
+            this.size = size;
+        }
+    }
+
+    /**
+     * Thrown by the response consumer to abort an exchange whose content type is not allowed.
+     * Carries the result without content.
+     */
+    private static final class ContentSkippedException extends AbortedExchangeException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PageFetchResult fetchResult;
+
+        private ContentSkippedException(PageFetchResult fetchResult) {
+            super("Content type not allowed");
+            this.fetchResult = fetchResult;
+        }
+    }
+
+    /**
+     * Thrown by the response consumer to abort an exchange once the maximum download size has been
+     * buffered. Carries the truncated result.
+     */
+    private static final class ContentLimitReachedException extends AbortedExchangeException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PageFetchResult fetchResult;
+
+        private ContentLimitReachedException(PageFetchResult fetchResult) {
+            super("Maximum download size reached");
+            this.fetchResult = fetchResult;
+        }
+    }
+}
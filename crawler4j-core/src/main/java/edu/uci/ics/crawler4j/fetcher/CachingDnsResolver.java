@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+
+/**
+ * A {@link DnsResolver} which caches the lookups of another resolver, independent of the JVM wide
+ * {@code networkaddress.cache.ttl} settings. The cache holds a bounded number of hosts, and hosts
+ * which could not be resolved are cached as well, for a shorter time. Concurrent lookups of the
+ * same host share a single lookup, and {@link #prefetch(String)} resolves hosts in the background
+ * before their first connection is opened. Prefetching is best effort: hosts are dropped while
+ * {@value #PREFETCH_QUEUE_CAPACITY} hosts are already waiting to be resolved.
+ * <p>
+ * Set it with {@code CrawlConfig#setDnsResolver} to use it.
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    private static final int PREFETCH_QUEUE_CAPACITY = 1024;
+
+    private final DnsResolver resolver;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final Cache<String, Lookup> cache;
+
+    /**
+     * Lookups in progress, by host.
+     */
+    private final ConcurrentMap<String, PendingLookup> resolving = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor prefetchExecutor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * Caches the lookups of the system resolver of up to 10,000 hosts, for 5 minutes or for 1
+     * minute if a host could not be resolved, and prefetches with up to 4 threads.
+     */
+    public CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE, 10_000, TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(1), 4);
+    }
+
+    /**
+     * @param resolver          the resolver whose lookups are cached
+     * @param capacity          the maximum number of cached hosts
+     * @param ttlMillis         how long the addresses of a host are cached
+     * @param negativeTtlMillis how long a host which could not be resolved is cached, 0 to not
+     *                          cache it
+     * @param prefetchThreads   the number of threads resolving hosts for {@link #prefetch(String)},
+     *                          0 to not prefetch
+     */
+    public CachingDnsResolver(DnsResolver resolver, int capacity, long ttlMillis, long negativeTtlMillis,
+                              int prefetchThreads) {
+        this.resolver = resolver;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.cache = new Cache2kBuilder<String, Lookup>() {
+        }
+                .entryCapacity(capacity)
+                .expiryPolicy((host, lookup, startTime, currentEntry) -> lookup.expiryTime)
+                .build();
+        if (prefetchThreads > 0) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            // Idle threads end, so a resolver which is not used anymore does not keep any
+            this.prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(PREFETCH_QUEUE_CAPACITY), runnable -> {
+                        Thread thread = new Thread(runnable, "Crawler4j-dns-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.DiscardPolicy() {
+                        @Override
+                        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                            ((Prefetch) runnable).discard();
+                        }
+                    });
+            this.prefetchExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            this.prefetchExecutor = null;
+        }
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase(Locale.ROOT);
+        Lookup lookup = getCached(key);
+        if (lookup != null) {
+            hits.increment();
+            return lookup.getAddresses(host);
+        }
+        misses.increment();
+
+        PendingLookup pending = new PendingLookup();
+        pending.start();
+        PendingLookup inFlight = resolving.putIfAbsent(key, pending);
+        if (inFlight == null) {
+            // a lookup may have completed between the cache check and the registration
+            lookup = getCached(key);
+            if (lookup != null) {
+                resolving.remove(key, pending);
+                pending.complete(lookup);
+            } else {
+                lookup = lookup(key, pending);
+            }
+        } else if (inFlight.start()) {
+            // a prefetch still waiting in the queue, which is done here instead of waiting for it
+            lookup = lookup(key, inFlight);
+        } else {
+            try {
+                lookup = inFlight.get();
+            } catch (CancellationException e) {
+                // a discarded prefetch, which has already been unregistered
+                return resolve(host);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                UnknownHostException interrupted = new UnknownHostException(host);
+                interrupted.initCause(e);
+                throw interrupted;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new CompletionException(e.getCause());
+            }
+        }
+        return lookup.getAddresses(host);
+    }
+
+    @Override
+    public String resolveCanonicalHostname(String host) throws UnknownHostException {
+        return resolver.resolveCanonicalHostname(host);
+    }
+
+    /**
+     * Resolves the host in the background, unless it is cached or already being resolved.
+     *
+     * @param host the host name, e.g. of a newly discovered url
+     */
+    public void prefetch(String host) {
+        if (prefetchExecutor == null || host == null) {
+            return;
+        }
+        String key = host.toLowerCase(Locale.ROOT);
+        if (getCached(key) != null) {
+            return;
+        }
+        PendingLookup pending = new PendingLookup();
+        if (resolving.putIfAbsent(key, pending) != null) {
+            return;
+        }
+        prefetchExecutor.execute(new Prefetch(key, pending));
+    }
+
+    private Lookup getCached(String key) {
+        Lookup lookup = cache.peek(key);
+        return lookup != null && lookup.expiryTime > System.currentTimeMillis() ? lookup : null;
+    }
+
+    /**
+     * Resolves the host with the underlying resolver, caches the result and completes the future
+     * registered for the host in {@link #resolving}.
+     */
+    private Lookup lookup(String key, PendingLookup pending) {
+        try {
+            lookups.increment();
+            Lookup lookup;
+            try {
+                InetAddress[] addresses = resolver.resolve(key);
+                lookup = new Lookup(addresses, null, System.currentTimeMillis() + ttlMillis);
+                if (ttlMillis > 0) {
+                    cache.put(key, lookup);
+                }
+            } catch (UnknownHostException e) {
+                lookup = new Lookup(null, e, System.currentTimeMillis() + negativeTtlMillis);
+                if (negativeTtlMillis > 0) {
+                    cache.put(key, lookup);
+                }
+            }
+            pending.complete(lookup);
+            return lookup;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            resolving.remove(key, pending);
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getCacheHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups not answered from the cache, including those which waited for
+     * a lookup of the same host in progress
+     */
+    public long getCacheMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of lookups done by the underlying resolver
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * The result of a lookup registered in {@link #resolving}. Whoever starts it does the lookup,
+     * so a queued prefetch can be taken over by a thread which needs the addresses right away.
+     */
+    private static final class PendingLookup extends CompletableFuture<Lookup> {
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * @return {@code true} if the caller has to do the lookup
+         */
+        private boolean start() {
+            return started.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * A prefetch waiting for or running on the prefetch executor. It does nothing if a lookup of
+     * the host has taken it over in the meantime.
+     */
+    private final class Prefetch implements Runnable {
+        private final String key;
+        private final PendingLookup pending;
+
+        private Prefetch(String key, PendingLookup pending) {
+            this.key = key;
+            this.pending = pending;
+        }
+
+        @Override
+        public void run() {
+            if (pending.start()) {
+                lookup(key, pending);
+            }
+        }
+
+        /**
+         * Unregisters a prefetch which the full executor dropped. Lookups waiting for it do
+         * their own lookup.
+         */
+        private void discard() {
+            if (pending.start()) {
+                resolving.remove(key, pending);
+                pending.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The addresses of a host, or the failure to resolve it.
+     */
+    private static final class Lookup {
+        private final InetAddress[] addresses;
+        private final UnknownHostException failure;
+        private final long expiryTime;
+
+        private Lookup(InetAddress[] addresses, UnknownHostException failure, long expiryTime) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiryTime = expiryTime;
+        }
+
+        private InetAddress[] getAddresses(String host) throws UnknownHostException {
+            if (failure != null) {
+                UnknownHostException e = new UnknownHostException(host);
+                e.initCause(failure);
+                throw e;
+            }
+            return addresses == null ? null : addresses.clone();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the connection pool of a {@link PageFetcher}, showing how well connections are kept
+ * alive and reused.
+ */
+public final class ConnectionPoolMetrics {
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder tlsHandshakes = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+
+    void onLease(long waitNanos) {
+        leases.increment();
+        leaseWaitNanos.add(waitNanos);
+    }
+
+    void onConnect() {
+        newConnections.increment();
+    }
+
+    void onTlsHandshake() {
+        tlsHandshakes.increment();
+    }
+
+    void onIdleEvictions(int count) {
+        idleEvictions.add(count);
+    }
+
+    /**
+     * @return the number of connections handed out by the pool
+     */
+    public long getLeaseCount() {
+        return leases.sum();
+    }
+
+    /**
+     * @return the total time spent waiting for a connection from the pool, in milliseconds
+     */
+    public long getTotalLeaseWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(leaseWaitNanos.sum());
+    }
+
+    /**
+     * @return the number of connections which had to be opened
+     */
+    public long getNewConnectionCount() {
+        return newConnections.sum();
+    }
+
+    /**
+     * @return the share of leases served by a connection which was kept alive, between 0 and 1
+     */
+    public double getReuseRatio() {
+        long leaseCount = leases.sum();
+        return leaseCount == 0 ? 0 : Math.max(0, 1 - (double) newConnections.sum() / leaseCount);
+    }
+
+    /**
+     * @return the number of TLS handshakes made for new connections
+     */
+    public long getTlsHandshakeCount() {
+        return tlsHandshakes.sum();
+    }
+
+    /**
+     * @return the number of idle or expired connections closed by the pool
+     */
+    public long getIdleEvictionCount() {
+        return idleEvictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("leases: %d, lease wait: %d ms, new connections: %d, reuse ratio: %.2f, " +
+                             "TLS handshakes: %d, idle evictions: %d",
+                             getLeaseCount(), getTotalLeaseWaitTime(), getNewConnectionCount(), getReuseRatio(),
+                             getTlsHandshakeCount(), getIdleEvictionCount());
+    }
+}
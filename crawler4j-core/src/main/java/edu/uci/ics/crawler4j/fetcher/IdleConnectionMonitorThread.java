@@ -21,11 +21,20 @@ import org.apache.hc.core5.util.TimeValue;
 public class IdleConnectionMonitorThread extends Thread {
 
     private final PoolingHttpClientConnectionManager connMgr;
+    private final Runnable maintenance;
     private volatile boolean shutdown;
 
     public IdleConnectionMonitorThread(PoolingHttpClientConnectionManager connMgr) {
+        this(connMgr, null);
+    }
+
+    /**
+     * @param maintenance additional work done on every check, e.g. resizing the pool, may be {@code null}
+     */
+    public IdleConnectionMonitorThread(PoolingHttpClientConnectionManager connMgr, Runnable maintenance) {
         super("Connection Manager");
         this.connMgr = connMgr;
+        this.maintenance = maintenance;
     }
 
     @Override
@@ -38,6 +47,9 @@ public class IdleConnectionMonitorThread extends Thread {
                     connMgr.closeExpired();
                     // Optionally, close connections that have been idle longer than 30 sec
                     connMgr.closeIdle(TimeValue.ofSeconds(30));
+                    if (maintenance != null) {
+                        maintenance.run();
+                    }
                 }
             }
         } catch (InterruptedException ignored) {
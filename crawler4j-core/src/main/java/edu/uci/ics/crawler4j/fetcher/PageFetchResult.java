@@ -17,8 +17,12 @@ package edu.uci.ics.crawler4j.fetcher;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Instant;
 
+import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.slf4j.Logger;
@@ -39,6 +43,7 @@ public class PageFetchResult implements AutoCloseable {
     protected Header[] responseHeaders = null;
     protected String fetchedUrl = null;
     protected String movedToUrl = null;
+    protected boolean contentSkipped = false;
 
     public PageFetchResult(boolean haltOnError) {
         this.haltOnError = haltOnError;
@@ -60,6 +65,33 @@ public class PageFetchResult implements AutoCloseable {
         this.entity = entity;
     }
 
+    /**
+     * @return whether the content of the response has not been downloaded because its type is
+     * not allowed
+     */
+    public boolean isContentSkipped() {
+        return contentSkipped;
+    }
+
+    public void setContentSkipped(boolean contentSkipped) {
+        this.contentSkipped = contentSkipped;
+    }
+
+    /**
+     * @return the value of the {@code Content-Type} response header, or null if there is none
+     */
+    public String getContentType() {
+        if (responseHeaders == null) {
+            return null;
+        }
+        for (Header header : responseHeaders) {
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
     public Header[] getResponseHeaders() {
         return responseHeaders;
     }
@@ -68,6 +100,31 @@ public class PageFetchResult implements AutoCloseable {
         this.responseHeaders = responseHeaders;
     }
 
+    /**
+     * @return the delay asked for by the {@code Retry-After} response header in ms, or {@code -1} if
+     * there is none
+     */
+    public long getRetryAfter() {
+        if (responseHeaders == null) {
+            return -1;
+        }
+        for (Header header : responseHeaders) {
+            if (!HttpHeaders.RETRY_AFTER.equalsIgnoreCase(header.getName()) || header.getValue() == null) {
+                continue;
+            }
+            String value = header.getValue().trim();
+            try {
+                return Math.max(0, Long.parseLong(value) * 1000);
+            } catch (NumberFormatException e) {
+                Instant date = DateUtils.parseStandardDate(value);
+                if (date != null) {
+                    return Math.max(0, date.toEpochMilli() - System.currentTimeMillis());
+                }
+            }
+        }
+        return -1;
+    }
+
     public String getFetchedUrl() {
         return fetchedUrl;
     }
@@ -77,9 +134,25 @@ public class PageFetchResult implements AutoCloseable {
     }
 
     public boolean fetchContent(Page page, int maxBytes) throws IOException {
+        return fetchContent(page, maxBytes, 0);
+    }
+
+    /**
+     * Loads the content into the page, spilling content larger than spillThreshold bytes to a
+     * temporary file.
+     */
+    public boolean fetchContent(Page page, int maxBytes, int spillThreshold) throws IOException {
+        return fetchContent(page, maxBytes, spillThreshold, null);
+    }
+
+    /**
+     * Loads the content into the page, spilling content larger than spillThreshold bytes to a
+     * file in spillFolder, or the default temporary folder if it is null.
+     */
+    public boolean fetchContent(Page page, int maxBytes, int spillThreshold, Path spillFolder) throws IOException {
         try {
             page.setFetchResponseHeaders(responseHeaders);
-            page.load(entity, maxBytes);
+            page.load(entity, maxBytes, spillThreshold, spillFolder);
             return true;
         } catch (SocketTimeoutException e) {
             throw e;
@@ -23,6 +23,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.net.ssl.SSLContext;
 
@@ -54,14 +55,18 @@ import org.slf4j.LoggerFactory;
 
 import crawlercommons.filters.basic.BasicURLNormalizer;
 import edu.uci.ics.crawler4j.PolitenessServer;
+import edu.uci.ics.crawler4j.crawler.ContentPolicy;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.authentication.AuthInfo;
 import edu.uci.ics.crawler4j.crawler.authentication.CredentialsProvider;
 import edu.uci.ics.crawler4j.crawler.authentication.FormAuthInfo;
 import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.politeness.AdaptivePolitenessServer;
 import edu.uci.ics.crawler4j.fetcher.politeness.CachedPolitenessServer;
+import edu.uci.ics.crawler4j.frontier.ValidatorStore;
 import edu.uci.ics.crawler4j.url.UrlResolver;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
 
 /**
  * @author Yasser Ganjisaffar
@@ -71,19 +76,47 @@ public class PageFetcher {
     protected CrawlConfig config;
     protected BasicURLNormalizer normalizer;
     protected PolitenessServer politenessServer;
+    /**
+     * The pool of the classic client, null if the classic client is not created (see
+     * {@link #PageFetcher(CrawlConfig, BasicURLNormalizer, PolitenessServer, boolean)}).
+     */
     protected PoolingHttpClientConnectionManager connectionManager;
+    /**
+     * The classic client, null if it is not created (see
+     * {@link #PageFetcher(CrawlConfig, BasicURLNormalizer, PolitenessServer, boolean)}).
+     */
     protected CloseableHttpClient httpClient;
     protected IdleConnectionMonitorThread connectionMonitorThread = null;
+    protected final ConnectionPoolMetrics connectionPoolMetrics = new ConnectionPoolMetrics();
+    private final LongAdder skippedResponses = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+    protected ValidatorStore validatorStore;
 
     public PageFetcher(CrawlConfig config, BasicURLNormalizer normalizer) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
         this(config, normalizer, new CachedPolitenessServer(config));
     }
 
     public PageFetcher(CrawlConfig config, BasicURLNormalizer normalizer, PolitenessServer politenessServer) throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
+        this(config, normalizer, politenessServer, true);
+    }
+
+    /**
+     * @param createHttpClient whether the classic (blocking) HTTP client should be created. Subclasses
+     *                         which execute requests by other means, like {@link AsyncPageFetcher}, pass
+     *                         {@code false} and override {@link #fetchPage(WebURL, boolean, int)} and
+     *                         {@link #shutDown()}, the only methods using the classic client.
+     */
+    protected PageFetcher(CrawlConfig config, BasicURLNormalizer normalizer, PolitenessServer politenessServer,
+                          boolean createHttpClient) throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
         this.config = config;
         this.normalizer = normalizer;
         this.politenessServer = politenessServer;
+        if (createHttpClient) {
+            createHttpClient();
+        }
+    }
 
+    private void createHttpClient() throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
         RequestConfig requestConfig = RequestConfig.custom()
                 .setExpectContinueEnabled(false)
                 .setCookieSpec(config.getCookiePolicy())
@@ -100,7 +133,8 @@ public class PageFetcher {
                 SSLContext sslContext =
                         SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build();
                 SSLConnectionSocketFactory sslsf =
-                        new SniSSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+                        new SniSSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE,
+                                                          connectionPoolMetrics);
                 connRegistryBuilder.register("https", sslsf);
             } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException | RuntimeException e) {
                 if (config.isHaltOnError()) {
@@ -113,8 +147,8 @@ public class PageFetcher {
         }
 
         Registry<ConnectionSocketFactory> connRegistry = connRegistryBuilder.build();
-        connectionManager =
-                new SniPoolingHttpClientConnectionManager(connRegistry, config.getDnsResolver());
+        connectionManager = new SniPoolingHttpClientConnectionManager(connRegistry, config.getDnsResolver(),
+                                                                      connectionPoolMetrics);
         connectionManager.setMaxTotal(config.getMaxTotalConnections());
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
 
@@ -167,31 +201,82 @@ public class PageFetcher {
         }
 
         if (connectionMonitorThread == null) {
-            connectionMonitorThread = new IdleConnectionMonitorThread(connectionManager);
+            connectionMonitorThread = new IdleConnectionMonitorThread(connectionManager,
+                    config.isAdaptiveConnectionLimits() ? this::adaptConnectionLimits : null);
         }
         connectionMonitorThread.start();
     }
 
+    /**
+     * Fetches the given url of a page, applying the content type policy. Robots.txt files are
+     * fetched with {@link #fetchPage(WebURL, boolean)} instead, so subclasses changing how all
+     * requests are sent should override that method rather than this one.
+     *
+     * @param webUrl the url to be fetched
+     * @return the fetch result
+     */
     public PageFetchResult fetchPage(WebURL webUrl)
             throws InterruptedException, IOException, PageBiggerThanMaxSizeException, URISyntaxException {
+        return fetchPage(webUrl, true);
+    }
+
+    /**
+     * Fetches the given url. If the content type policy is applied, the content of successful
+     * responses whose type is not allowed (see {@link #isAllowedContentType(String)}) is not
+     * downloaded: the connection is closed and the result is marked as
+     * {@link PageFetchResult#isContentSkipped() skipped}.
+     *
+     * @param webUrl                 the url to be fetched
+     * @param applyContentTypePolicy false to fetch any content, e.g. of robots.txt files
+     * @return the fetch result
+     */
+    public PageFetchResult fetchPage(WebURL webUrl, boolean applyContentTypePolicy)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException, URISyntaxException {
+        return fetchPage(webUrl, applyContentTypePolicy, -1);
+    }
+
+    /**
+     * Fetches the given url like {@link #fetchPage(WebURL, boolean)}, with a size limit of its own
+     * instead of the max download size of the content type.
+     *
+     * @param webUrl                 the url to be fetched
+     * @param applyContentTypePolicy false to fetch any content, e.g. of robots.txt files
+     * @param maxDownloadSize        the maximum size of the content, or -1 for
+     *                               {@link CrawlConfig#getMaxDownloadSize(String)}
+     * @return the fetch result
+     */
+    public PageFetchResult fetchPage(WebURL webUrl, boolean applyContentTypePolicy, int maxDownloadSize)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException, URISyntaxException {
+        if (httpClient == null) {
+            throw new IllegalStateException(getClass().getName() + " has been created without the classic client");
+        }
         // Getting URL, setting headers & content
         PageFetchResult fetchResult = new PageFetchResult(config.isHaltOnError());
         String toFetchURL = webUrl.getURL();
         HttpUriRequest request = null;
+        CloseableHttpResponse response = null;
         try {
-            request = newHttpUriRequest(toFetchURL);
+            request = newHttpUriRequest(webUrl);
 
             final long politenessDelay = politenessServer.applyPoliteness(webUrl);
             if (politenessDelay != CachedPolitenessServer.NO_POLITENESS_APPLIED) {
                 Thread.sleep(politenessDelay);
             }
 
-            CloseableHttpResponse response = httpClient.execute(request);
+            final long sentAt = System.currentTimeMillis();
+            try {
+                response = httpClient.execute(request);
+            } catch (IOException | RuntimeException e) {
+                politenessServer.onFailure(webUrl, System.currentTimeMillis() - sentAt);
+                throw e;
+            }
             fetchResult.setEntity(response.getEntity());
             fetchResult.setResponseHeaders(response.getHeaders());
 
             // Setting HttpStatus
             int statusCode = response.getCode();
+            politenessServer.onResponse(webUrl, statusCode, System.currentTimeMillis() - sentAt,
+                                        fetchResult.getRetryAfter());
 
             // If Redirect ( 3xx )
             if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY ||
@@ -228,7 +313,15 @@ public class PageFetcher {
                             size = Integer.parseInt(length.getValue());
                         }
                     }
-                    if (size > config.getMaxDownloadSize()) {
+                    String contentType = fetchResult.getEntity().getContentType();
+                    if (applyContentTypePolicy && !isAllowedContentType(contentType)) {
+                        // Abort before closing, as closing alone would download the rest of
+                        // the content to keep the connection
+                        onContentSkipped(size);
+                        request.abort();
+                        fetchResult.setEntity(null);
+                        fetchResult.setContentSkipped(true);
+                    } else if (size > (maxDownloadSize < 0 ? config.getMaxDownloadSize(contentType) : maxDownloadSize)) {
                         //fix issue #52 - consume entity
                         response.close();
                         throw new PageBiggerThanMaxSizeException(size);
@@ -242,17 +335,93 @@ public class PageFetcher {
         } finally { // occurs also with thrown exceptions
             if ((fetchResult.getEntity() == null) && (request != null)) {
                 request.abort();
+                if (response != null) {
+                    try {
+                        response.close();
+                    } catch (IOException e) {
+                        logger.debug("Error while closing the aborted response of {}", toFetchURL, e);
+                    }
+                }
             }
         }
     }
 
     public synchronized void shutDown() {
+        logSkippedContent();
         if (connectionMonitorThread != null) {
+            logger.info("Connection pool: {}", connectionPoolMetrics);
             connectionManager.close();
             connectionMonitorThread.shutdown();
         }
     }
 
+    /**
+     * @return the counters of the connection pool, e.g. how many connections were reused
+     */
+    public ConnectionPoolMetrics getConnectionPoolMetrics() {
+        return connectionPoolMetrics;
+    }
+
+    /**
+     * Decides from the {@code Content-Type} header of a successful response whether its content
+     * should be downloaded. The default follows the {@link CrawlConfig#getContentPolicy(String)
+     * content policy} of the type if there is one, which skips the content if its max download
+     * size is 0. Otherwise binary content is allowed only if
+     * {@link CrawlConfig#isIncludeBinaryContentInCrawling()}. Subclasses may override this method
+     * and provide their own logic.
+     *
+     * @param contentType the content type of the response, may be null
+     * @return whether the content should be downloaded
+     */
+    protected boolean isAllowedContentType(String contentType) {
+        ContentPolicy contentPolicy = config.getContentPolicy(contentType);
+        if (contentPolicy != null) {
+            return contentPolicy.getMaxDownloadSize() != 0;
+        }
+        return config.isIncludeBinaryContentInCrawling() || !Util.hasBinaryContent(contentType);
+    }
+
+    /**
+     * Counts a response whose content has not been downloaded.
+     *
+     * @param contentLength the announced length of the content, or -1 if unknown
+     */
+    protected void onContentSkipped(long contentLength) {
+        skippedResponses.increment();
+        if (contentLength > 0) {
+            skippedBytes.add(contentLength);
+        }
+    }
+
+    /**
+     * @return the number of responses whose content has not been downloaded because of its type
+     */
+    public long getSkippedResponseCount() {
+        return skippedResponses.sum();
+    }
+
+    /**
+     * @return the number of bytes which have not been downloaded because of their content type,
+     * as far as the responses announced their length
+     */
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    protected void logSkippedContent() {
+        if (getSkippedResponseCount() > 0) {
+            logger.info("Skipped the content of {} responses of disallowed types ({} bytes)",
+                    getSkippedResponseCount(), getSkippedBytes());
+        }
+    }
+
+    private void adaptConnectionLimits() {
+        ((SniPoolingHttpClientConnectionManager) connectionManager).adaptRouteLimits(
+                config.getMaxConnectionsPerHost(),
+                host -> politenessServer instanceof AdaptivePolitenessServer
+                        ? ((AdaptivePolitenessServer) politenessServer).getConcurrency(host) : -1);
+    }
+
     /**
      * Creates a new HttpUriRequest for the given url. The default is to create a HttpGet without
      * any further configuration. Subclasses may override this method and provide their own logic.
@@ -264,11 +433,45 @@ public class PageFetcher {
         return new HttpGet(url);
     }
 
+    /**
+     * Creates the request for the given url with {@link #newHttpUriRequest(String)} and makes it
+     * conditional if validators have been saved for the url (see {@link #setValidatorStore}).
+     *
+     * @param webUrl the url to be fetched
+     * @return the HttpUriRequest for the given url
+     */
+    protected HttpUriRequest newHttpUriRequest(WebURL webUrl) {
+        HttpUriRequest request = newHttpUriRequest(webUrl.getURL());
+        ValidatorStore.Validators validators = validatorStore == null ? null : validatorStore.get(webUrl);
+        if (validators != null) {
+            if (validators.getETag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, validators.getETag());
+            }
+            if (validators.getLastModified() != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, validators.getLastModified());
+            }
+        }
+        return request;
+    }
+
+    public ValidatorStore getValidatorStore() {
+        return validatorStore;
+    }
+
+    /**
+     * @param validatorStore the validators to send with requests, so that pages which have not
+     *                       changed are answered with {@code 304 Not Modified}, or null to always
+     *                       fetch pages in full
+     */
+    public void setValidatorStore(ValidatorStore validatorStore) {
+        this.validatorStore = validatorStore;
+    }
+
     protected CrawlConfig getConfig() {
         return config;
     }
 
-    protected edu.uci.ics.crawler4j.PolitenessServer getPolitenessServer() {
+    public edu.uci.ics.crawler4j.PolitenessServer getPolitenessServer() {
         return politenessServer;
     }
 }
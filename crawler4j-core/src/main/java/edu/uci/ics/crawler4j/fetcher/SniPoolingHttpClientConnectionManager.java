@@ -16,18 +16,31 @@
 package edu.uci.ics.crawler4j.fetcher;
 
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
 
 import javax.net.ssl.SSLProtocolException;
 
 import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.DefaultHttpClientConnectionOperator;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.protocol.HttpContext;
-import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolEntry;
 import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.pool.StrictConnPool;
 import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,26 +57,121 @@ import org.slf4j.LoggerFactory;
  * <p>
  * http://stackoverflow.com/questions/7615645/ssl-handshake-alert-unrecognized-name-error-since
  * -upgrade-to-java-1-7-0/28571582#28571582
+ * <p>
+ * It also records {@link ConnectionPoolMetrics} and can adapt the limit of each route, see
+ * {@link #adaptRouteLimits(int, ToIntFunction)}.
  */
 public class SniPoolingHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
     public static final Logger logger =
             LoggerFactory.getLogger(SniPoolingHttpClientConnectionManager.class);
 
+    private final ConnectionPoolMetrics metrics;
+
+    /* Routes with a limit set by adaptRouteLimits. */
+    private final Set<HttpRoute> limitedRoutes = ConcurrentHashMap.newKeySet();
+
     public SniPoolingHttpClientConnectionManager(
             Registry<ConnectionSocketFactory> socketFactoryRegistry) {
-        super(socketFactoryRegistry);
+        this(socketFactoryRegistry, null, new ConnectionPoolMetrics());
     }
 
     public SniPoolingHttpClientConnectionManager(
             Registry<ConnectionSocketFactory> socketFactoryRegistry, DnsResolver dnsResolver) {
-        super(socketFactoryRegistry,PoolConcurrencyPolicy.STRICT, PoolReusePolicy.LIFO,
-                TimeValue.NEG_ONE_MILLISECOND, null, dnsResolver, null);
+        this(socketFactoryRegistry, dnsResolver, new ConnectionPoolMetrics());
+    }
 
+    public SniPoolingHttpClientConnectionManager(
+            Registry<ConnectionSocketFactory> socketFactoryRegistry, DnsResolver dnsResolver,
+            ConnectionPoolMetrics metrics) {
+        super(new DefaultHttpClientConnectionOperator(socketFactoryRegistry, null, dnsResolver),
+                new EvictionCountingConnPool(metrics), null);
+        this.metrics = metrics;
+    }
+
+    public ConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public LeaseRequest lease(final String id, final HttpRoute route, final Timeout requestTimeout,
+                              final Object state) {
+        final long start = System.nanoTime();
+        final LeaseRequest leaseRequest = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(final Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                ConnectionEndpoint endpoint = leaseRequest.get(timeout);
+                metrics.onLease(System.nanoTime() - start);
+                return endpoint;
+            }
+
+            @Override
+            public boolean cancel() {
+                return leaseRequest.cancel();
+            }
+        };
+    }
+
+    /**
+     * Adapts the connection limit of every route to how its host is being crawled. A route may
+     * open one connection more than it currently uses or waits for, so that busy hosts grow up
+     * to {@code maxPerRoute} while idle ones shrink to a single connection and leave the rest of
+     * the pool to other hosts. Routes without open connections fall back to the default limit,
+     * so that the pool only keeps a limit for the hosts currently being crawled.
+     *
+     * @param maxPerRoute upper bound of every route's limit
+     * @param hostConcurrency the number of concurrent requests the crawler sends to a host, or a
+     *                        value below one if it is not known. Caps the route's limit.
+     */
+    public void adaptRouteLimits(int maxPerRoute, ToIntFunction<String> hostConcurrency) {
+        int defaultLimit = getDefaultMaxPerRoute();
+        Set<HttpRoute> routes = getRoutes();
+        // the pool drops routes without connections, their limits have to be dropped here
+        limitedRoutes.removeIf(route -> {
+            if (routes.contains(route)) {
+                return false;
+            }
+            setMaxPerRoute(route, -1);
+            return true;
+        });
+        for (HttpRoute route : routes) {
+            PoolStats stats = getStats(route);
+            int limit;
+            if (stats.getLeased() + stats.getPending() + stats.getAvailable() == 0) {
+                limit = defaultLimit;
+            } else {
+                limit = stats.getLeased() + stats.getPending() + 1;
+                int concurrency = hostConcurrency.applyAsInt(route.getTargetHost().getHostName());
+                if (concurrency > 0) {
+                    limit = Math.min(limit, concurrency);
+                }
+                limit = Math.max(1, Math.min(maxPerRoute, limit));
+            }
+            if (limit == defaultLimit) {
+                if (limitedRoutes.remove(route)) {
+                    logger.debug("Connection limit of {}: {}", route, limit);
+                    setMaxPerRoute(route, -1);
+                }
+            } else if (limit != getMaxPerRoute(route)) {
+                logger.debug("Connection limit of {}: {}", route, limit);
+                limitedRoutes.add(route);
+                setMaxPerRoute(route, limit);
+            }
+        }
+    }
+
+    /**
+     * @return the number of routes whose connection limit differs from the default
+     */
+    public int getLimitedRouteCount() {
+        return limitedRoutes.size();
     }
 
     @Override
     public void connect(final ConnectionEndpoint endpoint, final TimeValue connectTimeout, final HttpContext context) throws IOException {
         try {
+            metrics.onConnect();
             super.connect(endpoint, connectTimeout, context);
         } catch (SSLProtocolException e) {
             Boolean enableSniValue =
@@ -79,4 +187,46 @@ public class SniPoolingHttpClientConnectionManager extends PoolingHttpClientConn
             }
         }
     }
+
+    /**
+     * The strict LIFO pool of {@link PoolingHttpClientConnectionManager}, counting the connections
+     * it evicts. They are counted while the pool is locked, so connections leased or released at
+     * the same time are not mistaken for evictions.
+     */
+    private static final class EvictionCountingConnPool extends StrictConnPool<HttpRoute, ManagedHttpClientConnection> {
+
+        private final ConnectionPoolMetrics metrics;
+
+        EvictionCountingConnPool(ConnectionPoolMetrics metrics) {
+            super(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS, TimeValue.NEG_ONE_MILLISECOND,
+                  PoolReusePolicy.LIFO, null);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void closeIdle(final TimeValue idleTime) {
+            final long deadline = System.currentTimeMillis() -
+                    (TimeValue.isPositive(idleTime) ? idleTime.toMilliseconds() : 0);
+            enumAvailable(entry -> {
+                if (entry.getUpdated() <= deadline) {
+                    evict(entry);
+                }
+            });
+        }
+
+        @Override
+        public void closeExpired() {
+            final long now = System.currentTimeMillis();
+            enumAvailable(entry -> {
+                if (entry.getExpiryDeadline().isBefore(now)) {
+                    evict(entry);
+                }
+            });
+        }
+
+        private void evict(PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+            entry.discardConnection(CloseMode.GRACEFUL);
+            metrics.onIdleEvictions(1);
+        }
+    }
 }
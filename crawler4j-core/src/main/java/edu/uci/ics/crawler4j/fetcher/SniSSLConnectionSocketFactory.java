@@ -41,13 +41,25 @@ import javax.net.ssl.SSLContext;
 public class SniSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
     public static final String ENABLE_SNI = "__enable_sni__";
 
+    private final ConnectionPoolMetrics metrics;
+
     /*
      * Implement any constructor you need for your particular application -
      * SSLConnectionSocketFactory has many variants
      */
     public SniSSLConnectionSocketFactory(final SSLContext sslContext,
                                          final HostnameVerifier verifier) {
+        this(sslContext, verifier, null);
+    }
+
+    /**
+     * @param metrics counts the TLS handshakes, may be {@code null}
+     */
+    public SniSSLConnectionSocketFactory(final SSLContext sslContext,
+                                         final HostnameVerifier verifier,
+                                         final ConnectionPoolMetrics metrics) {
         super(sslContext, verifier);
+        this.metrics = metrics;
     }
 
     @Override
@@ -55,6 +67,10 @@ public class SniSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
                                       final HttpContext context) throws IOException {
         Boolean enableSniValue = (Boolean) context.getAttribute(ENABLE_SNI);
         boolean enableSni = enableSniValue == null || enableSniValue;
-        return super.createLayeredSocket(socket, enableSni ? target : "", port, context);
+        Socket layered = super.createLayeredSocket(socket, enableSni ? target : "", port, context);
+        if (metrics != null) {
+            metrics.onTlsHandshake();
+        }
+        return layered;
     }
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher.politeness;
+
+import edu.uci.ics.crawler4j.PolitenessServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
+import org.apache.hc.core5.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A politeness server which adapts the delay and the number of concurrent requests to each host.
+ * <p>
+ * Every host starts with {@link CrawlConfig#getPolitenessDelay()} between two requests and one
+ * request at a time. While the host answers quickly and without errors, the number of concurrent
+ * requests grows up to {@link CrawlConfig#getMaxConnectionsPerHost()}. Errors and slow responses
+ * lower it again and raise the delay, and {@code 429} or {@code 503} responses stop requests to the
+ * host for the {@code Retry-After} period. The delay never drops below the host's robots.txt
+ * {@code Crawl-delay}, which also limits it to one request at a time.
+ * <p>
+ * The state of each host is guarded by its own lock, so hosts do not wait for each other.
+ */
+public class AdaptivePolitenessServer implements PolitenessServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePolitenessServer.class);
+
+    /** Upper bound of the delay between two requests to a host, in ms. */
+    public static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private static final double BACKOFF_FACTOR = 2.0;
+    private static final double RECOVERY_FACTOR = 0.9;
+    /** Weight of the latest sample in the moving averages of latency and error rate. */
+    private static final double SMOOTHING = 0.2;
+    /** A host is considered overloaded once its latency exceeds its best latency by this factor. */
+    private static final double SLOW_FACTOR = 3.0;
+    /** No more concurrent requests are allowed while the error rate is above this. */
+    private static final double ERROR_RATE_THRESHOLD = 0.1;
+
+    private static final long IDLE_EXPIRY = TimeUnit.MINUTES.toMillis(10);
+    private static final int CLEAN_UP_INTERVAL = 10_000;
+
+    protected final CrawlConfig config;
+    private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    public AdaptivePolitenessServer(CrawlConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public long applyPoliteness(WebURL url) {
+        String host = getHost(url);
+        if (host == null) {
+            return NO_POLITENESS_APPLIED;
+        }
+        if (requests.incrementAndGet() % CLEAN_UP_INTERVAL == 0) {
+            cleanUp(System.currentTimeMillis());
+        }
+
+        long now = System.currentTimeMillis();
+        long delay = getOrCreate(host).reserve(now) - now;
+        if (delay > 0) {
+            logger.debug("Applying politeness delay of {} ms for host {}", delay, host);
+            return delay;
+        }
+        return NO_POLITENESS_APPLIED;
+    }
+
+    @Override
+    public void onResponse(WebURL url, int statusCode, long latency, long retryAfter) {
+        HostState state = getState(url);
+        if (state != null) {
+            state.onResponse(statusCode, latency, retryAfter, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void onFailure(WebURL url, long latency) {
+        HostState state = getState(url);
+        if (state != null) {
+            state.onFailure(latency);
+        }
+    }
+
+    @Override
+    public void setCrawlDelay(String host, long crawlDelay) {
+        getOrCreate(host.toLowerCase(Locale.ROOT)).setCrawlDelay(Math.min(crawlDelay, MAX_DELAY));
+    }
+
+    /**
+     * @return the current delay between two requests to the host in ms, or {@code -1} if the host
+     * is unknown
+     */
+    public long getDelay(String host) {
+        HostState state = hosts.get(host.toLowerCase(Locale.ROOT));
+        return state == null ? -1 : state.getDelay();
+    }
+
+    /**
+     * @return the current number of concurrent requests allowed to the host, or {@code -1} if the
+     * host is unknown
+     */
+    public int getConcurrency(String host) {
+        HostState state = hosts.get(host.toLowerCase(Locale.ROOT));
+        return state == null ? -1 : state.getConcurrency();
+    }
+
+    public void forceCleanUp() {
+        hosts.clear();
+    }
+
+    public long getSize() {
+        return hosts.size();
+    }
+
+    private HostState getOrCreate(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state : hosts.computeIfAbsent(host, h -> new HostState());
+    }
+
+    private HostState getState(WebURL url) {
+        String host = getHost(url);
+        return host == null ? null : hosts.get(host);
+    }
+
+    /**
+     * Forgets hosts which have not been requested for a while.
+     */
+    private void cleanUp(long now) {
+        hosts.forEach((host, state) -> {
+            if (state.isIdle(now)) {
+                hosts.remove(host, state);
+            }
+        });
+    }
+
+    /**
+     * @return the lower case host of the url, like {@link java.net.URL#getHost()}, or {@code null}
+     */
+    static String getHost(WebURL url) {
+        return Util.getHost(url.getURL());
+    }
+
+    private final class HostState {
+
+        private double delay = config.getPolitenessDelay();
+        private long crawlDelay;
+        private int concurrency = 1;
+        private int successes;
+        private double latency = -1;
+        private double bestLatency = Double.MAX_VALUE;
+        private double errorRate;
+        private long nextStart;
+        private long blockedUntil;
+        private long lastUsed = System.currentTimeMillis();
+        /** Start times of the requests which have not been answered yet, oldest first. */
+        private final Deque<Long> inFlight = new ArrayDeque<>();
+
+        /**
+         * Reserves the next slot for a request to the host.
+         *
+         * @return the time the request may be sent
+         */
+        synchronized long reserve(long now) {
+            lastUsed = now;
+            // Forget requests whose outcome was never reported
+            long timeout = config.getConnectionTimeout() + config.getSocketTimeout();
+            while (!inFlight.isEmpty() && inFlight.peekFirst() + timeout < now) {
+                inFlight.pollFirst();
+            }
+
+            long start = Math.max(now, Math.max(nextStart, blockedUntil));
+            if (inFlight.size() >= concurrency) {
+                // Expect the oldest request to be answered within the usual latency
+                start = Math.max(start, inFlight.peekFirst() + (long) Math.max(latency, delay));
+            }
+            inFlight.addLast(start);
+            nextStart = start + (long) delay;
+            return start;
+        }
+
+        synchronized void onResponse(int statusCode, long sample, long retryAfter, long now) {
+            inFlight.pollFirst();
+            if (statusCode == HttpStatus.SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                recordError();
+                delay = Math.min(MAX_DELAY, Math.max(delay * BACKOFF_FACTOR, retryAfter));
+                concurrency = 1;
+                blockedUntil = Math.max(blockedUntil, now + Math.max((long) delay, Math.max(retryAfter, 0)));
+                return;
+            }
+            if (statusCode >= 500) {
+                onError();
+                return;
+            }
+
+            errorRate = (1 - SMOOTHING) * errorRate;
+            latency = latency < 0 ? sample : (1 - SMOOTHING) * latency + SMOOTHING * sample;
+            bestLatency = Math.min(bestLatency, latency);
+            if (latency > SLOW_FACTOR * bestLatency && latency > delay) {
+                // The host gets slower, probably because of our requests
+                concurrency = Math.max(1, concurrency - 1);
+                successes = 0;
+                return;
+            }
+            delay = Math.max(getMinDelay(), delay * RECOVERY_FACTOR);
+            if (++successes >= concurrency && errorRate < ERROR_RATE_THRESHOLD
+                    && concurrency < getMaxConcurrency()) {
+                concurrency++;
+                successes = 0;
+            }
+        }
+
+        synchronized void onFailure(long sample) {
+            inFlight.pollFirst();
+            onError();
+        }
+
+        private void onError() {
+            recordError();
+            delay = Math.min(MAX_DELAY, Math.max(getMinDelay(), delay * BACKOFF_FACTOR));
+            concurrency = Math.max(1, concurrency / 2);
+        }
+
+        private void recordError() {
+            errorRate = (1 - SMOOTHING) * errorRate + SMOOTHING;
+            successes = 0;
+        }
+
+        synchronized void setCrawlDelay(long crawlDelay) {
+            this.crawlDelay = crawlDelay;
+            delay = Math.max(delay, getMinDelay());
+            concurrency = Math.min(concurrency, getMaxConcurrency());
+        }
+
+        synchronized long getDelay() {
+            return (long) delay;
+        }
+
+        synchronized int getConcurrency() {
+            return concurrency;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return inFlight.isEmpty() && now - lastUsed > IDLE_EXPIRY && now > blockedUntil;
+        }
+
+        private long getMinDelay() {
+            return Math.max(config.getPolitenessDelay(), crawlDelay);
+        }
+
+        private int getMaxConcurrency() {
+            return crawlDelay > 0 ? 1 : config.getMaxConnectionsPerHost();
+        }
+    }
+}
@@ -40,7 +40,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
-import java.util.concurrent.TimeUnit;
 
 public class CachedPolitenessServer implements edu.uci.ics.crawler4j.PolitenessServer {
 
@@ -51,9 +50,11 @@ public class CachedPolitenessServer implements edu.uci.ics.crawler4j.PolitenessS
     private final Object mutex = new Object();
 
     public CachedPolitenessServer(CrawlConfig config) {
+        // An entry is of interest until one politeness delay after the (possibly delayed) fetch it records
         this.seenHosts = new Cache2kBuilder<String, Long>() {
         }
-                .expireAfterWrite(config.getPolitenessDelay(), TimeUnit.MILLISECONDS)
+                .expiryPolicy((host, fetchTime, startTime, currentEntry) ->
+                        fetchTime + config.getPolitenessDelay())
                 .build();
         this.config = config;
     }
@@ -67,9 +68,9 @@ public class CachedPolitenessServer implements edu.uci.ics.crawler4j.PolitenessS
 
             if (host != null) {
                 final Date now = new Date();
-                final long lastFetchTime = seenHosts.computeIfAbsent(host, h -> (long) NO_POLITENESS_APPLIED);
+                final Long lastFetchTime = seenHosts.peek(host);
 
-                if (lastFetchTime != NO_POLITENESS_APPLIED) {
+                if (lastFetchTime != null) {
                     final long diff = (now.getTime() - lastFetchTime);
 
                     if (diff < config.getPolitenessDelay()) {
@@ -77,7 +78,9 @@ public class CachedPolitenessServer implements edu.uci.ics.crawler4j.PolitenessS
                         logger.debug("Applying politeness delay of {} ms for host {}", politenessDelay, host);
                     }
                 }
-                seenHosts.put(host, now.getTime());
+                // Record when the request will actually be sent, so that concurrent or pipelined
+                // requests to the same host are spaced out as well
+                seenHosts.put(host, now.getTime() + Math.max(politenessDelay, 0));
             }
 
             return politenessDelay;
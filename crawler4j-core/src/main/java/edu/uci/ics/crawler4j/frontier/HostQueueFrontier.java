@@ -0,0 +1,349 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * An in-memory {@link Frontier} which keeps one queue per host and only hands out URLs of hosts
+ * whose politeness window has elapsed.
+ * <p>
+ * Each host is either waiting in a heap ordered by the time it may be fetched next, or it has
+ * exactly one URL in flight. Once the crawler reports the URL as processed, the host is put back
+ * into the heap with a next fetch time of "now + politeness delay". As a consequence the politeness
+ * server of the {@link edu.uci.ics.crawler4j.fetcher.PageFetcher} never has to put a crawler thread
+ * to sleep, and a crawler thread waiting for work is woken up as soon as any host becomes ready.
+ * <p>
+ * Hosts are identified by {@link WebURL#getDomain()}, which is the same key the politeness servers use.
+ * The host of a processed URL is found by the handed-out {@link WebURL} instance, or else by the host
+ * key of the reported URL, never by its docid: the crawler gives a URL a new docid after a redirect.
+ * This frontier is not persistent, so resumable crawling is not supported.
+ */
+public class HostQueueFrontier implements Frontier {
+
+    protected static final Logger logger = LoggerFactory.getLogger(HostQueueFrontier.class);
+
+    /*
+     * The order of URLs within one host mirrors the key order of the Sleepycat work queues:
+     * priority first, then depth, then docid.
+     */
+    private static final Comparator<WebURL> URL_ORDER = Comparator
+            .comparingInt((WebURL url) -> url.getPriority())
+            .thenComparingInt(WebURL::getDepth)
+            .thenComparingInt(WebURL::getDocid);
+
+    private final CrawlConfig config;
+
+    protected final ReentrantLock mutex = new ReentrantLock();
+    private final Condition hostReady = mutex.newCondition();
+
+    private final Map<String, HostQueue> hostQueues = new HashMap<>();
+    private final PriorityQueue<HostQueue> readyQueues =
+            new PriorityQueue<>(Comparator.comparingLong((HostQueue queue) -> queue.nextFetchTime));
+    private final Queue<HostQueue> idleQueues = new ArrayDeque<>();
+    private final Map<WebURL, HostQueue> inFlight = new IdentityHashMap<>();
+
+    protected volatile boolean isFinished = false;
+
+    protected long scheduledPages;
+    protected long queuedPages;
+    protected long processedPages;
+
+    public HostQueueFrontier(CrawlConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public void scheduleAll(List<WebURL> urls) {
+        int maxPagesToFetch = config.getMaxPagesToFetch();
+        mutex.lock();
+        try {
+            int newScheduledPage = 0;
+            for (WebURL url : urls) {
+                if ((maxPagesToFetch > 0) &&
+                    ((scheduledPages + newScheduledPage) >= maxPagesToFetch)) {
+                    break;
+                }
+                enqueue(url);
+                newScheduledPage++;
+            }
+            scheduledPages += newScheduledPage;
+            if (newScheduledPage > 0) {
+                hostReady.signalAll();
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void schedule(WebURL url) {
+        int maxPagesToFetch = config.getMaxPagesToFetch();
+        mutex.lock();
+        try {
+            if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
+                enqueue(url);
+                scheduledPages++;
+                hostReady.signalAll();
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void enqueue(WebURL url) {
+        String host = getHostKey(url);
+        HostQueue queue = hostQueues.computeIfAbsent(host, HostQueue::new);
+        boolean wasWaiting = !queue.urls.isEmpty() || queue.inFlight;
+        queue.urls.add(url);
+        queuedPages++;
+        if (!wasWaiting) {
+            readyQueues.add(queue);
+        }
+    }
+
+    @Override
+    public void getNextURLs(int max, List<WebURL> result) {
+        mutex.lock();
+        try {
+            while (true) {
+                if (isFinished) {
+                    return;
+                }
+
+                long now = currentTimeMillis();
+                pruneIdleQueues(now);
+                while (result.size() < max && !readyQueues.isEmpty() &&
+                       readyQueues.peek().nextFetchTime <= now) {
+                    HostQueue queue = readyQueues.poll();
+                    WebURL url = queue.urls.poll();
+                    queue.inFlight = true;
+                    queuedPages--;
+                    inFlight.put(url, queue);
+                    result.add(url);
+                }
+
+                if (!result.isEmpty()) {
+                    return;
+                }
+
+                try {
+                    if (readyQueues.isEmpty()) {
+                        hostReady.await();
+                    } else {
+                        hostReady.await(readyQueues.peek().nextFetchTime - now, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException ignored) {
+                    // Do nothing
+                }
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void setProcessed(WebURL webURL) {
+        mutex.lock();
+        try {
+            processedPages++;
+            release(webURL);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Releases the host of a url which the crawler skipped, so that the next url of the host can
+     * be handed out.
+     */
+    @Override
+    public void setSkipped(WebURL webURL) {
+        mutex.lock();
+        try {
+            release(webURL);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void release(WebURL webURL) {
+        HostQueue queue = inFlight.remove(webURL);
+        if (queue == null) {
+            // The crawler may report a different WebURL instance than the one handed out,
+            // e.g. one returned by WebCrawler#handleUrlBeforeProcess
+            queue = hostQueues.get(getHostKey(webURL));
+            if (queue != null && queue.inFlight) {
+                inFlight.values().remove(queue);
+            } else {
+                queue = null;
+            }
+        }
+        if (queue == null) {
+            logger.warn("Could not find: {} in the list of assigned pages.", webURL.getURL());
+            return;
+        }
+        queue.inFlight = false;
+        queue.nextFetchTime = currentTimeMillis() + config.getPolitenessDelay();
+        if (!queue.urls.isEmpty()) {
+            readyQueues.add(queue);
+            hostReady.signalAll();
+        } else if (!queue.idle) {
+            // Keep the host around until its politeness window has elapsed,
+            // otherwise a newly scheduled URL could be handed out too early.
+            queue.idle = true;
+            idleQueues.add(queue);
+        }
+    }
+
+    private void pruneIdleQueues(long now) {
+        while (!idleQueues.isEmpty() && idleQueues.peek().nextFetchTime <= now) {
+            HostQueue queue = idleQueues.poll();
+            queue.idle = false;
+            if (queue.urls.isEmpty() && !queue.inFlight) {
+                hostQueues.remove(queue.host, queue);
+            }
+        }
+    }
+
+    /**
+     * @return the current time in milliseconds, which the politeness windows are based on
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the key under which the given URL is queued. URLs sharing a key are never fetched
+     * concurrently and are at least one politeness delay apart.
+     *
+     * @param url the url to be queued
+     * @return the host key, {@link WebURL#getDomain()} by default
+     */
+    protected String getHostKey(WebURL url) {
+        String domain = url.getDomain();
+        return domain == null ? "" : domain;
+    }
+
+    @Override
+    public long getQueueLength() {
+        mutex.lock();
+        try {
+            return queuedPages;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfAssignedPages() {
+        mutex.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfProcessedPages() {
+        mutex.lock();
+        try {
+            return processedPages;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfScheduledPages() {
+        mutex.lock();
+        try {
+            return scheduledPages;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return the number of hosts which currently have queued or in-flight URLs
+     */
+    public int getNumberOfHosts() {
+        mutex.lock();
+        try {
+            return hostQueues.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    @Override
+    public void close() {
+        mutex.lock();
+        try {
+            hostQueues.clear();
+            readyQueues.clear();
+            idleQueues.clear();
+            inFlight.clear();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void finish() {
+        mutex.lock();
+        try {
+            isFinished = true;
+            hostReady.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private static final class HostQueue {
+        private final String host;
+        private final PriorityQueue<WebURL> urls = new PriorityQueue<>(URL_ORDER);
+        private long nextFetchTime;
+        private boolean inFlight;
+        private boolean idle;
+
+        private HostQueue(String host) {
+            this.host = host;
+        }
+    }
+}
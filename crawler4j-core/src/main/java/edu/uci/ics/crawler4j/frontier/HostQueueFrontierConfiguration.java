@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.InMemoryWebURLFactory;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+
+/**
+ * Configures a {@link HostQueueFrontier} together with an {@link InMemoryDocIDServer}.
+ * Nothing but the validators for conditional requests (see {@link CrawlConfig#isConditionalGet()})
+ * is persisted, so a crawl using this configuration cannot be resumed.
+ */
+public class HostQueueFrontierConfiguration implements FrontierConfiguration {
+
+    protected static final Logger logger = LoggerFactory.getLogger(HostQueueFrontierConfiguration.class);
+
+    /**
+     * The file in the crawl storage folder the validators for conditional requests are saved to.
+     * Unlike the frontier, it is kept between crawls.
+     */
+    public static final String VALIDATORS_FILE_NAME = "validators";
+
+    private final HostQueueFrontier frontier;
+    private final InMemoryDocIDServer docIdServer;
+    private final InMemoryValidatorStore validatorStore;
+
+    public HostQueueFrontierConfiguration(CrawlConfig config) {
+        if (config.isResumableCrawling()) {
+            logger.warn("Resumable crawling is not supported by the host queue frontier " +
+                        "and will be ignored.");
+        }
+        this.docIdServer = new InMemoryDocIDServer();
+        this.frontier = new HostQueueFrontier(config);
+        this.validatorStore = config.isConditionalGet()
+                ? new InMemoryValidatorStore(Paths.get(config.getCrawlStorageFolder(), VALIDATORS_FILE_NAME))
+                : null;
+    }
+
+    @Override
+    public DocIDServer getDocIDServer() {
+        return docIdServer;
+    }
+
+    @Override
+    public Frontier getFrontier() {
+        return frontier;
+    }
+
+    @Override
+    public WebURLFactory getWebURLFactory() {
+        return new InMemoryWebURLFactory();
+    }
+
+    @Override
+    public ValidatorStore getValidatorStore() {
+        return validatorStore;
+    }
+
+    @Override
+    public void close() {
+        if (validatorStore != null) {
+            validatorStore.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A {@link DocIDServer} which keeps all assigned docids in memory.
+ */
+public class InMemoryDocIDServer implements DocIDServer {
+
+    private final Map<String, Integer> docIds = new HashMap<>();
+
+    private final Object mutex = new Object();
+
+    private int lastDocID;
+
+    @Override
+    public int getDocId(String url) {
+        synchronized (mutex) {
+            Integer docId = docIds.get(url);
+            return docId == null ? -1 : docId;
+        }
+    }
+
+    @Override
+    public int getNewDocID(String url) {
+        synchronized (mutex) {
+            // Make sure that we have not already assigned a docid for this URL
+            Integer docId = docIds.get(url);
+            if (docId != null) {
+                return docId;
+            }
+
+            ++lastDocID;
+            docIds.put(url, lastDocID);
+            return lastDocID;
+        }
+    }
+
+    @Override
+    public void addUrlAndDocId(String url, int docId) {
+        synchronized (mutex) {
+            if (docId <= lastDocID) {
+                throw new IllegalArgumentException(
+                    "Requested doc id: " + docId + " is not larger than: " + lastDocID);
+            }
+
+            // Make sure that we have not already assigned a docid for this URL
+            Integer prevDocid = docIds.get(url);
+            if (prevDocid != null) {
+                if (prevDocid == docId) {
+                    return;
+                }
+                throw new IllegalArgumentException("Doc id: " + prevDocid + " is already assigned to URL: " + url);
+            }
+
+            docIds.put(url, docId);
+            lastDocID = docId;
+        }
+    }
+
+    @Override
+    public boolean isSeenBefore(String url) {
+        return getDocId(url) != -1;
+    }
+
+    @Override
+    public int getDocCount() {
+        synchronized (mutex) {
+            return docIds.size();
+        }
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        synchronized (mutex) {
+            docIds.forEach(action::accept);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mutex) {
+            docIds.clear();
+        }
+    }
+}
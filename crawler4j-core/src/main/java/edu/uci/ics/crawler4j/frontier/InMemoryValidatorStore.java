@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A {@link ValidatorStore} which keeps all validators in memory. If a file is given, the
+ * validators of the previous crawl are loaded from it, and all validators are written back to it
+ * when the store is flushed or closed.
+ */
+public class InMemoryValidatorStore implements ValidatorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryValidatorStore.class);
+
+    private static final int MAGIC = 0x43344a56; // "C4JV"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    /* Whether entries changed since they were last written. */
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    public InMemoryValidatorStore() {
+        this.file = null;
+    }
+
+    /**
+     * @param file the file the validators are loaded from and saved to
+     */
+    public InMemoryValidatorStore(Path file) {
+        this.file = file;
+        try {
+            load();
+            logger.info("Loaded the validators of {} pages from {}", entries.size(), file);
+        } catch (NoSuchFileException e) {
+            // First crawl
+        } catch (IOException e) {
+            logger.warn("Could not load the validators from {}, all pages are fetched in full", file, e);
+            entries.clear();
+        }
+    }
+
+    @Override
+    public Validators get(WebURL url) {
+        Entry entry = entries.get(url.getDocid());
+        return entry != null && entry.url.equals(url.getURL()) ? entry.validators : null;
+    }
+
+    @Override
+    public void put(WebURL url, String eTag, String lastModified) {
+        if (eTag == null && lastModified == null) {
+            remove(url);
+        } else {
+            entries.put(url.getDocid(), new Entry(url.getURL(), new Validators(eTag, lastModified)));
+            changed.set(true);
+        }
+    }
+
+    @Override
+    public void remove(WebURL url) {
+        entries.computeIfPresent(url.getDocid(), (docId, entry) -> {
+            if (!entry.url.equals(url.getURL())) {
+                return entry;
+            }
+            changed.set(true);
+            return null;
+        });
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> consumer) {
+        new TreeMap<>(entries).forEach((docId, entry) -> consumer.accept(entry.url, docId));
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the validators to the file, unless they have not changed since they were last
+     * written.
+     */
+    @Override
+    public synchronized void flush() {
+        if (file == null || !changed.getAndSet(false)) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            changed.set(true);
+            logger.warn("Could not save the validators to {}", file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a validators file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int docId = in.readInt();
+                String url = readString(in);
+                String eTag = readString(in);
+                String lastModified = readString(in);
+                entries.put(docId, new Entry(url, new Validators(eTag, lastModified)));
+            }
+        }
+    }
+
+    /**
+     * Writes all entries to a temporary file, which then replaces the file, so that a crash does
+     * not leave a partly written file behind.
+     */
+    private void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = parent.resolve(file.getFileName() + ".tmp");
+        Map<Integer, Entry> snapshot = new TreeMap<>(entries);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Integer, Entry> entry : snapshot.entrySet()) {
+                out.writeInt(entry.getKey());
+                writeString(out, entry.getValue().url);
+                writeString(out, entry.getValue().validators.getETag());
+                writeString(out, entry.getValue().validators.getLastModified());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Saved the validators of {} pages to {}", snapshot.size(), file);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Entry {
+        private final String url;
+        private final Validators validators;
+
+        private Entry(String url, Validators validators) {
+            this.url = url;
+            this.validators = validators;
+        }
+    }
+}
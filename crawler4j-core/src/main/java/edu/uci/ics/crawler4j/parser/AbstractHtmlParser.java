@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.PageContent;
+import edu.uci.ics.crawler4j.url.TLDList;
+import edu.uci.ics.crawler4j.url.UrlResolver;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+
+/**
+ * Base class of the {@link HtmlParser}s which collect links with a {@link HtmlContentHandler}.
+ */
+public abstract class AbstractHtmlParser implements HtmlParser {
+
+    protected final CrawlConfig config;
+    protected final TLDList tldList;
+    protected final WebURLFactory factory;
+    protected final BasicURLNormalizer normalizer;
+
+    protected AbstractHtmlParser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList, WebURLFactory webURLFactory) {
+        this.config = config;
+        this.tldList = tldList;
+        this.normalizer = normalizer;
+        this.factory = webURLFactory;
+    }
+
+    /**
+     * Sets the outgoing urls found by the content handler, to be resolved against the base url or
+     * the context url on first access. Pages whose links are not followed never pay for it.
+     */
+    protected void setOutgoingUrls(HtmlParseData parsedData, String contextURL, HtmlContentHandler contentHandler) {
+        String baseURL = contentHandler.getBaseUrl();
+        List<ExtractedUrlAnchorPair> urlAnchorPairs = contentHandler.getOutgoingUrls();
+        parsedData.setOutgoingUrls(() -> getOutgoingUrls(baseURL != null ? baseURL : contextURL, urlAnchorPairs));
+    }
+
+    /**
+     * Sets the html of the page. Content spilled to a temporary file is only read if the html is
+     * asked for, which has to happen before the content is released at the end of the visit.
+     */
+    protected static void setHtml(HtmlParseData parsedData, PageContent content, Charset charset) throws IOException {
+        if (content.isInMemory()) {
+            parsedData.setHtml(content.toByteArray(), charset);
+        } else {
+            parsedData.setHtml(() -> readString(content, charset));
+        }
+    }
+
+    protected static String readString(PageContent content, Charset charset) {
+        try {
+            return content.readString(charset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected Set<WebURL> getOutgoingUrls(String contextURL, List<ExtractedUrlAnchorPair> urlAnchorPairs) {
+        Set<WebURL> outgoingUrls = new HashSet<>();
+
+        int urlCount = 0;
+        for (ExtractedUrlAnchorPair urlAnchorPair : urlAnchorPairs) {
+
+            String href = urlAnchorPair.getHref();
+            if ((href == null) || href.trim().isEmpty()) {
+                continue;
+            }
+
+            String hrefLoweredCase = href.trim().toLowerCase(Locale.ROOT);
+            if (!containsForbiddenRefTag(hrefLoweredCase)) {
+                String url = normalizer.filter(UrlResolver.resolveUrl((contextURL == null) ? "" : contextURL, href));
+                if (url != null) {
+                    WebURL webURL = factory.newWebUrl();
+                    webURL.setTldList(tldList);
+                    webURL.setURL(url);
+                    webURL.setTag(urlAnchorPair.getTag());
+                    webURL.setAnchor(urlAnchorPair.getAnchor());
+                    webURL.setAttributes(urlAnchorPair.getAttributes());
+                    outgoingUrls.add(webURL);
+                    urlCount++;
+                    if (urlCount > config.getMaxOutgoingLinksToFollow()) {
+                        break;
+                    }
+                }
+            }
+        }
+        return outgoingUrls;
+    }
+
+    protected boolean containsForbiddenRefTag(String href) {
+        return Stream.of("about:", "tel:", "data:", "whatsapp:", "javascript:", "viber:", "sms:", "android-app:", "fb-messenger:", "mailto:", "@").anyMatch(href::contains);
+    }
+}
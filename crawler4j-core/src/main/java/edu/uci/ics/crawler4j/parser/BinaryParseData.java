@@ -15,7 +15,6 @@
  */
 package edu.uci.ics.crawler4j.parser;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -64,7 +63,7 @@ public class BinaryParseData implements ParseData {
     }
 
     public void parseBinaryContentAndSetHtml(final Page page) throws Exception {
-        try (InputStream inputStream = new ByteArrayInputStream(page.getContentData());
+        try (InputStream inputStream = page.getContent().openStream();
              ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
             TransformerHandler handler =
                     getTransformerHandler(outputStream, DEFAULT_OUTPUT_FORMAT, DEFAULT_ENCODING);
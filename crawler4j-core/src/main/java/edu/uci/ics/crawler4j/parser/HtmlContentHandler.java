@@ -39,7 +39,8 @@ public class HtmlContentHandler extends DefaultHandler {
         BASE,
         META,
         BODY,
-        SCRIPT
+        SCRIPT,
+        TITLE
     }
 
     private static class HtmlFactory {
@@ -63,8 +64,12 @@ public class HtmlContentHandler extends DefaultHandler {
     private final Map<String, String> metaTags = new HashMap<>();
 
     private boolean isWithinBodyElement;
+    private final boolean collectBodyText;
     private final StringBuilder bodyText;
 
+    private boolean isWithinTitleElement;
+    private final StringBuilder titleText = new StringBuilder();
+
     private final List<ExtractedUrlAnchorPair> outgoingUrls;
 
     private ExtractedUrlAnchorPair curUrl = null;
@@ -72,6 +77,15 @@ public class HtmlContentHandler extends DefaultHandler {
     private final StringBuilder anchorText = new StringBuilder();
 
     public HtmlContentHandler() {
+        this(true);
+    }
+
+    /**
+     * @param collectBodyText whether the text within the body element is collected. Anchor texts
+     *                        are collected either way.
+     */
+    public HtmlContentHandler(boolean collectBodyText) {
+        this.collectBodyText = collectBodyText;
         isWithinBodyElement = false;
         bodyText = new StringBuilder();
         outgoingUrls = new ArrayList<>();
@@ -99,7 +113,7 @@ public class HtmlContentHandler extends DefaultHandler {
                 addToOutgoingUrls(src, localName);
             }
         } else if (element == Element.BASE) {
-            if (base != null) { // We only consider the first occurrence of the Base element.
+            if (base == null) { // We only consider the first occurrence of the Base element.
                 String href = attributes.getValue("href");
                 if (href != null) {
                     base = href;
@@ -133,6 +147,8 @@ public class HtmlContentHandler extends DefaultHandler {
             }
         } else if (element == Element.BODY) {
             isWithinBodyElement = true;
+        } else if (element == Element.TITLE) {
+            isWithinTitleElement = true;
         }
     }
 
@@ -175,19 +191,25 @@ public class HtmlContentHandler extends DefaultHandler {
             curUrl = null;
         } else if (element == Element.BODY) {
             isWithinBodyElement = false;
+        } else if (element == Element.TITLE) {
+            isWithinTitleElement = false;
         }
     }
 
     @Override
     public void characters(char[] ch, int start, int length) {
         if (isWithinBodyElement) {
-            if (bodyText.length() > 0) {
-                bodyText.append(' ');
+            if (collectBodyText) {
+                if (bodyText.length() > 0) {
+                    bodyText.append(' ');
+                }
+                bodyText.append(ch, start, length);
             }
-            bodyText.append(ch, start, length);
             if (anchorFlag) {
-                anchorText.append(new String(ch, start, length));
+                anchorText.append(ch, start, length);
             }
+        } else if (isWithinTitleElement) {
+            titleText.append(ch, start, length);
         }
     }
 
@@ -195,6 +217,13 @@ public class HtmlContentHandler extends DefaultHandler {
         return bodyText.toString();
     }
 
+    /**
+     * @return the text of the title element, or {@code null} if the page has none
+     */
+    public String getTitle() {
+        return titleText.length() == 0 ? null : titleText.toString().trim();
+    }
+
     public List<ExtractedUrlAnchorPair> getOutgoingUrls() {
         return outgoingUrls;
     }
@@ -15,35 +15,87 @@
  */
 package edu.uci.ics.crawler4j.parser;
 
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import edu.uci.ics.crawler4j.url.WebURL;
 
 public class HtmlParseData implements ParseData {
 
     private String html;
+    private byte[] rawHtml;
+    private Charset rawHtmlCharset;
+    private Supplier<String> htmlSupplier;
     private String text;
+    private Supplier<String> textSupplier;
     private String title;
     private Map<String, String> metaTags;
 
     private Set<WebURL> outgoingUrls;
+    private Supplier<Set<WebURL>> outgoingUrlsSupplier;
     private String contentCharset;
 
+    /**
+     * Returns the html of the page. If it was set with {@link #setHtml(byte[], Charset)} or
+     * {@link #setHtml(Supplier)}, it is decoded on the first call.
+     */
     public String getHtml() {
+        if (html == null && rawHtml != null) {
+            html = new String(rawHtml, rawHtmlCharset);
+            rawHtml = null;
+        } else if (html == null && htmlSupplier != null) {
+            html = htmlSupplier.get();
+            htmlSupplier = null;
+        }
         return html;
     }
 
     public void setHtml(String html) {
         this.html = html;
+        this.rawHtml = null;
+        this.htmlSupplier = null;
+    }
+
+    /**
+     * Sets the html as raw content, which is only decoded if {@link #getHtml()} is called.
+     */
+    public void setHtml(byte[] rawHtml, Charset charset) {
+        this.html = null;
+        this.rawHtml = rawHtml;
+        this.rawHtmlCharset = charset;
+        this.htmlSupplier = null;
+    }
+
+    /**
+     * Sets the html to be read on the first call of {@link #getHtml()}.
+     */
+    public void setHtml(Supplier<String> htmlSupplier) {
+        this.html = null;
+        this.rawHtml = null;
+        this.htmlSupplier = htmlSupplier;
     }
 
     public String getText() {
+        if (text == null && textSupplier != null) {
+            text = textSupplier.get();
+            textSupplier = null;
+        }
         return text;
     }
 
     public void setText(String text) {
         this.text = text;
+        this.textSupplier = null;
+    }
+
+    /**
+     * Sets the text to be extracted on the first call of {@link #getText()}.
+     */
+    public void setText(Supplier<String> textSupplier) {
+        this.text = null;
+        this.textSupplier = textSupplier;
     }
 
     public String getTitle() {
@@ -68,17 +120,30 @@ public class HtmlParseData implements ParseData {
 
     @Override
     public Set<WebURL> getOutgoingUrls() {
+        if (outgoingUrls == null && outgoingUrlsSupplier != null) {
+            outgoingUrls = outgoingUrlsSupplier.get();
+            outgoingUrlsSupplier = null;
+        }
         return outgoingUrls;
     }
 
     @Override
     public void setOutgoingUrls(Set<WebURL> outgoingUrls) {
         this.outgoingUrls = outgoingUrls;
+        this.outgoingUrlsSupplier = null;
+    }
+
+    /**
+     * Sets the outgoing urls to be resolved on the first call of {@link #getOutgoingUrls()}.
+     */
+    public void setOutgoingUrls(Supplier<Set<WebURL>> outgoingUrlsSupplier) {
+        this.outgoingUrls = null;
+        this.outgoingUrlsSupplier = outgoingUrlsSupplier;
     }
 
     @Override
     public String toString() {
-        return text;
+        return getText();
     }
 
     public void setContentCharset(String contentCharset) {
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A forgiving single pass HTML tokenizer which reports tags and text to a {@link HtmlContentHandler}.
+ * <p>
+ * It reads the page through a small buffer and never holds the whole document in memory. Element
+ * and attribute names are reported in lower case as local names. Void elements and self-closing
+ * tags are closed right away, the content of script and style elements is skipped and the content
+ * of the title element is reported as plain text. Comments, doctype declarations and processing
+ * instructions are skipped. There is no tree building: implied end tags are not reported, except
+ * that a new anchor closes an anchor which is still open. Like HTML parsers do, the body element
+ * is implied by the first content which does not belong into the head, and it lasts until the end
+ * of the document.
+ */
+final class HtmlTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ENTITY_LENGTH = 32;
+    private static final int BYTE_ORDER_MARK = '\uFEFF';
+
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "param", "source", "track", "wbr");
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    private static final Set<String> HEAD_ELEMENTS = Set.of("html", "head", "title", "base", "link", "meta",
+            "script", "style", "noscript", "template");
+
+    private final Reader reader;
+    private final HtmlContentHandler handler;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final AttributesImpl attributes = new AttributesImpl();
+    private char[] chars = new char[256];
+
+    private boolean anchorOpen;
+    private boolean bodyOpen;
+
+    HtmlTokenizer(Reader reader, HtmlContentHandler handler) {
+        this.reader = reader;
+        this.handler = handler;
+    }
+
+    void tokenize() throws IOException {
+        int c = read();
+        if (c != BYTE_ORDER_MARK) {
+            unread(c);
+        }
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                int next = read();
+                if (isLetter(next)) {
+                    flushText();
+                    startTag(next);
+                } else if (next == '/') {
+                    flushText();
+                    endTag();
+                } else if (next == '!') {
+                    flushText();
+                    declaration();
+                } else if (next == '?') {
+                    flushText();
+                    skipPast('>');
+                } else {
+                    text.append('<');
+                    unread(next);
+                }
+            } else if (c == '&') {
+                entity(text, -1);
+            } else {
+                text.append((char) c);
+            }
+        }
+        flushText();
+        if (anchorOpen) {
+            handler.endElement("", "a", "a");
+        }
+        if (bodyOpen) {
+            handler.endElement("", "body", "body");
+        }
+    }
+
+    private void startTag(int first) throws IOException {
+        int c = readName(first);
+        String tag = name.toString();
+        attributes.clear();
+        boolean selfClosing = false;
+        while (true) {
+            c = skipWhitespace(c);
+            if (c == -1 || c == '>') {
+                break;
+            }
+            if (c == '/') {
+                selfClosing = true;
+                c = read();
+                continue;
+            }
+            selfClosing = false;
+            c = attribute(c);
+        }
+
+        if ("body".equals(tag)) {
+            if (!bodyOpen) {
+                bodyOpen = true;
+                handler.startElement("", tag, tag, attributes);
+            }
+            return;
+        }
+        if (!HEAD_ELEMENTS.contains(tag)) {
+            openBody();
+        }
+        if (anchorOpen && "a".equals(tag)) {
+            handler.endElement("", "a", "a");
+        }
+        handler.startElement("", tag, tag, attributes);
+
+        if ("script".equals(tag) || "style".equals(tag)) {
+            rawText(tag, null);
+        } else if ("title".equals(tag)) {
+            rawText(tag, text);
+            emitText();
+        } else if (!selfClosing && !VOID_ELEMENTS.contains(tag)) {
+            anchorOpen |= "a".equals(tag);
+            return;
+        }
+        handler.endElement("", tag, tag);
+    }
+
+    private void endTag() throws IOException {
+        int c = read();
+        if (!isLetter(c)) {
+            // bogus comment like "</ >" or "</>"
+            if (c != '>') {
+                skipPast('>');
+            }
+            return;
+        }
+        c = readName(c);
+        if (c != '>') {
+            skipPast('>');
+        }
+        String tag = name.toString();
+        if ("body".equals(tag) || "html".equals(tag)) {
+            // content after the end of the body still counts
+            return;
+        }
+        if ("a".equals(tag)) {
+            if (!anchorOpen) {
+                return;
+            }
+            anchorOpen = false;
+        }
+        handler.endElement("", tag, tag);
+    }
+
+    private void declaration() throws IOException {
+        int c = read();
+        if (c == '-') {
+            c = read();
+            if (c == '-') {
+                skipComment();
+                return;
+            }
+        }
+        if (c != '>') {
+            skipPast('>');
+        }
+    }
+
+    private void skipComment() throws IOException {
+        int dashes = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '>' && dashes >= 2) {
+                return;
+            }
+            dashes = (c == '-') ? dashes + 1 : 0;
+        }
+    }
+
+    /**
+     * Reads the name starting with the given character into {@link #name} and returns the first
+     * character after it.
+     */
+    private int readName(int first) throws IOException {
+        name.setLength(0);
+        int c = first;
+        while (c != -1 && c != '>' && c != '/' && c != '=' && !Character.isWhitespace(c)) {
+            name.append(Character.toLowerCase((char) c));
+            c = read();
+        }
+        return c;
+    }
+
+    /**
+     * Reads one attribute starting with the given character and returns the first character after
+     * it.
+     */
+    private int attribute(int first) throws IOException {
+        int c = readName(first);
+        if (name.length() == 0) {
+            // a stray '=' without a name
+            return read();
+        }
+        String attributeName = name.toString();
+        value.setLength(0);
+        c = skipWhitespace(c);
+        if (c == '=') {
+            c = skipWhitespace(read());
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = read()) != -1 && c != quote) {
+                    if (c == '&') {
+                        entity(value, quote);
+                    } else {
+                        value.append((char) c);
+                    }
+                }
+                c = read();
+            } else {
+                while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+                    if (c == '&') {
+                        entity(value, '>');
+                    } else {
+                        value.append((char) c);
+                    }
+                    c = read();
+                }
+            }
+        }
+        // like browsers, only the first occurrence of an attribute counts
+        if (attributes.getIndex(attributeName) < 0) {
+            attributes.addAttribute("", attributeName, attributeName, "CDATA", value.toString());
+        }
+        return c;
+    }
+
+    /**
+     * Reads the content of a raw text element up to its end tag, appending it to the given
+     * builder if there is one.
+     */
+    private void rawText(String tag, StringBuilder sink) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                c = read();
+                if (c == '/') {
+                    int matched = 0;
+                    while (matched < tag.length() && (c = read()) != -1
+                            && Character.toLowerCase((char) c) == tag.charAt(matched)) {
+                        matched++;
+                    }
+                    if (matched == tag.length()) {
+                        c = read();
+                        if (c == -1 || c == '>' || c == '/' || Character.isWhitespace(c)) {
+                            if (c != '>' && c != -1) {
+                                skipPast('>');
+                            }
+                            return;
+                        }
+                    }
+                    if (sink != null) {
+                        sink.append("</").append(tag, 0, matched);
+                    }
+                } else if (sink != null) {
+                    sink.append('<');
+                }
+                unread(c);
+            } else if (sink != null) {
+                if (c == '&') {
+                    entity(sink, -1);
+                } else {
+                    sink.append((char) c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a character reference following an ampersand. Unknown or malformed references are
+     * kept as they are.
+     *
+     * @param terminator a character which ends the enclosing value, or -1
+     */
+    private void entity(StringBuilder sink, int terminator) throws IOException {
+        int start = sink.length();
+        sink.append('&');
+        int c = read();
+        while (c != -1 && c != terminator && c != ';' && sink.length() - start <= MAX_ENTITY_LENGTH
+                && (Character.isLetterOrDigit(c) || (c == '#' && sink.length() - start == 1))) {
+            sink.append((char) c);
+            c = read();
+        }
+        String reference = sink.substring(start + 1);
+        int decoded = decode(reference);
+        if (decoded < 0) {
+            unread(c);
+            return;
+        }
+        sink.setLength(start);
+        sink.appendCodePoint(decoded);
+        if (c != ';') {
+            unread(c);
+        }
+    }
+
+    private static int decode(String reference) {
+        if (reference.length() > 1 && reference.charAt(0) == '#') {
+            try {
+                int codePoint;
+                if (reference.charAt(1) == 'x' || reference.charAt(1) == 'X') {
+                    codePoint = Integer.parseInt(reference.substring(2), 16);
+                } else {
+                    codePoint = Integer.parseInt(reference.substring(1));
+                }
+                return Character.isValidCodePoint(codePoint) && codePoint != 0 ? codePoint : 0xFFFD;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        switch (reference) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return '\u00A0';
+            default:
+                return -1;
+        }
+    }
+
+    private void openBody() {
+        if (!bodyOpen) {
+            bodyOpen = true;
+            handler.startElement("", "body", "body", NO_ATTRIBUTES);
+        }
+    }
+
+    private void flushText() {
+        if (!bodyOpen) {
+            int i = 0;
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == text.length()) {
+                text.setLength(0);
+                return;
+            }
+            openBody();
+        }
+        emitText();
+    }
+
+    private void emitText() {
+        int length = text.length();
+        if (length == 0) {
+            return;
+        }
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        text.getChars(0, length, chars, 0);
+        text.setLength(0);
+        handler.characters(chars, 0, length);
+    }
+
+    private int skipWhitespace(int c) throws IOException {
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && c != end);
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Pushes back the character returned by the last {@link #read()}.
+     */
+    private void unread(int c) {
+        if (c != -1) {
+            position--;
+        }
+    }
+}
@@ -17,14 +17,19 @@ package edu.uci.ics.crawler4j.parser;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
 
 import org.apache.commons.lang3.Validate;
 
 import crawlercommons.filters.basic.BasicURLNormalizer;
 import edu.uci.ics.crawler4j.Constants;
+import edu.uci.ics.crawler4j.crawler.ContentPolicy;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.PageContent;
 import edu.uci.ics.crawler4j.url.TLDList;
 import edu.uci.ics.crawler4j.url.WebURLFactory;
 import edu.uci.ics.crawler4j.util.Net;
@@ -46,7 +51,7 @@ public class Parser {
     private final BasicURLNormalizer normalizer;
 
     public Parser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList, WebURLFactory webURLFactory) throws IOException {
-        this(config, normalizer, new TikaHtmlParser(config, normalizer, tldList, webURLFactory), tldList, webURLFactory);
+        this(config, normalizer, createHtmlParser(config, normalizer, tldList, webURLFactory), tldList, webURLFactory);
     }
 
     public Parser(CrawlConfig config, BasicURLNormalizer normalizer, HtmlParser htmlParser, TLDList tldList, WebURLFactory webURLFactory) throws IOException {
@@ -60,10 +65,43 @@ public class Parser {
         }
     }
 
+    private static HtmlParser createHtmlParser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList,
+                                               WebURLFactory webURLFactory) {
+        if (config.isStreamingHtmlParser()) {
+            return new StreamingHtmlParser(config, normalizer, tldList, webURLFactory);
+        }
+        return new TikaHtmlParser(config, normalizer, tldList, webURLFactory);
+    }
+
     public void parse(Page page) throws Exception {
+        parse(page, true);
+    }
+
+    /**
+     * Parses the page. Text, html and language are computed when they are first asked for, and so
+     * are the outgoing urls of html pages.
+     *
+     * The {@link CrawlConfig#getContentPolicy(String) content policy} of the page's type may turn
+     * off parsing, in which case the page gets an empty {@link BinaryParseData}, or link extraction.
+     *
+     * @param extractLinks whether outgoing urls are extracted from non-html content. Pass
+     *                     {@code false} if the links of the page will not be followed.
+     */
+    public void parse(Page page, boolean extractLinks) throws Exception {
+        ContentPolicy contentPolicy = config.getContentPolicy(page.getContentType());
+        if (contentPolicy != null) {
+            if (!contentPolicy.isParse()) {
+                BinaryParseData parseData = createBinaryParseData();
+                parseData.setHtml(Constants.EMPTY_HTML_TAGS);
+                page.setParseData(parseData);
+                return;
+            }
+            extractLinks = extractLinks && contentPolicy.isExtractLinks();
+        }
+
         if (Util.hasBinaryContent(page.getContentType())) { // BINARY
 
-            if (!config.isIncludeBinaryContentInCrawling()) {
+            if (contentPolicy == null && !config.isIncludeBinaryContentInCrawling()) {
                 throw new NotAllowedContentException();
             }
 
@@ -77,24 +115,30 @@ public class Parser {
             String html = parseData.getHtml();
             Validate.validState(html != null//
                     , "BinaryParseData.parseBinaryContentAndSetHtml(...) should initialize the html value");
-            parseData.setOutgoingUrls(net.extractUrls(html));
+            if (extractLinks) {
+                parseData.setOutgoingUrls(net.extractUrls(html));
+            }
             page.setParseData(parseData);
 
         } else if (Util.hasCssTextContent(page.getContentType())) { // text/css
 
             CssParseData parseData = createCssParseData();
             setTextContent(parseData, page);
-            parseData.parseAndSetOutgoingUrls(page);
+            if (extractLinks) {
+                parseData.parseAndSetOutgoingUrls(page);
+            }
             page.setParseData(parseData);
 
         } else if (Util.hasPlainTextContent(page.getContentType())) { // plain Text
 
             TextParseData parseData = createTextParseData();
             setTextContent(parseData, page);
-            // Allow the same "moment" to parse its content with the Page-object as context.
-            parseData.parseAndSetOutgoingUrls(page);
-            // Behavior kept for backwards compatibility -> also identical to the handling of binary content
-            parseData.setOutgoingUrls(net.extractUrls(parseData.getTextContent()));
+            if (extractLinks) {
+                // Allow the same "moment" to parse its content with the Page-object as context.
+                parseData.parseAndSetOutgoingUrls(page);
+                // Behavior kept for backwards compatibility -> also identical to the handling of binary content
+                parseData.setOutgoingUrls(net.extractUrls(parseData.getTextContent()));
+            }
             page.setParseData(parseData);
 
         } else { // isHTML
@@ -107,7 +151,7 @@ public class Parser {
 
             if (config.isLanguageDetection()) {
                 // Please note that identifying language takes less than 10 milliseconds
-                page.setLanguage(languageDetector.detect(parsedData.getText()));
+                page.setLanguage(() -> languageDetector.detect(parsedData.getText()));
             } else {
                 page.setLanguage("");
             }
@@ -116,12 +160,27 @@ public class Parser {
         }
     }
 
+    /**
+     * Sets the text content of the page. Content spilled to a temporary file is only read if the
+     * text is asked for, which has to happen before the content is released at the end of the visit.
+     */
     private void setTextContent(TextParseData parseData, Page page)
-            throws UnsupportedEncodingException {
+            throws IOException {
+        Charset charset;
         if (page.getContentCharset() == null) {
-            parseData.setTextContent(new String(page.getContentData(), StandardCharsets.UTF_8));
+            charset = StandardCharsets.UTF_8;
+        } else {
+            try {
+                charset = Charset.forName(page.getContentCharset());
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                throw new UnsupportedEncodingException(page.getContentCharset());
+            }
+        }
+        PageContent content = page.getContent();
+        if (content.isInMemory()) {
+            parseData.setTextContent(content.toByteArray(), charset);
         } else {
-            parseData.setTextContent(new String(page.getContentData(), page.getContentCharset()));
+            parseData.setTextContent(() -> AbstractHtmlParser.readString(content, charset));
         }
     }
 
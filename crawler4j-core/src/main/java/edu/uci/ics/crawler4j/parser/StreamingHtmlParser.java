@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.PageContent;
+import edu.uci.ics.crawler4j.crawler.exceptions.ParseException;
+import edu.uci.ics.crawler4j.url.TLDList;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+
+/**
+ * A lightweight {@link HtmlParser} which extracts links, base, meta tags, title and (optionally)
+ * the body text in a single streaming pass with {@link HtmlTokenizer}. Unlike
+ * {@link TikaHtmlParser} it builds no DOM and does not decode the page into a String. The html,
+ * the body text and the resolved outgoing urls of the resulting {@link HtmlParseData} are only
+ * computed if they are asked for; the text takes a second pass over the content. Content spilled
+ * to a temporary file is streamed from it and never read into memory as a whole by the parser.
+ */
+public class StreamingHtmlParser extends AbstractHtmlParser {
+    protected static final Logger logger = LoggerFactory.getLogger(StreamingHtmlParser.class);
+
+    /** Number of bytes searched for a meta charset declaration, as in the HTML prescan. */
+    private static final int CHARSET_PRESCAN_LENGTH = 1024;
+
+    private final boolean extractText;
+
+    public StreamingHtmlParser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList, WebURLFactory webURLFactory) {
+        this(config, normalizer, tldList, webURLFactory, config.isExtractHtmlText());
+    }
+
+    public StreamingHtmlParser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList, WebURLFactory webURLFactory,
+                               boolean extractText) {
+        super(config, normalizer, tldList, webURLFactory);
+        this.extractText = extractText;
+    }
+
+    @Override
+    public HtmlParseData parse(Page page, String contextURL) throws ParseException {
+        PageContent content = page.getContent();
+        HtmlContentHandler contentHandler = new HtmlContentHandler(false);
+        Charset charset;
+        try {
+            charset = chooseCharset(page, readPrefix(content));
+            tokenize(content, charset, contentHandler);
+        } catch (IOException | RuntimeException e) {
+            logger.error("{}, while parsing: {}", e.getMessage(), page.getWebURL().getURL());
+            throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
+        }
+
+        HtmlParseData parsedData = new HtmlParseData();
+        parsedData.setContentCharset(charset.name());
+        if (extractText) {
+            parsedData.setText(() -> collectText(content, charset));
+        } else {
+            parsedData.setText("");
+        }
+        parsedData.setTitle(contentHandler.getTitle());
+        parsedData.setMetaTags(contentHandler.getMetaTags());
+        setOutgoingUrls(parsedData, contextURL, contentHandler);
+        try {
+            setHtml(parsedData, content, charset);
+        } catch (IOException e) {
+            throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
+        }
+        return parsedData;
+    }
+
+    /**
+     * Collects the body text in a second pass, which only runs if the text is asked for.
+     */
+    private static String collectText(PageContent content, Charset charset) {
+        HtmlContentHandler contentHandler = new HtmlContentHandler(true);
+        try {
+            tokenize(content, charset, contentHandler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return contentHandler.getBodyText().trim();
+    }
+
+    private static void tokenize(PageContent content, Charset charset, HtmlContentHandler contentHandler) throws IOException {
+        try (Reader reader = new InputStreamReader(content.openStream(), charset)) {
+            new HtmlTokenizer(reader, contentHandler).tokenize();
+        }
+    }
+
+    /**
+     * Reads the start of the content, which is all that {@link #chooseCharset(Page, byte[])} looks at.
+     */
+    private static byte[] readPrefix(PageContent content) throws IOException {
+        try (InputStream in = content.openStream()) {
+            return in.readNBytes(CHARSET_PRESCAN_LENGTH);
+        }
+    }
+
+    /**
+     * Uses the charset of the response, a byte order mark or a meta charset declaration near the
+     * start of the page, in that order. Falls back to UTF-8. Only the first
+     * {@value #CHARSET_PRESCAN_LENGTH} bytes of the content are passed in.
+     */
+    protected Charset chooseCharset(Page page, byte[] content) {
+        Charset charset = forName(page.getContentCharset());
+        if (charset != null) {
+            return charset;
+        }
+        if (content.length >= 3 && (content[0] & 0xFF) == 0xEF && (content[1] & 0xFF) == 0xBB && (content[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (content.length >= 2 && (((content[0] & 0xFF) == 0xFE && (content[1] & 0xFF) == 0xFF)
+                || ((content[0] & 0xFF) == 0xFF && (content[1] & 0xFF) == 0xFE))) {
+            return StandardCharsets.UTF_16;
+        }
+        charset = forName(prescanCharset(content));
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    /**
+     * Looks for {@code charset=} in the first bytes of the page, which covers both
+     * {@code <meta charset="...">} and the http-equiv content type.
+     */
+    private static String prescanCharset(byte[] content) {
+        int end = Math.min(content.length, CHARSET_PRESCAN_LENGTH);
+        byte[] key = {'c', 'h', 'a', 'r', 's', 'e', 't'};
+        outer:
+        for (int i = 0; i + key.length < end; i++) {
+            for (int k = 0; k < key.length; k++) {
+                if ((content[i + k] | 0x20) != key[k]) {
+                    continue outer;
+                }
+            }
+            int pos = i + key.length;
+            while (pos < end && content[pos] == ' ') {
+                pos++;
+            }
+            if (pos >= end || content[pos] != '=') {
+                continue;
+            }
+            pos++;
+            while (pos < end && (content[pos] == ' ' || content[pos] == '"' || content[pos] == '\'')) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < end && (Character.isLetterOrDigit(content[pos]) || content[pos] == '-' || content[pos] == '_'
+                    || content[pos] == ':' || content[pos] == '.')) {
+                pos++;
+            }
+            if (pos > start) {
+                return new String(content, start, pos - start, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    private static Charset forName(String charsetName) {
+        if (charsetName == null || charsetName.isEmpty()) {
+            return null;
+        }
+        try {
+            return Charset.forName(charsetName);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
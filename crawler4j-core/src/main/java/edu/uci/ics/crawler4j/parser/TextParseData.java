@@ -15,8 +15,10 @@
  */
 package edu.uci.ics.crawler4j.parser;
 
+import java.nio.charset.Charset;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import edu.uci.ics.crawler4j.crawler.Page;
 import edu.uci.ics.crawler4j.url.WebURL;
@@ -24,6 +26,9 @@ import edu.uci.ics.crawler4j.url.WebURL;
 public class TextParseData implements ParseData {
 
     private String textContent;
+    private byte[] rawTextContent;
+    private Charset rawTextContentCharset;
+    private Supplier<String> textContentSupplier;
     private Set<WebURL> outgoingUrls = new HashSet<>();
     
     
@@ -32,12 +37,45 @@ public class TextParseData implements ParseData {
         // -> if the Parser exhibits this behavior (not in all cases), then setOutgoingUrls() will be called later on...
     }
     
+    /**
+     * Returns the text content. If it was set with {@link #setTextContent(byte[], Charset)} or
+     * {@link #setTextContent(Supplier)}, it is decoded on the first call.
+     */
     public String getTextContent() {
+        if (textContent == null && rawTextContent != null) {
+            textContent = new String(rawTextContent, rawTextContentCharset);
+            rawTextContent = null;
+        } else if (textContent == null && textContentSupplier != null) {
+            textContent = textContentSupplier.get();
+            textContentSupplier = null;
+        }
         return textContent;
     }
 
     public void setTextContent(String textContent) {
         this.textContent = textContent;
+        this.rawTextContent = null;
+        this.textContentSupplier = null;
+    }
+
+    /**
+     * Sets the text content as raw content, which is only decoded if {@link #getTextContent()} is
+     * called.
+     */
+    public void setTextContent(byte[] rawTextContent, Charset charset) {
+        this.textContent = null;
+        this.rawTextContent = rawTextContent;
+        this.rawTextContentCharset = charset;
+        this.textContentSupplier = null;
+    }
+
+    /**
+     * Sets the text content to be read on the first call of {@link #getTextContent()}.
+     */
+    public void setTextContent(Supplier<String> textContentSupplier) {
+        this.textContent = null;
+        this.rawTextContent = null;
+        this.textContentSupplier = textContentSupplier;
     }
 
     @Override
@@ -52,6 +90,6 @@ public class TextParseData implements ParseData {
 
     @Override
     public String toString() {
-        return textContent;
+        return getTextContent();
     }
 }
@@ -15,17 +15,14 @@
  */
 package edu.uci.ics.crawler4j.parser;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Set;
-import java.util.stream.Stream;
+import java.nio.charset.UnsupportedCharsetException;
 
 import crawlercommons.filters.basic.BasicURLNormalizer;
-import edu.uci.ics.crawler4j.url.UrlResolver;
 import edu.uci.ics.crawler4j.url.WebURLFactory;
 import org.apache.tika.metadata.DublinCore;
 import org.apache.tika.metadata.Metadata;
@@ -39,28 +36,19 @@ import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.Page;
 import edu.uci.ics.crawler4j.crawler.exceptions.ParseException;
 import edu.uci.ics.crawler4j.url.TLDList;
-import edu.uci.ics.crawler4j.url.WebURL;
 
-public class TikaHtmlParser implements edu.uci.ics.crawler4j.parser.HtmlParser {
+public class TikaHtmlParser extends AbstractHtmlParser {
     protected static final Logger logger = LoggerFactory.getLogger(TikaHtmlParser.class);
 
-    private final CrawlConfig config;
-    private final TLDList tldList;
-
     private final HtmlParser htmlParser;
     private final ParseContext parseContext;
-    private final WebURLFactory factory;
-    private final BasicURLNormalizer normalizer;
 
     public TikaHtmlParser(CrawlConfig config, BasicURLNormalizer normalizer, TLDList tldList, WebURLFactory webURLFactory) {
-        this.config = config;
-        this.tldList = tldList;
-        this.normalizer = normalizer;
+        super(config, normalizer, tldList, webURLFactory);
 
         htmlParser = new HtmlParser();
         parseContext = new ParseContext();
         parseContext.set(HtmlMapper.class, new AllTagMapper());
-        this.factory = webURLFactory;
     }
 
     public HtmlParseData parse(Page page, String contextURL) throws ParseException {
@@ -73,7 +61,7 @@ public class TikaHtmlParser implements edu.uci.ics.crawler4j.parser.HtmlParser {
             metadata.add(Metadata.CONTENT_TYPE, page.getContentType());
         }
 
-        try (InputStream inputStream = new ByteArrayInputStream(page.getContentData())) {
+        try (InputStream inputStream = page.getContent().openStream()) {
             htmlParser.parse(inputStream, contentHandler, metadata, parseContext);
         } catch (Exception e) {
             logger.error("{}, while parsing: {}", e.getMessage(), page.getWebURL().getURL());
@@ -87,65 +75,23 @@ public class TikaHtmlParser implements edu.uci.ics.crawler4j.parser.HtmlParser {
         parsedData.setTitle(metadata.get(DublinCore.TITLE));
         parsedData.setMetaTags(contentHandler.getMetaTags());
 
-        try {
-            Set<WebURL> outgoingUrls = getOutgoingUrls(contextURL, contentHandler);
-            parsedData.setOutgoingUrls(outgoingUrls);
+        setOutgoingUrls(parsedData, contextURL, contentHandler);
 
+        try {
             if (page.getContentCharset() == null) {
-                parsedData.setHtml(new String(page.getContentData(), StandardCharsets.UTF_8));
+                setHtml(parsedData, page.getContent(), StandardCharsets.UTF_8);
             } else {
-                parsedData.setHtml(new String(page.getContentData(), page.getContentCharset()));
+                setHtml(parsedData, page.getContent(), Charset.forName(page.getContentCharset()));
             }
 
             return parsedData;
-        } catch (UnsupportedEncodingException e) {
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException | IOException e) {
             logger.error("error parsing the html: " + page.getWebURL().getURL(), e);
             throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
         }
 
     }
 
-    private Set<WebURL> getOutgoingUrls(String contextURL, HtmlContentHandler contentHandler) {
-        Set<WebURL> outgoingUrls = new HashSet<>();
-
-        String baseURL = contentHandler.getBaseUrl();
-        if (baseURL != null) {
-            contextURL = baseURL;
-        }
-
-        int urlCount = 0;
-        for (ExtractedUrlAnchorPair urlAnchorPair : contentHandler.getOutgoingUrls()) {
-
-            String href = urlAnchorPair.getHref();
-            if ((href == null) || href.trim().isEmpty()) {
-                continue;
-            }
-
-            String hrefLoweredCase = href.trim().toLowerCase(Locale.ROOT);
-            if (!containsForbiddenRefTag(hrefLoweredCase)) {
-                String url = normalizer.filter(UrlResolver.resolveUrl((contextURL == null) ? "" : contextURL, href));
-                if (url != null) {
-                    WebURL webURL = factory.newWebUrl();
-                    webURL.setTldList(tldList);
-                    webURL.setURL(url);
-                    webURL.setTag(urlAnchorPair.getTag());
-                    webURL.setAnchor(urlAnchorPair.getAnchor());
-                    webURL.setAttributes(urlAnchorPair.getAttributes());
-                    outgoingUrls.add(webURL);
-                    urlCount++;
-                    if (urlCount > config.getMaxOutgoingLinksToFollow()) {
-                        break;
-                    }
-                }
-            }
-        }
-        return outgoingUrls;
-    }
-
-    protected boolean containsForbiddenRefTag(String href) {
-        return Stream.of("about:", "tel:", "data:", "whatsapp:", "javascript:", "viber:", "sms:", "android-app:", "fb-messenger:", "mailto:", "@").anyMatch(href::contains);
-    }
-
     private String chooseEncoding(Page page, Metadata metadata) {
         String pageCharset = page.getContentCharset();
         if (pageCharset == null || pageCharset.isEmpty()) {
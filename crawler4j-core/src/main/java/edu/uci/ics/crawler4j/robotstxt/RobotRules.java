@@ -26,17 +26,28 @@ public class RobotRules {
     private static final long EXPIRATION_DELAY = TimeUnit.MILLISECONDS.convert(1, TimeUnit.DAYS);
 
     private final long timeFetched;
-    private long timeLastAccessed;
+    private volatile long timeLastAccessed;
 
     private final BaseRobotRules wrapped;
 
     public RobotRules(BaseRobotRules srr) {
+        this(srr, System.currentTimeMillis());
+    }
+
+    public RobotRules(BaseRobotRules srr, long timeFetched) {
         this.wrapped = srr;
-        this.timeFetched = System.currentTimeMillis();
+        this.timeFetched = timeFetched;
     }
 
     public boolean needsRefetch() {
-        return ((System.currentTimeMillis() - timeFetched) > EXPIRATION_DELAY);
+        return System.currentTimeMillis() > getExpiryTime();
+    }
+
+    /**
+     * @return the point in time after which these rules have to be fetched again
+     */
+    public long getExpiryTime() {
+        return timeFetched + EXPIRATION_DELAY;
     }
 
     public boolean isAllowed(String url) {
@@ -47,4 +58,12 @@ public class RobotRules {
     public long getTimeLastAccessed() {
         return timeLastAccessed;
     }
+
+    public long getTimeFetched() {
+        return timeFetched;
+    }
+
+    public BaseRobotRules getRules() {
+        return wrapped;
+    }
 }
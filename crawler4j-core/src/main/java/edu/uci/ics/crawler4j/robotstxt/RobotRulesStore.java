@@ -0,0 +1,325 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.robotstxt;
+
+import crawlercommons.robots.BaseRobotRules;
+import crawlercommons.robots.SimpleRobotRules;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only file of parsed robots.txt rules, so that a resumed crawl does not have to fetch
+ * robots.txt again for every host. Only the file offset of the latest record per host is kept in
+ * memory. Rules that need a refetch are skipped when the file is opened and dropped when it is
+ * compacted.
+ */
+final class RobotRulesStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotRulesStore.class);
+
+    private static final int MAGIC = 0x43344a52; // "C4JR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /* Far above any real record, which holds the rules of one robots.txt. */
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private final Path file;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    /* Guards writes, closing and compacting. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /* Null once closed. */
+    private volatile FileChannel channel;
+    private long size;
+
+    RobotRulesStore(Path file) throws IOException {
+        this.file = file;
+        int records = open();
+        if (records > 2 * offsets.size() + 1000) {
+            compact();
+        }
+        logger.info("Loaded robots.txt rules for {} hosts from {}", offsets.size(), file);
+    }
+
+    /**
+     * @return the stored rules of the host, {@code null} if there are none or they need a refetch
+     */
+    RobotRules get(String host) {
+        Long offset = offsets.get(host);
+        FileChannel current = channel;
+        if (offset == null || current == null) {
+            return null;
+        }
+        try {
+            RobotRules rules = read(current, offset).rules;
+            return rules.needsRefetch() ? null : rules;
+        } catch (ClosedChannelException e) {
+            // closed concurrently
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not read the robots.txt rules of {} from {}", host, file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the rules of the host. Rules of a parser other than {@link SimpleRobotRules} cannot
+     * be stored and are ignored.
+     */
+    void put(String host, RobotRules rules) {
+        if (!(rules.getRules() instanceof SimpleRobotRules)) {
+            return;
+        }
+        byte[] record;
+        try {
+            record = encode(host, rules);
+        } catch (IOException e) {
+            // e.g. a rule longer than 64k
+            logger.warn("Could not store the robots.txt rules of {}", host, e);
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            long offset = size;
+            write(channel, ByteBuffer.wrap(record), offset);
+            size += record.length;
+            offsets.put(host, offset);
+        } catch (IOException e) {
+            logger.warn("Could not store the robots.txt rules of {} in {}", host, file, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    int size() {
+        return offsets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Opens the file and indexes its records. A record cut off by a crash is truncated.
+     *
+     * @return the number of records in the file
+     */
+    private int open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.truncate(0);
+            write(channel, header, 0);
+            size = HEADER_SIZE;
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a robots.txt rules file: " + file);
+        }
+
+        int records = 0;
+        long offset = HEADER_SIZE;
+        long end = channel.size();
+        while (offset < end) {
+            Record record;
+            try {
+                record = read(channel, offset);
+            } catch (EOFException e) {
+                logger.warn("Truncating incomplete robots.txt rules record at {} in {}", offset, file);
+                channel.truncate(offset);
+                break;
+            }
+            records++;
+            if (record.rules.needsRefetch()) {
+                offsets.remove(record.host);
+            } else {
+                offsets.put(record.host, offset);
+            }
+            offset += record.length;
+        }
+        size = offset;
+        return records;
+    }
+
+    /**
+     * Rewrites the file with only the latest valid record per host.
+     */
+    private void compact() throws IOException {
+        writeLock.lock();
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Map<String, Long> compacted = new ConcurrentHashMap<>();
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                long position = write(out, header, 0);
+                for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                    Record record = read(channel, entry.getValue());
+                    if (record.rules.needsRefetch()) {
+                        continue;
+                    }
+                    compacted.put(entry.getKey(), position);
+                    position += write(out, ByteBuffer.wrap(encode(record.host, record.rules)), position);
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            size = channel.size();
+            offsets.clear();
+            offsets.putAll(compacted);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Record read(FileChannel channel, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, offset);
+        int recordLength = length.getInt(0);
+        if (recordLength < 0 || recordLength > MAX_RECORD_LENGTH) {
+            throw new IOException("Corrupt robots.txt rules record at " + offset + " in " + file);
+        }
+        if (recordLength > channel.size() - offset - 4) {
+            throw new EOFException();
+        }
+        ByteBuffer body = ByteBuffer.allocate(recordLength);
+        readFully(channel, body, offset + 4);
+        return decode(body.array(), 4 + recordLength);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static long write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static byte[] encode(String host, RobotRules robotRules) throws IOException {
+        SimpleRobotRules rules = (SimpleRobotRules) robotRules.getRules();
+        List<SimpleRobotRules.RobotRule> ruleList = rules.getRobotRules();
+        SimpleRobotRules.RobotRulesMode mode;
+        if (rules.isAllowNone()) {
+            mode = SimpleRobotRules.RobotRulesMode.ALLOW_NONE;
+        } else if (rules.isAllowAll() && ruleList.isEmpty()) {
+            mode = SimpleRobotRules.RobotRulesMode.ALLOW_ALL;
+        } else {
+            mode = SimpleRobotRules.RobotRulesMode.ALLOW_SOME;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length, filled in below
+        out.writeUTF(host);
+        out.writeLong(robotRules.getTimeFetched());
+        out.writeByte(mode.ordinal());
+        out.writeLong(rules.getCrawlDelay());
+        out.writeBoolean(rules.isDeferVisits());
+        out.writeInt(ruleList.size());
+        for (SimpleRobotRules.RobotRule rule : ruleList) {
+            out.writeUTF(rule.getPrefix());
+            out.writeBoolean(rule.isAllow());
+        }
+        List<String> sitemaps = rules.getSitemaps();
+        out.writeInt(sitemaps.size());
+        for (String sitemap : sitemaps) {
+            out.writeUTF(sitemap);
+        }
+        out.flush();
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length - 4);
+        return record;
+    }
+
+    private static Record decode(byte[] body, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        String host = in.readUTF();
+        long timeFetched = in.readLong();
+        SimpleRobotRules rules = new SimpleRobotRules(SimpleRobotRules.RobotRulesMode.values()[in.readByte()]);
+        rules.setCrawlDelay(in.readLong());
+        rules.setDeferVisits(in.readBoolean());
+        int ruleCount = in.readInt();
+        for (int i = 0; i < ruleCount; i++) {
+            String prefix = in.readUTF();
+            rules.addRule(prefix, in.readBoolean());
+        }
+        int sitemapCount = in.readInt();
+        for (int i = 0; i < sitemapCount; i++) {
+            rules.addSitemap(in.readUTF());
+        }
+        return new Record(host, new RobotRules(rules, timeFetched), length);
+    }
+
+    private static final class Record {
+        private final String host;
+        private final RobotRules rules;
+        private final int length;
+
+        private Record(String host, RobotRules rules, int length) {
+            this.host = host;
+            this.rules = rules;
+            this.length = length;
+        }
+    }
+}
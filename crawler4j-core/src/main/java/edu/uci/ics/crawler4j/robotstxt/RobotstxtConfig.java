@@ -41,6 +41,18 @@ public class RobotstxtConfig {
      */
     private int cacheSize = 500;
 
+    /**
+     * If the fetched rules should be saved in the crawl storage folder, so that a resumed crawl
+     * does not fetch robots.txt again. Only used if resumable crawling is enabled.
+     */
+    private boolean persistent = false;
+
+    /**
+     * Number of threads fetching robots.txt in the background for newly discovered hosts, so that
+     * crawler threads do not wait for it. Zero fetches robots.txt on the crawler threads.
+     */
+    private int prefetchThreads = 0;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -72,4 +84,20 @@ public class RobotstxtConfig {
     public void setSkipCheckForSeeds(boolean skipCheckForSeeds) {
         this.skipCheckForSeeds = skipCheckForSeeds;
     }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
 }
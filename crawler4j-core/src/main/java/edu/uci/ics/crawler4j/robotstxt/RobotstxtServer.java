@@ -29,9 +29,12 @@ import edu.uci.ics.crawler4j.url.WebURLFactory;
 import edu.uci.ics.crawler4j.util.Util;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.NoHttpResponseException;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.SocketException;
@@ -39,14 +42,29 @@ import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class RobotstxtServer {
 
     private static final Logger logger = LoggerFactory.getLogger(RobotstxtServer.class);
 
+    /** Name of the file the rules are saved to in the crawl storage folder. */
+    public static final String FILE_NAME = "robotstxt.rules";
+
     protected BaseRobotsParser ruleParser;
 
     protected WebURLFactory factory;
@@ -55,15 +73,57 @@ public class RobotstxtServer {
 
     protected CrawlConfig crawlConfig;
 
-    protected final Map<String, RobotRules> cache = new HashMap<>();
+    /**
+     * Robots rules per host. Bounded by {@link RobotstxtConfig#getCacheSize()}, entries expire once
+     * {@link RobotRules#needsRefetch()} would report them as stale.
+     */
+    private final Cache<String, RobotRules> rulesCache;
+
+    /**
+     * A map view of the cached robots rules per host. Writes go to the bounded cache, so entries
+     * may be evicted or expire at any time.
+     */
+    protected final Map<String, RobotRules> cache;
+
+    /**
+     * Fetches of robots.txt currently in progress, so that threads missing on the same host wait
+     * for the one fetch instead of starting their own.
+     */
+    private final ConcurrentMap<String, CompletableFuture<RobotRules>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
 
     protected PageFetcher pageFetcher;
 
+    private RobotRulesStore store;
+
+    /** Fetches robots.txt for {@link #allowsAsync(WebURL)}, {@code null} if prefetching is disabled. */
+    private final ExecutorService prefetchExecutor;
+
     public RobotstxtServer(RobotstxtConfig config, PageFetcher pageFetcher, WebURLFactory factory) {
         this.config = config;
         this.pageFetcher = pageFetcher;
         this.factory = factory;
         this.ruleParser = new SimpleRobotRulesParser();
+        this.rulesCache = new Cache2kBuilder<String, RobotRules>() {
+        }
+                .entryCapacity(config.getCacheSize())
+                .expiryPolicy((host, rules, startTime, currentEntry) -> rules.getExpiryTime())
+                .build();
+        this.cache = rulesCache.asMap();
+        if (config.getPrefetchThreads() > 0) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.prefetchExecutor = Executors.newFixedThreadPool(config.getPrefetchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "Crawler4j-robotstxt-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.prefetchExecutor = null;
+        }
     }
 
     private static String getHost(URL url) {
@@ -97,17 +157,7 @@ public class RobotstxtServer {
             URL url = new URL(webURL.getURL());
             String host = getHost(url);
 
-            RobotRules rule = cache.get(host);
-
-            if (rule != null && rule.needsRefetch()) {
-                synchronized (cache) {
-                    cache.remove(host);
-                    rule = null;
-                }
-            }
-            if (rule == null) {
-                rule = fetchDirectives(url);
-            }
+            RobotRules rule = getRules(host, url);
             return rule.isAllowed(webURL.getURL());
         } catch (MalformedURLException e) {
             logger.error("Bad URL in Robots.txt: " + webURL.getURL(), e);
@@ -119,6 +169,187 @@ public class RobotstxtServer {
         return true;
     }
 
+    /**
+     * Returns the sitemaps listed in the robots.txt of the url's host, fetching it if necessary.
+     *
+     * @return the urls of the sitemaps, empty if there are none or robots.txt is not obeyed
+     * @throws InterruptedException
+     */
+    public List<String> getSitemaps(WebURL webURL) throws InterruptedException {
+        if (!config.isEnabled()) {
+            return Collections.emptyList();
+        }
+        try {
+            URL url = new URL(webURL.getURL());
+            return getRules(getHost(url), url).getRules().getSitemaps();
+        } catch (MalformedURLException e) {
+            logger.error("Bad URL in Robots.txt: " + webURL.getURL(), e);
+        } catch (URISyntaxException e) {
+            logger.error("Bad URL to Robots.txt: " + webURL.getURL(), e);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Checks the url like {@link #allows(WebURL)}, without waiting for robots.txt to be fetched if
+     * {@link RobotstxtConfig#getPrefetchThreads()} is set. If the rules of the host are known, the
+     * returned future is already complete, otherwise it completes once robots.txt has been fetched
+     * by the prefetch pool. Without a prefetch pool, the check is done on the calling thread.
+     */
+    public CompletableFuture<Boolean> allowsAsync(WebURL webURL) {
+        if (!config.isEnabled()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (prefetchExecutor == null) {
+            try {
+                return CompletableFuture.completedFuture(allows(webURL));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final String target = webURL.getURL();
+        final URL url;
+        try {
+            url = new URL(target);
+        } catch (MalformedURLException e) {
+            logger.error("Bad URL in Robots.txt: " + target, e);
+            return CompletableFuture.completedFuture(true);
+        }
+        final String host = getHost(url);
+
+        RobotRules rule = getCachedRules(host);
+        if (rule != null) {
+            return CompletableFuture.completedFuture(rule.isAllowed(target));
+        }
+        misses.increment();
+
+        final CompletableFuture<RobotRules> pending = new CompletableFuture<>();
+        CompletableFuture<RobotRules> inFlight = loading.putIfAbsent(host, pending);
+        if (inFlight == null) {
+            inFlight = pending;
+            try {
+                prefetchExecutor.execute(() -> {
+                    try {
+                        load(host, url, pending);
+                    } catch (Throwable e) {
+                        // passed on to the callers through the future
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                loading.remove(host, pending);
+                pending.completeExceptionally(e);
+            }
+        }
+        return inFlight.handle((rules, e) -> {
+            if (e == null) {
+                return rules.isAllowed(target);
+            }
+            Throwable cause = (e instanceof CompletionException) ? e.getCause() : e;
+            if (cause instanceof URISyntaxException) {
+                logger.error("Bad URL to Robots.txt: " + target, cause);
+                return true;
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * @return the cached rules of the host, {@code null} if there are none or they need a refetch
+     */
+    private RobotRules getCachedRules(String host) {
+        RobotRules rule = rulesCache.peek(host);
+        if (rule != null && !rule.needsRefetch()) {
+            hits.increment();
+            return rule;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cached rules for the given host, fetching its robots.txt if necessary. Concurrent
+     * misses on the same host share a single fetch.
+     */
+    private RobotRules getRules(String host, URL url) throws InterruptedException, URISyntaxException {
+        RobotRules rule = getCachedRules(host);
+        if (rule != null) {
+            return rule;
+        }
+        misses.increment();
+
+        CompletableFuture<RobotRules> pending = new CompletableFuture<>();
+        CompletableFuture<RobotRules> inFlight = loading.putIfAbsent(host, pending);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        return load(host, url, pending);
+    }
+
+    /**
+     * Loads the rules of the host from the store or by fetching robots.txt, and completes the
+     * future registered for it in {@link #loading}.
+     */
+    private RobotRules load(String host, URL url, CompletableFuture<RobotRules> pending)
+            throws InterruptedException, URISyntaxException {
+        try {
+            // Another thread may have finished loading between our lookup and registering the fetch
+            RobotRules rule = rulesCache.peek(host);
+            if ((rule == null || rule.needsRefetch()) && store != null) {
+                rule = store.get(host);
+                if (rule != null) {
+                    rulesCache.put(host, rule);
+                }
+            }
+            if (rule == null || rule.needsRefetch()) {
+                long start = System.nanoTime();
+                rule = fetchDirectives(url);
+                loads.increment();
+                loadTimeNanos.add(System.nanoTime() - start);
+                rulesCache.put(host, rule);
+                if (store != null) {
+                    store.put(host, rule);
+                }
+            }
+            long crawlDelay = rule.getRules().getCrawlDelay();
+            if (crawlDelay > 0) {
+                pageFetcher.getPolitenessServer().setCrawlDelay(host, crawlDelay);
+            }
+            pending.complete(rule);
+            return rule;
+        } catch (Throwable e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(host, pending);
+        }
+    }
+
+    private static RobotRules await(CompletableFuture<RobotRules> inFlight)
+            throws InterruptedException, URISyntaxException {
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                // the loading thread halted the crawl, this one has to stop as well
+                throw new InterruptedException(cause.getMessage());
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private RobotRules fetchDirectives(URL url) throws InterruptedException, URISyntaxException {
         WebURL robotsTxtUrl = factory.newWebUrl();
         String host = getHost(url);
@@ -131,7 +362,8 @@ public class RobotstxtServer {
         PageFetchResult fetchResult = null;
         try {
             for (int redir = 0; redir < 3; ++redir) {
-                fetchResult = pageFetcher.fetchPage(robotsTxtUrl);
+                // Not fetchPage(WebURL): robots.txt files are fetched whatever their content type
+                fetchResult = pageFetcher.fetchPage(robotsTxtUrl, false);
                 int status = fetchResult.getStatusCode();
                 // Follow redirects up to 3 levels
                 if ((status == HttpStatus.SC_MULTIPLE_CHOICES ||
@@ -193,27 +425,67 @@ public class RobotstxtServer {
             directives = new SimpleRobotRules(SimpleRobotRules.RobotRulesMode.ALLOW_ALL);
         }
 
-        RobotRules robotRules = new RobotRules(directives);
+        return new RobotRules(directives);
+    }
 
-        synchronized (cache) {
-            if (cache.size() == config.getCacheSize()) {
-                String minHost = null;
-                long minAccessTime = Long.MAX_VALUE;
-                for (Map.Entry<String, RobotRules> entry : cache.entrySet()) {
-                    long entryAccessTime = entry.getValue().getTimeLastAccessed();
-                    if (entryAccessTime < minAccessTime) {
-                        minAccessTime = entryAccessTime;
-                        minHost = entry.getKey();
-                    }
-                }
-                cache.remove(minHost);
-            }
-            cache.put(host, robotRules);
-        }
-        return robotRules;
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getCacheHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that found no valid cache entry, including those that waited
+     * for a fetch started by another thread
+     */
+    public long getCacheMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of robots.txt files fetched
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the total time spent fetching and parsing robots.txt files, in milliseconds
+     */
+    public long getTotalLoadTime() {
+        return TimeUnit.NANOSECONDS.toMillis(loadTimeNanos.sum());
     }
 
     public void setCrawlConfig(CrawlConfig crawlConfig) {
         this.crawlConfig = crawlConfig;
+        if (store == null && config.isEnabled() && config.isPersistent() && crawlConfig.isResumableCrawling()) {
+            File file = new File(crawlConfig.getCrawlStorageFolder(), FILE_NAME);
+            try {
+                store = new RobotRulesStore(file.toPath());
+            } catch (IOException e) {
+                logger.warn("Could not open the robots.txt rules file {}, rules are kept in memory only", file, e);
+            }
+        }
+    }
+
+    /**
+     * Stops the prefetch pool and closes the file the rules are saved to, if any.
+     */
+    public void close() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            // fetches which never started would otherwise leave their callers waiting
+            for (CompletableFuture<RobotRules> pending : loading.values()) {
+                pending.completeExceptionally(new RejectedExecutionException("The robots.txt server is closed"));
+            }
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the robots.txt rules file", e);
+            }
+        }
     }
 }
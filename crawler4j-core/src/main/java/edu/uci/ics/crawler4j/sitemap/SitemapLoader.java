@@ -0,0 +1,323 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.sitemap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import crawlercommons.sitemaps.AbstractSiteMap;
+import crawlercommons.sitemaps.SiteMap;
+import crawlercommons.sitemaps.SiteMapIndex;
+import crawlercommons.sitemaps.SiteMapParser;
+import crawlercommons.sitemaps.SiteMapURL;
+import crawlercommons.sitemaps.UnknownFormatException;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+
+/**
+ * Fetches sitemaps and sitemap indexes, gzipped or not, and passes their urls on in batches. Only
+ * urls on the host of the sitemap, or of the robots.txt listing it, are passed on. Once a crawl
+ * has fetched all urls it scheduled, the time each sitemap has been read at is saved in the crawl
+ * storage folder, so that the next crawl skips the urls, and the sitemaps of an index, whose
+ * {@code lastmod} is older.
+ */
+public class SitemapLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SitemapLoader.class);
+
+    public static final String FILE_NAME = "sitemaps.properties";
+
+    /** The number of urls passed on at once. */
+    private static final int BATCH_SIZE = 1000;
+
+    /** How deep sitemap indexes listing other indexes are followed. */
+    private static final int MAX_DEPTH = 3;
+
+    private static final int MAX_REDIRECTS = 3;
+
+    protected final PageFetcher pageFetcher;
+    protected final RobotstxtServer robotstxtServer;
+    protected final WebURLFactory factory;
+    protected final SiteMapParser parser;
+
+    private final Path file;
+
+    /** When each sitemap has been read by the previous crawl, in milliseconds since the epoch. */
+    private final Map<String, Long> previousReadTimes = new ConcurrentHashMap<>();
+
+    /** When each sitemap has been read by this crawl. */
+    private final Map<String, Long> readTimes = new ConcurrentHashMap<>();
+
+    /** The sitemaps read by this crawl, including those which could not be read. */
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Receives the urls of a sitemap.
+     */
+    @FunctionalInterface
+    public interface UrlConsumer {
+        void accept(List<String> urls) throws InterruptedException;
+    }
+
+    /**
+     * @param robotstxtServer checks the urls sitemaps are redirected to
+     */
+    public SitemapLoader(CrawlConfig config, PageFetcher pageFetcher, RobotstxtServer robotstxtServer,
+                         WebURLFactory factory) {
+        this.pageFetcher = pageFetcher;
+        this.robotstxtServer = robotstxtServer;
+        this.factory = factory;
+        // Sitemaps listed in robots.txt may contain urls outside of their own folder, so urls
+        // are checked by their host only
+        this.parser = new SiteMapParser(false);
+        this.file = Paths.get(config.getCrawlStorageFolder(), FILE_NAME);
+        loadReadTimes();
+    }
+
+    /**
+     * Reads the sitemap, or the sitemaps of the sitemap index, and passes its urls to the consumer,
+     * except those which have not changed since the sitemap was read by the previous crawl, are on
+     * another host than the sitemap or are rejected by {@link #shouldSchedule(SiteMapURL)}. A
+     * sitemap is read once per crawl.
+     *
+     * @param sitemapUrl the url of the sitemap or sitemap index
+     * @param consumer   receives the urls in batches
+     * @return the number of urls passed to the consumer
+     * @throws InterruptedException
+     */
+    public int load(String sitemapUrl, UrlConsumer consumer) throws InterruptedException {
+        return load(sitemapUrl, null, consumer);
+    }
+
+    /**
+     * Reads the sitemap like {@link #load(String, UrlConsumer)}, for a sitemap listed in the
+     * robots.txt of the given host. Its urls may be on that host as well.
+     *
+     * @param sitemapUrl    the url of the sitemap or sitemap index
+     * @param robotsTxtHost the host whose robots.txt lists the sitemap, or null
+     * @param consumer      receives the urls in batches
+     * @return the number of urls passed to the consumer
+     * @throws InterruptedException
+     */
+    public int load(String sitemapUrl, String robotsTxtHost, UrlConsumer consumer) throws InterruptedException {
+        Set<String> hosts = new HashSet<>();
+        String sitemapHost = getHost(sitemapUrl);
+        if (sitemapHost == null) {
+            logger.warn("Invalid sitemap url: {}", sitemapUrl);
+            return 0;
+        }
+        hosts.add(sitemapHost);
+        if (robotsTxtHost != null) {
+            hosts.add(robotsTxtHost.toLowerCase(Locale.ROOT));
+        }
+        return load(sitemapUrl, hosts, consumer, 0);
+    }
+
+    private int load(String sitemapUrl, Set<String> hosts, UrlConsumer consumer, int depth)
+            throws InterruptedException {
+        if (!seen.add(sitemapUrl)) {
+            return 0;
+        }
+        long readTime = System.currentTimeMillis();
+        AbstractSiteMap sitemap = fetch(sitemapUrl);
+        if (sitemap == null) {
+            return 0;
+        }
+        // The sitemap may have been redirected to another host, e.g. from http to https
+        String fetchedHost = sitemap.getUrl().getHost().toLowerCase(Locale.ROOT);
+        if (!hosts.contains(fetchedHost)) {
+            hosts = new HashSet<>(hosts);
+            hosts.add(fetchedHost);
+        }
+
+        int count = 0;
+        if (sitemap.isIndex()) {
+            for (AbstractSiteMap child : ((SiteMapIndex) sitemap).getSitemaps()) {
+                String childUrl = child.getUrl().toString();
+                Long previousReadTime = previousReadTimes.get(childUrl);
+                if (!hosts.contains(child.getUrl().getHost().toLowerCase(Locale.ROOT))) {
+                    logger.debug("Skipping sitemap of another host: {}", childUrl);
+                } else if (previousReadTime != null && isUnchanged(child.getLastModified(), previousReadTime)) {
+                    logger.debug("Skipping unchanged sitemap: {}", childUrl);
+                    readTimes.putIfAbsent(childUrl, previousReadTime);
+                } else if (depth + 1 < MAX_DEPTH) {
+                    count += load(childUrl, hosts, consumer, depth + 1);
+                }
+            }
+        } else {
+            Long previousReadTime = previousReadTimes.get(sitemapUrl);
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            for (SiteMapURL url : ((SiteMap) sitemap).getSiteMapUrls()) {
+                // Not url.isValid(), which rejects urls outside of the folder of the sitemap
+                if (!hosts.contains(url.getUrl().getHost().toLowerCase(Locale.ROOT)) || !shouldSchedule(url)
+                        || (previousReadTime != null && isUnchanged(url.getLastModified(), previousReadTime))) {
+                    continue;
+                }
+                batch.add(url.getUrl().toString());
+                if (batch.size() == BATCH_SIZE) {
+                    consumer.accept(batch);
+                    count += batch.size();
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+                count += batch.size();
+            }
+        }
+        readTimes.put(sitemapUrl, readTime);
+        logger.info("Read {} urls from sitemap: {}", count, sitemapUrl);
+        return count;
+    }
+
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase(Locale.ROOT);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static boolean isUnchanged(Date lastModified, long previousReadTime) {
+        return lastModified != null && lastModified.getTime() < previousReadTime;
+    }
+
+    /**
+     * Decides whether a url of a sitemap should be scheduled. The default is to schedule every
+     * url. Subclasses may override this method and provide their own logic.
+     *
+     * @param url the url with its sitemap attributes, e.g. its priority
+     * @return whether the url should be scheduled
+     */
+    protected boolean shouldSchedule(SiteMapURL url) {
+        return true;
+    }
+
+    /**
+     * Fetches and parses a sitemap, following up to three redirects which robots.txt allows.
+     * Gzipped sitemaps are recognized by their content type or {@code .gz} extension.
+     *
+     * @return the sitemap, or null if it could not be read
+     */
+    protected AbstractSiteMap fetch(String sitemapUrl) throws InterruptedException {
+        WebURL webUrl = factory.newWebUrl();
+        webUrl.setURL(sitemapUrl);
+        PageFetchResult fetchResult = null;
+        try {
+            fetchResult = pageFetcher.fetchPage(webUrl, false, SiteMapParser.MAX_BYTES_ALLOWED);
+            for (int redirects = 0; redirects < MAX_REDIRECTS && fetchResult.getMovedToUrl() != null; redirects++) {
+                fetchResult.discardContentIfNotConsumed();
+                webUrl.setURL(fetchResult.getMovedToUrl());
+                if (!robotstxtServer.allows(webUrl)) {
+                    logger.debug("Robots.txt does not allow the redirect of sitemap: {} to {}", sitemapUrl,
+                            webUrl.getURL());
+                    return null;
+                }
+                fetchResult = pageFetcher.fetchPage(webUrl, false, SiteMapParser.MAX_BYTES_ALLOWED);
+            }
+            if (fetchResult.getStatusCode() != HttpStatus.SC_OK) {
+                logger.warn("Can't read sitemap: {} as its status code is {}", sitemapUrl,
+                        fetchResult.getStatusCode());
+                return null;
+            }
+            Page page = new Page(webUrl);
+            if (!fetchResult.fetchContent(page, SiteMapParser.MAX_BYTES_ALLOWED)) {
+                logger.warn("Can't read the content of sitemap: {}", sitemapUrl);
+                return null;
+            }
+            return parser.parseSiteMap(page.getContentType(), page.getContentData(), new URL(webUrl.getURL()));
+        } catch (IOException | UnknownFormatException | PageBiggerThanMaxSizeException | URISyntaxException e) {
+            logger.warn("Can't read sitemap: {} ({})", sitemapUrl, e.getMessage());
+            return null;
+        } finally {
+            if (fetchResult != null) {
+                fetchResult.discardContentIfNotConsumed();
+            }
+        }
+    }
+
+    /**
+     * Saves when each sitemap has been read, to skip unchanged urls in the next crawl. Sitemaps
+     * which have not been read by this crawl keep their previous time. Nothing is saved unless
+     * all urls passed on have been fetched, as the next crawl would skip those which were not.
+     *
+     * @param urlsFetched whether the crawl has fetched all urls it scheduled
+     */
+    public void close(boolean urlsFetched) {
+        if (readTimes.isEmpty()) {
+            return;
+        }
+        if (!urlsFetched) {
+            logger.info("Not saving the read times of {} sitemaps, as not all of their urls have been fetched",
+                        readTimes.size());
+            return;
+        }
+        Properties properties = new Properties();
+        previousReadTimes.forEach((url, time) -> properties.setProperty(url, Long.toString(time)));
+        readTimes.forEach((url, time) -> properties.setProperty(url, Long.toString(time)));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "Times the sitemaps have been read at");
+        } catch (IOException e) {
+            logger.warn("Could not save the sitemap read times to {}", file, e);
+        }
+    }
+
+    private void loadReadTimes() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            logger.warn("Could not load the sitemap read times from {}, all sitemap urls are scheduled", file, e);
+            return;
+        }
+        for (String url : properties.stringPropertyNames()) {
+            try {
+                previousReadTimes.put(url, Long.parseLong(properties.getProperty(url)));
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring invalid read time of sitemap: {}", url);
+            }
+        }
+    }
+}
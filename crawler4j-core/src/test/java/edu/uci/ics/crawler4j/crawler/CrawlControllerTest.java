@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.frontier.HostQueueFrontierConfiguration;
+import edu.uci.ics.crawler4j.frontier.InMemoryValidatorStore;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.SleepycatWebURLFactory;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class CrawlControllerTest {
+
+    @TempDir
+    public File crawlStorageFolder;
+
+    private CrawlConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        config = new CrawlConfig();
+        config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+        config.setThreadMonitoringDelaySeconds(1);
+        config.setThreadShutdownDelaySeconds(1);
+        config.setCleanupDelaySeconds(0);
+        ThreadRecordingCrawler.threads.clear();
+    }
+
+    @Test
+    public void testCrawlersRunOnVirtualThreadsIfSupported() throws Exception {
+        config.setUseVirtualThreads(true);
+
+        newController().start(ThreadRecordingCrawler.class, 3);
+
+        Assertions.assertThat(ThreadRecordingCrawler.threads).hasSize(3);
+        Method isVirtual = findIsVirtual();
+        for (Thread thread : ThreadRecordingCrawler.threads) {
+            Assertions.assertThat(thread.getName()).startsWith("Crawler ");
+            if (isVirtual != null) {
+                Assertions.assertThat(isVirtual.invoke(thread)).isEqualTo(true);
+            }
+        }
+    }
+
+    @Test
+    public void testErrorOfRunningCrawlerHaltsTheCrawl() throws Exception {
+        config.setUseVirtualThreads(true);
+        config.setHaltOnError(true);
+        CrawlController controller = newController();
+
+        Assertions.assertThatThrownBy(() -> controller.start(FailedCrawler.class, 2))
+                  .hasMessageContaining("error on thread")
+                  .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testContentFilesOfAPreviousCrawlAreDeleted() throws Exception {
+        File spillFolder = new File(crawlStorageFolder, CrawlController.CONTENT_SPILL_FOLDER);
+        Assertions.assertThat(spillFolder.mkdirs()).isTrue();
+        File leftover = new File(spillFolder, "crawler4j-123.content");
+        File other = new File(spillFolder, "notes.txt");
+        Assertions.assertThat(leftover.createNewFile()).isTrue();
+        Assertions.assertThat(other.createNewFile()).isTrue();
+        config.setContentSpillThreshold(4096);
+
+        CrawlController controller = newController();
+
+        Assertions.assertThat(controller.getContentSpillFolder()).isEqualTo(spillFolder.toPath());
+        Assertions.assertThat(leftover).doesNotExist();
+        Assertions.assertThat(other).exists();
+    }
+
+    @Test
+    public void testValidatorsAreSavedForFrontiersWithoutAStore() throws Exception {
+        config.setConditionalGet(true);
+        CrawlController controller = newController();
+
+        Assertions.assertThat(controller.getValidatorStore()).isInstanceOf(InMemoryValidatorStore.class);
+        WebURL url = new SleepycatWebURLFactory().newWebUrl();
+        url.setURL("https://github.com/a");
+        url.setDocid(1);
+        controller.getValidatorStore().put(url, "\"a\"", null);
+        controller.start(ThreadRecordingCrawler.class, 1);
+
+        Assertions.assertThat(new File(crawlStorageFolder, HostQueueFrontierConfiguration.VALIDATORS_FILE_NAME))
+                  .exists();
+    }
+
+    private CrawlController newController() throws Exception {
+        BasicURLNormalizer normalizer = TestUtils.newNormalizer();
+        PageFetcher pageFetcher = new PageFetcher(config, normalizer);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher,
+                new SleepycatWebURLFactory());
+        return new CrawlController(config, normalizer, pageFetcher, robotstxtServer,
+                TestUtils.createFrontierConfiguration(config));
+    }
+
+    private static Method findIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static class ThreadRecordingCrawler extends WebCrawler {
+
+        static final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void onStart() {
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Keeps waiting for urls while reporting an error.
+     */
+    public static class FailedCrawler extends WebCrawler {
+
+        @Override
+        public void onStart() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
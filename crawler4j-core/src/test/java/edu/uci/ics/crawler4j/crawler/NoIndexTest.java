@@ -101,6 +101,48 @@ class NoIndexTest {
         Assertions.assertThat(visitedPages.containsKey("http://localhost:" + wm.getPort() + "/some/page1.html")).isTrue();
         Assertions.assertThat(visitedPages.containsKey("http://localhost:" + wm.getPort() + "/some/page2.html")).isFalse();
     }
+
+    @Test
+    void visitHtmlPagesWhichAreNotParsed() throws Exception {
+        // given: "an index page whose html is not parsed"
+        wm.stubFor(get(urlEqualTo("/unparsed/index.html"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody(TestUtils.getInputStringFrom("/html/noIndex/index.html")))
+              );
+        wm.stubFor(get(urlPathMatching("/robots.txt"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody(TestUtils.getInputStringFrom("/robotstxt/robots.txt")))
+              );
+
+        // when: "noindex and nofollow are respected, as by default"
+        CrawlConfig config = new CrawlConfig();
+        config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+        config.setPolitenessDelay(100);
+        config.setMaxConnectionsPerHost(1);
+        config.setThreadShutdownDelaySeconds(1);
+        config.setThreadMonitoringDelaySeconds(1);
+        config.setCleanupDelaySeconds(1);
+        ContentPolicy html = new ContentPolicy("text/html");
+        html.setParse(false);
+        config.addContentPolicy(html);
+
+        BasicURLNormalizer normalizer = TestUtils.newNormalizer();
+        WebURLFactory webURLFactory = new SleepycatWebURLFactory();
+        PageFetcher pageFetcher = new PageFetcher(config, normalizer);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher, webURLFactory);
+        CrawlController controller = new CrawlController(config, normalizer, pageFetcher, robotstxtServer, TestUtils.createFrontierConfiguration(config));
+        controller.addSeed("http://localhost:" + wm.getPort() + "/unparsed/index.html");
+
+        controller.start(UnparsedHtmlWebCrawler.class, 1);
+
+        // then: "the page is visited without its robots meta tags"
+        Map<String, Page> visitedPages = (Map<String, Page>)controller.getCrawlersLocalData().get(0);
+        Assertions.assertThat(visitedPages).containsOnlyKeys("http://localhost:" + wm.getPort() + "/unparsed/index.html");
+    }
  }
     
 class NoIndexWebCrawler extends WebCrawler {
@@ -120,3 +162,12 @@ class NoIndexWebCrawler extends WebCrawler {
 		return visitedPages;
 	}
 }
+
+class UnparsedHtmlWebCrawler extends NoIndexWebCrawler {
+
+	public void visit(Page page) {
+		// the page is the referring page of its links
+		Assertions.assertThat(shouldVisit(page, page.getWebURL())).isTrue();
+		super.visit(page);
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.SleepycatWebURLFactory;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class ParserPoolCallbacksTest {
+
+    private static final int PAGES = 10;
+
+    @TempDir
+    public File crawlStorageFolder;
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+        .options(new WireMockConfiguration().dynamicPort())
+        .build();
+
+    @Test
+    public void testCallbacksAreNotCalledConcurrently() throws Exception {
+        StringBuilder index = new StringBuilder("<html><body>");
+        for (int i = 1; i <= PAGES; i++) {
+            index.append("<a href=\"/page/").append(i).append(".html\">page</a>");
+            index.append("<a href=\"/moved/").append(i).append(".html\">moved</a>");
+            index.append("<a href=\"/missing/").append(i).append(".html\">missing</a>");
+            index.append("<a href=\"/failing/").append(i).append(".html\">failing</a>");
+        }
+        index.append("</body></html>");
+        wm.stubFor(get(urlEqualTo("/index.html"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody(index.toString())));
+        wm.stubFor(get(urlPathMatching("/(page|target)/.*"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody("<html><body><a href=\"/index.html\">index</a></body></html>")));
+        wm.stubFor(get(urlPathMatching("/moved/(.*)"))
+                .willReturn(aResponse()
+                .withStatus(301)
+                .withHeader("Location", "/target/moved.html")));
+        wm.stubFor(get(urlPathMatching("/missing/.*"))
+                .willReturn(aResponse()
+                .withStatus(404)));
+        wm.stubFor(get(urlPathMatching("/failing/.*"))
+                .willReturn(aResponse()
+                .withStatus(500)));
+        wm.stubFor(get(urlEqualTo("/robots.txt"))
+                .willReturn(aResponse()
+                .withStatus(404)));
+
+        CrawlConfig config = new CrawlConfig();
+        config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+        config.setPolitenessDelay(0);
+        config.setParserThreads(4);
+        config.setThreadShutdownDelaySeconds(1);
+        config.setThreadMonitoringDelaySeconds(1);
+        config.setCleanupDelaySeconds(1);
+
+        BasicURLNormalizer normalizer = TestUtils.newNormalizer();
+        PageFetcher pageFetcher = new PageFetcher(config, normalizer);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher,
+                new SleepycatWebURLFactory());
+        CrawlController controller = new CrawlController(config, normalizer, pageFetcher, robotstxtServer,
+                TestUtils.createFrontierConfiguration(config));
+        controller.addSeed("http://localhost:" + wm.getPort() + "/index.html");
+
+        NotThreadSafeCrawler.reset();
+        controller.start(NotThreadSafeCrawler.class, 1);
+
+        Assertions.assertThat(NotThreadSafeCrawler.visits.get()).isEqualTo(PAGES + 2);
+        Assertions.assertThat(NotThreadSafeCrawler.redirects.get()).isEqualTo(PAGES);
+        Assertions.assertThat(NotThreadSafeCrawler.errors.get()).isEqualTo(2 * PAGES);
+        Assertions.assertThat(NotThreadSafeCrawler.overlaps.get()).isZero();
+    }
+
+    /**
+     * Records whether any of its callbacks is entered while another one is still running.
+     */
+    public static class NotThreadSafeCrawler extends WebCrawler {
+        static final AtomicInteger visits = new AtomicInteger();
+        static final AtomicInteger redirects = new AtomicInteger();
+        static final AtomicInteger errors = new AtomicInteger();
+        static final AtomicInteger overlaps = new AtomicInteger();
+
+        private boolean inCallback;
+
+        static void reset() {
+            visits.set(0);
+            redirects.set(0);
+            errors.set(0);
+            overlaps.set(0);
+        }
+
+        private void enter() {
+            if (inCallback) {
+                overlaps.incrementAndGet();
+            }
+            inCallback = true;
+            try {
+                // Leaves the other threads time to run into this callback
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void leave() {
+            inCallback = false;
+        }
+
+        @Override
+        protected void handlePageStatusCode(WebURL webUrl, int statusCode, String statusDescription) {
+            enter();
+            leave();
+        }
+
+        @Override
+        public boolean shouldVisit(Page referringPage, WebURL url) {
+            enter();
+            try {
+                return super.shouldVisit(referringPage, url);
+            } finally {
+                leave();
+            }
+        }
+
+        @Override
+        protected boolean shouldFollowLinksIn(WebURL url) {
+            enter();
+            try {
+                return super.shouldFollowLinksIn(url);
+            } finally {
+                leave();
+            }
+        }
+
+        @Override
+        public void visit(Page page) {
+            enter();
+            visits.incrementAndGet();
+            leave();
+        }
+
+        @Override
+        protected void onRedirectedStatusCode(Page page) {
+            enter();
+            redirects.incrementAndGet();
+            leave();
+        }
+
+        @Override
+        protected void onUnexpectedStatusCode(String urlStr, int statusCode, String contentType,
+                                              String description) {
+            enter();
+            errors.incrementAndGet();
+            leave();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.crawler;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import crawlercommons.filters.basic.BasicURLNormalizer;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.SleepycatWebURLFactory;
+
+public class ParserPoolTest {
+
+    @TempDir
+    public File crawlStorageFolder;
+
+    private PageFetcher pageFetcher;
+    private RobotstxtServer robotstxtServer;
+    private CountingController controller;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        CrawlConfig config = new CrawlConfig();
+        config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+        BasicURLNormalizer normalizer = TestUtils.newNormalizer();
+        pageFetcher = new PageFetcher(config, normalizer);
+        robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher,
+                new SleepycatWebURLFactory());
+        controller = new CountingController(config, normalizer, pageFetcher, robotstxtServer);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // The Sleepycat environment has to be closed before the crawl storage folder is deleted
+        controller.frontier.close();
+        controller.docIdServer.close();
+        controller.frontierConfiguration.close();
+        robotstxtServer.close();
+        pageFetcher.shutDown();
+    }
+
+    @Test
+    public void testTasksRunOnParserThreads() throws Exception {
+        ParserPool pool = new ParserPool(controller, 2);
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        pool.submit(() -> {
+            threadName.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+        pool.shutdown();
+
+        Assertions.assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(threadName.get()).startsWith("Crawler4j-parser-");
+        Assertions.assertThat(controller.working.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSubmitBlocksWhileThePoolIsFull() throws Exception {
+        ParserPool pool = new ParserPool(controller, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        // One running and two queued tasks fill a pool with one thread
+        for (int i = 0; i < 3; i++) {
+            pool.submit(blocked);
+        }
+        Assertions.assertThat(controller.working.get()).isEqualTo(3);
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread crawler = new Thread(() -> {
+            try {
+                pool.submit(() -> {
+                });
+                submitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        crawler.start();
+
+        Assertions.assertThat(submitted.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        release.countDown();
+        Assertions.assertThat(submitted.await(5, TimeUnit.SECONDS)).isTrue();
+        crawler.join();
+        pool.shutdown();
+        Assertions.assertThat(controller.working.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRejectedTaskReleasesItsPermit() throws Exception {
+        ParserPool pool = new ParserPool(controller, 1);
+        pool.shutdown();
+
+        // More submissions than the pool can hold, none of them may keep a permit
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThatThrownBy(() -> pool.submit(() -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+        }
+        Assertions.assertThat(controller.working.get()).isEqualTo(0);
+    }
+
+    private static class CountingController extends CrawlController {
+        private final AtomicInteger working = new AtomicInteger();
+
+        CountingController(CrawlConfig config, BasicURLNormalizer normalizer, PageFetcher pageFetcher,
+                           RobotstxtServer robotstxtServer) throws Exception {
+            super(config, normalizer, pageFetcher, robotstxtServer, TestUtils.createFrontierConfiguration(config));
+        }
+
+        @Override
+        void beginWork() {
+            working.incrementAndGet();
+        }
+
+        @Override
+        void endWork() {
+            working.decrementAndGet();
+        }
+    }
+}
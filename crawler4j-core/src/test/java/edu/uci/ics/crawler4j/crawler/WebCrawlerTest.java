@@ -30,6 +30,10 @@ import edu.uci.ics.crawler4j.url.WebURLFactory;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -109,6 +113,68 @@ class WebCrawlerTest {
         wm.verify(exactly(1), getRequestedFor(urlEqualTo("/some/page3.html")));
         wm.verify(exactly(0), getRequestedFor(urlEqualTo("/some/" + pageUnvisited)));
     }
+
+    @Test
+    void parkedLinksAreScheduledOnceTheirChecksComplete() throws Exception {
+        wm.stubFor(get(urlEqualTo("/some/index.html"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody(TestUtils.getInputStringFrom("/html/webCrawler/index.html")
+                        .replace("PAGE_WHICH_LINKS_MUST_NOT_BE_VISITED", "page2.html")))
+              );
+        wm.stubFor(get(urlPathMatching("/some/page([1-3]*).html"))
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody("<html><body>leaf</body></html>"))
+              );
+
+        CrawlConfig config = new CrawlConfig();
+        config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+        config.setPolitenessDelay(100);
+        config.setThreadShutdownDelaySeconds(1);
+        config.setThreadMonitoringDelaySeconds(1);
+        config.setCleanupDelaySeconds(1);
+
+        BasicURLNormalizer normalizer = TestUtils.newNormalizer();
+        WebURLFactory webURLFactory = new SleepycatWebURLFactory();
+        PageFetcher pageFetcher = new PageFetcher(config, normalizer);
+        RobotstxtServer robotstxtServer = new DelayedRobotstxtServer(pageFetcher, webURLFactory);
+        CrawlController controller = new CrawlController(config, normalizer, pageFetcher, robotstxtServer, TestUtils.createFrontierConfiguration(config));
+        controller.addSeed("http://localhost:" + wm.getPort() + "/some/index.html");
+
+        controller.start(WebCrawler.class, 1);
+
+        // page1 is disallowed, the check of page3 fails and it is crawled anyway
+        wm.verify(exactly(0), getRequestedFor(urlEqualTo("/some/page1.html")));
+        wm.verify(exactly(1), getRequestedFor(urlEqualTo("/some/page2.html")));
+        wm.verify(exactly(1), getRequestedFor(urlEqualTo("/some/page3.html")));
+    }
+
+    /**
+     * Answers the robots.txt checks of links only after a delay, so the crawler has to park them.
+     */
+    private static class DelayedRobotstxtServer extends RobotstxtServer {
+
+        DelayedRobotstxtServer(PageFetcher pageFetcher, WebURLFactory factory) {
+            super(new RobotstxtConfig(), pageFetcher, factory);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> allowsAsync(WebURL webURL) {
+            Executor delayed = CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> {
+                if (webURL.getPath().endsWith("page1.html")) {
+                    return false;
+                }
+                if (webURL.getPath().endsWith("page3.html")) {
+                    throw new RejectedExecutionException("robots.txt check failed");
+                }
+                return true;
+            }, delayed);
+        }
+    }
 }
 
 class ShouldNotVisitPageWebCrawler extends WebCrawler {
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.authentication.FormAuthInfo;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.politeness.SimplePolitenessServer;
+import edu.uci.ics.crawler4j.test.SimpleWebURL;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class AsyncPageFetcherTest {
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+        .options(new WireMockConfiguration().dynamicPort())
+        .build();
+
+    private CrawlConfig config;
+    private AsyncPageFetcher pageFetcher;
+
+    @BeforeEach
+    public void init() throws Exception {
+        config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        config.setMaxDownloadSize(100);
+        pageFetcher = new AsyncPageFetcher(config, TestUtils.newNormalizer(), new SimplePolitenessServer(config));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pageFetcher.shutDown();
+    }
+
+    @Test
+    public void testFetchPage() throws Exception {
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/some/index.html"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Content-Type", "text/html")
+                                               .withBody("<html><body>hello</body></html>")));
+
+        WebURL url = newUrl("/some/index.html");
+        CompletableFuture<PageFetchResult> future = pageFetcher.fetchPageAsync(url);
+        PageFetchResult fetchResult = AsyncPageFetcher.getResult(future);
+
+        Assertions.assertThat(fetchResult.getStatusCode()).isEqualTo(200);
+        Assertions.assertThat(fetchResult.getFetchedUrl()).isEqualTo(url.getURL());
+        Page page = new Page(url);
+        Assertions.assertThat(fetchResult.fetchContent(page, config.getMaxDownloadSize())).isTrue();
+        Assertions.assertThat(page.getContentType()).startsWith("text/html");
+        Assertions.assertThat(new String(page.getContentData())).isEqualTo("<html><body>hello</body></html>");
+        Assertions.assertThat(page.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void testRedirectIsNotFollowed() throws Exception {
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/old"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(301)
+                                               .withHeader("Location", "/new")));
+
+        PageFetchResult fetchResult = pageFetcher.fetchPage(newUrl("/old"));
+
+        Assertions.assertThat(fetchResult.getStatusCode()).isEqualTo(301);
+        Assertions.assertThat(fetchResult.getMovedToUrl()).isEqualTo("http://localhost:" + wm.getPort() + "/new");
+        wm.verify(0, WireMock.getRequestedFor(WireMock.urlEqualTo("/new")));
+    }
+
+    @Test
+    public void testDeclaredContentLengthAboveMaximum() {
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/big"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Content-Length", "500")
+                                               .withBody(new byte[500])));
+
+        Assertions.assertThatThrownBy(() -> pageFetcher.fetchPage(newUrl("/big")))
+                  .isInstanceOf(PageBiggerThanMaxSizeException.class);
+        // Aborting the exchange must not make the client retry it
+        wm.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/big")));
+    }
+
+    @Test
+    public void testStreamedContentIsTruncated() throws Exception {
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/chunked"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Transfer-Encoding", "chunked")
+                                               .withBody(new byte[500])));
+
+        WebURL url = newUrl("/chunked");
+        PageFetchResult fetchResult = pageFetcher.fetchPage(url);
+        Page page = new Page(url);
+        fetchResult.fetchContent(page, config.getMaxDownloadSize());
+
+        Assertions.assertThat(page.getContentData()).hasSize(config.getMaxDownloadSize());
+        Assertions.assertThat(page.isTruncated()).isTrue();
+        wm.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/chunked")));
+    }
+
+    @Test
+    public void testStreamedContentWithoutMaximum() throws Exception {
+        config.setMaxDownloadSize(Integer.MAX_VALUE);
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/chunked"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Transfer-Encoding", "chunked")
+                                               .withBody(new byte[500])));
+
+        WebURL url = newUrl("/chunked");
+        PageFetchResult fetchResult = pageFetcher.fetchPage(url);
+        Page page = new Page(url);
+        fetchResult.fetchContent(page, config.getMaxDownloadSize());
+
+        Assertions.assertThat(page.getContentData()).hasSize(500);
+        Assertions.assertThat(page.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void testCancelDuringPolitenessDelay() throws Exception {
+        config.setPolitenessDelay(1000);
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/delayed"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withBody("delayed")));
+        pageFetcher.fetchPage(newUrl("/delayed"));
+
+        CompletableFuture<PageFetchResult> future = pageFetcher.fetchPageAsync(newUrl("/delayed"));
+        Assertions.assertThat(future).isNotDone();
+        future.cancel(false);
+        Thread.sleep(1500);
+
+        // The delayed request must never be sent
+        wm.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/delayed")));
+    }
+
+    @Test
+    public void testCancelAfterPolitenessDelay() throws Exception {
+        config.setPolitenessDelay(1000);
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/fast"))
+                           .willReturn(WireMock.aResponse().withStatus(200)));
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/slow"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withFixedDelay(5000)));
+        CountDownLatch failures = new CountDownLatch(1);
+        AsyncPageFetcher fetcher = new AsyncPageFetcher(config, TestUtils.newNormalizer(),
+                new SimplePolitenessServer(config) {
+                    @Override
+                    public void onFailure(WebURL url, long latency) {
+                        if (url.getURL().endsWith("/slow")) {
+                            failures.countDown();
+                        }
+                    }
+                });
+        try {
+            fetcher.fetchPage(newUrl("/fast"));
+
+            CompletableFuture<PageFetchResult> future = fetcher.fetchPageAsync(newUrl("/slow"));
+            // Past the politeness delay, while the server delays the response
+            Thread.sleep(2000);
+            Assertions.assertThat(future).isNotDone();
+            future.cancel(false);
+
+            // Cancelling the future must cancel the exchange sent after the delay
+            Assertions.assertThat(failures.await(2, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            fetcher.shutDown();
+        }
+    }
+
+    @Test
+    public void testDisallowedContentTypeIsSkipped() throws Exception {
+        wm.stubFor(WireMock.get(WireMock.urlEqualTo("/file.pdf"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Content-Type", "application/pdf")
+                                               .withHeader("Content-Length", "50")
+                                               .withBody(new byte[50])));
+
+        PageFetchResult fetchResult = pageFetcher.fetchPage(newUrl("/file.pdf"));
+
+        Assertions.assertThat(fetchResult.isContentSkipped()).isTrue();
+        Assertions.assertThat(fetchResult.getEntity()).isNull();
+        Assertions.assertThat(pageFetcher.getSkippedResponseCount()).isEqualTo(1);
+        Assertions.assertThat(pageFetcher.getSkippedBytes()).isEqualTo(50);
+        // Skipping the content must not make the client retry the exchange
+        wm.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/file.pdf")));
+
+        // robots.txt files and the like are fetched regardless of their type
+        Assertions.assertThat(pageFetcher.fetchPage(newUrl("/file.pdf"), false).isContentSkipped()).isFalse();
+    }
+
+    @Test
+    public void testFormAuthenticationIsRejected() {
+        config.addAuthInfo(new FormAuthInfo("user", "secret", "http://localhost/login", "username", "password"));
+
+        Assertions.assertThatThrownBy(
+                () -> new AsyncPageFetcher(config, TestUtils.newNormalizer(), new SimplePolitenessServer(config)))
+                  .isInstanceOf(IllegalArgumentException.class)
+                  .hasMessageContaining("Form authentication");
+    }
+
+    private WebURL newUrl(String path) {
+        WebURL url = new SimpleWebURL();
+        url.setURL("http://localhost:" + wm.getPort() + path);
+        return url;
+    }
+}
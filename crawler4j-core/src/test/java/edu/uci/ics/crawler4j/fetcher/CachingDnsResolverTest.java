@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.impl.InMemoryDnsResolver;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachingDnsResolverTest {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    /* Holds up the lookups of hosts ending with ".slow". */
+    private final CountDownLatch slowLookups = new CountDownLatch(1);
+
+    private CachingDnsResolver resolver;
+
+    @BeforeEach
+    public void setUp() throws UnknownHostException {
+        InMemoryDnsResolver hosts = new InMemoryDnsResolver();
+        hosts.add("www.example.com", InetAddress.getByAddress(new byte[] {93, (byte) 184, (byte) 216, 34}));
+        DnsResolver counting = new DnsResolver() {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                lookups.incrementAndGet();
+                if (host.endsWith(".slow")) {
+                    try {
+                        slowLookups.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return hosts.resolve(host);
+            }
+
+            @Override
+            public String resolveCanonicalHostname(String host) {
+                return host;
+            }
+        };
+        resolver = new CachingDnsResolver(counting, 100, 60_000, 60_000, 1);
+    }
+
+    @Test
+    public void testAddressesAreCached() throws UnknownHostException {
+        InetAddress[] first = resolver.resolve("www.example.com");
+        InetAddress[] second = resolver.resolve("WWW.example.com");
+
+        Assertions.assertThat(second).containsExactly(first);
+        Assertions.assertThat(lookups.get()).isEqualTo(1);
+        Assertions.assertThat(resolver.getCacheHitCount()).isEqualTo(1);
+        Assertions.assertThat(resolver.getCacheMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnknownHostsAreCached() {
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThatThrownBy(() -> resolver.resolve("unknown.example.com"))
+                      .isInstanceOf(UnknownHostException.class)
+                      .hasMessageContaining("unknown.example.com");
+        }
+        Assertions.assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPrefetchedHostIsResolvedOnce() throws UnknownHostException {
+        resolver.prefetch("www.example.com");
+
+        Assertions.assertThat(resolver.resolve("www.example.com")).hasSize(1);
+        Assertions.assertThat(lookups.get()).isEqualTo(1);
+        Assertions.assertThat(resolver.getLookupCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPrefetchesAreDroppedWhenTheQueueIsFull() throws UnknownHostException {
+        // The only prefetch thread is held up, so the other hosts wait in the queue
+        for (int i = 0; i <= 1024; i++) {
+            resolver.prefetch("host" + i + ".slow");
+        }
+        resolver.prefetch("www.example.com");
+
+        // The dropped prefetch does not leave the host registered as being resolved
+        Assertions.assertThat(resolver.resolve("www.example.com")).hasSize(1);
+        slowLookups.countDown();
+    }
+
+    @Test
+    public void testQueuedPrefetchIsTakenOverByLookup() throws UnknownHostException {
+        // The only prefetch thread is held up, so the host waits behind a full queue
+        for (int i = 0; i < 1024; i++) {
+            resolver.prefetch("host" + i + ".slow");
+        }
+        resolver.prefetch("www.example.com");
+
+        long start = System.nanoTime();
+        Assertions.assertThat(resolver.resolve("www.example.com")).hasSize(1);
+        // The lookup does not wait for the held up prefetches
+        Assertions.assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        Assertions.assertThat(slowLookups.getCount()).isEqualTo(1);
+        slowLookups.countDown();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.util.TimeValue;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.InMemoryWebURLImpl;
+
+public class ConnectionPoolMetricsTest {
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+        .options(new WireMockConfiguration().dynamicPort())
+        .build();
+
+    private PageFetcher pageFetcher;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        wm.stubFor(WireMock.get(WireMock.urlPathMatching("/page.*"))
+                           .willReturn(WireMock.aResponse()
+                                               .withStatus(200)
+                                               .withHeader("Content-Type", "text/html")
+                                               .withBody("<html><body>page</body></html>")));
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pageFetcher.shutDown();
+    }
+
+    @Test
+    public void testKeptAliveConnectionIsReused() throws Exception {
+        fetch("/page1");
+        fetch("/page2");
+
+        ConnectionPoolMetrics metrics = pageFetcher.getConnectionPoolMetrics();
+        Assertions.assertThat(metrics.getLeaseCount()).isEqualTo(2);
+        Assertions.assertThat(metrics.getNewConnectionCount()).isEqualTo(1);
+        Assertions.assertThat(metrics.getReuseRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void testOnlyIdleConnectionsAreCountedAsEvicted() throws Exception {
+        PageFetchResult leased = pageFetcher.fetchPage(newUrl("/page1"));
+
+        pageFetcher.connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        Assertions.assertThat(pageFetcher.getConnectionPoolMetrics().getIdleEvictionCount()).isZero();
+
+        leased.fetchContent(new Page(newUrl("/page1")), 1000);
+        leased.discardContentIfNotConsumed();
+        pageFetcher.connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        pageFetcher.connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        Assertions.assertThat(pageFetcher.getConnectionPoolMetrics().getIdleEvictionCount()).isEqualTo(1);
+
+        fetch("/page2");
+        Assertions.assertThat(pageFetcher.getConnectionPoolMetrics().getNewConnectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRouteLimitsAreOnlyKeptForRoutesWithConnections() throws Exception {
+        SniPoolingHttpClientConnectionManager connectionManager =
+                (SniPoolingHttpClientConnectionManager) pageFetcher.connectionManager;
+        int defaultLimit = connectionManager.getDefaultMaxPerRoute();
+        fetch("/page1");
+        HttpRoute route = connectionManager.getRoutes().iterator().next();
+
+        // The idle route shrinks to a single connection
+        connectionManager.adaptRouteLimits(defaultLimit, host -> -1);
+        Assertions.assertThat(connectionManager.getMaxPerRoute(route)).isEqualTo(1);
+        Assertions.assertThat(connectionManager.getLimitedRouteCount()).isEqualTo(1);
+
+        // Once its connection is closed, the route falls back to the default limit
+        connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        connectionManager.adaptRouteLimits(defaultLimit, host -> -1);
+        Assertions.assertThat(connectionManager.getMaxPerRoute(route)).isEqualTo(defaultLimit);
+        Assertions.assertThat(connectionManager.getLimitedRouteCount()).isZero();
+    }
+
+    private void fetch(String path) throws Exception {
+        InMemoryWebURLImpl url = newUrl(path);
+        PageFetchResult result = pageFetcher.fetchPage(url);
+        try {
+            result.fetchContent(new Page(url), 1000);
+        } finally {
+            result.discardContentIfNotConsumed();
+        }
+    }
+
+    private static InMemoryWebURLImpl newUrl(String path) {
+        InMemoryWebURLImpl url = new InMemoryWebURLImpl();
+        url.setURL("http://localhost:" + wm.getPort() + path);
+        return url;
+    }
+}
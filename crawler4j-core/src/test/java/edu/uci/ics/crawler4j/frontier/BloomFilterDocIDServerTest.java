@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BloomFilterDocIDServerTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testUnseenUrlsDoNotHitTheStore() {
+        CountingDocIDServer store = new CountingDocIDServer();
+        DocIDServer docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001, null);
+
+        int docId = docIdServer.getNewDocID("https://github.com/a");
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(docId);
+        Assertions.assertThat(docIdServer.isSeenBefore("https://github.com/b")).isFalse();
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/c")).isEqualTo(-1);
+        Assertions.assertThat(store.lookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testBatchLookupOnlyAsksTheStoreForPossibleHits() {
+        CountingDocIDServer store = new CountingDocIDServer();
+        DocIDServer docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001, null);
+
+        int docId = docIdServer.getNewDocID("https://github.com/a");
+        int[] docIds = docIdServer.getDocIds(
+                Arrays.asList("https://github.com/b", "https://github.com/a", "https://github.com/c"));
+
+        Assertions.assertThat(docIds).containsExactly(-1, docId, -1);
+        Assertions.assertThat(store.lookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testBatchAssignedUrlsAreSeen() {
+        DocIDServer docIdServer = new BloomFilterDocIDServer(new InMemoryDocIDServer(), 1000, 0.001, null);
+
+        int[] docIds = docIdServer.getOrAssignDocIds(Arrays.asList("https://github.com/a", "https://github.com/b"));
+
+        Assertions.assertThat(docIds).containsExactly(1, 2);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(2);
+    }
+
+    @Test
+    public void testFilterIsReloadedForTheSameStore() {
+        Path file = folder.resolve(BloomFilterDocIDServer.FILE_NAME);
+        DocIDServer docIdServer = new BloomFilterDocIDServer(new InMemoryDocIDServer(), 1000, 0.001, file);
+        docIdServer.addUrlAndDocId("https://github.com/a", 1);
+        docIdServer.addUrlAndDocId("https://github.com/b", 2);
+        docIdServer.close();
+
+        CountingDocIDServer store = new CountingDocIDServer();
+        store.addUrlAndDocId("https://github.com/a", 1);
+        store.addUrlAndDocId("https://github.com/b", 2);
+        docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001, file);
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(1);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/c")).isEqualTo(-1);
+        Assertions.assertThat(store.lookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testStaleFilterIsNotUsed() {
+        Path file = folder.resolve(BloomFilterDocIDServer.FILE_NAME);
+        DocIDServer docIdServer = new BloomFilterDocIDServer(new InMemoryDocIDServer(), 1000, 0.001, file);
+        docIdServer.addUrlAndDocId("https://github.com/a", 1);
+        docIdServer.close();
+
+        // The store got a docid which the saved filter does not know about
+        CountingDocIDServer store = new CountingDocIDServer();
+        store.addUrlAndDocId("https://github.com/a", 1);
+        store.addUrlAndDocId("https://github.com/b", 2);
+        docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001, file);
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(2);
+        Assertions.assertThat(store.lookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testMissingFilterIsRebuiltFromTheStore() {
+        CountingDocIDServer store = new CountingDocIDServer();
+        store.addUrlAndDocId("https://github.com/a", 1);
+        store.addUrlAndDocId("https://github.com/b", 2);
+        DocIDServer docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001,
+                                                             folder.resolve(BloomFilterDocIDServer.FILE_NAME));
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(1);
+        Assertions.assertThat(docIdServer.isSeenBefore("https://github.com/c")).isFalse();
+        Assertions.assertThat(store.lookups).isEqualTo(1);
+    }
+
+    @Test
+    public void testStoreWhichCannotListItsUrlsIsAlwaysAsked() {
+        CountingDocIDServer store = new CountingDocIDServer() {
+            @Override
+            public void forEach(ObjIntConsumer<String> action) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        store.addUrlAndDocId("https://github.com/a", 1);
+        DocIDServer docIdServer = new BloomFilterDocIDServer(store, 1000, 0.001, null);
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(1);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/c")).isEqualTo(-1);
+        Assertions.assertThat(store.lookups).isEqualTo(2);
+    }
+
+    private static class CountingDocIDServer extends InMemoryDocIDServer {
+        private int lookups;
+
+        @Override
+        public int getDocId(String url) {
+            lookups++;
+            return super.getDocId(url);
+        }
+    }
+}
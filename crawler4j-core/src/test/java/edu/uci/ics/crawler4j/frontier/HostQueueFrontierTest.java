@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.test.SimpleWebURL;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class HostQueueFrontierTest {
+
+    private CrawlConfig config;
+    private HostQueueFrontier frontier;
+    private long now;
+    private int docId;
+
+    @BeforeEach
+    public void init() {
+        this.config = new CrawlConfig();
+        this.config.setPolitenessDelay(60_000);
+        this.frontier = new HostQueueFrontier(config) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testOneUrlPerHostIsHandedOut() {
+        frontier.schedule(newUrl("https://github.com/a"));
+        frontier.schedule(newUrl("https://github.com/b"));
+        frontier.schedule(newUrl("https://example.com/a"));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+
+        Assertions.assertThat(result).extracting(WebURL::getURL)
+                .containsExactlyInAnyOrder("https://github.com/a", "https://example.com/a");
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(2);
+    }
+
+    @Test
+    public void testHostIsReadyAfterPolitenessDelay() {
+        WebURL first = newUrl("https://github.com/a");
+        frontier.schedule(first);
+        frontier.schedule(newUrl("https://github.com/b"));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).containsExactly(first);
+        frontier.setProcessed(first);
+
+        // The host is not ready yet, so only the url of another host is handed out
+        frontier.schedule(newUrl("https://example.com/a"));
+        result.clear();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).extracting(WebURL::getURL).containsExactly("https://example.com/a");
+
+        now += config.getPolitenessDelay();
+        result.clear();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).extracting(WebURL::getURL).containsExactly("https://github.com/b");
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSkippedUrlReleasesItsHost() {
+        WebURL first = newUrl("https://github.com/a");
+        frontier.scheduleAll(List.of(first, newUrl("https://github.com/b")));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+        frontier.setSkipped(first);
+        now += config.getPolitenessDelay();
+
+        result.clear();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).extracting(WebURL::getURL).containsExactly("https://github.com/b");
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isZero();
+    }
+
+    @Test
+    public void testRedirectedUrlReleasesItsHost() {
+        WebURL first = newUrl("https://github.com/a");
+        frontier.scheduleAll(List.of(first, newUrl("https://github.com/b")));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+        // The crawler changes url and docid of the handed-out instance after a redirect
+        first.setURL("https://example.com/redirected");
+        first.setDocid(++docId);
+        frontier.setProcessed(first);
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isZero();
+
+        now += config.getPolitenessDelay();
+        result.clear();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).extracting(WebURL::getURL).containsExactly("https://github.com/b");
+    }
+
+    @Test
+    public void testReplacedUrlReleasesItsHost() {
+        frontier.scheduleAll(List.of(newUrl("https://github.com/a"), newUrl("https://github.com/b")));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+        // handleUrlBeforeProcess may return another instance of the same host
+        frontier.setProcessed(newUrl("https://github.com/a?session=1"));
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isZero();
+
+        now += config.getPolitenessDelay();
+        result.clear();
+        frontier.getNextURLs(10, result);
+        Assertions.assertThat(result).extracting(WebURL::getURL).containsExactly("https://github.com/b");
+    }
+
+    @Test
+    public void testUrlsOfOneHostAreOrderedByPriorityAndDepth() {
+        WebURL deep = newUrl("https://github.com/deep");
+        deep.setDepth((short) 2);
+        WebURL shallow = newUrl("https://github.com/shallow");
+        WebURL important = newUrl("https://github.com/important");
+        important.setDepth((short) 3);
+        important.setPriority((byte) -1);
+        frontier.scheduleAll(List.of(deep, shallow, important));
+
+        Assertions.assertThat(next()).isSameAs(important);
+        Assertions.assertThat(next()).isSameAs(shallow);
+        Assertions.assertThat(next()).isSameAs(deep);
+    }
+
+    @Test
+    public void testMaxPagesToFetchIsHonoured() {
+        config.setMaxPagesToFetch(2);
+        frontier.scheduleAll(List.of(newUrl("https://a.com/"), newUrl("https://b.com/"),
+                                     newUrl("https://c.com/")));
+
+        Assertions.assertThat(frontier.getNumberOfScheduledPages()).isEqualTo(2);
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFinishReleasesWaitingThreads() throws InterruptedException {
+        List<WebURL> result = new ArrayList<>();
+        Thread waiting = new Thread(() -> frontier.getNextURLs(10, result));
+        waiting.start();
+
+        frontier.finish();
+        waiting.join(1000);
+
+        Assertions.assertThat(waiting.isAlive()).isFalse();
+        Assertions.assertThat(result).isEmpty();
+    }
+
+    private WebURL next() {
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(1, result);
+        Assertions.assertThat(result).hasSize(1);
+        frontier.setProcessed(result.get(0));
+        now += config.getPolitenessDelay();
+        return result.get(0);
+    }
+
+
+    private WebURL newUrl(String url) {
+        WebURL webUrl = new SimpleWebURL();
+        webUrl.setURL(url);
+        webUrl.setDocid(++docId);
+        return webUrl;
+    }
+}
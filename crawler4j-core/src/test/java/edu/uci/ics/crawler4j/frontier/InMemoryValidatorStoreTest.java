@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.uci.ics.crawler4j.test.SimpleWebURL;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class InMemoryValidatorStoreTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testValidatorsAreReloaded() {
+        Path file = folder.resolve(HostQueueFrontierConfiguration.VALIDATORS_FILE_NAME);
+        ValidatorStore store = new InMemoryValidatorStore(file);
+        store.put(webUrl("https://github.com/b", 2), null, "Sun, 06 Nov 1994 08:49:37 GMT");
+        store.put(webUrl("https://github.com/a", 1), "\"a\"", null);
+        store.close();
+
+        ValidatorStore reloaded = new InMemoryValidatorStore(file);
+        ValidatorStore.Validators validators = reloaded.get(webUrl("https://github.com/a", 1));
+        Assertions.assertThat(validators.getETag()).isEqualTo("\"a\"");
+        Assertions.assertThat(validators.getLastModified()).isNull();
+        Assertions.assertThat(reloaded.get(webUrl("https://github.com/b", 2)).getLastModified())
+                  .isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+
+        List<String> urls = new ArrayList<>();
+        reloaded.forEach((url, docId) -> urls.add(docId + " " + url));
+        Assertions.assertThat(urls).containsExactly("1 https://github.com/a", "2 https://github.com/b");
+    }
+
+    @Test
+    public void testOnlyChangedValidatorsAreFlushed() throws Exception {
+        Path file = folder.resolve(HostQueueFrontierConfiguration.VALIDATORS_FILE_NAME);
+        ValidatorStore store = new InMemoryValidatorStore(file);
+        store.put(webUrl("https://github.com/a", 1), "\"a\"", null);
+        store.flush();
+
+        Assertions.assertThat(new InMemoryValidatorStore(file).size()).isEqualTo(1);
+
+        Files.delete(file);
+        store.flush();
+        Assertions.assertThat(file).doesNotExist();
+
+        store.remove(webUrl("https://github.com/a", 1));
+        store.flush();
+        Assertions.assertThat(new InMemoryValidatorStore(file).size()).isZero();
+    }
+
+    @Test
+    public void testValidatorsOfAnotherUrlAreNotReturned() {
+        ValidatorStore store = new InMemoryValidatorStore();
+        store.put(webUrl("https://github.com/a", 1), "\"a\"", null);
+
+        Assertions.assertThat(store.get(webUrl("https://github.com/b", 1))).isNull();
+        store.remove(webUrl("https://github.com/b", 1));
+        Assertions.assertThat(store.size()).isEqualTo(1);
+
+        store.put(webUrl("https://github.com/a", 1), null, null);
+        Assertions.assertThat(store.size()).isZero();
+    }
+
+    private static WebURL webUrl(String url, int docId) {
+        WebURL webUrl = new SimpleWebURL();
+        webUrl.setURL(url);
+        webUrl.setDocid(docId);
+        return webUrl;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+public class SleepycatDocIDServerTest {
+
+    @TempDir
+    Path folder;
+
+    private Environment env;
+    private SleepycatDocIDServer docIdServer;
+
+    @BeforeEach
+    public void setUp() {
+        EnvironmentConfig envConfig = new EnvironmentConfig();
+        envConfig.setAllowCreate(true);
+        env = new Environment(folder.toFile(), envConfig);
+        // Without a cache every lookup goes to the database
+        docIdServer = new SleepycatDocIDServer(env, new CrawlConfig(), 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        docIdServer.close();
+        env.close();
+    }
+
+    @Test
+    public void testBatchAssignsNewUrlsOnce() {
+        docIdServer.addUrlAndDocId("https://github.com/b", 5);
+
+        int[] docIds = docIdServer.getOrAssignDocIds(Arrays.asList(
+                "https://github.com/c", "https://github.com/b", "https://github.com/a", "https://github.com/c"));
+
+        Assertions.assertThat(docIds).containsExactly(6, 5, 7, 6);
+        Assertions.assertThat(docIdServer.getDocCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testBatchLookupFindsStoredUrlsOnly() {
+        docIdServer.addUrlAndDocId("https://github.com/b", 1);
+        docIdServer.addUrlAndDocId("https://github.com/d", 2);
+
+        int[] docIds = docIdServer.getDocIds(Arrays.asList(
+                "https://github.com/e", "https://github.com/d", "https://github.com/a",
+                "https://github.com/c", "https://github.com/b"));
+
+        Assertions.assertThat(docIds).containsExactly(-1, 2, -1, -1, 1);
+        Assertions.assertThat(docIdServer.getDocCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.robotstxt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import crawlercommons.robots.SimpleRobotRules;
+
+class RobotRulesStoreTest {
+
+	@TempDir
+	public Path folder;
+
+	@Test
+	void rulesAreReadAfterReopening() throws Exception {
+		Path file = folder.resolve(RobotstxtServer.FILE_NAME);
+		RobotRulesStore store = new RobotRulesStore(file);
+		store.put("github.com", newRules("/private"));
+		store.close();
+
+		store = new RobotRulesStore(file);
+		RobotRules rules = store.get("github.com");
+		store.close();
+
+		assertThat(rules).isNotNull();
+		assertThat(rules.isAllowed("https://github.com/private/a")).isFalse();
+		assertThat(rules.isAllowed("https://github.com/public")).isTrue();
+	}
+
+	@Test
+	void closedStoreHasNoRules() throws Exception {
+		RobotRulesStore store = new RobotRulesStore(folder.resolve(RobotstxtServer.FILE_NAME));
+		store.put("github.com", newRules("/private"));
+		store.close();
+
+		assertThat(store.get("github.com")).isNull();
+	}
+
+	@Test
+	void corruptRecordLengthIsRejected() throws Exception {
+		Path file = folder.resolve(RobotstxtServer.FILE_NAME);
+		RobotRulesStore store = new RobotRulesStore(file);
+		store.put("github.com", newRules("/private"));
+		store.close();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			// the length of the first record, right after the header
+			channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 8);
+		}
+
+		assertThatThrownBy(() -> new RobotRulesStore(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Corrupt");
+	}
+
+	private static RobotRules newRules(String disallowed) {
+		SimpleRobotRules rules = new SimpleRobotRules(SimpleRobotRules.RobotRulesMode.ALLOW_SOME);
+		rules.addRule(disallowed, false);
+		return new RobotRules(rules, System.currentTimeMillis());
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.robotstxt;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.test.SimpleWebURLFactory;
+import edu.uci.ics.crawler4j.test.TestUtils;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+class RobotstxtServerTest {
+
+	@TempDir
+	public File crawlStorageFolder;
+
+	@RegisterExtension
+	static WireMockExtension wm = WireMockExtension.newInstance()
+			.options(new WireMockConfiguration().dynamicPort())
+			.build();
+
+	@Test
+	void concurrentMissesFetchRobotsTxtOnce() throws Exception {
+		wm.stubFor(get(urlEqualTo("/robots.txt"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "text/plain")
+						.withFixedDelay(500)
+						.withBody("User-agent: *\nDisallow: /private/\n")));
+
+		CrawlConfig config = new CrawlConfig();
+		PageFetcher pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+		RobotstxtServer server = new RobotstxtServer(new RobotstxtConfig(), pageFetcher, new SimpleWebURLFactory());
+		server.setCrawlConfig(config);
+
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Boolean>> checks = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				String path = (i % 2 == 0) ? "/public/" : "/private/";
+				checks.add(() -> server.allows(newWebUrl(path + "page.html")));
+			}
+			List<Future<Boolean>> results = executor.invokeAll(checks);
+			for (int i = 0; i < threads; i++) {
+				assertThat(results.get(i).get()).isEqualTo(i % 2 == 0);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(server.allows(newWebUrl("/public/other.html"))).isTrue();
+
+		wm.verify(exactly(1), getRequestedFor(urlEqualTo("/robots.txt")));
+		assertThat(server.getLoadCount()).isEqualTo(1);
+		assertThat(server.getCacheHitCount() + server.getCacheMissCount()).isEqualTo(threads + 1);
+		assertThat(server.getCacheHitCount()).isGreaterThanOrEqualTo(1);
+		assertThat(server.getTotalLoadTime()).isGreaterThanOrEqualTo(500);
+
+		pageFetcher.shutDown();
+	}
+
+	@Test
+	void persistentRulesAreReusedAfterRestart() throws Exception {
+		wm.stubFor(get(urlEqualTo("/robots.txt"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "text/plain")
+						.withBody("User-agent: *\nDisallow: /private/\n")));
+
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+		config.setResumableCrawling(true);
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setPersistent(true);
+		PageFetcher pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+
+		RobotstxtServer first = new RobotstxtServer(robotstxtConfig, pageFetcher, new SimpleWebURLFactory());
+		first.setCrawlConfig(config);
+		assertThat(first.allows(newWebUrl("/private/page.html"))).isFalse();
+		first.close();
+
+		RobotstxtServer second = new RobotstxtServer(robotstxtConfig, pageFetcher, new SimpleWebURLFactory());
+		second.setCrawlConfig(config);
+		assertThat(second.allows(newWebUrl("/private/page.html"))).isFalse();
+		assertThat(second.allows(newWebUrl("/public/page.html"))).isTrue();
+		second.close();
+
+		wm.verify(exactly(1), getRequestedFor(urlEqualTo("/robots.txt")));
+		assertThat(second.getLoadCount()).isZero();
+		assertThat(new File(crawlStorageFolder, RobotstxtServer.FILE_NAME)).exists();
+
+		pageFetcher.shutDown();
+	}
+
+	@Test
+	void prefetchedChecksAreAnsweredOnceRobotsTxtIsFetched() throws Exception {
+		wm.stubFor(get(urlEqualTo("/robots.txt"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "text/plain")
+						.withFixedDelay(300)
+						.withBody("User-agent: *\nDisallow: /private/\n")));
+
+		CrawlConfig config = new CrawlConfig();
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setPrefetchThreads(2);
+		PageFetcher pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+		RobotstxtServer server = new RobotstxtServer(robotstxtConfig, pageFetcher, new SimpleWebURLFactory());
+		server.setCrawlConfig(config);
+
+		CompletableFuture<Boolean> allowed = server.allowsAsync(newWebUrl("/public/page.html"));
+		CompletableFuture<Boolean> disallowed = server.allowsAsync(newWebUrl("/private/page.html"));
+
+		assertThat(allowed.isDone()).isFalse();
+		assertThat(allowed.get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(disallowed.get(5, TimeUnit.SECONDS)).isFalse();
+		assertThat(server.allowsAsync(newWebUrl("/private/other.html")).getNow(true)).isFalse();
+		wm.verify(exactly(1), getRequestedFor(urlEqualTo("/robots.txt")));
+
+		server.close();
+		pageFetcher.shutDown();
+	}
+
+	@Test
+	void closeCompletesPendingChecks() throws Exception {
+		wm.stubFor(get(urlEqualTo("/robots.txt"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "text/plain")
+						.withFixedDelay(2000)
+						.withBody("User-agent: *\nDisallow: /private/\n")));
+
+		CrawlConfig config = new CrawlConfig();
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setPrefetchThreads(1);
+		PageFetcher pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+		RobotstxtServer server = new RobotstxtServer(robotstxtConfig, pageFetcher, new SimpleWebURLFactory());
+		server.setCrawlConfig(config);
+
+		// the check of the second host waits for the only prefetch thread
+		CompletableFuture<Boolean> running = server.allowsAsync(newWebUrl("/page.html"));
+		WebURL otherHost = new SimpleWebURLFactory().newWebUrl();
+		otherHost.setURL("http://127.0.0.1:" + wm.getPort() + "/page.html");
+		CompletableFuture<Boolean> queued = server.allowsAsync(otherHost);
+
+		server.close();
+
+		assertThat(running.isCompletedExceptionally()).isTrue();
+		assertThat(queued.isCompletedExceptionally()).isTrue();
+
+		pageFetcher.shutDown();
+	}
+
+	private static WebURL newWebUrl(String path) {
+		WebURL url = new SimpleWebURLFactory().newWebUrl();
+		url.setURL("http://localhost:" + wm.getPort() + path);
+		return url;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.sitemap;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.test.SimpleWebURLFactory;
+import edu.uci.ics.crawler4j.test.TestUtils;
+
+class SitemapLoaderTest {
+
+	@TempDir
+	public File crawlStorageFolder;
+
+	@RegisterExtension
+	static WireMockExtension wm = WireMockExtension.newInstance()
+			.options(new WireMockConfiguration().dynamicPort())
+			.build();
+
+	@Test
+	void unchangedUrlsAreSkippedOnRecrawl() throws Exception {
+		String base = "http://localhost:" + wm.getPort();
+		wm.stubFor(get(urlEqualTo("/sitemap_index.xml"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "application/xml")
+						.withBody("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+								+ "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+								+ "<sitemap><loc>" + base + "/old.xml.gz</loc><lastmod>2000-01-01</lastmod></sitemap>"
+								+ "<sitemap><loc>" + base + "/new.xml</loc></sitemap>"
+								+ "</sitemapindex>")));
+		wm.stubFor(get(urlEqualTo("/old.xml.gz"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "application/gzip")
+						.withBody(gzip(urlset(base + "/a", "2000-01-01")))));
+		wm.stubFor(get(urlEqualTo("/new.xml"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "application/xml")
+						.withBody(urlset(base + "/b", "2000-01-01").replace("</urlset>",
+								"<url><loc>" + base + "/c</loc><lastmod>2099-01-01</lastmod></url></urlset>"))));
+
+		List<String> urls = new ArrayList<>();
+		SitemapLoader loader = newLoader();
+		assertThat(loader.load(base + "/sitemap_index.xml", urls::addAll)).isEqualTo(3);
+		assertThat(urls).containsExactly(base + "/a", base + "/b", base + "/c");
+		loader.close(true);
+
+		urls.clear();
+		SitemapLoader recrawl = newLoader();
+		assertThat(recrawl.load(base + "/sitemap_index.xml", urls::addAll)).isEqualTo(1);
+		assertThat(urls).containsExactly(base + "/c");
+
+		wm.verify(exactly(1), getRequestedFor(urlEqualTo("/old.xml.gz")));
+		wm.verify(exactly(2), getRequestedFor(urlEqualTo("/new.xml")));
+	}
+
+	@Test
+	void readTimesAreNotSavedUnlessAllUrlsWereFetched() throws Exception {
+		String base = "http://localhost:" + wm.getPort();
+		wm.stubFor(get(urlEqualTo("/unfetched.xml"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "application/xml")
+						.withBody(urlset(base + "/a", "2000-01-01"))));
+
+		SitemapLoader loader = newLoader();
+		assertThat(loader.load(base + "/unfetched.xml", urls -> { })).isEqualTo(1);
+		loader.close(false);
+
+		assertThat(newLoader().load(base + "/unfetched.xml", urls -> { })).isEqualTo(1);
+	}
+
+	@Test
+	void urlsOfOtherHostsAreSkipped() throws Exception {
+		String base = "http://localhost:" + wm.getPort();
+		wm.stubFor(get(urlEqualTo("/hosts.xml"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "application/xml")
+						.withBody(urlset(base + "/a", "2000-01-01").replace("</urlset>",
+								"<url><loc>http://127.0.0.1:" + wm.getPort() + "/b</loc></url></urlset>"))));
+
+		List<String> urls = new ArrayList<>();
+		assertThat(newLoader().load(base + "/hosts.xml", urls::addAll)).isEqualTo(1);
+		assertThat(urls).containsExactly(base + "/a");
+
+		// Sitemaps listed in the robots.txt of a host may list its urls
+		urls.clear();
+		assertThat(newLoader().load(base + "/hosts.xml", "127.0.0.1", urls::addAll)).isEqualTo(2);
+		assertThat(urls).containsExactly(base + "/a", "http://127.0.0.1:" + wm.getPort() + "/b");
+	}
+
+	@Test
+	void redirectsDisallowedByRobotsTxtAreNotFollowed() throws Exception {
+		String base = "http://localhost:" + wm.getPort();
+		wm.stubFor(get(urlEqualTo("/robots.txt"))
+				.willReturn(aResponse()
+						.withStatus(200)
+						.withHeader("Content-Type", "text/plain")
+						.withBody("User-agent: *\nDisallow: /private/\n")));
+		wm.stubFor(get(urlEqualTo("/moved.xml"))
+				.willReturn(aResponse()
+						.withStatus(301)
+						.withHeader("Location", base + "/private/sitemap.xml")));
+
+		assertThat(newLoader().load(base + "/moved.xml", urls -> { })).isZero();
+		wm.verify(exactly(0), getRequestedFor(urlEqualTo("/private/sitemap.xml")));
+	}
+
+	private SitemapLoader newLoader() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(crawlStorageFolder.getAbsolutePath());
+		config.setPolitenessDelay(0);
+		PageFetcher pageFetcher = new PageFetcher(config, TestUtils.newNormalizer());
+		SimpleWebURLFactory factory = new SimpleWebURLFactory();
+		RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher, factory);
+		robotstxtServer.setCrawlConfig(config);
+		return new SitemapLoader(config, pageFetcher, robotstxtServer, factory);
+	}
+
+	private static String urlset(String url, String lastmod) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+				+ "<url><loc>" + url + "</loc><lastmod>" + lastmod + "</lastmod></url>"
+				+ "</urlset>";
+	}
+
+	private static byte[] gzip(String content) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -15,7 +15,16 @@
  */
 package edu.uci.ics.crawler4j.tests.crawler;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hc.core5.http.ContentType;
@@ -23,8 +32,10 @@ import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.entity.BasicHttpEntity;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.PageContent;
 import edu.uci.ics.crawler4j.test.Crawler4jTestUtils;
 import edu.uci.ics.crawler4j.url.WebURL;
 
@@ -51,4 +62,103 @@ public class PageTest {
 		// "charset should fallback to UTF-8"
 		"UTF-8".equals(page.getContentCharset());
 	}
+	
+	@Test
+	void contentBelowSpillThresholdIsKeptInMemory()
+			throws IOException
+	{
+		byte[] data = newContent(1000);
+		// "an entity of unknown length"
+		HttpEntity entity = new BasicHttpEntity(new ByteArrayInputStream(data), -1, ContentType.APPLICATION_OCTET_STREAM);
+		
+		Page page = new Page(Crawler4jTestUtils.newWebURLFactory().newWebUrl());
+		page.load(entity, 10_000, 4096);
+		
+		assertThat(page.getContent().isInMemory()).isTrue();
+		assertThat(page.getContentData()).isEqualTo(data);
+	}
+	
+	@Test
+	void contentAboveSpillThresholdIsStreamedFromFile()
+			throws IOException
+	{
+		byte[] data = newContent(100_000);
+		HttpEntity entity = new BasicHttpEntity(new ByteArrayInputStream(data), -1, ContentType.APPLICATION_OCTET_STREAM);
+		
+		Page page = new Page(Crawler4jTestUtils.newWebURLFactory().newWebUrl());
+		page.load(entity, 1_000_000, 4096);
+		
+		PageContent content = page.getContent();
+		assertThat(content.isInMemory()).isFalse();
+		assertThat(content.length()).isEqualTo(data.length);
+		try (InputStream in = content.openStream()) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(data);
+		}
+		ByteBuffer buffer = content.asByteBuffer();
+		assertThat(buffer.isReadOnly()).isTrue();
+		assertThat(buffer.get(99_999)).isEqualTo(data[99_999]);
+		
+		// "the file is gone once the page has been visited"
+		page.releaseContent();
+		assertThat(page.hasContent()).isFalse();
+	}
+	
+	@Test
+	void contentIsSpilledToTheGivenFolder(@TempDir Path folder)
+			throws IOException
+	{
+		byte[] data = newContent(100_000);
+		HttpEntity entity = new BasicHttpEntity(new ByteArrayInputStream(data), -1, ContentType.APPLICATION_OCTET_STREAM);
+		
+		Page page = new Page(Crawler4jTestUtils.newWebURLFactory().newWebUrl());
+		page.load(entity, 1_000_000, 4096, folder);
+		
+		try (Stream<Path> files = Files.list(folder)) {
+			assertThat(files.count()).isEqualTo(1);
+		}
+		page.releaseContent();
+		try (Stream<Path> files = Files.list(folder)) {
+			assertThat(files.count()).isEqualTo(0);
+		}
+	}
+	
+	@Test
+	void spilledContentIsTruncatedAtMaxBytes()
+			throws IOException
+	{
+		byte[] data = newContent(100_000);
+		HttpEntity entity = new BasicHttpEntity(new ByteArrayInputStream(data), data.length, ContentType.APPLICATION_OCTET_STREAM);
+		
+		Page page = new Page(Crawler4jTestUtils.newWebURLFactory().newWebUrl());
+		page.load(entity, 50_000, 4096);
+		
+		assertThat(page.isTruncated()).isTrue();
+		assertThat(page.getContent().length()).isEqualTo(50_000);
+		assertThat(page.getContentData()).isEqualTo(Arrays.copyOf(data, 50_000));
+		page.releaseContent();
+	}
+	
+	@Test
+	void contentLongerThanAnnouncedIsReadCompletely()
+			throws IOException
+	{
+		byte[] data = newContent(200_000);
+		// "a server announcing less than it sends"
+		HttpEntity entity = new BasicHttpEntity(new ByteArrayInputStream(data), 1000, ContentType.APPLICATION_OCTET_STREAM);
+		
+		Page page = new Page(Crawler4jTestUtils.newWebURLFactory().newWebUrl());
+		page.load(entity, 1_000_000);
+		
+		assertThat(page.isTruncated()).isFalse();
+		assertThat(page.getContentData()).isEqualTo(data);
+	}
+	
+	private static byte[] newContent(int length)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
 }
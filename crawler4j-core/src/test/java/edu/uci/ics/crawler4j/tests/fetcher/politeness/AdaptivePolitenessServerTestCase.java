@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.tests.fetcher.politeness;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.uci.ics.crawler4j.PolitenessServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.politeness.AdaptivePolitenessServer;
+import edu.uci.ics.crawler4j.test.SimpleWebURL;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class AdaptivePolitenessServerTestCase {
+
+    private AdaptivePolitenessServer politenessServer;
+
+    @BeforeEach
+    public void init() {
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(100);
+        config.setMaxConnectionsPerHost(4);
+        this.politenessServer = new AdaptivePolitenessServer(config);
+    }
+
+    @Test
+    public void testDelaysSecondRequest() {
+        WebURL webUrl = newWebUrl("https://github.com/yasserg/crawler4j");
+
+        Assertions.assertThat(politenessServer.applyPoliteness(webUrl))
+                .isEqualTo(PolitenessServer.NO_POLITENESS_APPLIED);
+        Assertions.assertThat(politenessServer.applyPoliteness(webUrl)).isGreaterThan(0);
+
+        WebURL otherHost = newWebUrl("http://docs.oracle.com/javase/8/docs/api/");
+        Assertions.assertThat(politenessServer.applyPoliteness(otherHost))
+                .isEqualTo(PolitenessServer.NO_POLITENESS_APPLIED);
+    }
+
+    @Test
+    public void testHealthyHostGetsMoreConcurrency() {
+        WebURL webUrl = newWebUrl("https://github.com/yasserg/crawler4j");
+
+        for (int i = 0; i < 20; i++) {
+            politenessServer.applyPoliteness(webUrl);
+            politenessServer.onResponse(webUrl, 200, 50, -1);
+        }
+
+        Assertions.assertThat(politenessServer.getConcurrency("github.com")).isEqualTo(4);
+        Assertions.assertThat(politenessServer.getDelay("github.com")).isEqualTo(100);
+    }
+
+    @Test
+    public void testBacksOffOnTooManyRequests() {
+        WebURL webUrl = newWebUrl("https://github.com/yasserg/crawler4j");
+
+        politenessServer.applyPoliteness(webUrl);
+        politenessServer.onResponse(webUrl, 429, 50, 2000);
+
+        Assertions.assertThat(politenessServer.getConcurrency("github.com")).isEqualTo(1);
+        Assertions.assertThat(politenessServer.getDelay("github.com")).isGreaterThanOrEqualTo(2000);
+        Assertions.assertThat(politenessServer.applyPoliteness(webUrl)).isGreaterThan(1000);
+    }
+
+    @Test
+    public void testBacksOffOnErrors() {
+        WebURL webUrl = newWebUrl("https://github.com/yasserg/crawler4j");
+
+        for (int i = 0; i < 10; i++) {
+            politenessServer.applyPoliteness(webUrl);
+            politenessServer.onResponse(webUrl, 200, 50, -1);
+        }
+        politenessServer.applyPoliteness(webUrl);
+        politenessServer.onFailure(webUrl, 1000);
+
+        Assertions.assertThat(politenessServer.getConcurrency("github.com")).isLessThan(4);
+        Assertions.assertThat(politenessServer.getDelay("github.com")).isGreaterThan(100);
+    }
+
+    @Test
+    public void testHonorsCrawlDelay() {
+        WebURL webUrl = newWebUrl("https://github.com/yasserg/crawler4j");
+        politenessServer.setCrawlDelay("github.com", 1000);
+
+        for (int i = 0; i < 10; i++) {
+            politenessServer.applyPoliteness(webUrl);
+            politenessServer.onResponse(webUrl, 200, 50, -1);
+        }
+
+        Assertions.assertThat(politenessServer.getConcurrency("github.com")).isEqualTo(1);
+        Assertions.assertThat(politenessServer.getDelay("github.com")).isEqualTo(1000);
+    }
+
+    private static WebURL newWebUrl(String url) {
+        WebURL webUrl = new SimpleWebURL();
+        webUrl.setURL(url);
+        return webUrl;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.tests.parser;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import edu.uci.ics.crawler4j.parser.HtmlContentHandler;
+
+public class HtmlContentHandlerTest {
+
+	@Test
+	void recordsTheFirstBaseHref() {
+		HtmlContentHandler handler = new HtmlContentHandler();
+
+		handler.startElement("", "base", "base", new AttributesImpl());
+		handler.startElement("", "base", "base", base("http://example.com/first/"));
+		handler.startElement("", "base", "base", base("http://example.com/second/"));
+
+		Assertions.assertThat(handler.getBaseUrl()).isEqualTo("http://example.com/first/");
+	}
+
+	private static AttributesImpl base(String href) {
+		AttributesImpl attributes = new AttributesImpl();
+		attributes.addAttribute("", "href", "href", "CDATA", href);
+		return attributes;
+	}
+}
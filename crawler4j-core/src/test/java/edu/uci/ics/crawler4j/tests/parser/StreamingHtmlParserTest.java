@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.tests.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.PageContent;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.HtmlParser;
+import edu.uci.ics.crawler4j.parser.StreamingHtmlParser;
+import edu.uci.ics.crawler4j.test.Crawler4jTestUtils;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+
+public class StreamingHtmlParserTest {
+
+	private static final String HTML = "<!DOCTYPE html><html><head>"
+			+ "<title>Fish &amp; Chips</title>"
+			+ "<base href=\"http://example.com/menu/\">"
+			+ "<meta name=\"ROBOTS\" content=\"noindex,nofollow\">"
+			+ "<script>if (a < b) { document.write('<a href=\"nope\">') }</script>"
+			+ "</head><body>"
+			+ "<p>Today <a href=\"fish.html?size=1&amp;salt=0\" rel=\"nofollow\">fresh <b>fish</b></a></p>"
+			+ "<!-- <a href=\"commented.html\">old</a> -->"
+			+ "<img src=\"/img/chips.png\"><a href=\"mailto:chef@example.com\">mail</a>"
+			+ "</body></html>";
+
+	@Test
+	void extractsLinksTitleAndMetaTags() throws Exception {
+		HtmlParseData parseData = parse(HTML);
+
+		Assertions.assertThat(parseData.getTitle()).isEqualTo("Fish & Chips");
+		Assertions.assertThat(parseData.getMetaTagValue("robots")).isEqualTo("noindex,nofollow");
+		Assertions.assertThat(parseData.getContentCharset()).isEqualTo("UTF-8");
+		Assertions.assertThat(parseData.getText()).contains("Today").contains("fresh").doesNotContain("document.write");
+		Assertions.assertThat(parseData.getOutgoingUrls())
+				.extracting(WebURL::getURL)
+				.containsExactlyInAnyOrder("http://example.com/menu/fish.html?salt=0&size=1", "http://example.com/img/chips.png");
+		Assertions.assertThat(parseData.getOutgoingUrls())
+				.filteredOn(url -> "a".equals(url.getTag()))
+				.singleElement()
+				.satisfies(url -> {
+					Assertions.assertThat(url.getAnchor()).isEqualTo("fresh fish");
+					Assertions.assertThat(url.getAttribute("rel")).isEqualTo("nofollow");
+				});
+		Assertions.assertThat(parseData.getHtml()).isEqualTo(HTML);
+	}
+
+	@Test
+	void canSkipText() throws Exception {
+		WebURLFactory webURLFactory = Crawler4jTestUtils.newWebURLFactory();
+		HtmlParser parser = new StreamingHtmlParser(new CrawlConfig(), Crawler4jTestUtils.newNormalizer(),
+				Crawler4jTestUtils.newTLDList(), webURLFactory, false);
+
+		HtmlParseData parseData = parser.parse(newPage(webURLFactory, "<p>text <a href=\"/a\">link</a></p>"));
+
+		Assertions.assertThat(parseData.getText()).isEmpty();
+		Assertions.assertThat(parseData.getOutgoingUrls()).singleElement()
+				.satisfies(url -> Assertions.assertThat(url.getAnchor()).isEqualTo("link"));
+	}
+
+	@Test
+	void spilledPageIsNeverLoadedIntoMemory(@TempDir Path folder) throws Exception {
+		StringBuilder html = new StringBuilder("<html><body><a href=\"/first\">first</a>");
+		while (html.length() < 100_000) {
+			html.append("<p>filler text</p>");
+		}
+		html.append("<a href=\"/last\">last</a></body></html>");
+		WebURLFactory webURLFactory = Crawler4jTestUtils.newWebURLFactory();
+		WebURL url = webURLFactory.newWebUrl();
+		url.setURL("http://example.com/index.html");
+		Page page = new StreamOnlyPage(url);
+		page.load(new StringEntity(html.toString(), ContentType.create("text/html", StandardCharsets.UTF_8)), 1_000_000,
+				4096, folder);
+		HtmlParser parser = new StreamingHtmlParser(new CrawlConfig(), Crawler4jTestUtils.newNormalizer(),
+				Crawler4jTestUtils.newTLDList(), webURLFactory);
+
+		HtmlParseData parseData = parser.parse(page);
+
+		Assertions.assertThat(parseData.getOutgoingUrls()).extracting(WebURL::getURL)
+				.containsExactlyInAnyOrder("http://example.com/first", "http://example.com/last");
+		Assertions.assertThat(parseData.getText()).startsWith("first").endsWith("last");
+		// "the html is read from the file when asked for"
+		Assertions.assertThat(parseData.getHtml()).isEqualTo(html.toString());
+		page.releaseContent();
+	}
+
+	private static HtmlParseData parse(String html) throws Exception {
+		WebURLFactory webURLFactory = Crawler4jTestUtils.newWebURLFactory();
+		HtmlParser parser = new StreamingHtmlParser(//
+				new CrawlConfig(), Crawler4jTestUtils.newNormalizer(), Crawler4jTestUtils.newTLDList(), webURLFactory);
+		return parser.parse(newPage(webURLFactory, html));
+	}
+
+	private static Page newPage(WebURLFactory webURLFactory, String html) throws Exception {
+		WebURL url = webURLFactory.newWebUrl();
+		url.setURL("http://example.com/index.html");
+		Page page = new Page(url);
+		page.load(new StringEntity(html, ContentType.create("text/html", StandardCharsets.UTF_8)), 1_000_000);
+		return page;
+	}
+
+	/**
+	 * A page whose spilled content can only be streamed, loading it into memory fails the test.
+	 */
+	private static class StreamOnlyPage extends Page {
+
+		StreamOnlyPage(WebURL url) {
+			super(url);
+		}
+
+		@Override
+		public byte[] getContentData() {
+			throw new AssertionError("the content must not be loaded into memory");
+		}
+
+		@Override
+		public PageContent getContent() {
+			PageContent content = super.getContent();
+			Assertions.assertThat(content.isInMemory()).isFalse();
+			return new PageContent() {
+				@Override
+				public long length() {
+					return content.length();
+				}
+
+				@Override
+				public InputStream openStream() throws IOException {
+					return content.openStream();
+				}
+
+				@Override
+				public ByteBuffer asByteBuffer() {
+					throw new AssertionError("the content must not be loaded into memory");
+				}
+
+				@Override
+				public byte[] toByteArray() {
+					throw new AssertionError("the content must not be loaded into memory");
+				}
+
+				@Override
+				public boolean isInMemory() {
+					return false;
+				}
+
+				@Override
+				public void close() throws IOException {
+					content.close();
+				}
+			};
+		}
+	}
+}
@@ -19,15 +19,30 @@ import com.zaxxer.hikari.HikariDataSource;
 import de.hshn.mi.crawler4j.exception.HSQLDBFetchException;
 import de.hshn.mi.crawler4j.exception.HSQLDBStoreException;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
 
 public class HSQLDBDocIDServerImpl implements DocIDServer {
 
-    private final Object mutex = new Object();
+    private static final Logger logger = LoggerFactory.getLogger(HSQLDBDocIDServerImpl.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
 
     private final HikariDataSource ds;
 
@@ -43,8 +58,11 @@ public class HSQLDBDocIDServerImpl implements DocIDServer {
      */
     @Override
     public int getDocId(String url) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             return existsWebUrl(url);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -69,7 +87,8 @@ public class HSQLDBDocIDServerImpl implements DocIDServer {
 
     @Override
     public int getNewDocID(String url) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             int docId = existsWebUrl(url);
 
             if (docId < 0) {
@@ -92,12 +111,107 @@ public class HSQLDBDocIDServerImpl implements DocIDServer {
 
             }
             return docId;
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Looks up all URLs with one query and inserts the new ones with one JDBC batch, in a single
+     * transaction. If the batch fails, the new URLs are inserted one by one instead, and only the
+     * failing ones get no docid. URLs which do not fit into the url column get no docid either;
+     * they are left out before the lookup, as they would fail the query of the whole batch.
+     */
+    @Override
+    public int[] getOrAssignDocIds(List<String> urls) {
+        lock.lock();
+        try {
+            try (Connection c = ds.getConnection()) {
+                c.setAutoCommit(false);
+                try {
+                    Set<String> storableUrls = new LinkedHashSet<>();
+                    for (String url : urls) {
+                        if (url.length() > HSQLDBFrontierConfiguration.MAX_URL_LENGTH) {
+                            logger.error("Could not assign a docid to {}, it is longer than {} characters", url,
+                                         HSQLDBFrontierConfiguration.MAX_URL_LENGTH);
+                        } else {
+                            storableUrls.add(url);
+                        }
+                    }
+                    Map<String, Integer> docIds = findDocIds(c, storableUrls);
+                    Set<String> newUrls = new LinkedHashSet<>();
+                    for (String url : storableUrls) {
+                        if (!docIds.containsKey(url)) {
+                            newUrls.add(url);
+                        }
+                    }
+                    if (!newUrls.isEmpty()) {
+                        try {
+                            insertUrls(c, newUrls);
+                        } catch (BatchUpdateException e) {
+                            c.rollback();
+                            logger.warn("Inserting a batch of {} urls failed, inserting them one by one: {}",
+                                        newUrls.size(), e.getMessage());
+                            for (String url : newUrls) {
+                                Savepoint savepoint = c.setSavepoint();
+                                try {
+                                    insertUrls(c, Collections.singleton(url));
+                                    c.releaseSavepoint(savepoint);
+                                } catch (SQLException urlException) {
+                                    c.rollback(savepoint);
+                                    logger.error("Could not assign a docid to {}", url, urlException);
+                                }
+                            }
+                        }
+                        docIds.putAll(findDocIds(c, newUrls));
+                    }
+                    c.commit();
+
+                    int[] result = new int[urls.size()];
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = docIds.getOrDefault(urls.get(i), -1);
+                    }
+                    return result;
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                }
+
+            } catch (SQLException e) {
+                throw new HSQLDBStoreException(e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void insertUrls(Connection c, Collection<String> urls) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO weburl(id,url) VALUES(nextval('id_master_seq'),?)")) {
+            for (String url : urls) {
+                ps.setString(1, url);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static Map<String, Integer> findDocIds(Connection c, Collection<String> urls) throws SQLException {
+        Map<String, Integer> docIds = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT u.id, u.url FROM weburl u WHERE u.url IN (UNNEST(?))")) {
+            ps.setArray(1, c.createArrayOf("VARCHAR", urls.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    docIds.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+        return docIds;
+    }
+
     @Override
     public void addUrlAndDocId(String url, int docId) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             try {
                 int previousId = getDocId(url);
 
@@ -122,6 +236,8 @@ public class HSQLDBDocIDServerImpl implements DocIDServer {
             } catch (RuntimeException e) {
                 throw new HSQLDBStoreException(e);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -148,6 +264,22 @@ public class HSQLDBDocIDServerImpl implements DocIDServer {
         }
     }
 
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        try (Connection c = ds.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("SELECT u.id, u.url FROM weburl u")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(rs.getString(2), rs.getInt(1));
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new HSQLDBFetchException(e);
+        }
+    }
+
     @Override
     public void close() {
         //nothing to do... ds is closed in frontier configuration...
@@ -31,6 +31,9 @@ import java.sql.SQLException;
 
 public class HSQLDBFrontierConfiguration implements FrontierConfiguration {
 
+    /** The maximum length of the URLs stored in the weburl table. */
+    static final int MAX_URL_LENGTH = 4096;
+
     private final HikariDataSource dataSource;
     private final DocIDServer docIDServer;
     private final Frontier frontier;
@@ -62,7 +65,7 @@ public class HSQLDBFrontierConfiguration implements FrontierConfiguration {
 
             String table = "CREATE TABLE IF NOT EXISTS weburl(" +
                     "  id bigint NOT NULL," +
-                    "  url varchar(4096)," +
+                    "  url varchar(" + MAX_URL_LENGTH + ")," +
                     "  parenturl varchar(4096)," +
                     "  parentid bigint," +
                     "  cdepth int," +
@@ -72,6 +75,12 @@ public class HSQLDBFrontierConfiguration implements FrontierConfiguration {
                     "  primary key (id)" +
                     ");";
 
+            String counterTable = "CREATE TABLE IF NOT EXISTS frontier_counter(" +
+                    "  status varchar(16) NOT NULL," +
+                    "  cnt bigint NOT NULL," +
+                    "  primary key (status)" +
+                    ");";
+
             String indexUrl = "CREATE INDEX IF NOT EXISTS idx_url ON weburl (url)";
             String indexStatus = "CREATE INDEX IF NOT EXISTS idx_status ON weburl (status)";
 
@@ -83,6 +92,10 @@ public class HSQLDBFrontierConfiguration implements FrontierConfiguration {
                 s.executeUpdate();
             }
 
+            try (PreparedStatement s = c.prepareStatement(counterTable)) {
+                s.executeUpdate();
+            }
+
             try (PreparedStatement s = c.prepareStatement(indexUrl)) {
                 s.executeUpdate();
             }
@@ -25,77 +25,135 @@ import edu.uci.ics.crawler4j.url.WebURLFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class HSQLDBFrontierImpl implements Frontier {
 
     private static final Logger logger = LoggerFactory.getLogger(HSQLDBFrontierImpl.class);
 
+    /**
+     * Row of the frontier_counter table which earlier versions kept at 1 while a crawl had the
+     * frontier open. If a database still has it set, its counters may be stale.
+     */
+    private static final String OPEN_MARKER = "OPEN";
+
     private final WebURLFactory factory;
     private final CrawlConfig config;
     private final HikariDataSource ds;
 
+    /**
+     * @deprecated not used for locking anymore, the frontier locks a private {@link ReentrantLock}
+     */
+    @Deprecated
     protected final Object mutex = new Object();
+
+    /**
+     * @deprecated not notified anymore, waiting crawlers await a private {@link Condition}
+     */
+    @Deprecated
     protected final Object waitingList = new Object();
 
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
     protected boolean isFinished = false;
     protected long scheduledPages;
 
+    /*
+     * The number of URLs per status. The frontier_counter table is updated in the transaction of
+     * each status change, these are its values as of the last commit.
+     */
+    private final Map<Status, LongAdder> counts = new EnumMap<>(Status.class);
+
     public HSQLDBFrontierImpl(HikariDataSource ds, WebURLFactory factory, CrawlConfig config) {
         this.ds = ds;
         this.config = config;
         this.factory = factory;
+        for (Status status : Status.values()) {
+            counts.put(status, new LongAdder());
+        }
+        loadCounters();
     }
 
     @Override
     public void scheduleAll(List<WebURL> urls) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
-            int newScheduledPage = 0;
-            for (WebURL url : urls) {
-                if ((maxPagesToFetch > 0) &&
-                        ((scheduledPages + newScheduledPage) >= maxPagesToFetch)) {
-                    break;
-                }
-
+        lock.lock();
+        try {
+            int toSchedule = urls.size();
+            if (maxPagesToFetch > 0) {
+                toSchedule = (int) Math.max(0, Math.min(toSchedule, maxPagesToFetch - scheduledPages));
+            }
+            if (toSchedule > 0) {
                 try {
-                    scheduleWebURL(url);
-                    newScheduledPage++;
+                    scheduledPages += scheduleWebURLs(urls.subList(0, toSchedule));
                 } catch (HSQLDBStoreException e) {
-                    logger.error("Error while putting the url in the work queue", e);
+                    logger.error("Error while putting the urls in the work queue", e);
                 }
-
-            }
-            if (newScheduledPage > 0) {
-                scheduledPages += newScheduledPage;
-            }
-            synchronized (waitingList) {
-                waitingList.notifyAll();
             }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void scheduleWebURL(WebURL url) {
+    /**
+     * Schedules the given URLs with one JDBC batch in a single transaction. If the batch fails, the
+     * URLs are scheduled one by one instead, so a single failing URL does not drop the others.
+     *
+     * @return the number of scheduled URLs
+     */
+    private int scheduleWebURLs(List<WebURL> urls) {
         try (Connection c = ds.getConnection()) {
-
-            try (PreparedStatement ps = c.prepareStatement(
-                    "UPDATE weburl " +
-                            "SET status = ?, parenturl = ?, parentid = ?, priority = ?, cdepth = ?, anchor = ? WHERE id = ?")) {
-
-                ps.setString(1, Status.SCHEDULED.name());
-                ps.setString(2, url.getParentUrl());
-                ps.setInt(3, url.getParentDocid());
-                ps.setInt(4, url.getPriority());
-                ps.setInt(5, url.getDepth());
-                ps.setString(6, url.getAnchor());
-                ps.setInt(7, url.getDocid());
-                ps.executeUpdate();
-
+            c.setAutoCommit(false);
+            try {
+                int scheduled;
+                Map<Status, Long> deltas = new EnumMap<>(Status.class);
+                try {
+                    scheduled = updateToScheduled(c, urls, deltas);
+                } catch (BatchUpdateException e) {
+                    if (urls.size() == 1) {
+                        throw e;
+                    }
+                    c.rollback();
+                    logger.warn("Scheduling a batch of {} urls failed, scheduling them one by one: {}",
+                                urls.size(), e.getMessage());
+                    scheduled = 0;
+                    deltas.clear();
+                    for (WebURL url : urls) {
+                        Savepoint savepoint = c.setSavepoint();
+                        try {
+                            scheduled += updateToScheduled(c, Collections.singletonList(url), deltas);
+                            c.releaseSavepoint(savepoint);
+                        } catch (SQLException urlException) {
+                            c.rollback(savepoint);
+                            logger.error("Error while putting the url {} in the work queue", url.getURL(),
+                                         urlException);
+                        }
+                    }
+                }
+                updateCounters(c, deltas);
+                c.commit();
+                addToCounters(deltas);
+                return scheduled;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
             }
 
         } catch (SQLException e) {
@@ -103,108 +161,396 @@ public class HSQLDBFrontierImpl implements Frontier {
         }
     }
 
+    /**
+     * Adds the changes of the status counters to the given deltas once the update has succeeded.
+     * New URLs have no status yet, so that is tried first.
+     */
+    private static int updateToScheduled(Connection c, List<WebURL> urls, Map<Status, Long> deltas)
+            throws SQLException {
+        String update = "UPDATE weburl " +
+                "SET status = ?, parenturl = ?, parentid = ?, priority = ?, cdepth = ?, anchor = ? WHERE id = ?";
+        return updateStatus(c, update, urls.size(), (ps, row) -> {
+            WebURL url = urls.get(row);
+            ps.setString(1, Status.SCHEDULED.name());
+            ps.setString(2, url.getParentUrl());
+            ps.setInt(3, url.getParentDocid());
+            ps.setInt(4, url.getPriority());
+            ps.setInt(5, url.getDepth());
+            ps.setString(6, url.getAnchor());
+            ps.setInt(7, url.getDocid());
+            return 7;
+        }, null, Status.SCHEDULED, deltas);
+    }
+
     @Override
     public void schedule(WebURL url) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
+        lock.lock();
+        try {
             try {
                 if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
-                    scheduleWebURL(url);
-                    scheduledPages++;
+                    scheduledPages += scheduleWebURLs(Collections.singletonList(url));
+                    notEmpty.signalAll();
                 }
             } catch (HSQLDBStoreException e) {
                 logger.error("Error while putting the url in the work queue", e);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void getNextURLs(int max, List<WebURL> result) {
-        while (true) {
-            synchronized (mutex) {
+        lock.lock();
+        try {
+            while (true) {
                 if (isFinished) {
                     return;
                 }
 
-                List<WebURL> curResults = new ArrayList<>();
+                try {
+                    result.addAll(claimNextURLs(max));
+                } catch (HSQLDBFetchException e) {
+                    logger.error(e.getLocalizedMessage(), e);
+                }
+
+                if (result.size() > 0) {
+                    return;
+                }
 
-                try (Connection c = ds.getConnection()) {
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ignored) {
+                    // Do nothing
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-                    try (PreparedStatement ps = c.prepareStatement("SELECT * FROM weburl u WHERE u.status = ? ORDER BY priority DESC LIMIT ?")) {
-                        ps.setString(1, Status.SCHEDULED.name());
-                        ps.setInt(2, max);
+    /**
+     * Selects the next scheduled URLs and marks them as in process with a single set-based
+     * update, both in one transaction.
+     */
+    private List<WebURL> claimNextURLs(int max) {
+        List<WebURL> curResults = new ArrayList<>();
+        Map<Status, Long> deltas = new EnumMap<>(Status.class);
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = c.prepareStatement("SELECT * FROM weburl u WHERE u.status = ? ORDER BY priority DESC LIMIT ?")) {
+                    ps.setString(1, Status.SCHEDULED.name());
+                    ps.setInt(2, max);
 
-                        try (ResultSet rs = ps.executeQuery()) {
-                            while (rs.next()) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
 
-                                WebURL webURL = factory.newWebUrl();
+                            WebURL webURL = factory.newWebUrl();
 
-                                webURL.setURL(rs.getString("url"));
-                                webURL.setDocid(rs.getInt("id"));
-                                webURL.setParentDocid(rs.getInt("parentid"));
-                                webURL.setParentUrl(rs.getString("parenturl"));
-                                webURL.setDepth(rs.getShort("cdepth"));
-                                webURL.setPriority(rs.getByte("priority"));
-                                webURL.setAnchor(rs.getString("anchor"));
+                            webURL.setURL(rs.getString("url"));
+                            webURL.setDocid(rs.getInt("id"));
+                            webURL.setParentDocid(rs.getInt("parentid"));
+                            webURL.setParentUrl(rs.getString("parenturl"));
+                            webURL.setDepth(rs.getShort("cdepth"));
+                            webURL.setPriority(rs.getByte("priority"));
+                            webURL.setAnchor(rs.getString("anchor"));
 
-                                curResults.add(webURL);
-                            }
+                            curResults.add(webURL);
                         }
                     }
+                }
 
-                } catch (SQLException e) {
-                    logger.error(e.getLocalizedMessage(), e);
+                if (!curResults.isEmpty()) {
+                    Long[] ids = new Long[curResults.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = (long) curResults.get(i).getDocid();
+                    }
+                    try (PreparedStatement ps = c.prepareStatement("UPDATE weburl u SET u.status = ? WHERE u.id IN (UNNEST(?))")) {
+                        ps.setString(1, Status.IN_PROCESS.name());
+                        ps.setArray(2, c.createArrayOf("BIGINT", ids));
+                        ps.executeUpdate();
+                    }
+                    deltas.put(Status.SCHEDULED, (long) -ids.length);
+                    deltas.put(Status.IN_PROCESS, (long) ids.length);
+                    updateCounters(c, deltas);
                 }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
 
-                result.addAll(curResults);
-                for (WebURL curPage : curResults) {
-                    try (Connection c = ds.getConnection()) {
+        } catch (SQLException e) {
+            throw new HSQLDBFetchException(e);
+        }
+        addToCounters(deltas);
+        return curResults;
+    }
 
-                        try (PreparedStatement ps = c.prepareStatement("UPDATE weburl u SET u.status = ? WHERE u.id = ?")) {
-                            ps.setString(1, Status.IN_PROCESS.name());
-                            ps.setInt(2, curPage.getDocid());
-                            ps.executeUpdate();
-                        }
+    @Override
+    public void setProcessed(WebURL webURL) {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                Map<Status, Long> deltas = new EnumMap<>(Status.class);
+                updateStatus(c, "UPDATE weburl u SET u.status = ? WHERE u.id = ?", 1, (ps, row) -> {
+                    ps.setString(1, Status.COMPLETED.name());
+                    ps.setInt(2, webURL.getDocid());
+                    return 2;
+                }, Status.IN_PROCESS, Status.COMPLETED, deltas);
+                updateCounters(c, deltas);
+                c.commit();
+                addToCounters(deltas);
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
 
-                    } catch (SQLException e) {
-                        logger.error(e.getLocalizedMessage(), e);
-                    }
+        } catch (SQLException e) {
+            logger.error(e.getLocalizedMessage(), e);
+        }
+
+    }
 
+    /**
+     * Clears the status of a url which the crawler skipped, so that it no longer counts as
+     * assigned. Like any url without a status it can be scheduled again.
+     */
+    @Override
+    public void setSkipped(WebURL webURL) {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                Map<Status, Long> deltas = new EnumMap<>(Status.class);
+                try (PreparedStatement ps = c.prepareStatement("UPDATE weburl u SET u.status = NULL WHERE u.id = ? AND u.status = ?")) {
+                    ps.setInt(1, webURL.getDocid());
+                    ps.setString(2, Status.IN_PROCESS.name());
+                    if (ps.executeUpdate() > 0) {
+                        deltas.put(Status.IN_PROCESS, -1L);
+                    }
                 }
+                updateCounters(c, deltas);
+                c.commit();
+                addToCounters(deltas);
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
 
-                if (result.size() > 0) {
-                    return;
+        } catch (SQLException e) {
+            logger.error(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Binds the parameters of one row of a status update.
+     */
+    @FunctionalInterface
+    private interface RowBinder {
+        /**
+         * @return the number of parameters bound
+         */
+        int bind(PreparedStatement ps, int row) throws SQLException;
+    }
+
+    /**
+     * Moves rows to the target status with JDBC batches of the given update, qualified by the
+     * status the rows are in, and adds the changes of the status counters to the given deltas.
+     * The update counts tell which rows were in that status, so no query is needed to count the
+     * changes. The expected status ({@code null} for rows without one) is tried first; only rows
+     * which were in another status need further batches.
+     *
+     * @return the number of updated rows
+     */
+    private static int updateStatus(Connection c, String update, int rows, RowBinder binder, Status expected,
+                                    Status target, Map<Status, Long> deltas) throws SQLException {
+        List<Status> fromStatuses = new ArrayList<>();
+        fromStatuses.add(expected);
+        for (Status status : Status.values()) {
+            if (status != expected) {
+                fromStatuses.add(status);
+            }
+        }
+        if (expected != null) {
+            fromStatuses.add(null);
+        }
+
+        List<Integer> pending = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            pending.add(row);
+        }
+        int updated = 0;
+        for (Status from : fromStatuses) {
+            if (pending.isEmpty()) {
+                break;
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    update + (from == null ? " AND status IS NULL" : " AND status = ?"))) {
+                for (int row : pending) {
+                    int bound = binder.bind(ps, row);
+                    if (from != null) {
+                        ps.setString(bound + 1, from.name());
+                    }
+                    ps.addBatch();
                 }
+                int[] updateCounts = ps.executeBatch();
+                List<Integer> notUpdated = new ArrayList<>();
+                for (int i = 0; i < updateCounts.length; i++) {
+                    if (updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                        updated++;
+                        if (from != target) {
+                            if (from != null) {
+                                deltas.merge(from, -1L, Long::sum);
+                            }
+                            deltas.merge(target, 1L, Long::sum);
+                        }
+                    } else {
+                        notUpdated.add(pending.get(i));
+                    }
+                }
+                pending = notUpdated;
             }
+        }
+        return updated;
+    }
 
-            try {
-                synchronized (waitingList) {
-                    waitingList.wait();
+    /**
+     * Adds the changes of the status counters to the frontier_counter table, in the transaction of
+     * the status changes.
+     */
+    private static void updateCounters(Connection c, Map<Status, Long> deltas) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE frontier_counter SET cnt = cnt + ? WHERE status = ?")) {
+            boolean changed = false;
+            for (Map.Entry<Status, Long> delta : deltas.entrySet()) {
+                if (delta.getValue() != 0) {
+                    ps.setLong(1, delta.getValue());
+                    ps.setString(2, delta.getKey().name());
+                    ps.addBatch();
+                    changed = true;
                 }
-            } catch (InterruptedException ignored) {
-                // Do nothing
             }
-            if (isFinished) {
-                return;
+            if (changed) {
+                ps.executeBatch();
             }
+        }
+    }
 
+    /**
+     * Applies the changes of a committed transaction to the status counters.
+     */
+    private void addToCounters(Map<Status, Long> deltas) {
+        for (Map.Entry<Status, Long> delta : deltas.entrySet()) {
+            counts.get(delta.getKey()).add(delta.getValue());
         }
     }
 
-    @Override
-    public void setProcessed(WebURL webURL) {
+    /**
+     * Loads the status counters from the frontier_counter table. A database without counters, or
+     * one left open by an earlier version which only saved them on close, is recounted once with
+     * a full scan.
+     */
+    private void loadCounters() {
         try (Connection c = ds.getConnection()) {
-
-            try (PreparedStatement ps = c.prepareStatement("UPDATE weburl u SET u.status = ? WHERE u.id = ?")) {
-                ps.setString(1, Status.COMPLETED.name());
-                ps.setInt(2, webURL.getDocid());
-                ps.executeUpdate();
+            c.setAutoCommit(false);
+            try {
+                Map<String, Long> saved = new HashMap<>();
+                try (PreparedStatement ps = c.prepareStatement("SELECT status, cnt FROM frontier_counter")) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            saved.put(rs.getString(1), rs.getLong(2));
+                        }
+                    }
+                }
+                boolean complete = saved.getOrDefault(OPEN_MARKER, 0L) == 0;
+                for (Status status : Status.values()) {
+                    complete &= saved.containsKey(status.name());
+                }
+                if (complete) {
+                    for (Status status : Status.values()) {
+                        LongAdder count = counts.get(status);
+                        count.reset();
+                        count.add(saved.get(status.name()));
+                    }
+                    if (saved.containsKey(OPEN_MARKER)) {
+                        saveCounters(c);
+                    }
+                } else {
+                    if (!saved.isEmpty()) {
+                        logger.info("The frontier counters may be stale, recounting the URLs");
+                    }
+                    reconcileCounters(c);
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
             }
 
         } catch (SQLException e) {
-            logger.error(e.getLocalizedMessage(), e);
+            throw new HSQLDBStoreException(e);
         }
+    }
 
+    /**
+     * Recounts the URLs per status with a full scan of the weburl table and replaces the stored
+     * status counters. The counters are kept up to date with each status change, so this is only
+     * needed to repair them, e.g. after the weburl table has been changed by hand.
+     */
+    public void reconcileCounters() {
+        lock.lock();
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                reconcileCounters(c);
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new HSQLDBStoreException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reconcileCounters(Connection c) throws SQLException {
+        Map<Status, Long> recounted = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            recounted.put(status, 0L);
+        }
+        try (PreparedStatement ps = c.prepareStatement("SELECT u.status, count(*) FROM weburl u WHERE u.status IS NOT NULL GROUP BY u.status")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    recounted.put(Status.valueOf(rs.getString(1)), rs.getLong(2));
+                }
+            }
+        }
+        for (Map.Entry<Status, Long> count : recounted.entrySet()) {
+            LongAdder counter = counts.get(count.getKey());
+            counter.reset();
+            counter.add(count.getValue());
+        }
+        saveCounters(c);
+    }
+
+    /**
+     * Replaces the stored status counters with the ones in memory.
+     */
+    private void saveCounters(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM frontier_counter")) {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO frontier_counter(status,cnt) VALUES(?,?)")) {
+            for (Map.Entry<Status, LongAdder> count : counts.entrySet()) {
+                ps.setString(1, count.getKey().name());
+                ps.setLong(2, count.getValue().sum());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
     }
 
     @Override
@@ -213,21 +559,7 @@ public class HSQLDBFrontierImpl implements Frontier {
     }
 
     private long getCount(Status status) {
-        try (Connection c = ds.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT count(*) FROM weburl WHERE status = ?")) {
-                ps.setString(1, status.name());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt(1);
-                    } else {
-                        return 0;
-                    }
-                }
-            }
-
-        } catch (SQLException e) {
-            throw new HSQLDBFetchException(e);
-        }
+        return counts.get(status).sum();
     }
 
     @Override
@@ -250,16 +582,21 @@ public class HSQLDBFrontierImpl implements Frontier {
         return isFinished;
     }
 
+    /**
+     * Does nothing, the status counters are stored with each status change.
+     */
     @Override
     public void close() {
-        //nothing to do
     }
 
     @Override
     public void finish() {
-        isFinished = true;
-        synchronized (waitingList) {
-            waitingList.notifyAll();
+        lock.lock();
+        try {
+            isFinished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 }
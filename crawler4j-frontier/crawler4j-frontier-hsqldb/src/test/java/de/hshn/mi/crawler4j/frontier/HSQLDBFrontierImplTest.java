@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.hshn.mi.crawler4j.frontier;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class HSQLDBFrontierImplTest {
+
+    /** Longer than the url and anchor columns. */
+    private static final String TOO_LONG = "x".repeat(5000);
+
+    @TempDir
+    Path folder;
+
+    private CrawlConfig config;
+    private HSQLDBFrontierConfiguration frontierConfiguration;
+
+    @BeforeEach
+    public void init() {
+        config = new CrawlConfig();
+        config.setCrawlStorageFolder(folder.toString());
+        config.setResumableCrawling(true);
+        frontierConfiguration = new HSQLDBFrontierConfiguration(config, 2);
+    }
+
+    @AfterEach
+    public void close() {
+        frontierConfiguration.close();
+    }
+
+    @Test
+    public void testFailingUrlDoesNotDropTheOthersOfItsBatch() {
+        DocIDServer docIdServer = frontierConfiguration.getDocIDServer();
+
+        int[] docIds = docIdServer.getOrAssignDocIds(
+                Arrays.asList("https://github.com/a", "https://github.com/" + TOO_LONG, "https://github.com/b"));
+
+        Assertions.assertThat(docIds[0]).isPositive();
+        Assertions.assertThat(docIds[1]).isEqualTo(-1);
+        Assertions.assertThat(docIds[2]).isPositive();
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(docIds[2]);
+    }
+
+    @Test
+    public void testFailingUrlDoesNotDropTheOthersOfItsSchedule() {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        WebURL a = newUrl("https://github.com/a");
+        WebURL b = newUrl("https://github.com/b");
+        b.setAnchor(TOO_LONG);
+        WebURL c = newUrl("https://github.com/c");
+
+        frontier.scheduleAll(Arrays.asList(a, b, c));
+
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(2);
+        Assertions.assertThat(next(frontier)).containsExactlyInAnyOrder("https://github.com/a", "https://github.com/c");
+    }
+
+    @Test
+    public void testCountersFollowStatusChanges() {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        frontier.scheduleAll(Arrays.asList(newUrl("https://github.com/a"), newUrl("https://github.com/b"),
+                                           newUrl("https://github.com/c")));
+
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(2, result);
+        frontier.setProcessed(result.get(0));
+
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCountersFollowUnusualStatusChanges() {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        WebURL a = newUrl("https://github.com/a");
+        WebURL b = newUrl("https://github.com/b");
+        frontier.scheduleAll(Arrays.asList(a, b));
+
+        // Processed without having been assigned, then scheduled again
+        frontier.setProcessed(a);
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(1);
+
+        frontier.scheduleAll(Arrays.asList(a, b));
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(2);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(0);
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCountersAreResumedAfterClose() {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        frontier.scheduleAll(Arrays.asList(newUrl("https://github.com/a"), newUrl("https://github.com/b")));
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(1, result);
+        frontier.setProcessed(result.get(0));
+        frontier.close();
+        frontierConfiguration.close();
+
+        frontierConfiguration = new HSQLDBFrontierConfiguration(config, 2);
+        frontier = frontierConfiguration.getFrontier();
+
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCountersAreStoredWithEachStatusChange() throws Exception {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        frontier.scheduleAll(Arrays.asList(newUrl("https://github.com/a"), newUrl("https://github.com/b")));
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(1, result);
+        // Only the database connections are closed, as after a crash
+        frontierConfiguration.close();
+        // A change the counters do not know about shows that they are not recounted on start
+        try (Connection c = DriverManager.getConnection(
+                "jdbc:hsqldb:file:" + folder + "/frontier;sql.syntax_pgs=true", "sa", "");
+             Statement statement = c.createStatement()) {
+            statement.executeUpdate("UPDATE weburl SET status = NULL");
+        }
+
+        frontierConfiguration = new HSQLDBFrontierConfiguration(config, 2);
+        frontier = frontierConfiguration.getFrontier();
+
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(1);
+
+        ((HSQLDBFrontierImpl) frontier).reconcileCounters();
+        Assertions.assertThat(frontier.getQueueLength()).isZero();
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isZero();
+    }
+
+    @Test
+    public void testSkippedUrlIsNotAssignedAnymore() {
+        Frontier frontier = frontierConfiguration.getFrontier();
+        frontier.scheduleAll(Arrays.asList(newUrl("https://github.com/a"), newUrl("https://github.com/b")));
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(2, result);
+
+        frontier.setSkipped(result.get(0));
+
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(1);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isZero();
+    }
+
+    private WebURL newUrl(String url) {
+        WebURL webURL = frontierConfiguration.getWebURLFactory().newWebUrl();
+        webURL.setURL(url);
+        webURL.setDocid(frontierConfiguration.getDocIDServer().getNewDocID(url));
+        return webURL;
+    }
+
+    private static List<String> next(Frontier frontier) {
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(10, result);
+        return result.stream().map(WebURL::getURL).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.util.Util;
+
+/**
+ * A {@link DocIDServer} which keeps its index off-heap, in a memory-mapped open addressing hash table.
+ * <p>
+ * Each slot holds a 64 bit fingerprint of the URL, its docid and the position of the URL in a
+ * separate, append-only file. Lookups compare the URL itself once the fingerprints match, so URLs
+ * with the same fingerprint get their own docids. The table doubles once it is 70% full.
+ * <p>
+ * The file starts with a header holding the number of entries, the last docid and the length of
+ * the URL file, which are updated with every insert, so the index can be reopened without scanning
+ * it.
+ */
+public class MmapDocIDServer implements DocIDServer {
+    private static final Logger logger = LoggerFactory.getLogger(MmapDocIDServer.class);
+
+    private static final int MAGIC = 0x43344a45; // "C4JE"
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 24;
+    private static final long MAX_SLOTS_PER_CHUNK = 1 << 24;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final long DEFAULT_CAPACITY = 1 << 20;
+
+    private final Path file;
+    private final CrawlConfig config;
+    private final FileChannel urls;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Table table;
+    private long size;
+    private int lastDocID;
+    private long urlsLength;
+
+    public MmapDocIDServer(Path file, CrawlConfig config) throws IOException {
+        this.file = file;
+        this.config = config;
+        Path urlsFile = file.resolveSibling(file.getFileName() + ".urls");
+        if (config.isResumableCrawling() && Files.exists(file)) {
+            table = Table.open(file);
+            size = table.header.getLong(8);
+            lastDocID = table.header.getInt(16);
+            urlsLength = table.header.getLong(24);
+            urls = FileChannel.open(urlsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+            if (size > 0) {
+                logger.info("Loaded {} URLs that had been detected in previous crawl.", size);
+            }
+        } else {
+            long expected = config.getExpectedUrlCount();
+            long capacity = expected > 0 ? capacityFor(expected) : DEFAULT_CAPACITY;
+            table = Table.create(file, capacity);
+            urls = FileChannel.open(urlsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    private static long capacityFor(long entries) {
+        long needed = (long) Math.ceil(entries / MAX_LOAD_FACTOR);
+        return Math.max(DEFAULT_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    /**
+     * Returns the docid of an already seen url.
+     *
+     * @param url the URL for which the docid is returned.
+     * @return the docid of the url if it is seen before. Otherwise -1 is returned.
+     */
+    @Override
+    public int getDocId(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        long fingerprint = fingerprint(url);
+        lock.readLock().lock();
+        try {
+            return find(fingerprint, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getNewDocID(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        long fingerprint = fingerprint(url);
+        lock.writeLock().lock();
+        try {
+            // Make sure that we have not already assigned a docid for this URL
+            int docID = find(fingerprint, bytes);
+            if (docID > 0) {
+                return docID;
+            }
+
+            ++lastDocID;
+            insert(fingerprint, bytes, lastDocID);
+            return lastDocID;
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting new DocID", e);
+                return -1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addUrlAndDocId(String url, int docId) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        long fingerprint = fingerprint(url);
+        lock.writeLock().lock();
+        try {
+            if (docId <= lastDocID) {
+                throw new IllegalArgumentException(
+                    "Requested doc id: " + docId + " is not larger than: " + lastDocID);
+            }
+
+            // Make sure that we have not already assigned a docid for this URL
+            int prevDocid = find(fingerprint, bytes);
+            if (prevDocid > 0) {
+                if (prevDocid == docId) {
+                    return;
+                }
+                throw new IllegalArgumentException("Doc id: " + prevDocid + " is already assigned to URL: " + url);
+            }
+
+            lastDocID = docId;
+            insert(fingerprint, bytes, docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isSeenBefore(String url) {
+        return getDocId(url) != -1;
+    }
+
+    @Override
+    public int getDocCount() {
+        lock.readLock().lock();
+        try {
+            return (int) size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        lock.readLock().lock();
+        try {
+            Table current = openTable();
+            for (long slot = 0; slot < current.capacity; slot++) {
+                if (current.fingerprintAt(slot) != 0) {
+                    byte[] url = readUrl(current.urlOffsetAt(slot), current.urlLengthAt(slot));
+                    action.accept(new String(url, StandardCharsets.UTF_8), current.docIdAt(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the index to disk.
+     */
+    public void force() {
+        lock.readLock().lock();
+        try {
+            urls.force(false);
+            openTable().force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not flush the urls of the docid index " + file, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the index to disk and releases its mappings. Does nothing if it is already closed.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (table != null) {
+                urls.force(false);
+                table.force();
+                table.close();
+                table = null;
+            }
+            urls.close();
+        } catch (IOException e) {
+            logger.error("Error while closing the docid index {}", file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Table openTable() {
+        if (table == null) {
+            throw new IllegalStateException("The docid index " + file + " has been closed");
+        }
+        return table;
+    }
+
+    private int find(long fingerprint, byte[] url) {
+        Table current = openTable();
+        for (long slot = fingerprint & current.mask; ; slot = (slot + 1) & current.mask) {
+            long candidate = current.fingerprintAt(slot);
+            if (candidate == 0) {
+                return -1;
+            }
+            if (candidate == fingerprint && current.urlLengthAt(slot) == url.length
+                && Arrays.equals(readUrl(current.urlOffsetAt(slot), url.length), url)) {
+                return current.docIdAt(slot);
+            }
+        }
+    }
+
+    private void insert(long fingerprint, byte[] url, int docId) {
+        if (size + 1 > openTable().capacity * MAX_LOAD_FACTOR) {
+            resize();
+        }
+        long urlOffset = urlsLength;
+        try {
+            ByteBuffer source = ByteBuffer.wrap(url);
+            while (source.hasRemaining()) {
+                urls.write(source, urlOffset + source.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store the url in the docid index " + file, e);
+        }
+        table.put(fingerprint, docId, urlOffset, url.length);
+        size++;
+        urlsLength += url.length;
+        table.header.putLong(8, size);
+        table.header.putInt(16, lastDocID);
+        table.header.putLong(24, urlsLength);
+    }
+
+    private byte[] readUrl(long offset, int length) {
+        ByteBuffer target = ByteBuffer.allocate(length);
+        try {
+            while (target.hasRemaining()) {
+                if (urls.read(target, offset + target.position()) < 0) {
+                    throw new IOException("Unexpected end of file at offset " + (offset + target.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read a url of the docid index " + file, e);
+        }
+        return target.array();
+    }
+
+    private void resize() {
+        Path tmp = file.resolveSibling(file.getFileName() + ".resize");
+        try {
+            Table resized = Table.create(tmp, table.capacity * 2);
+            for (long slot = 0; slot < table.capacity; slot++) {
+                long fingerprint = table.fingerprintAt(slot);
+                if (fingerprint != 0) {
+                    resized.put(fingerprint, table.docIdAt(slot), table.urlOffsetAt(slot), table.urlLengthAt(slot));
+                }
+            }
+            resized.header.putLong(8, size);
+            resized.header.putInt(16, lastDocID);
+            resized.header.putLong(24, urlsLength);
+            resized.force();
+            // Windows does not replace or move files which are still mapped, so both tables are
+            // unmapped before the move and the resized one is mapped again afterwards
+            resized.close();
+            table.close();
+            table = null;
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                table = Table.open(file);
+            }
+            logger.debug("Resized the docid index to {} slots", table.capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not resize the docid index " + file, e);
+        }
+    }
+
+    /*
+     * 0 marks an empty slot.
+     */
+    long fingerprint(String url) {
+        long h = Util.hash64(url);
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * The mapped file. Slots are spread over several mappings, as one mapping is limited to 2 GB.
+     */
+    private static final class Table {
+        private final MappedByteBuffer header;
+        private final MappedByteBuffer[] chunks;
+        private final long capacity;
+        private final long mask;
+        private final int slotsPerChunkBits;
+
+        private Table(MappedByteBuffer header, MappedByteBuffer[] chunks, long capacity) {
+            this.header = header;
+            this.chunks = chunks;
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.slotsPerChunkBits = Long.numberOfTrailingZeros(Math.min(capacity, MAX_SLOTS_PER_CHUNK));
+        }
+
+        static Table create(Path file, long capacity) throws IOException {
+            Files.deleteIfExists(file);
+            Table table = map(file, capacity);
+            table.header.putInt(0, MAGIC);
+            table.header.putInt(4, Long.numberOfTrailingZeros(capacity));
+            return table;
+        }
+
+        static Table open(Path file) throws IOException {
+            int capacityBits;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                int magic = header.getInt(0);
+                capacityBits = header.getInt(4);
+                MappedBuffers.unmap(header);
+                if (magic != MAGIC) {
+                    throw new IOException("Not a docid index: " + file);
+                }
+            }
+            return map(file, 1L << capacityBits);
+        }
+
+        private static Table map(Path file, long capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                long slotsPerChunk = Math.min(capacity, MAX_SLOTS_PER_CHUNK);
+                MappedByteBuffer[] chunks = new MappedByteBuffer[(int) (capacity / slotsPerChunk)];
+                for (int i = 0; i < chunks.length; i++) {
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                            HEADER_SIZE + i * slotsPerChunk * SLOT_SIZE, slotsPerChunk * SLOT_SIZE);
+                }
+                return new Table(header, chunks, capacity);
+            }
+        }
+
+        void put(long fingerprint, int docId, long urlOffset, int urlLength) {
+            long slot = fingerprint & mask;
+            while (fingerprintAt(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            MappedByteBuffer chunk = chunks[(int) (slot >>> slotsPerChunkBits)];
+            int offset = offset(slot);
+            chunk.putInt(offset + 8, docId);
+            chunk.putInt(offset + 12, urlLength);
+            chunk.putLong(offset + 16, urlOffset);
+            chunk.putLong(offset, fingerprint);
+        }
+
+        long fingerprintAt(long slot) {
+            return chunks[(int) (slot >>> slotsPerChunkBits)].getLong(offset(slot));
+        }
+
+        int docIdAt(long slot) {
+            return chunks[(int) (slot >>> slotsPerChunkBits)].getInt(offset(slot) + 8);
+        }
+
+        int urlLengthAt(long slot) {
+            return chunks[(int) (slot >>> slotsPerChunkBits)].getInt(offset(slot) + 12);
+        }
+
+        long urlOffsetAt(long slot) {
+            return chunks[(int) (slot >>> slotsPerChunkBits)].getLong(offset(slot) + 16);
+        }
+
+        private int offset(long slot) {
+            return (int) (slot & ((1L << slotsPerChunkBits) - 1)) * SLOT_SIZE;
+        }
+
+        void force() {
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+
+        void close() {
+            MappedBuffers.unmap(header);
+            for (MappedByteBuffer chunk : chunks) {
+                MappedBuffers.unmap(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.MmapWebURLFactory;
+import edu.uci.ics.crawler4j.url.WebURLFactory;
+import edu.uci.ics.crawler4j.util.IO;
+
+/**
+ * Configures a {@link MmapFrontierImpl} together with a {@link MmapDocIDServer}. Both are stored in
+ * the "frontier" folder of the crawl storage folder and need no database.
+ */
+public class MmapFrontierConfiguration implements FrontierConfiguration {
+
+    protected static final Logger logger = LoggerFactory.getLogger(MmapFrontierConfiguration.class);
+
+    /** Default size of the segment files holding the queued URLs. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final MmapFrontierImpl frontier;
+    private final MmapDocIDServer docIdServer;
+
+    public MmapFrontierConfiguration(CrawlConfig config, int segmentSize) throws Exception {
+        Path frontierFolder = new File(config.getCrawlStorageFolder(), "frontier").toPath();
+        if (!Files.exists(frontierFolder)) {
+            try {
+                Files.createDirectories(frontierFolder);
+                logger.debug("Created folder: " + frontierFolder.toAbsolutePath());
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage(), e);
+                throw new Exception(
+                        "Failed creating the frontier folder: " + frontierFolder.toAbsolutePath());
+            }
+        }
+
+        if (!config.isResumableCrawling()) {
+            IO.deleteFolderContents(frontierFolder.toFile());
+            logger.info("Deleted contents of: " + frontierFolder +
+                    " ( as you have configured resumable crawling to false )");
+        }
+
+        this.docIdServer = new MmapDocIDServer(frontierFolder.resolve("docids.idx"), config);
+        this.frontier = new MmapFrontierImpl(frontierFolder, segmentSize, config);
+    }
+
+    public MmapFrontierConfiguration(CrawlConfig config) throws Exception {
+        this(config, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Override
+    public DocIDServer getDocIDServer() {
+        return docIdServer;
+    }
+
+    @Override
+    public Frontier getFrontier() {
+        return frontier;
+    }
+
+    @Override
+    public WebURLFactory getWebURLFactory() {
+        return new MmapWebURLFactory();
+    }
+
+    /**
+     * Closes the frontier and the DocIDServer, if the CrawlController has not done so already, so
+     * their files are no longer mapped.
+     */
+    @Override
+    public void close() {
+        frontier.close();
+        docIdServer.close();
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A {@link Frontier} which stores the queued URLs in append-only, memory-mapped segment files.
+ * <p>
+ * There is one FIFO queue per priority, and URLs of lower priority values are handed out first.
+ * Within a priority URLs are handed out in the order they were scheduled.
+ * <p>
+ * For resumable crawling the read and write positions of the queues, the counters and the URLs
+ * currently being processed are saved to a checkpoint file, every {@link #CHECKPOINT_INTERVAL_MS}
+ * and on {@link #close()}. A resumed crawl continues from the last checkpoint: URLs handed out since
+ * then are handed out again, and URLs scheduled since then are recovered as far as they made it to
+ * disk.
+ */
+public class MmapFrontierImpl implements Frontier {
+    protected static final Logger logger = LoggerFactory.getLogger(MmapFrontierImpl.class);
+
+    public static final long CHECKPOINT_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x43344a46; // "C4JF"
+
+    private final CrawlConfig config;
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<Byte, MmapSegmentQueue> queues = new TreeMap<>();
+    private final Set<WebURL> inProcessPages = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    protected boolean isFinished = false;
+
+    /* Set once the queues have been closed, as their mappings must not be used anymore. */
+    private boolean closed;
+
+    protected long scheduledPages;
+    protected long queuedPages;
+    protected long processedPages;
+
+    private long lastCheckpoint;
+
+    public MmapFrontierImpl(Path directory, int segmentSize, CrawlConfig config) throws IOException {
+        this.config = config;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE_NAME);
+        if (config.isResumableCrawling() && Files.exists(checkpoint)) {
+            List<WebURL> previouslyInProcess = readCheckpoint(checkpoint);
+            if (!previouslyInProcess.isEmpty()) {
+                logger.info("Rescheduling {} URLs from previous crawl.", previouslyInProcess.size());
+                for (WebURL url : previouslyInProcess) {
+                    enqueue(url);
+                }
+                checkpoint();
+            }
+        } else if (config.isResumableCrawling()) {
+            checkpoint();
+        }
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    private List<WebURL> readCheckpoint(Path checkpoint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a frontier checkpoint: " + checkpoint);
+            }
+            scheduledPages = in.readLong();
+            processedPages = in.readLong();
+            int numQueues = in.readInt();
+            for (int i = 0; i < numQueues; i++) {
+                byte priority = in.readByte();
+                MmapSegmentQueue queue = new MmapSegmentQueue(queueDirectory(priority), segmentSize, in);
+                queues.put(priority, queue);
+                queuedPages += queue.size();
+            }
+            int numInProcess = in.readInt();
+            List<WebURL> urls = new ArrayList<>(numInProcess);
+            for (int i = 0; i < numInProcess; i++) {
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                urls.add(WebURLRecords.fromRecord(record));
+            }
+            logger.info("Loaded {} queued URLs from the checkpoint of the previous crawl.", queuedPages);
+            return urls;
+        }
+    }
+
+    /**
+     * Saves the state of the frontier. Must be called with the lock held.
+     */
+    private void checkpoint() {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE_NAME);
+        Path tmp = directory.resolve(CHECKPOINT_FILE_NAME + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeLong(scheduledPages);
+                out.writeLong(processedPages);
+                out.writeInt(queues.size());
+                for (Map.Entry<Byte, MmapSegmentQueue> entry : queues.entrySet()) {
+                    entry.getValue().force();
+                    out.writeByte(entry.getKey());
+                    entry.getValue().writeState(out);
+                }
+                out.writeInt(inProcessPages.size());
+                for (WebURL url : inProcessPages) {
+                    byte[] record = WebURLRecords.toRecord(url);
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (MmapSegmentQueue queue : queues.values()) {
+                queue.deleteConsumedSegments();
+            }
+        } catch (IOException e) {
+            logger.error("Error while writing the frontier checkpoint", e);
+        }
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    private void checkpointIfDue() {
+        if (config.isResumableCrawling()
+            && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MS) {
+            checkpoint();
+        }
+    }
+
+    private Path queueDirectory(byte priority) {
+        return directory.resolve("queue-" + priority);
+    }
+
+    private void enqueue(WebURL url) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The frontier in " + directory + " has been closed");
+        }
+        MmapSegmentQueue queue = queues.get(url.getPriority());
+        if (queue == null) {
+            queue = new MmapSegmentQueue(queueDirectory(url.getPriority()), segmentSize,
+                                         config.isResumableCrawling());
+            queues.put(url.getPriority(), queue);
+            if (config.isResumableCrawling()) {
+                // Makes sure the new queue is recovered after a crash
+                checkpoint();
+            }
+        }
+        queue.append(WebURLRecords.toRecord(url));
+        queuedPages++;
+    }
+
+    @Override
+    public void scheduleAll(List<WebURL> urls) {
+        int maxPagesToFetch = config.getMaxPagesToFetch();
+        lock.lock();
+        try {
+            int newScheduledPage = 0;
+            for (WebURL url : urls) {
+                if ((maxPagesToFetch > 0) &&
+                    ((scheduledPages + newScheduledPage) >= maxPagesToFetch)) {
+                    break;
+                }
+
+                try {
+                    enqueue(url);
+                    newScheduledPage++;
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Error while putting the url in the work queue", e);
+                }
+            }
+            scheduledPages += newScheduledPage;
+            if (newScheduledPage > 0) {
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void schedule(WebURL url) {
+        int maxPagesToFetch = config.getMaxPagesToFetch();
+        lock.lock();
+        try {
+            if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
+                enqueue(url);
+                scheduledPages++;
+                notEmpty.signalAll();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error while putting the url in the work queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void getNextURLs(int max, List<WebURL> result) {
+        lock.lock();
+        try {
+            while (true) {
+                if (isFinished || closed) {
+                    return;
+                }
+                try {
+                    for (MmapSegmentQueue queue : queues.values()) {
+                        while (result.size() < max) {
+                            byte[] record = queue.poll();
+                            if (record == null) {
+                                break;
+                            }
+                            WebURL url = WebURLRecords.fromRecord(record);
+                            queuedPages--;
+                            inProcessPages.add(url);
+                            result.add(url);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Error while getting next urls", e);
+                }
+                checkpointIfDue();
+
+                if (result.size() > 0) {
+                    return;
+                }
+
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ignored) {
+                    // Do nothing
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setProcessed(WebURL webURL) {
+        lock.lock();
+        try {
+            processedPages++;
+            if (!inProcessPages.remove(webURL)) {
+                logger.warn("Could not remove: {} from list of processed pages.", webURL.getURL());
+            }
+            if (!closed) {
+                checkpointIfDue();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a url which the crawler skipped from the in-process set, so that it is neither counted
+     * as assigned nor handed out again on resume.
+     */
+    @Override
+    public void setSkipped(WebURL webURL) {
+        lock.lock();
+        try {
+            if (!inProcessPages.remove(webURL)) {
+                logger.warn("Could not remove: {} from list of skipped pages.", webURL.getURL());
+            }
+            if (!closed) {
+                checkpointIfDue();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getQueueLength() {
+        lock.lock();
+        try {
+            return queuedPages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfAssignedPages() {
+        lock.lock();
+        try {
+            return inProcessPages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfProcessedPages() {
+        lock.lock();
+        try {
+            return processedPages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getNumberOfScheduledPages() {
+        lock.lock();
+        try {
+            return scheduledPages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * Saves a checkpoint and releases the mappings of the queues. Does nothing if it is already
+     * closed.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (config.isResumableCrawling()) {
+                checkpoint();
+            }
+            for (MmapSegmentQueue queue : queues.values()) {
+                queue.close();
+            }
+            closed = true;
+            // wakes crawlers still waiting for URLs
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void finish() {
+        lock.lock();
+        try {
+            isFinished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FIFO queue of binary records stored in append-only, memory-mapped segment files.
+ * <p>
+ * Each record is a 4 byte length followed by the payload. The length is written after the payload,
+ * so a record with a length of 0 marks the end of the written data, even after a crash. A segment
+ * which has no room for the next record is closed with a length of -1 and writing continues in the
+ * next segment. Segments which have been read completely are deleted right away, or, if the queue
+ * keeps a saved state, by {@link #deleteConsumedSegments()} once that state has been written, as
+ * the saved read position may still point into them.
+ * <p>
+ * This class is not thread-safe.
+ */
+class MmapSegmentQueue {
+    private static final Logger logger = LoggerFactory.getLogger(MmapSegmentQueue.class);
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean keepConsumedSegments;
+    private final List<Path> consumedSegments = new ArrayList<>();
+
+    private long readSegment;
+    private int readOffset;
+    private MappedByteBuffer readBuffer;
+
+    private long writeSegment;
+    private int writeOffset;
+    private MappedByteBuffer writeBuffer;
+
+    private long size;
+
+    /**
+     * Creates an empty queue, deleting any segments left in the directory.
+     */
+    MmapSegmentQueue(Path directory, int segmentSize, boolean keepConsumedSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.keepConsumedSegments = keepConsumedSegments;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*.segment")) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        }
+        readBuffer = map(0);
+        writeBuffer = readBuffer;
+    }
+
+    /**
+     * Opens a queue from the state saved by {@link #writeState(DataOutput)}. Records which were
+     * appended after the state was saved are recovered, as far as they made it to disk.
+     */
+    MmapSegmentQueue(Path directory, int segmentSize, DataInput state) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.keepConsumedSegments = true;
+        size = state.readLong();
+        readSegment = state.readLong();
+        readOffset = state.readInt();
+        writeSegment = state.readLong();
+        writeOffset = state.readInt();
+        readBuffer = map(readSegment);
+        writeBuffer = writeSegment == readSegment ? readBuffer : map(writeSegment);
+
+        long recovered = 0;
+        while (true) {
+            int length = writeOffset + 4 <= segmentSize ? writeBuffer.getInt(writeOffset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                if (!Files.exists(segmentPath(writeSegment + 1))) {
+                    break;
+                }
+                writeSegment++;
+                writeOffset = 0;
+                writeBuffer = map(writeSegment);
+            } else if (length > 0 && writeOffset + 4 + length <= segmentSize) {
+                writeOffset += 4 + length;
+                recovered++;
+            } else {
+                break;
+            }
+        }
+        if (recovered > 0) {
+            logger.info("Recovered {} records written after the last checkpoint in {}", recovered, directory);
+            size += recovered;
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(size);
+        out.writeLong(readSegment);
+        out.writeInt(readOffset);
+        out.writeLong(writeSegment);
+        out.writeInt(writeOffset);
+    }
+
+    long size() {
+        return size;
+    }
+
+    void append(byte[] record) {
+        if (4 + record.length > segmentSize) {
+            throw new IllegalArgumentException(
+                "Record of " + record.length + " bytes does not fit into a segment of " + segmentSize + " bytes");
+        }
+        if (writeOffset + 4 + record.length > segmentSize) {
+            if (writeOffset + 4 <= segmentSize) {
+                writeBuffer.putInt(writeOffset, END_OF_SEGMENT);
+            }
+            writeBuffer.force();
+            if (writeBuffer != readBuffer) {
+                MappedBuffers.unmap(writeBuffer);
+            }
+            writeSegment++;
+            writeOffset = 0;
+            writeBuffer = map(writeSegment);
+        }
+        ByteBuffer target = writeBuffer.duplicate();
+        target.position(writeOffset + 4);
+        target.put(record);
+        writeBuffer.putInt(writeOffset, record.length);
+        writeOffset += 4 + record.length;
+        size++;
+    }
+
+    /**
+     * @return the oldest record, or {@code null} if the queue is empty.
+     */
+    byte[] poll() {
+        if (size == 0) {
+            return null;
+        }
+        while (true) {
+            int length = readOffset + 4 <= segmentSize ? readBuffer.getInt(readOffset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                nextReadSegment();
+                continue;
+            }
+            if (length <= 0) {
+                throw new IllegalStateException(
+                    "Corrupt record at offset " + readOffset + " of segment " + segmentPath(readSegment));
+            }
+            byte[] record = new byte[length];
+            ByteBuffer source = readBuffer.duplicate();
+            source.position(readOffset + 4);
+            source.get(record);
+            readOffset += 4 + length;
+            size--;
+            return record;
+        }
+    }
+
+    /**
+     * Flushes all appended records to disk.
+     */
+    void force() {
+        writeBuffer.force();
+    }
+
+    /**
+     * Deletes the segments which have been read completely.
+     */
+    void deleteConsumedSegments() {
+        for (Path segment : consumedSegments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                logger.warn("Could not delete segment {}", segment, e);
+            }
+        }
+        consumedSegments.clear();
+    }
+
+    /**
+     * Flushes all appended records to disk and releases the mappings. The queue must not be used
+     * afterwards.
+     */
+    void close() {
+        force();
+        if (readBuffer != writeBuffer) {
+            MappedBuffers.unmap(readBuffer);
+        }
+        MappedBuffers.unmap(writeBuffer);
+        readBuffer = null;
+        writeBuffer = null;
+    }
+
+    private void nextReadSegment() {
+        Path finished = segmentPath(readSegment);
+        if (readBuffer != writeBuffer) {
+            MappedBuffers.unmap(readBuffer);
+        }
+        readSegment++;
+        readOffset = 0;
+        readBuffer = readSegment == writeSegment ? writeBuffer : map(readSegment);
+        consumedSegments.add(finished);
+        if (!keepConsumedSegments) {
+            deleteConsumedSegments();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%019d.segment", segment));
+    }
+
+    private MappedByteBuffer map(long segment) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map segment " + segmentPath(segment), e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import edu.uci.ics.crawler4j.url.MmapWebURLImpl;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Binary layout of the {@link WebURL} records of the memory-mapped frontier: docid, parent docid,
+ * depth and priority, followed by the URL, parent URL and anchor as length-prefixed UTF-8 strings.
+ * The same fields as in the Sleepycat frontier are stored.
+ */
+final class WebURLRecords {
+
+    private WebURLRecords() {
+    }
+
+    static byte[] toRecord(WebURL url) {
+        byte[] location = bytes(url.getURL());
+        byte[] parentUrl = bytes(url.getParentUrl());
+        byte[] anchor = bytes(url.getAnchor());
+        ByteBuffer record = ByteBuffer.allocate(4 + 4 + 2 + 1 + length(location) + length(parentUrl) + length(anchor));
+        record.putInt(url.getDocid());
+        record.putInt(url.getParentDocid());
+        record.putShort(url.getDepth());
+        record.put(url.getPriority());
+        putString(record, location);
+        putString(record, parentUrl);
+        putString(record, anchor);
+        return record.array();
+    }
+
+    static WebURL fromRecord(byte[] data) {
+        ByteBuffer record = ByteBuffer.wrap(data);
+        MmapWebURLImpl webURL = new MmapWebURLImpl();
+        webURL.setDocid(record.getInt());
+        webURL.setParentDocid(record.getInt());
+        webURL.setDepth(record.getShort());
+        webURL.setPriority(record.get());
+        webURL.setURL(getString(record));
+        webURL.setParentUrl(getString(record));
+        webURL.setAnchor(getString(record));
+        return webURL;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(value.length);
+            record.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+public class MmapDocIDServerTest {
+
+    @TempDir
+    Path folder;
+
+    private CrawlConfig config;
+
+    @BeforeEach
+    public void init() {
+        config = new CrawlConfig();
+        config.setCrawlStorageFolder(folder.toString());
+        config.setResumableCrawling(true);
+    }
+
+    @Test
+    public void testDocIdsAreLookedUp() throws Exception {
+        MmapDocIDServer docIdServer = new MmapDocIDServer(folder.resolve("docids.idx"), config);
+
+        int first = docIdServer.getNewDocID("https://github.com/a");
+        int second = docIdServer.getNewDocID("https://github.com/b");
+
+        Assertions.assertThat(docIdServer.getNewDocID("https://github.com/a")).isEqualTo(first);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(second);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/c")).isEqualTo(-1);
+        Assertions.assertThat(docIdServer.isSeenBefore("https://github.com/c")).isFalse();
+        Assertions.assertThat(docIdServer.getDocCount()).isEqualTo(2);
+        docIdServer.close();
+    }
+
+    @Test
+    public void testUrlsWithTheSameFingerprintGetTheirOwnDocIds() throws Exception {
+        MmapDocIDServer docIdServer = new MmapDocIDServer(folder.resolve("docids.idx"), config) {
+            @Override
+            long fingerprint(String url) {
+                return 42;
+            }
+        };
+
+        int first = docIdServer.getNewDocID("https://github.com/a");
+        int second = docIdServer.getNewDocID("https://github.com/b");
+
+        Assertions.assertThat(second).isNotEqualTo(first);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(first);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(second);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/c")).isEqualTo(-1);
+        docIdServer.close();
+    }
+
+    @Test
+    public void testIndexIsResumedAfterClose() throws Exception {
+        Path file = folder.resolve("docids.idx");
+        MmapDocIDServer docIdServer = new MmapDocIDServer(file, config);
+        docIdServer.getNewDocID("https://github.com/a");
+        docIdServer.addUrlAndDocId("https://github.com/b", 5);
+        docIdServer.close();
+
+        docIdServer = new MmapDocIDServer(file, config);
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(1);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/b")).isEqualTo(5);
+        Assertions.assertThat(docIdServer.getNewDocID("https://github.com/c")).isEqualTo(6);
+        Map<String, Integer> docIds = new HashMap<>();
+        docIdServer.forEach(docIds::put);
+        Assertions.assertThat(docIds).containsEntry("https://github.com/a", 1)
+                .containsEntry("https://github.com/b", 5)
+                .containsEntry("https://github.com/c", 6)
+                .hasSize(3);
+        docIdServer.close();
+    }
+
+    @Test
+    public void testIndexIsResumedAfterResize() throws Exception {
+        Path file = folder.resolve("docids.idx");
+        MmapDocIDServer docIdServer = new MmapDocIDServer(file, config);
+        // More urls than the smallest index holds
+        int count = 800_000;
+        for (int i = 1; i <= count; i++) {
+            docIdServer.getNewDocID("https://github.com/" + i);
+        }
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/1")).isEqualTo(1);
+        docIdServer.close();
+
+        docIdServer = new MmapDocIDServer(file, config);
+
+        Assertions.assertThat(docIdServer.getDocCount()).isEqualTo(count);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/1")).isEqualTo(1);
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/" + count)).isEqualTo(count);
+        Assertions.assertThat(docIdServer.getNewDocID("https://github.com/a")).isEqualTo(count + 1);
+        docIdServer.close();
+    }
+
+    @Test
+    public void testIndexIsEmptyForNewCrawl() throws Exception {
+        Path file = folder.resolve("docids.idx");
+        MmapDocIDServer docIdServer = new MmapDocIDServer(file, config);
+        docIdServer.getNewDocID("https://github.com/a");
+        docIdServer.close();
+
+        config.setResumableCrawling(false);
+        docIdServer = new MmapDocIDServer(file, config);
+
+        Assertions.assertThat(docIdServer.getDocId("https://github.com/a")).isEqualTo(-1);
+        Assertions.assertThat(docIdServer.getDocCount()).isZero();
+        docIdServer.close();
+    }
+
+    @Test
+    public void testClosedIndexCannotBeUsed() throws Exception {
+        MmapDocIDServer docIdServer = new MmapDocIDServer(folder.resolve("docids.idx"), config);
+        docIdServer.close();
+        docIdServer.close();
+
+        Assertions.assertThatThrownBy(() -> docIdServer.getDocId("https://github.com/a"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.crawler4j.frontier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.MmapWebURLImpl;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class MmapFrontierImplTest {
+
+    /** Small enough for a few URLs to fill a segment. */
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path folder;
+
+    private CrawlConfig config;
+    private MmapFrontierImpl frontier;
+    private int docId;
+
+    @BeforeEach
+    public void init() throws Exception {
+        config = new CrawlConfig();
+        config.setCrawlStorageFolder(folder.toString());
+        config.setResumableCrawling(true);
+        frontier = new MmapFrontierImpl(folder, SEGMENT_SIZE, config);
+    }
+
+    @AfterEach
+    public void close() {
+        frontier.close();
+    }
+
+    @Test
+    public void testUrlsAreHandedOutByPriorityThenInScheduleOrder() {
+        frontier.schedule(newUrl("https://github.com/a", 1));
+        frontier.schedule(newUrl("https://github.com/b", 0));
+        frontier.scheduleAll(List.of(newUrl("https://github.com/c", 1), newUrl("https://github.com/d", 0)));
+
+        Assertions.assertThat(next(10)).containsExactly(
+                "https://github.com/b", "https://github.com/d", "https://github.com/a", "https://github.com/c");
+        Assertions.assertThat(frontier.getQueueLength()).isZero();
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(4);
+    }
+
+    @Test
+    public void testSegmentsRollOver() throws Exception {
+        config.setResumableCrawling(false);
+        frontier.close();
+        frontier = new MmapFrontierImpl(folder, SEGMENT_SIZE, config);
+        List<String> urls = IntStream.range(0, 50).mapToObj(i -> "https://github.com/" + i)
+                .collect(Collectors.toList());
+        for (String url : urls) {
+            frontier.schedule(newUrl(url, 0));
+        }
+        Assertions.assertThat(segments()).hasSizeGreaterThan(5);
+
+        Assertions.assertThat(next(50)).containsExactlyElementsOf(urls);
+        // Segments which have been read completely are deleted
+        Assertions.assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    public void testQueueIsResumedAfterClose() throws Exception {
+        List<String> urls = IntStream.range(0, 30).mapToObj(i -> "https://github.com/" + i)
+                .collect(Collectors.toList());
+        for (String url : urls) {
+            frontier.schedule(newUrl(url, 0));
+        }
+        List<WebURL> handedOut = new ArrayList<>();
+        frontier.getNextURLs(10, handedOut);
+        for (WebURL url : handedOut.subList(0, 9)) {
+            frontier.setProcessed(url);
+        }
+        frontier.close();
+
+        frontier = new MmapFrontierImpl(folder, SEGMENT_SIZE, config);
+
+        // The url which was not processed is handed out again, after the queued ones
+        List<String> expected = new ArrayList<>(urls.subList(10, 30));
+        expected.add(urls.get(9));
+        Assertions.assertThat(frontier.getQueueLength()).isEqualTo(21);
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isEqualTo(9);
+        Assertions.assertThat(next(30)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testSkippedUrlIsNotResumed() throws Exception {
+        frontier.scheduleAll(List.of(newUrl("https://github.com/a", 0), newUrl("https://github.com/b", 0)));
+        List<WebURL> handedOut = new ArrayList<>();
+        frontier.getNextURLs(10, handedOut);
+        frontier.setSkipped(handedOut.get(0));
+        Assertions.assertThat(frontier.getNumberOfAssignedPages()).isEqualTo(1);
+        frontier.close();
+
+        frontier = new MmapFrontierImpl(folder, SEGMENT_SIZE, config);
+
+        Assertions.assertThat(frontier.getNumberOfProcessedPages()).isZero();
+        Assertions.assertThat(next(10)).containsExactly("https://github.com/b");
+    }
+
+    @Test
+    public void testClosedFrontierHandsOutNothing() {
+        frontier.schedule(newUrl("https://github.com/a", 0));
+        frontier.close();
+
+        frontier.schedule(newUrl("https://github.com/b", 0));
+
+        Assertions.assertThat(next(10)).isEmpty();
+    }
+
+    private List<String> next(int max) {
+        List<WebURL> result = new ArrayList<>();
+        frontier.getNextURLs(max, result);
+        return result.stream().map(WebURL::getURL).collect(Collectors.toList());
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(file -> file.toString().endsWith(".segment")).collect(Collectors.toList());
+        }
+    }
+
+    private WebURL newUrl(String url, int priority) {
+        WebURL webURL = new MmapWebURLImpl();
+        webURL.setURL(url);
+        webURL.setDocid(++docId);
+        webURL.setPriority((byte) priority);
+        return webURL;
+    }
+}
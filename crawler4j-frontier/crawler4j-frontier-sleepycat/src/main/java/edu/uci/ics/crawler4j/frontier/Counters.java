@@ -18,6 +18,7 @@ package edu.uci.ics.crawler4j.frontier;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,8 +51,14 @@ public class Counters {
     protected Environment env;
     private final CrawlConfig config;
 
+    /**
+     * @deprecated not used for locking anymore, use {@link #lock}
+     */
+    @Deprecated
     protected final Object mutex = new Object();
 
+    protected final ReentrantLock lock = new ReentrantLock();
+
     protected Map<String, Long> counterValues;
 
     public Counters(Environment env, CrawlConfig config) {
@@ -92,17 +99,21 @@ public class Counters {
     }
 
     public long getValue(String name) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             Long value = counterValues.get(name);
             if (value == null) {
                 return 0;
             }
             return value;
+        } finally {
+            lock.unlock();
         }
     }
 
     public void setValue(String name, long value) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             try {
                 counterValues.put(name, value);
                 if (statisticsDB != null) {
@@ -118,6 +129,8 @@ public class Counters {
                     logger.error("Exception setting value", e);
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -126,9 +139,12 @@ public class Counters {
     }
 
     public void increment(String name, long addition) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             long prevValue = getValue(name);
             setValue(name, prevValue + addition);
+        } finally {
+            lock.unlock();
         }
     }
 
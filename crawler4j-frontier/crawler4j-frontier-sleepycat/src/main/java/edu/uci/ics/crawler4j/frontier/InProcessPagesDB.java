@@ -47,7 +47,8 @@ public class InProcessPagesDB extends WorkQueues {
     }
 
     public boolean removeURL(WebURL webUrl) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             DatabaseEntry key = getDatabaseEntryKey(webUrl);
             DatabaseEntry value = new DatabaseEntry();
             Transaction txn = beginTransaction();
@@ -63,6 +64,8 @@ public class InProcessPagesDB extends WorkQueues {
             } finally {
                 commit(txn);
             }
+        } finally {
+            lock.unlock();
         }
         return false;
     }
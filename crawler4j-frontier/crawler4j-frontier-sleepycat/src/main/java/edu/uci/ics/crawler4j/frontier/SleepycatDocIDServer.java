@@ -18,6 +18,7 @@ package edu.uci.ics.crawler4j.frontier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
@@ -29,35 +30,71 @@ import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.util.Util;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
 
 /**
+ * DocID server backed by a Berkeley DB database.
+ *
+ * <p>Access is striped by URL hash, so only lookups of URLs which fall into the same stripe
+ * contend with each other. Each stripe fronts the database with a small LRU cache of recently
+ * resolved URLs.
+ *
  * @author Yasser Ganjisaffar
  */
-
 public class SleepycatDocIDServer implements DocIDServer{
     private static final Logger logger = LoggerFactory.getLogger(SleepycatDocIDServer.class);
 
+    /** Default number of URL to docid entries kept in memory. */
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private static final int STRIPES = 64;
+
     private final Database docIDsDB;
     private static final String DATABASE_NAME = "DocIDs";
 
-    private final Object mutex = new Object();
+    private final Stripe[] stripes;
 
     private final CrawlConfig config;
-    private int lastDocID;
+    private final AtomicInteger lastDocID = new AtomicInteger();
 
     public SleepycatDocIDServer(Environment env, CrawlConfig config) {
+        this(env, config, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the number of URL to docid entries kept in memory in front of the database,
+     *                  0 disables the cache.
+     */
+    public SleepycatDocIDServer(Environment env, CrawlConfig config, int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative: " + cacheSize);
+        }
         this.config = config;
         DatabaseConfig dbConfig = new DatabaseConfig();
         dbConfig.setAllowCreate(true);
         dbConfig.setTransactional(config.isResumableCrawling());
         dbConfig.setDeferredWrite(!config.isResumableCrawling());
-        lastDocID = 0;
         docIDsDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+        stripes = new Stripe[STRIPES];
+        int stripeCacheSize = (cacheSize + STRIPES - 1) / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCacheSize);
+        }
         if (config.isResumableCrawling()) {
             int docCount = getDocCount();
             if (docCount > 0) {
                 logger.info("Loaded {} URLs that had been detected in previous crawl.", docCount);
-                lastDocID = docCount;
+                // Docids may have gaps, e.g. if storing a new one failed, so the count is no
+                // upper bound of the assigned docids
+                lastDocID.set(readMaxDocId());
             }
         }
     }
@@ -69,63 +106,211 @@ public class SleepycatDocIDServer implements DocIDServer{
      * @return the docid of the url if it is seen before. Otherwise -1 is returned.
      */
     public int getDocId(String url) {
-        synchronized (mutex) {
-            OperationStatus result;
-            DatabaseEntry value = new DatabaseEntry();
-            try {
-                DatabaseEntry key = new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8));
-                result = docIDsDB.get(null, key, value, null);
-
-            } catch (RuntimeException e) {
-                if (config.isHaltOnError()) {
-                    throw e;
-                } else {
-                    logger.error("Exception thrown while getting DocID", e);
-                    return -1;
-                }
+        Stripe stripe = stripeFor(url);
+        Integer cached = stripe.getCached(url);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Docids are never reassigned, so the database can be read without holding the stripe
+        int docId;
+        try {
+            docId = readDocId(url);
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting DocID", e);
+                return -1;
             }
+        }
+        if (docId > 0) {
+            stripe.putCached(url, docId);
+        }
+        return docId;
+    }
 
-            if ((result == OperationStatus.SUCCESS) && (value.getData().length > 0)) {
-                return Util.byteArray2Int(value.getData());
+    public int getNewDocID(String url) {
+        Stripe stripe = stripeFor(url);
+        stripe.lock.lock();
+        try {
+            // Make sure that we have not already assigned a docid for this URL
+            Integer cached = stripe.cache.get(url);
+            if (cached != null) {
+                return cached;
+            }
+            int docID = readDocId(url);
+            if (docID <= 0) {
+                docID = lastDocID.incrementAndGet();
+                docIDsDB.put(null, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
+                             new DatabaseEntry(Util.int2ByteArray(docID)));
+            }
+            stripe.cache.put(url, docID);
+            return docID;
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting new DocID", e);
+                return -1;
             }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
 
-            return -1;
+    /**
+     * Looks the cache misses up in key order with one cursor, without holding their stripes.
+     */
+    @Override
+    public int[] getDocIds(List<String> urls) {
+        int[] docIds = new int[urls.size()];
+        List<Integer> misses = lookUpCached(urls, docIds);
+        if (misses.isEmpty()) {
+            return docIds;
+        }
+        try {
+            readDocIds(urls, misses, docIds);
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting DocIDs", e);
+            }
         }
+        for (int i : misses) {
+            if (docIds[i] > 0) {
+                stripeFor(urls.get(i)).putCached(urls.get(i), docIds[i]);
+            }
+        }
+        return docIds;
     }
 
-    public int getNewDocID(String url) {
-        synchronized (mutex) {
-            try {
-                // Make sure that we have not already assigned a docid for this URL
-                int docID = getDocId(url);
-                if (docID > 0) {
-                    return docID;
+    /**
+     * Locks the stripes of all cache misses, looks the misses up in key order with one cursor and
+     * assigns new docids to the unknown URLs in list order. Holding the stripes during the lookup
+     * makes it authoritative, so no URL is read twice.
+     */
+    @Override
+    public int[] getOrAssignDocIds(List<String> urls) {
+        int[] docIds = new int[urls.size()];
+        List<Integer> misses = lookUpCached(urls, docIds);
+        if (misses.isEmpty()) {
+            return docIds;
+        }
+
+        boolean[] needed = new boolean[STRIPES];
+        for (int i : misses) {
+            needed[stripeIndex(urls.get(i))] = true;
+        }
+        // Stripes are always taken in index order, so concurrent batches cannot deadlock
+        List<Stripe> locked = new ArrayList<>();
+        try {
+            for (int s = 0; s < STRIPES; s++) {
+                if (needed[s]) {
+                    stripes[s].lock.lock();
+                    locked.add(stripes[s]);
+                }
+            }
+            readDocIds(urls, misses, docIds);
+            Map<String, Integer> assigned = new HashMap<>();
+            for (int i : misses) {
+                String url = urls.get(i);
+                if (docIds[i] <= 0) {
+                    Integer repeated = assigned.get(url);
+                    if (repeated != null) {
+                        docIds[i] = repeated;
+                    } else {
+                        docIds[i] = lastDocID.incrementAndGet();
+                        docIDsDB.put(null, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
+                                     new DatabaseEntry(Util.int2ByteArray(docIds[i])));
+                        assigned.put(url, docIds[i]);
+                    }
                 }
+                stripeFor(url).cache.put(url, docIds[i]);
+            }
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting new DocIDs", e);
+                for (int i : misses) {
+                    if (docIds[i] <= 0) {
+                        docIds[i] = -1;
+                    }
+                }
+            }
+        } finally {
+            for (Stripe stripe : locked) {
+                stripe.lock.unlock();
+            }
+        }
+        return docIds;
+    }
 
-                ++lastDocID;
-                docIDsDB.put(null, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
-                             new DatabaseEntry(Util.int2ByteArray(lastDocID)));
-                return lastDocID;
-            } catch (RuntimeException e) {
-                if (config.isHaltOnError()) {
-                    throw e;
-                } else {
-                    logger.error("Exception thrown while getting new DocID", e);
-                    return -1;
+    /**
+     * Fills in the cached docids and returns the indexes of the other URLs, whose docids are set
+     * to -1.
+     */
+    private List<Integer> lookUpCached(List<String> urls, int[] docIds) {
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < docIds.length; i++) {
+            Integer cached = stripeFor(urls.get(i)).getCached(urls.get(i));
+            if (cached != null) {
+                docIds[i] = cached;
+            } else {
+                docIds[i] = -1;
+                misses.add(i);
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Reads the docids of the given URLs with one cursor, visiting them in key order. The cursor
+     * only seeks if a URL lies beyond its current position, so unknown URLs which sort between
+     * the same two stored ones cost a single seek.
+     */
+    private void readDocIds(List<String> urls, List<Integer> indexes, int[] docIds) {
+        byte[][] keys = new byte[docIds.length][];
+        for (int i : indexes) {
+            keys[i] = urls.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        // Berkeley DB orders keys by unsigned byte comparison
+        Integer[] sorted = indexes.toArray(new Integer[0]);
+        Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        try (Cursor cursor = docIDsDB.openCursor(null, null)) {
+            byte[] position = null;
+            for (int i : sorted) {
+                if (position == null || Arrays.compareUnsigned(position, keys[i]) < 0) {
+                    key.setData(keys[i]);
+                    if (cursor.getSearchKeyRange(key, value, null) != OperationStatus.SUCCESS) {
+                        // The remaining URLs sort after the last stored one
+                        return;
+                    }
+                    position = key.getData();
+                }
+                if (Arrays.equals(position, keys[i]) && (value.getData().length > 0)) {
+                    docIds[i] = Util.byteArray2Int(value.getData());
                 }
             }
         }
     }
 
     public void addUrlAndDocId(String url, int docId) {
-        synchronized (mutex) {
-            if (docId <= lastDocID) {
+        Stripe stripe = stripeFor(url);
+        stripe.lock.lock();
+        try {
+            if (docId <= lastDocID.get()) {
                 throw new IllegalArgumentException(
-                    "Requested doc id: " + docId + " is not larger than: " + lastDocID);
+                    "Requested doc id: " + docId + " is not larger than: " + lastDocID.get());
             }
 
             // Make sure that we have not already assigned a docid for this URL
-            int prevDocid = getDocId(url);
+            Integer cached = stripe.cache.get(url);
+            int prevDocid = cached != null ? cached : readDocId(url);
             if (prevDocid > 0) {
                 if (prevDocid == docId) {
                     return;
@@ -133,9 +318,20 @@ public class SleepycatDocIDServer implements DocIDServer{
                 throw new IllegalArgumentException("Doc id: " + prevDocid + " is already assigned to URL: " + url);
             }
 
+            int last;
+            do {
+                last = lastDocID.get();
+                if (docId <= last) {
+                    throw new IllegalArgumentException(
+                        "Requested doc id: " + docId + " is not larger than: " + last);
+                }
+            } while (!lastDocID.compareAndSet(last, docId));
+
             docIDsDB.put(null, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
                          new DatabaseEntry(Util.int2ByteArray(docId)));
-            lastDocID = docId;
+            stripe.cache.put(url, docId);
+        } finally {
+            stripe.lock.unlock();
         }
     }
 
@@ -152,11 +348,105 @@ public class SleepycatDocIDServer implements DocIDServer{
         }
     }
 
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        try (Cursor cursor = docIDsDB.openCursor(null, null)) {
+            while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                if (value.getData().length > 0) {
+                    action.accept(new String(key.getData(), StandardCharsets.UTF_8),
+                                  Util.byteArray2Int(value.getData()));
+                }
+            }
+        }
+    }
+
     public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
         try {
             docIDsDB.close();
         } catch (DatabaseException e) {
             logger.error("Exception thrown while closing DocIDServer", e);
         }
     }
+
+    private int readDocId(String url) {
+        DatabaseEntry key = new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8));
+        DatabaseEntry value = new DatabaseEntry();
+        OperationStatus result = docIDsDB.get(null, key, value, null);
+        if ((result == OperationStatus.SUCCESS) && (value.getData().length > 0)) {
+            return Util.byteArray2Int(value.getData());
+        }
+        return -1;
+    }
+
+    private int readMaxDocId() {
+        int maxDocId = 0;
+        DatabaseEntry key = new DatabaseEntry();
+        key.setPartial(0, 0, true);
+        DatabaseEntry value = new DatabaseEntry();
+        try (Cursor cursor = docIDsDB.openCursor(null, null)) {
+            while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                if (value.getData().length > 0) {
+                    maxDocId = Math.max(maxDocId, Util.byteArray2Int(value.getData()));
+                }
+            }
+        }
+        return maxDocId;
+    }
+
+    private Stripe stripeFor(String url) {
+        return stripes[stripeIndex(url)];
+    }
+
+    private static int stripeIndex(String url) {
+        int h = url.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Integer> cache;
+
+        Stripe(int maxSize) {
+            cache = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        Integer getCached(String url) {
+            lock.lock();
+            try {
+                return cache.get(url);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void putCached(String url, int docId) {
+            lock.lock();
+            try {
+                cache.put(url, docId);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                cache.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
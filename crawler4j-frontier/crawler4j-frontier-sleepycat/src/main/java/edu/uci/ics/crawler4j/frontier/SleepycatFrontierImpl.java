@@ -15,7 +15,11 @@
  */
 package edu.uci.ics.crawler4j.frontier;
 
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +31,14 @@ import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.url.WebURL;
 
 /**
+ * Frontier backed by a Berkeley DB database.
+ *
+ * <p>Producers and consumers do not share a lock: scheduled URLs are written to the database under
+ * one lock, while crawlers take URLs from an in-memory buffer under another.
+ * A prefetcher thread, started by the first crawler asking for URLs, moves the next batch of URLs
+ * out of the database in a single cursor pass whenever the buffer runs empty. At most one batch is
+ * held in memory, so URLs scheduled with a higher priority wait for at most one batch.
+ *
  * @author Yasser Ganjisaffar
  */
 
@@ -35,23 +47,56 @@ public class SleepycatFrontierImpl implements Frontier {
 
     private static final String DATABASE_NAME = "PendingURLsDB";
     private static final int IN_PROCESS_RESCHEDULE_BATCH_SIZE = 100;
+
     private final CrawlConfig config;
     protected WorkQueues workQueues;
 
     protected InProcessPagesDB inProcessPages;
 
+    /**
+     * @deprecated does not protect anything anymore, the frontier only locks private
+     *             {@link ReentrantLock}s. Synchronizing on it does not exclude any frontier
+     *             operation. Kept for subclasses compiled against earlier versions.
+     */
+    @Deprecated
     protected final Object mutex = new Object();
+
+    /**
+     * @deprecated never notified anymore, waiting crawlers await a private {@link Condition}.
+     *             Kept for subclasses compiled against earlier versions.
+     */
+    @Deprecated
     protected final Object waitingList = new Object();
 
-    protected boolean isFinished = false;
+    /*
+     * Guards the work queues database and the scheduling counters. When both locks are
+     * needed, scheduleLock is acquired first.
+     */
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+
+    /* Guards the prefetched URLs. */
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmpty = takeLock.newCondition();
+
+    protected volatile boolean isFinished = false;
 
     protected long scheduledPages;
 
     protected Counters counters;
 
+    private final ArrayDeque<WebURL> prefetched = new ArrayDeque<>();
+    private final int prefetchSize;
+    private volatile int prefetchedCount;
+
+    private volatile boolean closed;
+    private final Thread prefetcher;
+    /* Guarded by takeLock. */
+    private boolean prefetcherStarted;
+
     public SleepycatFrontierImpl(Environment env, CrawlConfig config) {
         this.config = config;
         this.counters = new Counters(env, config);
+        this.prefetchSize = Math.max(1, config.getBatchReadSize());
         try {
             workQueues = new WorkQueues(env, DATABASE_NAME, config.isResumableCrawling());
             if (config.isResumableCrawling()) {
@@ -78,11 +123,14 @@ public class SleepycatFrontierImpl implements Frontier {
             logger.error("Error while initializing the Frontier", e);
             workQueues = null;
         }
+        prefetcher = new Thread(this::prefetchLoop, "Crawler4j-frontier-prefetcher");
+        prefetcher.setDaemon(true);
     }
 
     public void scheduleAll(List<WebURL> urls) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
+        scheduleLock.lock();
+        try {
             int newScheduledPage = 0;
             for (WebURL url : urls) {
                 if ((maxPagesToFetch > 0) &&
@@ -101,15 +149,16 @@ public class SleepycatFrontierImpl implements Frontier {
                 scheduledPages += newScheduledPage;
                 counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, newScheduledPage);
             }
-            synchronized (waitingList) {
-                waitingList.notifyAll();
-            }
+        } finally {
+            scheduleLock.unlock();
         }
+        LockSupport.unpark(prefetcher);
     }
 
     public void schedule(WebURL url) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
+        scheduleLock.lock();
+        try {
             try {
                 if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
                     workQueues.put(url);
@@ -119,46 +168,94 @@ public class SleepycatFrontierImpl implements Frontier {
             } catch (DatabaseException e) {
                 logger.error("Error while putting the url in the work queue", e);
             }
+        } finally {
+            scheduleLock.unlock();
         }
+        LockSupport.unpark(prefetcher);
     }
 
     public void getNextURLs(int max, List<WebURL> result) {
-        while (true) {
-            synchronized (mutex) {
+        takeLock.lock();
+        try {
+            if (!prefetcherStarted && workQueues != null) {
+                prefetcherStarted = true;
+                prefetcher.start();
+            }
+            while (true) {
                 if (isFinished) {
                     return;
                 }
-                try {
-                    List<WebURL> curResults = workQueues.get(max);
-                    workQueues.delete(curResults.size());
-                    if (inProcessPages != null) {
-                        for (WebURL curPage : curResults) {
-                            inProcessPages.put(curPage);
-                        }
-                    }
-                    result.addAll(curResults);
-                } catch (DatabaseException e) {
-                    logger.error("Error while getting next urls", e);
+                while (result.size() < max && !prefetched.isEmpty()) {
+                    result.add(prefetched.poll());
+                }
+                prefetchedCount = prefetched.size();
+                if (prefetchedCount == 0) {
+                    LockSupport.unpark(prefetcher);
                 }
 
                 if (result.size() > 0) {
                     return;
                 }
-            }
 
-            try {
-                synchronized (waitingList) {
-                    waitingList.wait();
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ignored) {
+                    // Do nothing
                 }
-            } catch (InterruptedException ignored) {
-                // Do nothing
             }
-            if (isFinished) {
-                return;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void prefetchLoop() {
+        while (!isFinished && !closed) {
+            if (!prefetch()) {
+                LockSupport.park(this);
             }
         }
     }
 
+    /**
+     * Moves the next batch of URLs from the database into memory, if the buffer is empty.
+     *
+     * @return {@code true} if URLs were moved.
+     */
+    private boolean prefetch() {
+        if (prefetchedCount > 0) {
+            return false;
+        }
+        scheduleLock.lock();
+        try {
+            if (isFinished || closed) {
+                return false;
+            }
+            // In resumable mode the batch is recorded as in process in the same transaction
+            // which removes it from the work queues, so a crash cannot lose it
+            List<WebURL> urls = inProcessPages != null
+                    ? workQueues.moveTo(inProcessPages, prefetchSize)
+                    : workQueues.take(prefetchSize);
+            if (urls.isEmpty()) {
+                return false;
+            }
+
+            takeLock.lock();
+            try {
+                prefetched.addAll(urls);
+                prefetchedCount = prefetched.size();
+                notEmpty.signalAll();
+            } finally {
+                takeLock.unlock();
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Error while getting next urls", e);
+            return false;
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
     public void setProcessed(WebURL webURL) {
         counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES);
         if (inProcessPages != null) {
@@ -168,8 +265,27 @@ public class SleepycatFrontierImpl implements Frontier {
         }
     }
 
+    /**
+     * Drops a url which the crawler skipped from the in-process pages, so that it is neither
+     * counted as assigned nor rescheduled on resume.
+     */
+    @Override
+    public void setSkipped(WebURL webURL) {
+        if (inProcessPages != null) {
+            if (!inProcessPages.removeURL(webURL)) {
+                logger.warn("Could not remove: {} from list of skipped pages.", webURL.getURL());
+            }
+        }
+    }
+
     public long getQueueLength() {
-        return workQueues.getLength();
+        scheduleLock.lock();
+        try {
+            // URLs are only moved into memory under the schedule lock, so none are missed here
+            return workQueues.getLength() + prefetchedCount;
+        } finally {
+            scheduleLock.unlock();
+        }
     }
 
     public long getNumberOfAssignedPages() {
@@ -193,6 +309,24 @@ public class SleepycatFrontierImpl implements Frontier {
     }
 
     public void close() {
+        closed = true;
+        takeLock.lock();
+        boolean started;
+        try {
+            started = prefetcherStarted;
+            // a crawler asking for URLs after the close must not start the prefetcher anymore
+            prefetcherStarted = true;
+        } finally {
+            takeLock.unlock();
+        }
+        if (started) {
+            LockSupport.unpark(prefetcher);
+            try {
+                prefetcher.join(config.getThreadShutdownDelaySeconds() * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         workQueues.close();
         counters.close();
         if (inProcessPages != null) {
@@ -201,9 +335,13 @@ public class SleepycatFrontierImpl implements Frontier {
     }
 
     public void finish() {
-        isFinished = true;
-        synchronized (waitingList) {
-            waitingList.notifyAll();
+        takeLock.lock();
+        try {
+            isFinished = true;
+            notEmpty.signalAll();
+        } finally {
+            takeLock.unlock();
         }
+        LockSupport.unpark(prefetcher);
     }
 }
@@ -17,6 +17,7 @@ package edu.uci.ics.crawler4j.frontier;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
@@ -40,8 +41,14 @@ public class WorkQueues {
 
     private final WebURLTupleBinding webURLBinding;
 
+    /**
+     * @deprecated not used for locking anymore, use {@link #lock}
+     */
+    @Deprecated
     protected final Object mutex = new Object();
 
+    protected final ReentrantLock lock = new ReentrantLock();
+
     public WorkQueues(Environment env, String dbName, boolean resumable) {
         this.env = env;
         this.resumable = resumable;
@@ -68,7 +75,8 @@ public class WorkQueues {
     }
 
     public List<WebURL> get(int max) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             List<WebURL> results = new ArrayList<>(max);
             DatabaseEntry key = new DatabaseEntry();
             DatabaseEntry value = new DatabaseEntry();
@@ -86,11 +94,72 @@ public class WorkQueues {
             }
             commit(txn);
             return results;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads and removes up to {@code max} URLs with the lowest keys in a single cursor pass.
+     */
+    public List<WebURL> take(int max) {
+        lock.lock();
+        try {
+            List<WebURL> results = new ArrayList<>(max);
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction();
+            try (Cursor cursor = openCursor(txn)) {
+                OperationStatus result = cursor.getFirst(key, value, null);
+                while ((results.size() < max) && (result == OperationStatus.SUCCESS)) {
+                    if (value.getData().length > 0) {
+                        results.add(webURLBinding.entryToObject(value));
+                    }
+                    cursor.delete();
+                    result = cursor.getNext(key, value, null);
+                }
+            }
+            commit(txn);
+            return results;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves up to {@code max} URLs with the lowest keys to {@code target} in a single transaction,
+     * so that a crash leaves every URL in one of the two databases.
+     */
+    public List<WebURL> moveTo(WorkQueues target, int max) {
+        lock.lock();
+        target.lock.lock();
+        try {
+            List<WebURL> results = new ArrayList<>(max);
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction();
+            try (Cursor cursor = openCursor(txn)) {
+                OperationStatus result = cursor.getFirst(key, value, null);
+                while ((results.size() < max) && (result == OperationStatus.SUCCESS)) {
+                    if (value.getData().length > 0) {
+                        results.add(webURLBinding.entryToObject(value));
+                        target.urlsDB.put(txn, key, value);
+                    }
+                    cursor.delete();
+                    result = cursor.getNext(key, value, null);
+                }
+            }
+            commit(txn);
+            return results;
+        } finally {
+            target.lock.unlock();
+            lock.unlock();
         }
     }
 
     public void delete(int count) {
-        synchronized (mutex) {
+        lock.lock();
+        try {
             DatabaseEntry key = new DatabaseEntry();
             DatabaseEntry value = new DatabaseEntry();
             Transaction txn = beginTransaction();
@@ -104,6 +173,8 @@ public class WorkQueues {
                 }
             }
             commit(txn);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.hshn.mi.crawler4j.frontier;
+
+import crawlercommons.urlfrontier.URLFrontierGrpc;
+import crawlercommons.urlfrontier.Urlfrontier;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A long-lived {@code PutURLs} stream to the URL Frontier.
+ * <p>
+ * Each sent item gets an ID, and the returned future completes once the server acknowledges that
+ * ID. The number of unacknowledged items is bounded, and items are only written while the
+ * transport is ready, so a slow server pushes back on the senders. If the stream fails, all pending
+ * futures fail and the next item opens a new stream. An item which is not acknowledged within the
+ * ack timeout fails, so a lost ack cannot hold its permit forever.
+ */
+class PutURLsStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(PutURLsStream.class);
+
+    private static final long READY_POLL_MS = 100;
+
+    private final Consumer<ClientResponseObserver<Urlfrontier.URLItem, Urlfrontier.AckMessage>> opener;
+    private final String name;
+    private final Semaphore inFlight;
+    private final long ackTimeoutMs;
+    private final AtomicLong ids = new AtomicLong();
+
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final Condition ready = sendLock.newCondition();
+
+    private Session session;
+
+    PutURLsStream(URLFrontierGrpc.URLFrontierStub asyncStub, String name, int maxInFlight, long ackTimeoutMs) {
+        this(asyncStub::putURLs, name, maxInFlight, ackTimeoutMs);
+    }
+
+    /**
+     * @param opener       opens a new {@code PutURLs} call with the given response observer
+     * @param ackTimeoutMs time after which an unacknowledged item fails with a
+     *                     {@link java.util.concurrent.TimeoutException}
+     */
+    PutURLsStream(Consumer<ClientResponseObserver<Urlfrontier.URLItem, Urlfrontier.AckMessage>> opener,
+                  String name, int maxInFlight, long ackTimeoutMs) {
+        this.opener = opener;
+        this.name = name;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    /**
+     * Sends the item, blocking while too many items are unacknowledged or the stream is not ready.
+     *
+     * @return a future which completes once the item is acknowledged, exceptionally if the server
+     *         reports a failure, the stream breaks or the ack times out.
+     */
+    CompletableFuture<Void> send(Urlfrontier.URLItem.Builder item) throws InterruptedException {
+        inFlight.acquire();
+        String id = name + '-' + ids.incrementAndGet();
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        ack.whenComplete((ignored, e) -> inFlight.release());
+        sendLock.lock();
+        try {
+            if (session == null || session.broken) {
+                session = new Session();
+                opener.accept(session);
+            }
+            Session current = session;
+            while (!current.requestStream.isReady() && !current.broken) {
+                ready.await(READY_POLL_MS, TimeUnit.MILLISECONDS);
+            }
+            // the session is only marked broken under the send lock, so the ack is either failed
+            // here or by the session
+            if (current.broken) {
+                ack.completeExceptionally(new IllegalStateException("The " + name + " stream is broken"));
+                return ack;
+            }
+            current.pending.put(id, ack);
+            // a late ack of a timed out item is ignored like an unknown one
+            ack.whenComplete((ignored, e) -> current.pending.remove(id, ack));
+            ack.orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS);
+            current.requestStream.onNext(item.setID(id).build());
+        } catch (InterruptedException e) {
+            // releases the permit
+            ack.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException e) {
+            ack.completeExceptionally(e);
+        } finally {
+            sendLock.unlock();
+        }
+        return ack;
+    }
+
+    /**
+     * Half-closes the stream. Items which are still unacknowledged complete as the server answers.
+     */
+    void close() {
+        sendLock.lock();
+        try {
+            if (session != null && !session.broken) {
+                session.requestStream.onCompleted();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private final class Session implements ClientResponseObserver<Urlfrontier.URLItem, Urlfrontier.AckMessage> {
+
+        private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+        private ClientCallStreamObserver<Urlfrontier.URLItem> requestStream;
+        /* Only set under the send lock. */
+        private volatile boolean broken;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<Urlfrontier.URLItem> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(() -> {
+                sendLock.lock();
+                try {
+                    ready.signalAll();
+                } finally {
+                    sendLock.unlock();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(Urlfrontier.AckMessage ack) {
+            CompletableFuture<Void> future = pending.remove(ack.getID());
+            if (future == null) {
+                return;
+            }
+            if (ack.getStatus() == Urlfrontier.AckMessage.Status.FAIL) {
+                future.completeExceptionally(new IllegalStateException("URL Frontier failed to store item " + ack.getID()));
+            } else {
+                future.complete(null);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.warn("The {} stream failed: {}", name, t.getLocalizedMessage(), t);
+            fail(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            fail(new IllegalStateException("The " + name + " stream was closed by the server"));
+        }
+
+        private void fail(Throwable t) {
+            List<CompletableFuture<Void>> failed;
+            sendLock.lock();
+            try {
+                broken = true;
+                failed = new ArrayList<>(pending.values());
+                pending.clear();
+                ready.signalAll();
+            } finally {
+                sendLock.unlock();
+            }
+            // completed outside the lock, as the futures run the callbacks of the senders
+            for (CompletableFuture<Void> future : failed) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
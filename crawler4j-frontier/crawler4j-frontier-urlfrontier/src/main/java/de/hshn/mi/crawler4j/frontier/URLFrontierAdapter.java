@@ -24,21 +24,29 @@ import edu.uci.ics.crawler4j.frontier.Frontier;
 import edu.uci.ics.crawler4j.url.WebURL;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class URLFrontierAdapter implements Frontier, DocIDServer {
 
     private static final Logger logger = LoggerFactory.getLogger(URLFrontierAdapter.class);
 
+    /** Maximum number of urls sent on a stream but not yet acknowledged by URL Frontier. */
+    private static final int MAX_IN_FLIGHT = 10000;
+    private static final long ACK_TIMEOUT_SECONDS = 60;
+    private static final long STATS_TTL_MS = 1000;
+
     private final String host;
     private final int port;
     private final int maxQueues;
@@ -48,6 +56,10 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
     private final ManagedChannel channel;
     private final URLFrontierGrpc.URLFrontierStub asyncStub;
     private final URLFrontierGrpc.URLFrontierBlockingStub blockingStub;
+    private final PutURLsStream discoveredStream;
+    private final PutURLsStream knownStream;
+    private final ReentrantLock statsLock = new ReentrantLock();
+    private volatile CachedStats stats;
 
     public URLFrontierAdapter(CrawlConfig crawlConfig, int maxQueues, String host, int port) {
         this.crawlConfig = crawlConfig;
@@ -61,6 +73,10 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
                 .build();
         this.asyncStub = URLFrontierGrpc.newStub(channel);
         this.blockingStub = URLFrontierGrpc.newBlockingStub(channel);
+        this.discoveredStream = new PutURLsStream(asyncStub, "discovered", MAX_IN_FLIGHT,
+                TimeUnit.SECONDS.toMillis(ACK_TIMEOUT_SECONDS));
+        this.knownStream = new PutURLsStream(asyncStub, "known", MAX_IN_FLIGHT,
+                TimeUnit.SECONDS.toMillis(ACK_TIMEOUT_SECONDS));
     }
 
     @Override
@@ -68,74 +84,48 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
 
         int maxPagesToFetch = crawlConfig.getMaxPagesToFetch();
 
-        final AtomicInteger acked = new AtomicInteger(0);
-        final AtomicBoolean completed = new AtomicBoolean(false);
-        int sent = 0;
-
-        StreamObserver<crawlercommons.urlfrontier.Urlfrontier.AckMessage> responseObserver =
-                new StreamObserver<>() {
-                    @Override
-                    public void onNext(crawlercommons.urlfrontier.Urlfrontier.AckMessage value) {
-                        // receives confirmation that the value has been received
-                        acked.addAndGet(1);
-                    }
-
-                    @Override
-                    public void onError(Throwable t) {
-                        completed.set(true);
-                        logger.warn(t.getLocalizedMessage(), t);
-                    }
-
-                    @Override
-                    public void onCompleted() {
-                        completed.set(true);
-                    }
-                };
-
-        final StreamObserver<Urlfrontier.URLItem> streamObserver = asyncStub.putURLs(responseObserver);
+        final List<CompletableFuture<Void>> acks = new ArrayList<>(urls.size());
 
-        for (WebURL url : urls) {
-
-            if ((maxPagesToFetch > 0) &&
-                    ((scheduledPages.get() + sent) >= maxPagesToFetch)) {
-                break;
-            }
+        try {
+            for (WebURL url : urls) {
 
-            // don't sent too many in one go
-            while (sent > acked.get() + 10000) {
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                if ((maxPagesToFetch > 0) && (scheduledPages.get() >= maxPagesToFetch)) {
+                    break;
                 }
-            }
 
-            final Urlfrontier.URLItem item = toItem(url);
-            if (item == null) {
-                logger.warn("Invalid url: {}", url.getURL());
-            } else {
-                streamObserver.onNext(item);
-                sent++;
+                final Urlfrontier.URLItem.Builder item = toItem(url);
+                if (item == null) {
+                    logger.warn("Invalid url: {}", url.getURL());
+                } else {
+                    // counted right away for the limit, and uncounted again if the send fails
+                    scheduledPages.incrementAndGet();
+                    CompletableFuture<Void> ack = discoveredStream.send(item);
+                    ack.whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            scheduledPages.decrementAndGet();
+                        }
+                    });
+                    acks.add(ack);
+                }
             }
+        } catch (InterruptedException e) {
+            scheduledPages.decrementAndGet();
+            Thread.currentThread().interrupt();
         }
 
-        if (sent > 0) {
-            scheduledPages.addAndGet(sent);
-        }
-
-        streamObserver.onCompleted();
-
-        // wait for completion
-        while (!completed.get()) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        // wait until the server has stored the whole batch
+        try {
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Failed to schedule urls: {}", e.getCause().getLocalizedMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            logger.warn("URL Frontier did not acknowledge {} urls within {} seconds", acks.size(), ACK_TIMEOUT_SECONDS);
         }
     }
 
-    private Urlfrontier.URLItem toItem(WebURL url) {
+    private Urlfrontier.URLItem.Builder toItem(WebURL url) {
         try {
             final Urlfrontier.URLItem.Builder builder = Urlfrontier.URLItem.newBuilder();
             final Map<String, Urlfrontier.StringList> metadata = createMetadata(url);
@@ -144,7 +134,7 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
                     .putAllMetadata(metadata)
                     .build();
             builder.setDiscovered(Urlfrontier.DiscoveredURLItem.newBuilder().setInfo(info).build());
-            return builder.build();
+            return builder;
         } catch (RuntimeException e) {
             logger.warn(e.getLocalizedMessage(), e);
             return null;
@@ -174,7 +164,6 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
         int maxPagesToFetch = crawlConfig.getMaxPagesToFetch();
         if (maxPagesToFetch < 0 || scheduledPages.get() < maxPagesToFetch) {
             scheduleAll(List.of(url));
-            scheduledPages.incrementAndGet();
         }
     }
 
@@ -198,27 +187,6 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
         if (webURL instanceof URLFrontierWebURLImpl) {
             URLFrontierWebURLImpl url = (URLFrontierWebURLImpl) webURL;
 
-            final StreamObserver<crawlercommons.urlfrontier.Urlfrontier.AckMessage> responseObserver =
-                    new StreamObserver<>() {
-                        @Override
-                        public void onNext(crawlercommons.urlfrontier.Urlfrontier.AckMessage value) {
-                            // receives confirmation that the value has been received
-                            completedPages.addAndGet(1);
-                        }
-
-                        @Override
-                        public void onError(Throwable t) {
-                            logger.warn(t.getLocalizedMessage(), t);
-                        }
-
-                        @Override
-                        public void onCompleted() {
-                            //nothing to do
-                        }
-                    };
-
-            final StreamObserver<Urlfrontier.URLItem> streamObserver = asyncStub.putURLs(responseObserver);
-
             final Urlfrontier.URLItem.Builder builder = Urlfrontier.URLItem.newBuilder();
 
             builder.setKnown(
@@ -228,7 +196,17 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
                             .setRefetchableFromDate(0)
                             .build());
 
-            streamObserver.onNext(builder.build());
+            try {
+                knownStream.send(builder).whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        completedPages.incrementAndGet();
+                    } else {
+                        logger.warn("Failed to mark {} as processed: {}", url.getURL(), e.getLocalizedMessage());
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
 
         } else {
             logger.error("Received instance is not of type {}", URLFrontierWebURLImpl.class.getSimpleName());
@@ -268,7 +246,9 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
 
     @Override
     public void finish() {
-       channel.shutdown();
+        discoveredStream.close();
+        knownStream.close();
+        channel.shutdown();
     }
 
     @Override
@@ -299,11 +279,38 @@ public class URLFrontierAdapter implements Frontier, DocIDServer {
         return (int) getStatistics().getSize();
     }
 
+    /**
+     * Returns the frontier statistics. They are fetched at most once per {@link #STATS_TTL_MS} and
+     * shared between all callers, so the monitor and the crawler threads do not each make a
+     * blocking round trip.
+     */
     protected Urlfrontier.Stats getStatistics() {
-        Urlfrontier.QueueWithinCrawlParams.Builder builder =
-                Urlfrontier.QueueWithinCrawlParams.newBuilder();
+        final CachedStats cached = stats;
+        if (cached != null && System.currentTimeMillis() - cached.fetchedAt < STATS_TTL_MS) {
+            return cached.stats;
+        }
+        statsLock.lock();
+        try {
+            if (stats != null && System.currentTimeMillis() - stats.fetchedAt < STATS_TTL_MS) {
+                return stats.stats;
+            }
+            Urlfrontier.QueueWithinCrawlParams.Builder builder =
+                    Urlfrontier.QueueWithinCrawlParams.newBuilder();
+            final Urlfrontier.Stats fresh = blockingStub.getStats(builder.build());
+            stats = new CachedStats(fresh, System.currentTimeMillis());
+            return fresh;
+        } finally {
+            statsLock.unlock();
+        }
+    }
 
-        return blockingStub.getStats(builder.build());
+    private static final class CachedStats {
+        private final Urlfrontier.Stats stats;
+        private final long fetchedAt;
 
+        private CachedStats(Urlfrontier.Stats stats, long fetchedAt) {
+            this.stats = stats;
+            this.fetchedAt = fetchedAt;
+        }
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.hshn.mi.crawler4j.frontier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import crawlercommons.urlfrontier.Urlfrontier;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+public class PutURLsStreamTest {
+
+    private final List<ClientResponseObserver<Urlfrontier.URLItem, Urlfrontier.AckMessage>> sessions = new ArrayList<>();
+    private final List<FakeRequestStream> requestStreams = new ArrayList<>();
+    private PutURLsStream stream;
+
+    @BeforeEach
+    public void init() {
+        stream = newStream(60000);
+    }
+
+    @Test
+    public void testAckCompletesTheFuture() throws Exception {
+        CompletableFuture<Void> ok = stream.send(Urlfrontier.URLItem.newBuilder());
+        CompletableFuture<Void> failed = stream.send(Urlfrontier.URLItem.newBuilder());
+        Assertions.assertThat(ok).isNotDone();
+
+        sessions.get(0).onNext(ack("test-1", Urlfrontier.AckMessage.Status.OK));
+        sessions.get(0).onNext(ack("test-2", Urlfrontier.AckMessage.Status.FAIL));
+
+        Assertions.assertThat(ok).isCompleted();
+        Assertions.assertThat(failed).isCompletedExceptionally();
+        Assertions.assertThat(requestStreams.get(0).sent).extracting(Urlfrontier.URLItem::getID)
+                .containsExactly("test-1", "test-2");
+    }
+
+    @Test
+    @Timeout(10)
+    public void testBrokenStreamFailsPendingItemsAndReleasesTheirPermits() throws Exception {
+        CompletableFuture<Void> first = stream.send(Urlfrontier.URLItem.newBuilder());
+        CompletableFuture<Void> second = stream.send(Urlfrontier.URLItem.newBuilder());
+
+        sessions.get(0).onError(new IllegalStateException("connection reset"));
+
+        Assertions.assertThat(first).isCompletedExceptionally();
+        Assertions.assertThat(second).isCompletedExceptionally();
+        // Blocks if the permits of the failed items were not released
+        stream.send(Urlfrontier.URLItem.newBuilder());
+        stream.send(Urlfrontier.URLItem.newBuilder());
+        Assertions.assertThat(sessions).hasSize(2);
+        Assertions.assertThat(requestStreams.get(1).sent).hasSize(2);
+    }
+
+    @Test
+    @Timeout(10)
+    public void testLostAckTimesOutAndReleasesItsPermit() throws Exception {
+        stream = newStream(200);
+        CompletableFuture<Void> acked = stream.send(Urlfrontier.URLItem.newBuilder());
+        CompletableFuture<Void> lost = stream.send(Urlfrontier.URLItem.newBuilder());
+
+        // The server drops the ack of the second item
+        sessions.get(0).onNext(ack("test-1", Urlfrontier.AckMessage.Status.OK));
+
+        Assertions.assertThat(acked).isCompleted();
+        Assertions.assertThat(lost).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(TimeoutException.class);
+        // A late ack is ignored
+        sessions.get(0).onNext(ack("test-2", Urlfrontier.AckMessage.Status.OK));
+        // Blocks if the permit of the lost item was not released
+        stream.send(Urlfrontier.URLItem.newBuilder());
+        stream.send(Urlfrontier.URLItem.newBuilder());
+        Assertions.assertThat(requestStreams.get(0).sent).hasSize(4);
+    }
+
+    @Test
+    public void testCloseHalfClosesTheStream() throws Exception {
+        stream.send(Urlfrontier.URLItem.newBuilder());
+
+        stream.close();
+
+        Assertions.assertThat(requestStreams.get(0).completed).isTrue();
+    }
+
+    private PutURLsStream newStream(long ackTimeoutMs) {
+        return new PutURLsStream(session -> {
+            FakeRequestStream requestStream = new FakeRequestStream();
+            sessions.add(session);
+            requestStreams.add(requestStream);
+            session.beforeStart(requestStream);
+        }, "test", 2, ackTimeoutMs);
+    }
+
+    private static Urlfrontier.AckMessage ack(String id, Urlfrontier.AckMessage.Status status) {
+        return Urlfrontier.AckMessage.newBuilder().setID(id).setStatus(status).build();
+    }
+
+    private static class FakeRequestStream extends ClientCallStreamObserver<Urlfrontier.URLItem> {
+        private final List<Urlfrontier.URLItem> sent = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(Urlfrontier.URLItem value) {
+            sent.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}